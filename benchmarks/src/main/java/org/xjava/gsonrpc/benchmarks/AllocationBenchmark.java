@@ -0,0 +1,73 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.xjava.gsonrpc.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormats;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the steady state cost of dispatching a simple call from JSON text and from UTF-8 bytes, with and without
+ * buffer reuse. Run it with -prof gc: the number that matters is gc.alloc.rate.norm, the bytes allocated per call,
+ * which AllocationGate checks against the budgets in benchmarks/baseline/allocation.txt.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationBenchmark {
+
+  @Param({"off", "on"})
+  public String reuse;
+
+  private GsonRPC gsonRPC;
+  private String requestJson;
+  private byte[] requestBytes;
+
+  @Setup
+  public void setup() {
+    gsonRPC = Payloads.newServer();
+    gsonRPC.setBufferReuseEnabled("on".equals(reuse));
+
+    requestJson = gsonRPC.toJson(gsonRPC.getMessageFactory().newRequest("1", "bench.add", 1, 2));
+    requestBytes = requestJson.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public String processJson() {
+    return gsonRPC.toJson(gsonRPC.processRequests(requestJson));
+  }
+
+  @Benchmark
+  public byte[] processBytes() {
+    return gsonRPC.toBytes(gsonRPC.processRequests(requestBytes, JsonRPCWireFormats.JSON), JsonRPCWireFormats.JSON);
+  }
+}
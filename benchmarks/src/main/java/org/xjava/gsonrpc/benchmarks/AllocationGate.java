@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.xjava.gsonrpc.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs AllocationBenchmark with the GC profiler and fails if any benchmark allocates more bytes per call than its
+ * budget. Budgets are read from a file with one "benchmark reuse bytes" line per case, benchmarks/baseline/allocation.txt
+ * by default; lines starting with # are ignored.
+ *
+ * <pre>{@code
+ * java -cp benchmarks/target/benchmarks.jar org.xjava.gsonrpc.benchmarks.AllocationGate [budgets]
+ * }</pre>
+ */
+public class AllocationGate {
+
+  public static void main(String[] args) throws Exception {
+    Path budgetsPath = Paths.get(args.length > 0 ? args[0] : "benchmarks/baseline/allocation.txt");
+    Map<String, Double> budgets = readBudgets(budgetsPath);
+
+    Runner runner = new Runner(new OptionsBuilder()
+        .include(AllocationBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build());
+
+    boolean passed = true;
+    for(RunResult runResult : runner.run()) {
+      String benchmark = runResult.getParams().getBenchmark();
+      String key = benchmark.substring(benchmark.lastIndexOf('.') + 1) + " " + runResult.getParams().getParam("reuse");
+
+      Result<?> allocation = runResult.getSecondaryResults().get("gc.alloc.rate.norm");
+      Double budget = budgets.get(key);
+      if(allocation == null || budget == null)
+        continue;
+
+      boolean withinBudget = allocation.getScore() <= budget;
+      passed &= withinBudget;
+      System.out.printf("%-20s %10.0f B/op  budget %10.0f  %s%n", key, allocation.getScore(), budget, withinBudget ? "ok" : "OVER");
+    }
+
+    if(!passed)
+      System.exit(1);
+  }
+
+  private static Map<String, Double> readBudgets(Path path) throws Exception {
+    Map<String, Double> budgets = new LinkedHashMap<>();
+    List<String> lines = Files.readAllLines(path);
+
+    for(String line : lines) {
+      line = line.trim();
+      if(line.isEmpty() || line.startsWith("#"))
+        continue;
+
+      String[] fields = line.split("\\s+");
+      budgets.put(fields[0] + " " + fields[1], Double.parseDouble(fields[2]));
+    }
+
+    return budgets;
+  }
+}
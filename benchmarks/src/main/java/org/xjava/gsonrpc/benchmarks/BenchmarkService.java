@@ -0,0 +1,104 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks;
+
+import org.xjava.gsonrpc.annotation.RPCMethod;
+import org.xjava.gsonrpc.annotation.RPCService;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The service called by the benchmarks. Its methods cover positional and named params, primitive, object and
+ * streamed results, a method gathered into bulk calls, and a method that always fails.
+ */
+@RPCService(namespace = "bench")
+public interface BenchmarkService {
+
+  @RPCMethod
+  public int add(int a, int b);
+
+  @RPCMethod( paramNames = {"message"} )
+  public String echo(String message);
+
+  @RPCMethod
+  public double sum(double[] values);
+
+  @RPCMethod
+  public Item getItem(int id);
+
+  @RPCMethod
+  public List<Item> getItems(int count);
+
+  @RPCMethod
+  public Stream<Item> streamItems(int count);
+
+  @RPCMethod
+  public Item fetchItem(int id);
+
+  @RPCMethod( bulk = "fetchItems" )
+  public Item lookupItem(int id);
+
+  public List<Item> fetchItems(List<Integer> ids);
+
+  @RPCMethod
+  public String fail();
+
+  @RPCMethod
+  public double score(int hits, long total, double weight, boolean bonus);
+
+  @RPCMethod
+  public Double scoreBoxed(Integer hits, Long total, Double weight, Boolean bonus);
+
+  public class Item {
+    private final int id;
+    private final String name;
+    private final double price;
+    private final boolean available;
+
+    public Item(int id, String name, double price, boolean available) {
+      this.id = id;
+      this.name = name;
+      this.price = price;
+      this.available = available;
+    }
+
+    public int getId() {
+      return id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public double getPrice() {
+      return price;
+    }
+
+    public boolean isAvailable() {
+      return available;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The implementation of BenchmarkService. Every method does as little work as possible so that the benchmarks
+ * measure GsonRPC rather than the service.
+ */
+public class BenchmarkServiceImplementation implements BenchmarkService {
+
+  /**
+   * The work spent on each round trip to the pretend store behind fetchItem and fetchItems.
+   */
+  public static final long FETCH_COST = 2000;
+
+  public int add(int a, int b) {
+    return a + b;
+  }
+
+  public String echo(String message) {
+    return message;
+  }
+
+  public double sum(double[] values) {
+    double sum = 0;
+    for(double value : values)
+      sum += value;
+    return sum;
+  }
+
+  public Item getItem(int id) {
+    return new Item(id, "item-" + id, id * 1.25, (id & 1) == 0);
+  }
+
+  public List<Item> getItems(int count) {
+    List<Item> items = new ArrayList<>(count);
+    for(int i = 0; i < count; i++)
+      items.add(getItem(i));
+    return items;
+  }
+
+  public Stream<Item> streamItems(int count) {
+    return IntStream.range(0, count).mapToObj(this::getItem);
+  }
+
+  public Item fetchItem(int id) {
+    Blackhole.consumeCPU(FETCH_COST);
+    return getItem(id);
+  }
+
+  public Item lookupItem(int id) {
+    return fetchItem(id);
+  }
+
+  public List<Item> fetchItems(List<Integer> ids) {
+    Blackhole.consumeCPU(FETCH_COST);
+    List<Item> items = new ArrayList<>(ids.size());
+    for(int id : ids)
+      items.add(getItem(id));
+    return items;
+  }
+
+  public String fail() {
+    throw new IllegalStateException("Failure requested.");
+  }
+
+  public double score(int hits, long total, double weight, boolean bonus) {
+    double score = total == 0 ? 0 : hits * weight / total;
+    return bonus ? score * 2 : score;
+  }
+
+  public Double scoreBoxed(Integer hits, Long total, Double weight, Boolean bonus) {
+    return score(hits, total, weight, bonus);
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a batch of calls that each make a round trip to a store, against the same calls gathered by their bulk
+ * method into one round trip per batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkBenchmark {
+
+  @Param({"fetchItem", "lookupItem"})
+  public String method;
+
+  @Param({"10", "100"})
+  public int batchSize;
+
+  private GsonRPC gsonRPC;
+  private List<JsonRPCMessage> requests;
+
+  @Setup
+  public void setup() {
+    gsonRPC = Payloads.newServer();
+    requests = new ArrayList<>(batchSize);
+
+    for(int i = 0; i < batchSize; i++)
+      requests.add(gsonRPC.getMessageFactory().newRequest(Integer.toString(i), "bench." + method, i));
+  }
+
+  @Benchmark
+  public List<JsonRPCMessage> batch() {
+    return gsonRPC.processRequests(requests);
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.wire.JsonRPCCompression;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormats;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the CPU cost of compressing and decompressing batches of requests with each compression. Together with
+ * the sizes printed by PayloadSizeReport this gives the CPU-vs-bandwidth trade-off at each batch size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+  @Param({"identity", "deflate", "deflate-dictionary", "gzip"})
+  public String compression;
+
+  @Param({"1", "10", "100", "1000"})
+  public int batchSize;
+
+  private JsonRPCCompression jsonRPCCompression;
+  private byte[] payload;
+  private byte[] compressedPayload;
+
+  @Setup
+  public void setup() {
+    GsonRPC gsonRPC = Payloads.newServer();
+    jsonRPCCompression = newCompression(gsonRPC, compression);
+    payload = gsonRPC.toBytes(Payloads.newBatch(gsonRPC, batchSize), JsonRPCWireFormats.JSON);
+    compressedPayload = jsonRPCCompression.compress(payload);
+  }
+
+  @Benchmark
+  public byte[] compress() {
+    return jsonRPCCompression.compress(payload);
+  }
+
+  @Benchmark
+  public byte[] decompress() {
+    return jsonRPCCompression.decompress(compressedPayload);
+  }
+
+  static JsonRPCCompression newCompression(GsonRPC gsonRPC, String compression) {
+    switch(compression) {
+      case "deflate":
+        return new JsonRPCCompression(JsonRPCCompression.Algorithm.DEFLATE);
+      case "deflate-dictionary":
+        byte[] dictionary = JsonRPCCompression.newDictionary(gsonRPC.getRequestHandler().getMethodNames());
+        return new JsonRPCCompression(JsonRPCCompression.Algorithm.DEFLATE, JsonRPCCompression.DEFAULT_THRESHOLD, dictionary);
+      case "gzip":
+        return new JsonRPCCompression(JsonRPCCompression.Algorithm.GZIP);
+      default:
+        return JsonRPCCompression.IDENTITY;
+    }
+  }
+}
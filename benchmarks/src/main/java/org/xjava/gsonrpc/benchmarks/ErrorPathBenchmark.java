@@ -0,0 +1,82 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the requests that are answered with an error, which should stay at least as cheap as successful ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ErrorPathBenchmark {
+
+  private static final String PARSE_ERROR = "{\"jsonrpc\":\"2.0\",\"id\":\"1\",\"method\":";
+  private static final String INVALID_REQUEST = "{\"jsonrpc\":\"2.0\",\"id\":\"1\",\"params\":[1,2]}";
+  private static final String METHOD_NOT_FOUND = "{\"jsonrpc\":\"2.0\",\"id\":\"1\",\"method\":\"bench.missing\",\"params\":[1,2]}";
+  private static final String INVALID_PARAMS = "{\"jsonrpc\":\"2.0\",\"id\":\"1\",\"method\":\"bench.add\",\"params\":[\"a\"]}";
+  private static final String INTERNAL_ERROR = "{\"jsonrpc\":\"2.0\",\"id\":\"1\",\"method\":\"bench.fail\"}";
+
+  private GsonRPC gsonRPC;
+
+  @Setup
+  public void setup() {
+    gsonRPC = Payloads.newServer();
+  }
+
+  @Benchmark
+  public List<JsonRPCMessage> parseError() {
+    return gsonRPC.processRequests(PARSE_ERROR);
+  }
+
+  @Benchmark
+  public List<JsonRPCMessage> invalidRequest() {
+    return gsonRPC.processRequests(INVALID_REQUEST);
+  }
+
+  @Benchmark
+  public List<JsonRPCMessage> methodNotFound() {
+    return gsonRPC.processRequests(METHOD_NOT_FOUND);
+  }
+
+  @Benchmark
+  public List<JsonRPCMessage> invalidParams() {
+    return gsonRPC.processRequests(INVALID_PARAMS);
+  }
+
+  @Benchmark
+  public List<JsonRPCMessage> internalError() {
+    return gsonRPC.processRequests(INTERNAL_ERROR);
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormat;
+import org.xjava.gsonrpc.wire.JsonWireFormat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing a batch of large responses into trees against scanning it with lazy result decoding, when the
+ * caller only reads the result of the first response. Run it with -prof gc to see the allocation saved by not
+ * decoding the rest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LazyResultBenchmark {
+
+  @Param({"tree", "lazy"})
+  public String decode;
+
+  @Param({"10", "100"})
+  public int batchSize;
+
+  private final JsonRPCWireFormat wireFormat = new JsonWireFormat();
+  private GsonRPC gsonRPC;
+  private byte[] responsesBytes;
+
+  @Setup
+  public void setup() {
+    GsonRPC server = Payloads.newServer();
+    List<JsonRPCMessage> requests = new ArrayList<>(batchSize);
+    for(int i = 0; i < batchSize; i++)
+      requests.add(server.getMessageFactory().newRequest(Integer.toString(i), "bench.getItems", 20));
+
+    responsesBytes = server.toJson(server.processRequests(requests)).getBytes(StandardCharsets.UTF_8);
+
+    gsonRPC = new GsonRPC();
+    gsonRPC.setLazyResultsEnabled("lazy".equals(decode));
+  }
+
+  @Benchmark
+  public BenchmarkService.Item[] readFirst() {
+    List<JsonRPCMessage> responses = gsonRPC.parseMessages(responsesBytes, wireFormat);
+    return gsonRPC.getResult(responses.get(0).getAsResponse(), BenchmarkService.Item[].class);
+  }
+
+  @Benchmark
+  public int readAll() {
+    int count = 0;
+
+    for(JsonRPCMessage response : gsonRPC.parseMessages(responsesBytes, wireFormat))
+      count += gsonRPC.getResult(response.getAsResponse(), BenchmarkService.Item[].class).length;
+
+    return count;
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+import org.xjava.gsonrpc.message.JsonRPCRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of the instrumentation in JsonRPCRequestHandler on a cheap method: nothing enabled, metrics
+ * only, metrics with phases sampled one request in 100, and phases timed on every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+  @Param({"off", "metrics", "sampled", "every"})
+  public String instrumentation;
+
+  private GsonRPC gsonRPC;
+  private JsonRPCRequest request;
+
+  @Setup
+  public void setup() {
+    gsonRPC = Payloads.newServer();
+    request = gsonRPC.getMessageFactory().newRequest("1", "bench.add", 1, 2);
+
+    gsonRPC.getRequestHandler().setMetricsEnabled(!"off".equals(instrumentation));
+    if("sampled".equals(instrumentation))
+      gsonRPC.getRequestHandler().setPhaseSamplingRate(100);
+    else if("every".equals(instrumentation))
+      gsonRPC.getRequestHandler().setPhaseSamplingRate(1);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public JsonRPCMessage handleRequest() {
+    return gsonRPC.getRequestHandler().handleRequest(request);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public JsonRPCMessage handleRequestContended() {
+    return gsonRPC.getRequestHandler().handleRequest(request);
+  }
+}
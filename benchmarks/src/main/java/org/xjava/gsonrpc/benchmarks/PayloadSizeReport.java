@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks;
+
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+import org.xjava.gsonrpc.wire.JsonRPCCompression;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormat;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormats;
+
+import java.util.List;
+
+/**
+ * Prints the number of bytes put on the wire for the payloads of WireFormatBenchmark and CompressionBenchmark, the
+ * other half of the comparison those benchmarks make.
+ *
+ * <pre>{@code
+ * java -cp benchmarks/target/benchmarks.jar org.xjava.gsonrpc.benchmarks.PayloadSizeReport
+ * }</pre>
+ */
+public class PayloadSizeReport {
+
+  public static void main(String[] args) {
+    GsonRPC gsonRPC = Payloads.newServer();
+
+    System.out.println("Wire formats (numeric batches)");
+    System.out.printf("%-10s %10s %10s %10s%n", "batch", "json", "msgpack", "cbor");
+    for(int batchSize : new int[] { 1, 100 }) {
+      List<JsonRPCMessage> requests = Payloads.newNumericBatch(gsonRPC, batchSize);
+      System.out.printf("%-10d", batchSize);
+      for(JsonRPCWireFormat wireFormat : new JsonRPCWireFormat[] { JsonRPCWireFormats.JSON, JsonRPCWireFormats.MESSAGE_PACK, JsonRPCWireFormats.CBOR })
+        System.out.printf(" %10d", gsonRPC.toBytes(requests, wireFormat).length);
+      System.out.println();
+    }
+
+    System.out.println();
+    System.out.println("Compression (mixed batches, json)");
+    String[] compressions = { "identity", "deflate", "deflate-dictionary", "gzip" };
+    System.out.printf("%-10s", "batch");
+    for(String compression : compressions)
+      System.out.printf(" %20s", compression);
+    System.out.println();
+
+    for(int batchSize : new int[] { 1, 10, 100, 1000 }) {
+      byte[] payload = gsonRPC.toBytes(Payloads.newBatch(gsonRPC, batchSize), JsonRPCWireFormats.JSON);
+      System.out.printf("%-10d", batchSize);
+      for(String compression : compressions) {
+        JsonRPCCompression jsonRPCCompression = CompressionBenchmark.newCompression(gsonRPC, compression);
+        System.out.printf(" %20d", jsonRPCCompression.compress(payload).length);
+      }
+      System.out.println();
+    }
+  }
+}
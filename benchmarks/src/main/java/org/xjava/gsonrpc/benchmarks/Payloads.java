@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks;
+
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the GsonRPC instances and request payloads shared by the benchmarks.
+ */
+public final class Payloads {
+
+  private Payloads() {
+  }
+
+  /**
+   * Creates a GsonRPC instance serving BenchmarkService.
+   */
+  public static GsonRPC newServer() {
+    GsonRPC gsonRPC = new GsonRPC();
+    gsonRPC.getRequestHandler().addService(new BenchmarkServiceImplementation(), BenchmarkService.class);
+    return gsonRPC;
+  }
+
+  /**
+   * Creates a batch mixing the methods of BenchmarkService, so that every batch size exercises positional and named
+   * params, primitive and object results.
+   */
+  public static List<JsonRPCMessage> newBatch(GsonRPC gsonRPC, int batchSize) {
+    List<JsonRPCMessage> requests = new ArrayList<>(batchSize);
+
+    for(int i = 0; i < batchSize; i++) {
+      String id = Integer.toString(i);
+
+      switch(i % 4) {
+        case 0:
+          requests.add(gsonRPC.getMessageFactory().newRequest(id, "bench.add", i, i + 1));
+          break;
+        case 1:
+          requests.add(gsonRPC.getMessageFactory().newRequest(id, "bench.echo", "message " + i));
+          break;
+        case 2:
+          requests.add(gsonRPC.getMessageFactory().newRequest(id, "bench.getItem", i));
+          break;
+        default:
+          requests.add(gsonRPC.getMessageFactory().newRequest(id, "bench.sum", (Object) numbers(i, 8)));
+          break;
+      }
+    }
+
+    return requests;
+  }
+
+  /**
+   * Creates a batch of requests with large numeric params, the case binary wire formats are meant for.
+   */
+  public static List<JsonRPCMessage> newNumericBatch(GsonRPC gsonRPC, int batchSize) {
+    List<JsonRPCMessage> requests = new ArrayList<>(batchSize);
+
+    for(int i = 0; i < batchSize; i++)
+      requests.add(gsonRPC.getMessageFactory().newRequest(Integer.toString(i), "bench.sum", (Object) numbers(i, 64)));
+
+    return requests;
+  }
+
+  /**
+   * Creates a batch of calls to a method taking several primitive params, either score or its boxed twin scoreBoxed.
+   */
+  public static List<JsonRPCMessage> newScoreBatch(GsonRPC gsonRPC, int batchSize, String method) {
+    List<JsonRPCMessage> requests = new ArrayList<>(batchSize);
+
+    for(int i = 0; i < batchSize; i++)
+      requests.add(gsonRPC.getMessageFactory().newRequest(Integer.toString(i), method, i, i * 1000L + 1, i * 0.25, (i & 1) == 0));
+
+    return requests;
+  }
+
+  private static double[] numbers(int seed, int count) {
+    double[] numbers = new double[count];
+    for(int i = 0; i < count; i++)
+      numbers[i] = (seed * 31 + i) * 0.5;
+    return numbers;
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a method with several primitive params and a primitive result, which is called through a MethodHandle
+ * without boxing, against its twin with boxed params and result, which is called by reflection. Run it with -prof gc
+ * to see the allocation saved by not boxing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveBenchmark {
+
+  @Param({"tree", "stream"})
+  public String bind;
+
+  @Param({"1", "100"})
+  public int batchSize;
+
+  private GsonRPC gsonRPC;
+  private String primitiveJson;
+  private String boxedJson;
+
+  @Setup
+  public void setup() {
+    gsonRPC = Payloads.newServer();
+    gsonRPC.setStreamingBindEnabled("stream".equals(bind));
+
+    primitiveJson = gsonRPC.toJson(Payloads.newScoreBatch(gsonRPC, batchSize, "bench.score"));
+    boxedJson = gsonRPC.toJson(Payloads.newScoreBatch(gsonRPC, batchSize, "bench.scoreBoxed"));
+  }
+
+  @Benchmark
+  public List<JsonRPCMessage> processPrimitive() {
+    return gsonRPC.processRequests(primitiveJson);
+  }
+
+  @Benchmark
+  public List<JsonRPCMessage> processBoxed() {
+    return gsonRPC.processRequests(boxedJson);
+  }
+}
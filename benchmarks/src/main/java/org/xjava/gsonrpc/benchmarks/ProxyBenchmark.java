@@ -0,0 +1,79 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormats;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures calls made through service proxies to a server in the same JVM, so that the cost is the whole client and
+ * server stack without any network: building and encoding the request, dispatching it and decoding the result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyBenchmark {
+
+  private BenchmarkService jsonProxy;
+  private BenchmarkService messagePackProxy;
+
+  @Setup
+  public void setup() {
+    GsonRPC server = Payloads.newServer();
+    GsonRPC client = new GsonRPC();
+
+    jsonProxy = client.getProxyFactory().newServiceProxy(BenchmarkService.class,
+        requestJson -> server.toJson(server.processRequests(requestJson)));
+
+    messagePackProxy = client.getProxyFactory().newServiceProxy(BenchmarkService.class, JsonRPCWireFormats.MESSAGE_PACK,
+        requestBytes -> server.toBytes(server.processRequests(requestBytes, JsonRPCWireFormats.MESSAGE_PACK), JsonRPCWireFormats.MESSAGE_PACK));
+  }
+
+  @Benchmark
+  public int add() {
+    return jsonProxy.add(1, 2);
+  }
+
+  @Benchmark
+  public String echo() {
+    return jsonProxy.echo("hello");
+  }
+
+  @Benchmark
+  public BenchmarkService.Item getItem() {
+    return jsonProxy.getItem(7);
+  }
+
+  @Benchmark
+  public int addMessagePack() {
+    return messagePackProxy.add(1, 2);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.transport.JsonRPCSlowConsumerPolicy;
+import org.xjava.gsonrpc.transport.JsonRPCSocketClient;
+import org.xjava.gsonrpc.transport.JsonRPCSocketServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures publishing a notification to the subscribers of a topic over loopback connections. The notification is
+ * encoded once whatever the number of subscribers, so with -prof gc the bytes allocated per publish should barely
+ * grow with it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PushBenchmark {
+
+  @Param({"10", "100"})
+  public int subscribers;
+
+  private JsonRPCSocketServer server;
+  private final List<JsonRPCSocketClient> clients = new ArrayList<>();
+  private BenchmarkService.Item item;
+
+  @Setup
+  public void setup() throws IOException {
+    GsonRPC gsonRPC = Payloads.newServer();
+    server = new JsonRPCSocketServer(gsonRPC);
+    //Publishing outpaces the subscribers, which only ever need the latest item
+    server.setSlowConsumerPolicy(JsonRPCSlowConsumerPolicy.CONFLATE);
+    server.start(0);
+
+    for(int i = 0; i < subscribers; i++) {
+      JsonRPCSocketClient client = new JsonRPCSocketClient("localhost", server.getPort());
+      client.subscribe("bench.item", notification -> { });
+      clients.add(client);
+    }
+
+    item = new BenchmarkServiceImplementation().getItem(42);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    for(JsonRPCSocketClient client : clients)
+      client.close();
+    server.close();
+  }
+
+  @Benchmark
+  public int publish() {
+    return server.publish("bench.item", item);
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the server side of GsonRPC one stage at a time for batches of 1, 100 and 10000 requests: parsing the
+ * JSON text, dispatching the parsed requests, serializing the responses, and the three together.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBenchmark {
+
+  @Param({"1", "100", "10000"})
+  public int batchSize;
+
+  private GsonRPC gsonRPC;
+  private String requestsJson;
+  private List<JsonRPCMessage> requests;
+  private List<JsonRPCMessage> responses;
+
+  @Setup
+  public void setup() {
+    gsonRPC = Payloads.newServer();
+    requests = Payloads.newBatch(gsonRPC, batchSize);
+    requestsJson = gsonRPC.toJson(requests);
+    responses = gsonRPC.processRequests(requests);
+  }
+
+  @Benchmark
+  public List<JsonRPCMessage> parse() {
+    return gsonRPC.parseMessages(requestsJson);
+  }
+
+  @Benchmark
+  public List<JsonRPCMessage> dispatch() {
+    return gsonRPC.processRequests(requests);
+  }
+
+  @Benchmark
+  public String serialize() {
+    return gsonRPC.toJson(responses);
+  }
+
+  @Benchmark
+  public String roundTrip() {
+    return gsonRPC.toJson(gsonRPC.processRequests(requestsJson));
+  }
+}
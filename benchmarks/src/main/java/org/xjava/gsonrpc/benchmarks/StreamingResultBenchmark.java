@@ -0,0 +1,97 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares answering a call that returns a List of items, which is built and turned into a tree before it is
+ * written, against the same items returned as a Stream and written one at a time. Run it with -prof gc to see the
+ * allocation saved by never holding the whole result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamingResultBenchmark {
+
+  @Param({"getItems", "streamItems"})
+  public String method;
+
+  @Param({"100", "10000"})
+  public int count;
+
+  private GsonRPC gsonRPC;
+  private List<JsonRPCMessage> requests;
+  private final CountingWriter writer = new CountingWriter();
+
+  @Setup
+  public void setup() {
+    gsonRPC = Payloads.newServer();
+    requests = Collections.singletonList(gsonRPC.getMessageFactory().newRequest("1", "bench." + method, count));
+  }
+
+  @Benchmark
+  public long answer() throws IOException {
+    writer.count = 0;
+    gsonRPC.writeJson(gsonRPC.processRequests(requests), writer);
+    return writer.count;
+  }
+
+  /**
+   * Stands in for a connection, so that only GsonRPC allocates.
+   */
+  private static final class CountingWriter extends Writer {
+    long count;
+
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+      count += length;
+    }
+
+    @Override
+    public void write(String string, int offset, int length) {
+      count += length;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks;
+
+import com.google.gson.JsonElement;
+import org.openjdk.jmh.annotations.*;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormat;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormats;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the wire formats on batches of requests with large numeric params. The json format is the Gson text path
+ * the binary formats are measured against; PayloadSizeReport prints the number of bytes each format puts on the wire
+ * for the same batches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+  @Param({"json", "msgpack", "cbor"})
+  public String format;
+
+  @Param({"1", "100"})
+  public int batchSize;
+
+  private GsonRPC gsonRPC;
+  private JsonRPCWireFormat wireFormat;
+  private List<JsonRPCMessage> requests;
+  private JsonElement requestsJson;
+  private byte[] requestsBytes;
+
+  @Setup
+  public void setup() {
+    gsonRPC = Payloads.newServer();
+    wireFormat = JsonRPCWireFormats.forName(format);
+    requests = Payloads.newNumericBatch(gsonRPC, batchSize);
+    requestsJson = gsonRPC.toJsonTree(requests);
+    requestsBytes = wireFormat.encode(requestsJson);
+  }
+
+  @Benchmark
+  public byte[] encode() {
+    return wireFormat.encode(requestsJson);
+  }
+
+  @Benchmark
+  public JsonElement decode() {
+    return wireFormat.decode(requestsBytes);
+  }
+
+  @Benchmark
+  public byte[] encodeMessages() {
+    return gsonRPC.toBytes(requests, wireFormat);
+  }
+
+  @Benchmark
+  public List<JsonRPCMessage> decodeMessages() {
+    return gsonRPC.parseMessages(requestsBytes, wireFormat);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks.loadgen;
+
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+
+import java.util.List;
+
+/**
+ * Calls GsonRPC.processRequests directly, measuring parse, dispatch and serialization without a transport.
+ */
+public class InProcessTarget implements LoadTarget {
+  private final GsonRPC gsonRPC;
+
+  public InProcessTarget(GsonRPC gsonRPC) {
+    this.gsonRPC = gsonRPC;
+  }
+
+  @Override
+  public Connection connect() {
+    return new Connection() {
+      @Override
+      public int send(LoadPayload payload) {
+        List<JsonRPCMessage> responses = gsonRPC.processRequests(payload.getJson());
+        gsonRPC.toJson(responses);
+
+        return (int) responses.stream().filter(JsonRPCMessage::isErrorResponse).count();
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+
+  @Override
+  public String describe() {
+    return "in-process";
+  }
+
+  @Override
+  public void close() {
+  }
+}
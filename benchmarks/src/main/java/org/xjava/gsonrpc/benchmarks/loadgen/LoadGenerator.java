@@ -0,0 +1,222 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks.loadgen;
+
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.benchmarks.Payloads;
+import org.xjava.gsonrpc.capture.JsonRPCCaptureLog;
+import org.xjava.gsonrpc.wire.JsonRPCCompression;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormats;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a GsonRPC server with generated or replayed payloads and reports throughput, latency percentiles and error
+ * rates per method.
+ *
+ * <p>With a fixed rate the generator runs open loop: payload n is due at start + n / rate whether or not earlier
+ * payloads have completed, and its latency is measured from when it was due rather than when a worker got round to
+ * sending it. A stalled server therefore shows up as the queueing delay its callers would see instead of being
+ * hidden by the generator slowing down (coordinated omission). Without a rate the workers send back to back and
+ * report service time.</p>
+ *
+ * <pre>{@code
+ * java -cp benchmarks/target/benchmarks.jar org.xjava.gsonrpc.benchmarks.loadgen.LoadGenerator \
+ *     --target socket --rate 20000 --threads 8 --duration 30 --format cbor --compression deflate
+ * }</pre>
+ *
+ * <p>Options: --target in-process|socket, --connect host:port (socket target against a running server instead of
+ * one started here), --rate payloads per second (0 for closed loop), --threads, --duration and --warmup in seconds,
+ * --batch requests per generated payload, --format wire format offer, --compression identity|deflate|gzip,
+ * --replay a file with one JSON payload per line or a capture log directory, and --capture a directory to record
+ * the payloads the server processes to.</p>
+ */
+public class LoadGenerator {
+  private final LoadTarget target;
+  private final List<LoadPayload> payloads;
+  private final int threads;
+  private final long rate;
+
+  public LoadGenerator(LoadTarget target, List<LoadPayload> payloads, int threads, long rate) {
+    if(payloads.isEmpty())
+      throw new IllegalArgumentException("There are no payloads to send.");
+
+    this.target = target;
+    this.payloads = payloads;
+    this.threads = threads;
+    this.rate = rate;
+  }
+
+  /**
+   * Runs the load for a duration and returns what was measured.
+   */
+  public LoadStatistics run(long durationNanos) throws IOException, InterruptedException {
+    LoadStatistics statistics = new LoadStatistics();
+    List<LoadTarget.Connection> connections = new ArrayList<>();
+
+    try {
+      for(int i = 0; i < threads; i++)
+        connections.add(target.connect());
+
+      AtomicLong sequence = new AtomicLong();
+      CountDownLatch done = new CountDownLatch(threads);
+      long start = System.nanoTime();
+      long end = start + durationNanos;
+      long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+
+      for(LoadTarget.Connection connection : connections) {
+        Thread worker = new Thread(() -> {
+          try {
+            work(connection, statistics, sequence, start, end, interval);
+          }
+          finally {
+            done.countDown();
+          }
+        }, "load-generator");
+        worker.setDaemon(true);
+        worker.start();
+      }
+
+      done.await();
+    }
+    finally {
+      for(LoadTarget.Connection connection : connections)
+        connection.close();
+    }
+
+    return statistics;
+  }
+
+  private void work(LoadTarget.Connection connection, LoadStatistics statistics, AtomicLong sequence, long start, long end, long interval) {
+    while(true) {
+      long n = sequence.getAndIncrement();
+      long due = interval > 0 ? start + n * interval : System.nanoTime();
+      if(due >= end)
+        return;
+
+      long wait = due - System.nanoTime();
+      if(wait > 0)
+        LockSupport.parkNanos(wait);
+
+      LoadPayload payload = payloads.get((int) (n % payloads.size()));
+      int errors = 0;
+      boolean failed = false;
+
+      try {
+        errors = connection.send(payload);
+      }
+      catch(IOException | RuntimeException e) {
+        failed = true;
+      }
+
+      statistics.record(payload, System.nanoTime() - due, errors, failed);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = parseOptions(args);
+
+    GsonRPC gsonRPC = Payloads.newServer();
+    int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+    long rate = Long.parseLong(options.getOrDefault("rate", "0"));
+    long duration = Long.parseLong(options.getOrDefault("duration", "10"));
+    long warmup = Long.parseLong(options.getOrDefault("warmup", "2"));
+    int batchSize = Integer.parseInt(options.getOrDefault("batch", "1"));
+
+    List<LoadPayload> payloads = options.containsKey("replay")
+        ? LoadPayload.read(Paths.get(options.get("replay")))
+        : LoadPayload.generate(gsonRPC, 1000, batchSize);
+
+    JsonRPCCaptureLog captureLog = options.containsKey("capture") ? new JsonRPCCaptureLog(Paths.get(options.get("capture"))) : null;
+    gsonRPC.setCaptureLog(captureLog);
+
+    try(LoadTarget target = newTarget(gsonRPC, options)) {
+      LoadGenerator generator = new LoadGenerator(target, payloads, threads, rate);
+
+      if(warmup > 0)
+        generator.run(TimeUnit.SECONDS.toNanos(warmup));
+
+      LoadStatistics statistics = generator.run(TimeUnit.SECONDS.toNanos(duration));
+
+      System.out.printf("target: %s, threads: %d, %s, duration: %ds, payloads: %d%n", target.describe(), threads,
+          rate > 0 ? "open loop at " + rate + " payloads/s" : "closed loop", duration, payloads.size());
+      statistics.print(System.out, duration);
+    }
+    finally {
+      if(captureLog != null) {
+        captureLog.close();
+        System.out.printf("%ncaptured: %d payloads, dropped: %d%n", captureLog.getRecordedCount(), captureLog.getDroppedCount());
+      }
+    }
+  }
+
+  private static LoadTarget newTarget(GsonRPC gsonRPC, Map<String, String> options) throws IOException {
+    if("in-process".equals(options.getOrDefault("target", "in-process")))
+      return new InProcessTarget(gsonRPC);
+
+    String wireFormatOffer = options.getOrDefault("format", JsonRPCWireFormats.getOffer());
+    List<JsonRPCCompression> compressions = newCompressions(gsonRPC, options.getOrDefault("compression", "identity"));
+
+    String connect = options.get("connect");
+    if(connect == null)
+      return new SocketTarget(gsonRPC, wireFormatOffer, compressions);
+
+    int colon = connect.lastIndexOf(':');
+    return new SocketTarget(gsonRPC, connect.substring(0, colon), Integer.parseInt(connect.substring(colon + 1)), wireFormatOffer, compressions);
+  }
+
+  private static List<JsonRPCCompression> newCompressions(GsonRPC gsonRPC, String compression) {
+    switch(compression) {
+      case "deflate":
+        byte[] dictionary = JsonRPCCompression.newDictionary(gsonRPC.getRequestHandler().getMethodNames());
+        return Collections.singletonList(new JsonRPCCompression(JsonRPCCompression.Algorithm.DEFLATE, JsonRPCCompression.DEFAULT_THRESHOLD, dictionary));
+      case "gzip":
+        return Collections.singletonList(new JsonRPCCompression(JsonRPCCompression.Algorithm.GZIP));
+      case "identity":
+        return Collections.emptyList();
+      default:
+        throw new IllegalArgumentException("Unknown compression " + compression);
+    }
+  }
+
+  private static Map<String, String> parseOptions(String[] args) {
+    Map<String, String> options = new HashMap<>();
+
+    for(int i = 0; i < args.length; i++) {
+      if(!args[i].startsWith("--") || i + 1 >= args.length)
+        throw new IllegalArgumentException("Expected --option value but got " + args[i]);
+
+      options.put(args[i].substring(2), args[++i]);
+    }
+
+    return options;
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks.loadgen;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.benchmarks.Payloads;
+import org.xjava.gsonrpc.capture.JsonRPCCaptureReader;
+import org.xjava.gsonrpc.capture.JsonRPCCapturedRequest;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One payload sent by the load generator: a single request or a batch, as JSON text. Latency and errors are
+ * reported per label, which is the method name of a single request and "batch" for a batch.
+ */
+public final class LoadPayload {
+  public static final String BATCH_LABEL = "batch";
+  public static final String INVALID_LABEL = "<invalid>";
+
+  private final String label;
+  private final String json;
+  private final JsonElement tree;
+  private final int requestCount;
+
+  public LoadPayload(String json) {
+    this.json = json;
+
+    JsonElement parsed;
+    try {
+      parsed = JsonParser.parseString(json);
+    }
+    catch(JsonParseException e) {
+      parsed = null;
+    }
+
+    tree = parsed;
+    requestCount = parsed != null && parsed.isJsonArray() ? Math.max(1, parsed.getAsJsonArray().size()) : 1;
+    label = labelOf(parsed);
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  public String getJson() {
+    return json;
+  }
+
+  /**
+   * Gets the parsed payload, or null if the payload is not valid JSON and can only be sent as text.
+   */
+  public JsonElement getTree() {
+    return tree;
+  }
+
+  public int getRequestCount() {
+    return requestCount;
+  }
+
+  /**
+   * Reads the payloads to replay from a capture log directory, or from a file with one payload per line in which
+   * blank lines and lines starting with # are skipped.
+   */
+  public static List<LoadPayload> read(Path path) throws IOException {
+    if(Files.isDirectory(path))
+      return readCapture(path);
+
+    List<LoadPayload> payloads = new ArrayList<>();
+
+    for(String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+      String trimmed = line.trim();
+      if(!trimmed.isEmpty() && !trimmed.startsWith("#"))
+        payloads.add(new LoadPayload(trimmed));
+    }
+
+    return payloads;
+  }
+
+  /**
+   * Reads every payload recorded in a capture log.
+   */
+  public static List<LoadPayload> readCapture(Path directory) throws IOException {
+    List<LoadPayload> payloads = new ArrayList<>();
+
+    try(JsonRPCCaptureReader reader = new JsonRPCCaptureReader(directory)) {
+      JsonRPCCapturedRequest request;
+      while((request = reader.next()) != null)
+        payloads.add(new LoadPayload(request.toJson()));
+    }
+
+    return payloads;
+  }
+
+  /**
+   * Generates payloads calling BenchmarkService, with one call in a hundred going to the failing method so the
+   * error columns of the report are exercised.
+   */
+  public static List<LoadPayload> generate(GsonRPC gsonRPC, int count, int batchSize) {
+    List<LoadPayload> payloads = new ArrayList<>(count);
+    List<JsonRPCMessage> requests = Payloads.newBatch(gsonRPC, count * batchSize);
+
+    for(int i = 0; i < requests.size(); i++) {
+      if(i % 100 == 99)
+        requests.set(i, gsonRPC.getMessageFactory().newRequest(Integer.toString(i), "bench.fail"));
+    }
+
+    for(int i = 0; i < count; i++) {
+      List<JsonRPCMessage> batch = requests.subList(i * batchSize, (i + 1) * batchSize);
+      payloads.add(new LoadPayload(batchSize == 1 ? gsonRPC.toJson(batch.get(0)) : gsonRPC.toJson(new ArrayList<>(batch))));
+    }
+
+    return payloads;
+  }
+
+  private static String labelOf(JsonElement payload) {
+    if(payload == null)
+      return INVALID_LABEL;
+
+    if(payload.isJsonArray())
+      return BATCH_LABEL;
+
+    if(payload.isJsonObject() && payload.getAsJsonObject().has("method") && payload.getAsJsonObject().get("method").isJsonPrimitive())
+      return payload.getAsJsonObject().get("method").getAsString();
+
+    return INVALID_LABEL;
+  }
+}
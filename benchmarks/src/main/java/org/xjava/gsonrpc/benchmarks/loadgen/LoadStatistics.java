@@ -0,0 +1,93 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks.loadgen;
+
+import org.xjava.gsonrpc.metrics.JsonRPCHistogramSnapshot;
+import org.xjava.gsonrpc.metrics.JsonRPCLatencyHistogram;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, throughput and error counts collected by the load generator, per payload label. Latencies go into the
+ * same lock-free histogram the server metrics use.
+ */
+public class LoadStatistics {
+  private final Map<String, LabelStatistics> labels = new ConcurrentHashMap<>();
+  private final LabelStatistics total = new LabelStatistics();
+
+  public void record(LoadPayload payload, long latencyNanos, int errors, boolean failed) {
+    labels.computeIfAbsent(payload.getLabel(), label -> new LabelStatistics()).record(payload, latencyNanos, errors, failed);
+    total.record(payload, latencyNanos, errors, failed);
+  }
+
+  public long getPayloadCount() {
+    return total.payloads.sum();
+  }
+
+  public void print(PrintStream out, double seconds) {
+    out.printf("throughput: %.1f payloads/s, %.1f requests/s%n", total.payloads.sum() / seconds, total.requests.sum() / seconds);
+    out.println();
+    out.printf("%-24s %10s %8s %8s %8s %10s %10s %10s %10s%n", "method", "requests", "errors", "failed", "error%", "p50 ms", "p99 ms", "p999 ms", "max ms");
+
+    for(Map.Entry<String, LabelStatistics> entry : new TreeMap<>(labels).entrySet())
+      entry.getValue().print(out, entry.getKey());
+
+    total.print(out, "total");
+  }
+
+  private static final class LabelStatistics {
+    private final JsonRPCLatencyHistogram latency = new JsonRPCLatencyHistogram();
+    private final LongAdder payloads = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    void record(LoadPayload payload, long latencyNanos, int errorCount, boolean failed) {
+      latency.record(latencyNanos);
+      payloads.increment();
+      requests.add(payload.getRequestCount());
+      errors.add(errorCount);
+      if(failed)
+        failures.add(payload.getRequestCount());
+    }
+
+    void print(PrintStream out, String label) {
+      JsonRPCHistogramSnapshot snapshot = latency.snapshot();
+      long requestCount = requests.sum();
+      double errorRate = requestCount == 0 ? 0 : 100.0 * (errors.sum() + failures.sum()) / requestCount;
+
+      out.printf("%-24s %10d %8d %8d %8.2f %10.3f %10.3f %10.3f %10.3f%n", label, requestCount, errors.sum(), failures.sum(), errorRate,
+          millis(snapshot.getP50()), millis(snapshot.getP99()), millis(snapshot.getP999()), millis(snapshot.getMax()));
+    }
+
+    private static double millis(long nanos) {
+      return nanos / 1_000_000.0;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.benchmarks.loadgen;
+
+import com.google.gson.JsonElement;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+import org.xjava.gsonrpc.transport.JsonRPCSocketClient;
+import org.xjava.gsonrpc.transport.JsonRPCSocketServer;
+import org.xjava.gsonrpc.wire.JsonRPCCompression;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends payloads over the socket transport, either to a server started in this JVM or to one given by host and
+ * port. Payloads are encoded once per wire format and cached, so the generator's own encoding cost stays out of the
+ * measurement; responses are decoded to count errors.
+ */
+public class SocketTarget implements LoadTarget {
+  private final GsonRPC gsonRPC;
+  private final JsonRPCSocketServer server;
+  private final String host;
+  private final int port;
+  private final String wireFormatOffer;
+  private final List<JsonRPCCompression> compressions;
+  private final Map<LoadPayload, byte[]> encodedPayloads = new ConcurrentHashMap<>();
+
+  private volatile String negotiated = "";
+
+  /**
+   * Starts a server on a free loopback port serving gsonRPC and targets it.
+   */
+  public SocketTarget(GsonRPC gsonRPC, String wireFormatOffer, List<JsonRPCCompression> compressions) throws IOException {
+    this.gsonRPC = gsonRPC;
+    this.wireFormatOffer = wireFormatOffer;
+    this.compressions = compressions;
+
+    server = new JsonRPCSocketServer(gsonRPC);
+    compressions.forEach(server::addCompression);
+    server.start(0);
+
+    host = "localhost";
+    port = server.getPort();
+  }
+
+  /**
+   * Targets an existing server. gsonRPC is only used to decode the responses.
+   */
+  public SocketTarget(GsonRPC gsonRPC, String host, int port, String wireFormatOffer, List<JsonRPCCompression> compressions) {
+    this.gsonRPC = gsonRPC;
+    this.wireFormatOffer = wireFormatOffer;
+    this.compressions = compressions;
+    this.server = null;
+    this.host = host;
+    this.port = port;
+  }
+
+  @Override
+  public Connection connect() throws IOException {
+    JsonRPCSocketClient client = new JsonRPCSocketClient(host, port, wireFormatOffer, compressions);
+    JsonRPCWireFormat wireFormat = client.getWireFormat();
+    negotiated = wireFormat.getName() + ", " + client.getCompression().getName();
+
+    return new Connection() {
+      @Override
+      public int send(LoadPayload payload) throws IOException {
+        byte[] responseBytes = client.getResponse(encodedPayloads.computeIfAbsent(payload, p -> encode(p, wireFormat)));
+        if(responseBytes.length == 0)
+          return 0;
+
+        return (int) gsonRPC.parseMessages(responseBytes, wireFormat).stream().filter(JsonRPCMessage::isErrorResponse).count();
+      }
+
+      @Override
+      public void close() throws IOException {
+        client.close();
+      }
+    };
+  }
+
+  @Override
+  public String describe() {
+    return "socket " + host + ":" + port + " (" + negotiated + ")";
+  }
+
+  @Override
+  public void close() throws IOException {
+    if(server != null)
+      server.close();
+  }
+
+  private static byte[] encode(LoadPayload payload, JsonRPCWireFormat wireFormat) {
+    JsonElement tree = payload.getTree();
+
+    //Invalid JSON can only be sent as is, which a JSON server reports as a parse error
+    if(tree == null)
+      return payload.getJson().getBytes(StandardCharsets.UTF_8);
+
+    return wireFormat.encode(tree);
+  }
+}
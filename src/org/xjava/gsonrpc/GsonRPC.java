@@ -25,12 +25,34 @@
 package org.xjava.gsonrpc;
 
 import com.google.gson.*;
-import com.sun.istack.internal.NotNull;
-import com.sun.istack.internal.Nullable;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.annotation.RPCPriority;
+import org.xjava.gsonrpc.capture.JsonRPCCaptureLog;
 import org.xjava.gsonrpc.gson.*;
+import org.xjava.gsonrpc.jfr.JsonRPCBatchEvent;
 import org.xjava.gsonrpc.message.*;
+import org.xjava.gsonrpc.scheduler.JsonRPCScheduler;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormat;
+import org.xjava.gsonrpc.wire.JsonWireFormat;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A Gson based Java library for creating and/or processing JSON-RPC 2.0 requests following the specification at
@@ -48,6 +70,14 @@ public class GsonRPC {
   private final JsonRPCMessageFactory messageFactory;
   private final JsonRPCProxyFactory proxyFactory;
   private final JsonRPCRequestHandler requestHandler;
+  private final JsonRPCMessageDeserializer messageDeserializer = new JsonRPCMessageDeserializer();
+  private final JsonRPCMessageWriter messageWriter;
+  private final JsonRPCRequestReader requestReader;
+  private volatile JsonRPCCaptureLog captureLog;
+  private volatile boolean bufferReuseEnabled;
+  private volatile boolean streamingBindEnabled;
+  private volatile boolean lazyResultsEnabled;
+  private JsonRPCScheduler scheduler;
 
   /**
    * Constructs an instance of GsonRPC without a supplied GsonBuilder.
@@ -77,15 +107,18 @@ public class GsonRPC {
   public GsonRPC(GsonBuilder gsonBuilder) {
     gson = gsonBuilder
         .serializeNulls()
-        .registerTypeAdapter(JsonRPCMessage.class, new JsonRPCMessageDeserializer())
-        .registerTypeAdapter(JsonRPCRequest.class, new JsonRPCRequestSerializer())
-        .registerTypeAdapter(JsonRPCResponse.class, new JsonRPCResponseSerializer())
+        .registerTypeAdapter(JsonRPCMessage.class, messageDeserializer)
+        .registerTypeHierarchyAdapter(JsonRPCRequest.class, new JsonRPCRequestSerializer())
+        .registerTypeHierarchyAdapter(JsonRPCResponse.class, new JsonRPCResponseSerializer())
         .registerTypeAdapter(JsonRPCErrorResponse.class, new JsonRPCErrorResponseSerializer())
+        .registerTypeAdapter(RawJson.class, new RawJsonTypeAdapter())
         .create();
 
+    messageWriter = new JsonRPCMessageWriter(gson);
     messageFactory = new JsonRPCMessageFactory(gson);
     proxyFactory = new JsonRPCProxyFactory(this);
     requestHandler = new JsonRPCRequestHandler(gson, messageFactory);
+    requestReader = new JsonRPCRequestReader(gson, requestHandler);
   }
 
   /**
@@ -124,6 +157,22 @@ public class GsonRPC {
    */
   @NotNull
   public String toJson(@Nullable List<JsonRPCMessage> messages) {
+    if(bufferReuseEnabled && messages != null) {
+      JsonRPCBuffers buffers = JsonRPCBuffers.get();
+      Writer writer = buffers.takeWriter();
+
+      if(writer != null) {
+        writeMessages(writer, messages);
+        return buffers.finishString();
+      }
+    }
+
+    if(messages != null && needsMessageWriter(messages)) {
+      StringWriter writer = new StringWriter();
+      writeMessages(writer, messages);
+      return writer.toString();
+    }
+
     JsonElement messagesJson = toJsonTree(messages);
 
     if(messagesJson == null)
@@ -148,6 +197,98 @@ public class GsonRPC {
       return null;
   }
 
+  /**
+   * Encodes a JsonRPCMessage using a wire format. An empty array of bytes will be returned if the message is null.
+   *
+   * @param message The JsonRPCMessage
+   * @param wireFormat The JsonRPCWireFormat
+   * @return The encoded bytes
+   */
+  @NotNull
+  public byte[] toBytes(@Nullable JsonRPCMessage message, @NotNull JsonRPCWireFormat wireFormat) {
+    return wireFormat.encode(toJsonTree(message));
+  }
+
+  /**
+   * Encodes a List of JsonRPCMessage objects using a wire format. An empty array of bytes will be returned if the
+   * List is empty.
+   *
+   * @param messages The List of JsonRPCMessage objects
+   * @param wireFormat The JsonRPCWireFormat
+   * @return The encoded bytes
+   */
+  @NotNull
+  public byte[] toBytes(@Nullable List<JsonRPCMessage> messages, @NotNull JsonRPCWireFormat wireFormat) {
+    if(bufferReuseEnabled && messages != null && JsonWireFormat.NAME.equals(wireFormat.getName())) {
+      JsonRPCBuffers buffers = JsonRPCBuffers.get();
+      Writer writer = buffers.takeWriter();
+
+      if(writer != null) {
+        writeMessages(writer, messages);
+        return buffers.finishUtf8();
+      }
+    }
+
+    if(messages != null && needsMessageWriter(messages) && JsonWireFormat.NAME.equals(wireFormat.getName())) {
+      StringWriter writer = new StringWriter();
+      writeMessages(writer, messages);
+      return writer.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    return wireFormat.encode(toJsonTree(messages));
+  }
+
+  /**
+   * Writes a List of JsonRPCMessage objects to a Writer as the JSON encoded String toJson would return. A streamed
+   * result is written element by element as its elements are produced, so the output starts before the last of them
+   * exists and a Writer that blocks holds the stream back. Nothing is written if the List is empty or null.
+   *
+   * @param messages The List of JsonRPCMessage objects
+   * @param writer The Writer
+   * @throws IOException An IOException will be thrown if the Writer can not be written to
+   */
+  public void writeJson(@Nullable List<JsonRPCMessage> messages, @NotNull Writer writer) throws IOException {
+    if(messages == null)
+      return;
+
+    try {
+      JsonWriter jsonWriter = new JsonWriter(writer);
+      jsonWriter.setLenient(true);
+      messageWriter.write(jsonWriter, messages);
+      jsonWriter.flush();
+    }
+    finally {
+      //Streams after the one the output failed on would otherwise never be closed
+      JsonRPCStreamResponse.closeAll(messages);
+    }
+  }
+
+  /**
+   * Tells whether any of the messages has a RawJson result, which only the message writer splices in as it is, or a
+   * streamed result, which only the message writer writes without collecting it first.
+   */
+  private static boolean needsMessageWriter(@NotNull List<JsonRPCMessage> messages) {
+    for(JsonRPCMessage message : messages) {
+      if(message instanceof JsonRPCRawResponse || message instanceof JsonRPCStreamResponse)
+        return true;
+    }
+
+    return false;
+  }
+
+  private void writeMessages(@NotNull Writer writer, @NotNull List<JsonRPCMessage> messages) {
+    try {
+      //Lenient like JsonElement.toString, which the tree based path writes with
+      JsonWriter jsonWriter = new JsonWriter(writer);
+      jsonWriter.setLenient(true);
+      messageWriter.write(jsonWriter, messages);
+    }
+    catch(IOException e) {
+      //The buffer never throws
+      throw new JsonIOException(e);
+    }
+  }
+
   /**
    * Gets the result of a JsonRPCResponse as an Object.
    *
@@ -160,6 +301,87 @@ public class GsonRPC {
     return response.getResult(gson, resultClass);
   }
 
+  /**
+   * Gets the result of a JsonRPCResponse as an Object of a generic type, such as List&lt;Foo&gt;, which a Class
+   * cannot describe.
+   *
+   * @param response The JsonRPCResponse
+   * @param resultType The Type of the result
+   * @return The result
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public <T> T getResult(JsonRPCResponse response, Type resultType) {
+    return getResult(response, (TypeAdapter<T>) getAdapter(resultType));
+  }
+
+  /**
+   * Gets the result of a JsonRPCResponse with a TypeAdapter resolved beforehand by {@link #getAdapter(Type)}, which
+   * saves looking the adapter up for every response of a call made over and over.
+   *
+   * @param response The JsonRPCResponse
+   * @param resultAdapter The TypeAdapter of the result
+   * @return The result
+   * @throws JsonParseException A JsonParseException will be thrown if the result does not match the type
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public <T> T getResult(JsonRPCResponse response, TypeAdapter<T> resultAdapter) throws JsonParseException {
+    if(resultAdapter instanceof RawJsonTypeAdapter)
+      return (T) response.getRawResult();
+
+    //A result still held as raw JSON is decoded from it rather than from a tree
+    if(response instanceof JsonRPCRawResponse)
+      return getResult(response.getRawResult(), resultAdapter);
+
+    JsonElement resultJson = response.getResultJson();
+    if(resultJson == null)
+      return null;
+
+    JsonRPCBuffers buffers = bufferReuseEnabled ? JsonRPCBuffers.get() : null;
+    JsonRPCTreeReader reader = buffers == null ? null : buffers.takeTreeReader();
+    boolean borrowed = reader != null;
+
+    if(reader == null) {
+      reader = new JsonRPCTreeReader();
+      reader.setLenient(true);
+    }
+
+    try {
+      return reader.read(resultAdapter, resultJson);
+    }
+    catch(IOException | IllegalStateException e) {
+      throw new JsonSyntaxException(e);
+    }
+    finally {
+      if(borrowed)
+        buffers.releaseTreeReader();
+    }
+  }
+
+  @Nullable
+  private <T> T getResult(@NotNull RawJson rawResult, @NotNull TypeAdapter<T> resultAdapter) throws JsonParseException {
+    try {
+      JsonReader reader = new JsonReader(rawResult.newReader());
+      reader.setLenient(true);
+      return resultAdapter.read(reader);
+    }
+    catch(IOException | IllegalStateException e) {
+      throw new JsonSyntaxException(e);
+    }
+  }
+
+  /**
+   * Gets the TypeAdapter the Gson instance of GsonRPC uses for a type.
+   *
+   * @param type The Type
+   * @return The TypeAdapter
+   */
+  @NotNull
+  public TypeAdapter<?> getAdapter(@NotNull Type type) {
+    return gson.getAdapter(TypeToken.get(type));
+  }
+
   /**
    * Gets the data of a JsonRPCErrorResponse as an Object.
    *
@@ -202,6 +424,21 @@ public class GsonRPC {
     return requestHandler;
   }
 
+  @Nullable
+  public JsonRPCCaptureLog getCaptureLog() {
+    return captureLog;
+  }
+
+  /**
+   * Sets a log that every payload passed to processRequests as a String or as bytes is recorded to, with its arrival
+   * time and the time it took to process. Pass null to stop recording. Closing the log is left to the caller.
+   *
+   * @param captureLog The JsonRPCCaptureLog or null
+   */
+  public void setCaptureLog(@Nullable JsonRPCCaptureLog captureLog) {
+    this.captureLog = captureLog;
+  }
+
   /**
    * Parses a JSON encoded String of GsonRPC messages.
    *
@@ -211,9 +448,46 @@ public class GsonRPC {
    */
   @NotNull
   public List<JsonRPCMessage> parseMessages(@Nullable String messagesString) throws JsonSyntaxException {
+    List<JsonRPCMessage> messages = lazyResultsEnabled && messagesString != null ? JsonRPCResponseScanner.scan(messagesString, messageDeserializer) : null;
+    if(messages != null)
+      return messages;
+
     return parseMessages(parser.parse(messagesString));
   }
 
+  /**
+   * Parses GsonRPC messages encoded with a wire format.
+   *
+   * @param messagesBytes The encoded GsonRPC messages
+   * @param wireFormat The JsonRPCWireFormat
+   * @return A List of JsonRPCMessage objects
+   * @throws JsonParseException A JsonParseException may be thrown if messagesBytes is not valid for the wire format
+   */
+  @NotNull
+  public List<JsonRPCMessage> parseMessages(@Nullable byte[] messagesBytes, @NotNull JsonRPCWireFormat wireFormat) throws JsonParseException {
+    if(lazyResultsEnabled && messagesBytes != null && JsonWireFormat.NAME.equals(wireFormat.getName())) {
+      List<JsonRPCMessage> messages = JsonRPCResponseScanner.scan(messagesBytes, messageDeserializer);
+      if(messages != null)
+        return messages;
+    }
+
+    if(bufferReuseEnabled && messagesBytes != null && messagesBytes.length > 0 && JsonWireFormat.NAME.equals(wireFormat.getName())) {
+      JsonRPCBuffers buffers = JsonRPCBuffers.get();
+      Reader reader = buffers.takeReader(messagesBytes);
+
+      if(reader != null) {
+        try {
+          return parseMessages(JsonParser.parseReader(reader));
+        }
+        finally {
+          buffers.releaseReader();
+        }
+      }
+    }
+
+    return parseMessages(wireFormat.decode(messagesBytes));
+  }
+
   /**
    * Parses a JsonElement containing GsonRPC messages.
    *
@@ -228,10 +502,11 @@ public class GsonRPC {
       messages.add(new JsonRPCMalformedMessage());
     else {
       try {
+        //The deserializer GsonRPC registers always wins, so it is called directly rather than through a tree reader
         if (messagesJson.isJsonArray())
-          messagesJson.getAsJsonArray().forEach(messageJson -> messages.add(gson.fromJson(messageJson, JsonRPCMessage.class)));
+          messagesJson.getAsJsonArray().forEach(messageJson -> messages.add(messageDeserializer.deserialize(messageJson, JsonRPCMessage.class, null)));
         else
-          messages.add(gson.fromJson(messagesJson, JsonRPCMessage.class));
+          messages.add(messageDeserializer.deserialize(messagesJson, JsonRPCMessage.class, null));
       }
       catch (Exception e) {
         messages.add(new JsonRPCMalformedMessage());
@@ -249,18 +524,87 @@ public class GsonRPC {
    */
   @NotNull
   public List<JsonRPCMessage> processRequests(@Nullable String messagesString) {
-    List<JsonRPCMessage> messages;
+    return processRequests(messagesString, JsonRPCContext.NO_DEADLINE, null);
+  }
 
-    try {
-      messages = parseMessages(messagesString);
-    }
-    catch(Exception e) {
-      List<JsonRPCMessage> responses = new ArrayList<>();
-      responses.add(messageFactory.newErrorResponse(null, JsonRPCError.PARSE_ERROR));
-      return responses;
-    }
+  /**
+   * Processes the requests contained in a JSON encoded String of GsonRPC messages against a deadline set by the
+   * transport, on behalf of a client the transport identifies. Requests that carry a timeout of their own are held to
+   * whichever deadline comes first.
+   *
+   * @param messagesString The JSON encoded String of GsonRPC messages
+   * @param deadline The System.nanoTime() deadline, or JsonRPCContext.NO_DEADLINE
+   * @param clientKey The key per client rate limits are kept under, or null
+   * @return A List of JsonRPCMessage responses
+   */
+  @NotNull
+  public List<JsonRPCMessage> processRequests(@Nullable String messagesString, long deadline, @Nullable String clientKey) {
+    JsonRPCCaptureLog captureLog = this.captureLog;
+    if(captureLog == null || messagesString == null)
+      return processJson(messagesString, deadline, clientKey);
+
+    long timestamp = System.currentTimeMillis();
+    long start = System.nanoTime();
+    List<JsonRPCMessage> responses = processJson(messagesString, deadline, clientKey);
+    captureLog.append(timestamp, System.nanoTime() - start, messagesString);
+
+    return responses;
+  }
+
+  @NotNull
+  private List<JsonRPCMessage> processJson(@Nullable String messagesString, long deadline, @Nullable String clientKey) {
+    List<JsonRPCMessage> messages = parseRequests(messagesString);
+    if(messages == null)
+      return newParseErrorResponses();
+
+    return processRequests(messages, messagesString, 0, deadline, clientKey);
+  }
+
+  /**
+   * Processes the requests contained in GsonRPC messages encoded with a wire format. Use
+   * {@link #toBytes(List, JsonRPCWireFormat)} with the same wire format to encode the responses.
+   *
+   * @param messagesBytes The encoded GsonRPC messages
+   * @param wireFormat The JsonRPCWireFormat
+   * @return A List of JsonRPCMessage responses
+   */
+  @NotNull
+  public List<JsonRPCMessage> processRequests(@Nullable byte[] messagesBytes, @NotNull JsonRPCWireFormat wireFormat) {
+    return processRequests(messagesBytes, wireFormat, JsonRPCContext.NO_DEADLINE, null);
+  }
+
+  /**
+   * Processes the requests contained in GsonRPC messages encoded with a wire format against a deadline set by the
+   * transport, on behalf of a client the transport identifies. Requests that carry a timeout of their own are held to
+   * whichever deadline comes first.
+   *
+   * @param messagesBytes The encoded GsonRPC messages
+   * @param wireFormat The JsonRPCWireFormat
+   * @param deadline The System.nanoTime() deadline, or JsonRPCContext.NO_DEADLINE
+   * @param clientKey The key per client rate limits are kept under, or null
+   * @return A List of JsonRPCMessage responses
+   */
+  @NotNull
+  public List<JsonRPCMessage> processRequests(@Nullable byte[] messagesBytes, @NotNull JsonRPCWireFormat wireFormat, long deadline, @Nullable String clientKey) {
+    JsonRPCCaptureLog captureLog = this.captureLog;
+    if(captureLog == null || messagesBytes == null)
+      return processBytes(messagesBytes, wireFormat, deadline, clientKey);
+
+    long timestamp = System.currentTimeMillis();
+    long start = System.nanoTime();
+    List<JsonRPCMessage> responses = processBytes(messagesBytes, wireFormat, deadline, clientKey);
+    captureLog.append(timestamp, System.nanoTime() - start, wireFormat.getName(), messagesBytes);
+
+    return responses;
+  }
+
+  @NotNull
+  private List<JsonRPCMessage> processBytes(@Nullable byte[] messagesBytes, @NotNull JsonRPCWireFormat wireFormat, long deadline, @Nullable String clientKey) {
+    List<JsonRPCMessage> messages = parseRequests(messagesBytes, wireFormat);
+    if(messages == null)
+      return newParseErrorResponses();
 
-    return processRequests(messages);
+    return processRequests(messages, null, messagesBytes == null ? 0 : messagesBytes.length, deadline, clientKey);
   }
 
   /**
@@ -282,22 +626,577 @@ public class GsonRPC {
    */
   @NotNull
   public List<JsonRPCMessage> processRequests(@Nullable List<JsonRPCMessage> messages) {
+    return processRequests(messages, null, 0, JsonRPCContext.NO_DEADLINE, null);
+  }
+
+  /**
+   * Processes the requests contained in a List of JsonRPCMessage objects against a deadline set by the transport, on
+   * behalf of a client the transport identifies.
+   *
+   * @param messages The List of JsonRPCMessage objects
+   * @param deadline The System.nanoTime() deadline, or JsonRPCContext.NO_DEADLINE
+   * @param clientKey The key per client rate limits are kept under, or null
+   * @return A List of JsonRPCMessage responses
+   * @see #processRequests(List)
+   */
+  @NotNull
+  public List<JsonRPCMessage> processRequests(@Nullable List<JsonRPCMessage> messages, long deadline, @Nullable String clientKey) {
+    return processRequests(messages, null, 0, deadline, clientKey);
+  }
+
+  /**
+   * Processes parsed messages, recording the batch event with the size of the payload they were parsed from: the
+   * UTF-8 length of messagesString if given, otherwise payloadSize bytes.
+   */
+  @NotNull
+  private List<JsonRPCMessage> processRequests(@Nullable List<JsonRPCMessage> messages, @Nullable String messagesString, long payloadSize, long deadline, @Nullable String clientKey) {
+    JsonRPCBatchEvent event = new JsonRPCBatchEvent();
+    event.begin();
+
     List<JsonRPCMessage> responses = new ArrayList<>();
 
-    if(messages != null) {
-      messages.forEach(message -> {
-        if (message.isMalformedMessage())
-          responses.add(messageFactory.newErrorResponse(message.getId(), JsonRPCError.INVALID_REQUEST));
-        else if (message.isRequest()) {
-          JsonRPCRequest request = message.getAsRequest();
-          JsonRPCMessage response = requestHandler.handleRequest(request);
+    if(messages != null && messages.size() == 1) {
+      JsonRPCMessage response = processMessage(messages.get(0), deadline, clientKey);
+      if(response != null)
+        responses.add(response);
+    }
+    else if(messages != null) {
+      //Requests are dispatched highest priority first but answered in the order they arrived
+      JsonRPCMessage[] batchResponses = new JsonRPCMessage[messages.size()];
+      int[] order = dispatchOrder(messages);
+      boolean gatherBulkCalls = requestHandler.countBulkCalls(messages) > 1;
+      boolean bulkCallsHandled = false;
 
-          if (!request.isNotification())
-            responses.add(response);
+      for(int index : order) {
+        if(!gatherBulkCalls || !requestHandler.isBulkCall(messages.get(index)))
+          batchResponses[index] = processMessage(messages.get(index), deadline, clientKey);
+        //The calls to bulk methods are handled together, where the first of them comes
+        else if(!bulkCallsHandled) {
+          processBulkCalls(messages, order, batchResponses, deadline, clientKey);
+          bulkCallsHandled = true;
+        }
+      }
+
+      for(JsonRPCMessage response : batchResponses) {
+        if(response != null)
+          responses.add(response);
+      }
+    }
+
+    if(event.shouldCommit()) {
+      event.batchSize = messages == null ? 0 : messages.size();
+      event.responseCount = responses.size();
+      //Only counted for the events that are recorded
+      event.payloadSize = messagesString != null ? utf8Length(messagesString) : payloadSize;
+      event.errorCount = (int) responses.stream().filter(JsonRPCMessage::isErrorResponse).count();
+      event.commit();
+    }
+
+    return responses;
+  }
+
+  /**
+   * Processes the requests contained in a JSON encoded String of GsonRPC messages on the scheduler. The requests of
+   * a batch are queued in the lanes of their priorities and may run in parallel; the responses keep the order of the
+   * requests.
+   *
+   * @param messagesString The JSON encoded String of GsonRPC messages
+   * @return A CompletableFuture of the List of JsonRPCMessage responses
+   */
+  @NotNull
+  public CompletableFuture<List<JsonRPCMessage>> processRequestsAsync(@Nullable String messagesString) {
+    return processRequestsAsync(messagesString, JsonRPCContext.NO_DEADLINE, null);
+  }
+
+  /**
+   * Processes the requests contained in a JSON encoded String of GsonRPC messages on the scheduler against a deadline
+   * set by the transport, on behalf of a client the transport identifies. A request still running when its deadline passes is answered with
+   * JsonRPCError.DEADLINE_EXCEEDED at once and its JsonRPCContext is cancelled; one still queued is dropped without
+   * being invoked.
+   *
+   * @param messagesString The JSON encoded String of GsonRPC messages
+   * @param deadline The System.nanoTime() deadline, or JsonRPCContext.NO_DEADLINE
+   * @param clientKey The key per client rate limits are kept under, or null
+   * @return A CompletableFuture of the List of JsonRPCMessage responses
+   */
+  @NotNull
+  public CompletableFuture<List<JsonRPCMessage>> processRequestsAsync(@Nullable String messagesString, long deadline, @Nullable String clientKey) {
+    JsonRPCCaptureLog captureLog = this.captureLog;
+    long timestamp = captureLog == null ? 0 : System.currentTimeMillis();
+    long start = captureLog == null ? 0 : System.nanoTime();
+
+    List<JsonRPCMessage> messages = parseRequests(messagesString);
+    CompletableFuture<List<JsonRPCMessage>> responses = messages == null ? CompletableFuture.completedFuture(newParseErrorResponses()) : processRequestsAsync(messages, deadline, clientKey);
+
+    if(captureLog == null || messagesString == null)
+      return responses;
+
+    return responses.whenComplete((result, throwable) -> captureLog.append(timestamp, System.nanoTime() - start, messagesString));
+  }
+
+  /**
+   * Processes the requests contained in GsonRPC messages encoded with a wire format on the scheduler.
+   *
+   * @param messagesBytes The encoded GsonRPC messages
+   * @param wireFormat The JsonRPCWireFormat
+   * @return A CompletableFuture of the List of JsonRPCMessage responses
+   */
+  @NotNull
+  public CompletableFuture<List<JsonRPCMessage>> processRequestsAsync(@Nullable byte[] messagesBytes, @NotNull JsonRPCWireFormat wireFormat) {
+    return processRequestsAsync(messagesBytes, wireFormat, JsonRPCContext.NO_DEADLINE, null);
+  }
+
+  /**
+   * Processes the requests contained in GsonRPC messages encoded with a wire format on the scheduler against a
+   * deadline set by the transport, on behalf of a client the transport identifies.
+   *
+   * @param messagesBytes The encoded GsonRPC messages
+   * @param wireFormat The JsonRPCWireFormat
+   * @param deadline The System.nanoTime() deadline, or JsonRPCContext.NO_DEADLINE
+   * @param clientKey The key per client rate limits are kept under, or null
+   * @return A CompletableFuture of the List of JsonRPCMessage responses
+   * @see #processRequestsAsync(String, long, String)
+   */
+  @NotNull
+  public CompletableFuture<List<JsonRPCMessage>> processRequestsAsync(@Nullable byte[] messagesBytes, @NotNull JsonRPCWireFormat wireFormat, long deadline, @Nullable String clientKey) {
+    JsonRPCCaptureLog captureLog = this.captureLog;
+    long timestamp = captureLog == null ? 0 : System.currentTimeMillis();
+    long start = captureLog == null ? 0 : System.nanoTime();
+
+    List<JsonRPCMessage> messages = parseRequests(messagesBytes, wireFormat);
+    CompletableFuture<List<JsonRPCMessage>> responses = messages == null ? CompletableFuture.completedFuture(newParseErrorResponses()) : processRequestsAsync(messages, deadline, clientKey);
+
+    if(captureLog == null || messagesBytes == null)
+      return responses;
+
+    return responses.whenComplete((result, throwable) -> captureLog.append(timestamp, System.nanoTime() - start, wireFormat.getName(), messagesBytes));
+  }
+
+  /**
+   * Processes the requests contained in a List of JsonRPCMessage objects on the scheduler. Requests that can not be
+   * queued because the scheduler is full are answered with JsonRPCError.SERVER_BUSY, and requests whose timeout
+   * passes are answered with JsonRPCError.DEADLINE_EXCEEDED without waiting for them to finish.
+   *
+   * @param messages The List of JsonRPCMessage objects
+   * @return A CompletableFuture of the List of JsonRPCMessage responses
+   */
+  @NotNull
+  public CompletableFuture<List<JsonRPCMessage>> processRequestsAsync(@Nullable List<JsonRPCMessage> messages) {
+    return processRequestsAsync(messages, JsonRPCContext.NO_DEADLINE, null);
+  }
+
+  /**
+   * Processes the requests contained in a List of JsonRPCMessage objects on the scheduler against a deadline set by
+   * the transport, on behalf of a client the transport identifies.
+   *
+   * @param messages The List of JsonRPCMessage objects
+   * @param deadline The System.nanoTime() deadline, or JsonRPCContext.NO_DEADLINE
+   * @param clientKey The key per client rate limits are kept under, or null
+   * @return A CompletableFuture of the List of JsonRPCMessage responses
+   * @see #processRequestsAsync(List)
+   */
+  @NotNull
+  public CompletableFuture<List<JsonRPCMessage>> processRequestsAsync(@Nullable List<JsonRPCMessage> messages, long deadline, @Nullable String clientKey) {
+    if(messages == null || messages.isEmpty())
+      return CompletableFuture.completedFuture(new ArrayList<>());
+
+    JsonRPCScheduler scheduler = getScheduler();
+    List<CompletableFuture<JsonRPCMessage>> futures = new ArrayList<>(messages.size());
+    boolean gatherBulkCalls = requestHandler.countBulkCalls(messages) > 1;
+    List<JsonRPCRequest> bulkRequests = new ArrayList<>();
+
+    for(JsonRPCMessage message : messages) {
+      if(gatherBulkCalls && requestHandler.isBulkCall(message)) {
+        //Queued together once the rest of the batch is
+        bulkRequests.add(message.getAsRequest());
+        futures.add(null);
+      }
+      else if(message.isRequest())
+        futures.add(schedule(scheduler, message.getAsRequest(), deadline, clientKey));
+      else
+        futures.add(CompletableFuture.completedFuture(processMessage(message, deadline, clientKey)));
+    }
+
+    if(gatherBulkCalls) {
+      List<CompletableFuture<JsonRPCMessage>> bulkFutures = scheduleBulk(scheduler, bulkRequests, deadline, clientKey);
+
+      int next = 0;
+      for(int i = 0; i < futures.size(); i++) {
+        if(futures.get(i) == null)
+          futures.set(i, bulkFutures.get(next++));
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    CompletableFuture<JsonRPCMessage>[] futureArray = futures.toArray((CompletableFuture<JsonRPCMessage>[]) new CompletableFuture<?>[0]);
+
+    return CompletableFuture.allOf(futureArray).thenApply(ignored -> {
+      List<JsonRPCMessage> responses = new ArrayList<>();
+
+      for(CompletableFuture<JsonRPCMessage> future : futures) {
+        JsonRPCMessage response = future.join();
+        if(response != null)
+          responses.add(response);
+      }
+
+      return responses;
+    });
+  }
+
+  public boolean isBufferReuseEnabled() {
+    return bufferReuseEnabled;
+  }
+
+  /**
+   * Turns the reuse of per thread buffers on or off. With reuse on, JSON is decoded from bytes and encoded to Strings
+   * and bytes through character and byte buffers that each thread keeps between calls, responses are streamed without
+   * building a JsonObject per message, and params are bound into arrays the thread reuses. Off by default, because
+   * each thread then holds on to its buffers, and because interceptors and methods must not keep the params array
+   * past the end of a call.
+   *
+   * @param bufferReuseEnabled Whether buffers are reused
+   * @see JsonRPCBuffers
+   */
+  public void setBufferReuseEnabled(boolean bufferReuseEnabled) {
+    this.bufferReuseEnabled = bufferReuseEnabled;
+    requestHandler.setBufferReuseEnabled(bufferReuseEnabled);
+  }
+
+  public boolean isStreamingBindEnabled() {
+    return streamingBindEnabled;
+  }
+
+  /**
+   * Turns binding params while they are read on or off. With it on, the JSON text given to processRequests and
+   * processRequestsAsync is read as a stream, and the params of a request whose method is named before them are read
+   * straight into the parameters of the method, so no JsonElement is built for them. Off by default, because such
+   * requests reach interceptors as JsonRPCBoundRequest objects, whose getParamsJson() returns null.
+   *
+   * @param streamingBindEnabled Whether params are bound while they are read
+   * @see JsonRPCBoundRequest
+   */
+  public void setStreamingBindEnabled(boolean streamingBindEnabled) {
+    this.streamingBindEnabled = streamingBindEnabled;
+  }
+
+  public boolean isLazyResultsEnabled() {
+    return lazyResultsEnabled;
+  }
+
+  /**
+   * Turns lazy result decoding on or off. With it on, parseMessages reads the envelope of each message in JSON text
+   * but keeps its result or error data as a RawJson slice of the text, which is only decoded when it is first asked
+   * for, so a large batch that is only partly read costs no more than the part that is. Off by default, because the
+   * messages then hold on to the text or bytes they were parsed from, and bytes passed to parseMessages must not be
+   * changed afterwards.
+   *
+   * @param lazyResultsEnabled Whether results are decoded lazily
+   * @see JsonRPCRawResponse
+   * @see JsonRPCRawErrorResponse
+   */
+  public void setLazyResultsEnabled(boolean lazyResultsEnabled) {
+    this.lazyResultsEnabled = lazyResultsEnabled;
+  }
+
+  /**
+   * Gets the scheduler used by processRequestsAsync, creating one with a worker thread per processor the first time
+   * it is needed.
+   *
+   * @return The JsonRPCScheduler
+   */
+  @NotNull
+  public synchronized JsonRPCScheduler getScheduler() {
+    if(scheduler == null)
+      scheduler = new JsonRPCScheduler();
+
+    return scheduler;
+  }
+
+  /**
+   * Sets the scheduler used by processRequestsAsync. The previous scheduler is not closed.
+   *
+   * @param scheduler The JsonRPCScheduler
+   */
+  public synchronized void setScheduler(@NotNull JsonRPCScheduler scheduler) {
+    this.scheduler = scheduler;
+  }
+
+  @NotNull
+  private CompletableFuture<JsonRPCMessage> schedule(@NotNull JsonRPCScheduler scheduler, @NotNull JsonRPCRequest request, long deadline, @Nullable String clientKey) {
+    RPCPriority priority = requestHandler.getPriority(request.getMethod());
+    JsonRPCContext context = new JsonRPCContext(request, JsonRPCContext.earliest(request.getDeadline(), deadline), clientKey);
+    long queued = System.nanoTime();
+
+    CompletableFuture<JsonRPCMessage> call = scheduler.submit(priority, () -> {
+      requestHandler.recordQueueDelay(priority, System.nanoTime() - queued);
+      return processRequest(request, context);
+    });
+
+    return respond(request, context, call);
+  }
+
+  /**
+   * Queues the calls of a batch to bulk methods as one task, in the lane of the highest priority among them, which
+   * handles them together. Each call is still answered at its own deadline.
+   */
+  @NotNull
+  private List<CompletableFuture<JsonRPCMessage>> scheduleBulk(@NotNull JsonRPCScheduler scheduler, @NotNull List<JsonRPCRequest> requests, long deadline, @Nullable String clientKey) {
+    List<JsonRPCContext> contexts = new ArrayList<>(requests.size());
+    List<CompletableFuture<JsonRPCMessage>> calls = new ArrayList<>(requests.size());
+    RPCPriority highest = RPCPriority.LOW;
+
+    for(JsonRPCRequest request : requests) {
+      RPCPriority priority = requestHandler.getPriority(request.getMethod());
+      if(priority.ordinal() < highest.ordinal())
+        highest = priority;
+
+      contexts.add(new JsonRPCContext(request, JsonRPCContext.earliest(request.getDeadline(), deadline), clientKey));
+      calls.add(new CompletableFuture<>());
+    }
+
+    RPCPriority priority = highest;
+    long queued = System.nanoTime();
+
+    CompletableFuture<Void> task = scheduler.submit(priority, () -> {
+      requestHandler.recordQueueDelay(priority, System.nanoTime() - queued);
+
+      List<JsonRPCMessage> responses = requestHandler.handleBulkRequests(requests, contexts);
+      for(int i = 0; i < responses.size(); i++)
+        calls.get(i).complete(finishResponse(requests.get(i), responses.get(i)));
+
+      return null;
+    });
+    task.exceptionally(throwable -> {
+      for(CompletableFuture<JsonRPCMessage> call : calls)
+        call.completeExceptionally(throwable);
+
+      return null;
+    });
+
+    List<CompletableFuture<JsonRPCMessage>> responses = new ArrayList<>(requests.size());
+    for(int i = 0; i < requests.size(); i++)
+      responses.add(respond(requests.get(i), contexts.get(i), calls.get(i)));
+
+    return responses;
+  }
+
+  /**
+   * Answers a queued call with its response, an error if it could not be run, or DEADLINE_EXCEEDED at its deadline.
+   */
+  @NotNull
+  private CompletableFuture<JsonRPCMessage> respond(@NotNull JsonRPCRequest request, @NotNull JsonRPCContext context, @NotNull CompletableFuture<JsonRPCMessage> call) {
+    CompletableFuture<JsonRPCMessage> response = call.exceptionally(throwable -> {
+      if(request.isNotification())
+        return null;
+
+      Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+      return messageFactory.newErrorResponse(request.getId(), cause instanceof RejectedExecutionException ? JsonRPCError.SERVER_BUSY : JsonRPCError.INTERNAL_ERROR);
+    });
+
+    //The caller is answered at the deadline; the call itself only stops if it checks its context
+    if(context.hasDeadline()) {
+      CompletableFuture.delayedExecutor(context.getRemainingNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+        if(!response.isDone() && response.complete(request.isNotification() ? null : messageFactory.newErrorResponse(request.getId(), JsonRPCError.DEADLINE_EXCEEDED))) {
+          context.cancel();
+          //Whatever the call still returns is dropped, so a streamed result has to be let go of here
+          call.thenAccept(GsonRPC::closeStream);
         }
       });
     }
 
+    return response;
+  }
+
+  /**
+   * Handles a single message, returning its response or null if it does not get one.
+   */
+  @Nullable
+  private JsonRPCMessage processMessage(@NotNull JsonRPCMessage message, long deadline, @Nullable String clientKey) {
+    if(message.isMalformedMessage())
+      return messageFactory.newErrorResponse(message.getId(), JsonRPCError.INVALID_REQUEST);
+
+    if(!message.isRequest())
+      return null;
+
+    JsonRPCRequest request = message.getAsRequest();
+    return processRequest(request, new JsonRPCContext(request, JsonRPCContext.earliest(request.getDeadline(), deadline), clientKey));
+  }
+
+  @Nullable
+  private JsonRPCMessage processRequest(@NotNull JsonRPCRequest request, @NotNull JsonRPCContext context) {
+    return finishResponse(request, requestHandler.handleRequest(request, context));
+  }
+
+  /**
+   * Handles the calls of a batch to bulk methods together, in dispatch order, and puts their responses in place.
+   */
+  private void processBulkCalls(@NotNull List<JsonRPCMessage> messages, @NotNull int[] order, @NotNull JsonRPCMessage[] responses, long deadline, @Nullable String clientKey) {
+    List<Integer> indexes = new ArrayList<>();
+    List<JsonRPCRequest> requests = new ArrayList<>();
+    List<JsonRPCContext> contexts = new ArrayList<>();
+
+    for(int index : order) {
+      if(requestHandler.isBulkCall(messages.get(index))) {
+        JsonRPCRequest request = messages.get(index).getAsRequest();
+        indexes.add(index);
+        requests.add(request);
+        contexts.add(new JsonRPCContext(request, JsonRPCContext.earliest(request.getDeadline(), deadline), clientKey));
+      }
+    }
+
+    List<JsonRPCMessage> bulkResponses = requestHandler.handleBulkRequests(requests, contexts);
+    for(int i = 0; i < indexes.size(); i++)
+      responses[indexes.get(i)] = finishResponse(requests.get(i), bulkResponses.get(i));
+  }
+
+  /**
+   * Returns the response to a request, or null for a notification, whose streamed result is let go of.
+   */
+  @Nullable
+  private JsonRPCMessage finishResponse(@NotNull JsonRPCRequest request, @NotNull JsonRPCMessage response) {
+    if(request.isNotification()) {
+      closeStream(response);
+      return null;
+    }
+
+    return response;
+  }
+
+  /**
+   * Counts the bytes a String takes in UTF-8 without encoding it. An unpaired surrogate is encoded as '?'.
+   */
+  private static long utf8Length(@NotNull String string) {
+    long length = 0;
+
+    for(int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+
+      if(c < 0x80)
+        length++;
+      else if(c < 0x800)
+        length += 2;
+      else if(Character.isHighSurrogate(c) && i + 1 < string.length() && Character.isLowSurrogate(string.charAt(i + 1))) {
+        length += 4;
+        i++;
+      }
+      else if(Character.isSurrogate(c))
+        length++;
+      else
+        length += 3;
+    }
+
+    return length;
+  }
+
+  private static void closeStream(@Nullable JsonRPCMessage message) {
+    if(message instanceof JsonRPCStreamResponse)
+      ((JsonRPCStreamResponse) message).close();
+  }
+
+  /**
+   * Orders the messages of a batch by the priority of the methods they call, keeping the order of messages with the
+   * same priority. Messages that are not requests are answered without dispatching and go first.
+   */
+  @NotNull
+  private int[] dispatchOrder(@NotNull List<JsonRPCMessage> messages) {
+    int[] priorities = new int[messages.size()];
+    int[] counts = new int[RPCPriority.values().length + 1];
+
+    for(int i = 0; i < priorities.length; i++) {
+      JsonRPCMessage message = messages.get(i);
+      priorities[i] = message.isRequest() ? requestHandler.getPriority(message.getAsRequest().getMethod()).ordinal() + 1 : 0;
+      counts[priorities[i]]++;
+    }
+
+    int[] starts = new int[counts.length];
+    for(int i = 1; i < counts.length; i++)
+      starts[i] = starts[i - 1] + counts[i - 1];
+
+    int[] order = new int[priorities.length];
+    for(int i = 0; i < priorities.length; i++)
+      order[starts[priorities[i]]++] = i;
+
+    return order;
+  }
+
+  /**
+   * Parses a JSON encoded String of messages, returning null if it is not valid JSON.
+   */
+  @Nullable
+  private List<JsonRPCMessage> parseRequests(@Nullable String messagesString) {
+    List<JsonRPCMessage> messages;
+
+    boolean sampled = requestHandler.samplePhases();
+    long parseStart = sampled ? System.nanoTime() : 0;
+
+    messages = streamingBindEnabled && messagesString != null ? requestReader.read(new StringReader(messagesString)) : null;
+
+    if(messages == null) {
+      try {
+        messages = parseMessages(messagesString);
+      }
+      catch(Exception e) {
+        return null;
+      }
+    }
+
+    if(sampled && !messages.isEmpty())
+      recordParseTime(messages, System.nanoTime() - parseStart);
+
+    return messages;
+  }
+
+  /**
+   * Parses requests encoded with a wire format the way processRequests does, for a transport that looks at them
+   * before passing them on to {@link #processRequests(List, long, String)}.
+   *
+   * @param messagesBytes The encoded GsonRPC messages
+   * @param wireFormat The JsonRPCWireFormat
+   * @return A List of JsonRPCMessage objects, or null if messagesBytes is not valid for the wire format
+   */
+  @Nullable
+  public List<JsonRPCMessage> parseRequests(@Nullable byte[] messagesBytes, @NotNull JsonRPCWireFormat wireFormat) {
+    if(streamingBindEnabled && messagesBytes != null && messagesBytes.length > 0 && JsonWireFormat.NAME.equals(wireFormat.getName())) {
+      List<JsonRPCMessage> messages = readRequests(messagesBytes);
+      if(messages != null)
+        return messages;
+    }
+
+    try {
+      return parseMessages(messagesBytes, wireFormat);
+    }
+    catch(Exception e) {
+      return null;
+    }
+  }
+
+  @NotNull
+  private List<JsonRPCMessage> newParseErrorResponses() {
+    List<JsonRPCMessage> responses = new ArrayList<>();
+    responses.add(messageFactory.newErrorResponse(null, JsonRPCError.PARSE_ERROR));
     return responses;
   }
+
+  @Nullable
+  private List<JsonRPCMessage> readRequests(@NotNull byte[] messagesBytes) {
+    JsonRPCBuffers buffers = bufferReuseEnabled ? JsonRPCBuffers.get() : null;
+    Reader reader = buffers == null ? null : buffers.takeReader(messagesBytes);
+
+    if(reader == null)
+      return requestReader.read(new InputStreamReader(new ByteArrayInputStream(messagesBytes), StandardCharsets.UTF_8));
+
+    try {
+      return requestReader.read(reader);
+    }
+    finally {
+      buffers.releaseReader();
+    }
+  }
+
+  private void recordParseTime(@NotNull List<JsonRPCMessage> messages, long nanos) {
+    long nanosPerMessage = nanos / messages.size();
+
+    for(JsonRPCMessage message : messages)
+      requestHandler.recordParseTime(message.isRequest() ? message.getAsRequest().getMethod() : null, nanosPerMessage);
+  }
 }
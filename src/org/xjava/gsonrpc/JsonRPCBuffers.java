@@ -0,0 +1,337 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.xjava.gsonrpc;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.gson.JsonRPCTreeReader;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Scratch space reused by every call a thread makes, so that once a thread has warmed up, decoding requests,
+ * binding params and encoding responses stop allocating buffers. Transports that serve a connection per thread get
+ * a context per connection for free.
+ *
+ * <p>Buffers are only reused when GsonRPC has buffer reuse enabled. Each kind of buffer is taken and given back
+ * around a single use; a nested use on the same thread, such as a method calling back into GsonRPC, finds the buffer
+ * taken and allocates its own. Buffers that had to grow past MAX_RETAINED_SIZE for one large message are dropped
+ * rather than kept for the life of the thread.
+ *
+ * @version 1.0
+ */
+public final class JsonRPCBuffers {
+  public static final int MAX_RETAINED_SIZE = 64 * 1024;
+  public static final int MAX_REUSED_PARAMS = 8;
+
+  private static final int INITIAL_SIZE = 1024;
+  private static final ThreadLocal<JsonRPCBuffers> threadBuffers = ThreadLocal.withInitial(JsonRPCBuffers::new);
+
+  private final Object[][] params = new Object[MAX_REUSED_PARAMS + 1][];
+  private final boolean[] paramsTaken = new boolean[MAX_REUSED_PARAMS + 1];
+  private final long[][] slots = new long[MAX_REUSED_PARAMS + 1][];
+  private final boolean[] slotsTaken = new boolean[MAX_REUSED_PARAMS + 1];
+  private final CharArrayBuffer output = new CharArrayBuffer();
+  private final CharArrayBuffer input = new CharArrayBuffer();
+  private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  private final JsonRPCTreeReader treeReader = new JsonRPCTreeReader();
+  private byte[] bytes = new byte[INITIAL_SIZE];
+  private boolean treeReaderTaken;
+  private boolean writerTaken;
+  private boolean readerTaken;
+
+  private JsonRPCBuffers() {
+    //Gson reads trees leniently, so must the reader that stands in for its own
+    treeReader.setLenient(true);
+
+    for(int i = 0; i < params.length; i++) {
+      params[i] = new Object[i];
+      slots[i] = new long[i];
+    }
+  }
+
+  /**
+   * Gets the buffers of the calling thread.
+   *
+   * @return The JsonRPCBuffers
+   */
+  @NotNull
+  public static JsonRPCBuffers get() {
+    return threadBuffers.get();
+  }
+
+  /**
+   * Takes an array to bind the params of a call into. It must be given back with {@link #releaseParams(Object[])}
+   * once the call returns, which means interceptors and methods must not hold on to it.
+   *
+   * @param count The number of params
+   * @return An array of that length
+   */
+  @NotNull
+  public Object[] takeParams(int count) {
+    if(count > MAX_REUSED_PARAMS || paramsTaken[count])
+      return new Object[count];
+
+    paramsTaken[count] = true;
+    return params[count];
+  }
+
+  public void releaseParams(@NotNull Object[] array) {
+    int count = array.length;
+
+    if(count <= MAX_REUSED_PARAMS && params[count] == array) {
+      //The params are cleared so a thread does not keep the arguments of its last call reachable
+      Arrays.fill(array, null);
+      paramsTaken[count] = false;
+    }
+  }
+
+  /**
+   * Takes an array to bind the primitive params of a call into, as slots. Give it back with
+   * {@link #releaseSlots(long[])}.
+   *
+   * @param count The number of params
+   * @return An array of that length
+   */
+  @NotNull
+  public long[] takeSlots(int count) {
+    if(count > MAX_REUSED_PARAMS || slotsTaken[count])
+      return new long[count];
+
+    slotsTaken[count] = true;
+    return slots[count];
+  }
+
+  public void releaseSlots(@NotNull long[] array) {
+    int count = array.length;
+
+    if(count <= MAX_REUSED_PARAMS && slots[count] == array)
+      slotsTaken[count] = false;
+  }
+
+  /**
+   * Takes the reader params are bound through. Give it back with {@link #releaseTreeReader()}.
+   *
+   * @return The JsonRPCTreeReader, or null if it is already taken
+   */
+  @Nullable
+  public JsonRPCTreeReader takeTreeReader() {
+    if(treeReaderTaken)
+      return null;
+
+    treeReaderTaken = true;
+    return treeReader;
+  }
+
+  public void releaseTreeReader() {
+    treeReader.clear();
+    treeReaderTaken = false;
+  }
+
+  /**
+   * Takes the character buffer responses are written to. Finish with {@link #finishString()} or
+   * {@link #finishUtf8()}, which give it back.
+   *
+   * @return An empty Writer, or null if the buffer is already taken
+   */
+  @Nullable
+  public Writer takeWriter() {
+    if(writerTaken)
+      return null;
+
+    writerTaken = true;
+    output.clear();
+    return output.writer;
+  }
+
+  @NotNull
+  public String finishString() {
+    String string = new String(output.chars, 0, output.length);
+    releaseWriter();
+    return string;
+  }
+
+  /**
+   * Encodes the characters written as UTF-8, through a byte buffer kept for the next call.
+   *
+   * @return The encoded bytes
+   */
+  @NotNull
+  public byte[] finishUtf8() {
+    char[] chars = output.chars;
+    int length = output.length;
+    int position = 0;
+
+    if(bytes.length < length * 3)
+      bytes = new byte[Math.max(bytes.length * 2, length * 3)];
+
+    for(int i = 0; i < length; i++) {
+      char c = chars[i];
+
+      if(c < 0x80)
+        bytes[position++] = (byte) c;
+      else if(c < 0x800) {
+        bytes[position++] = (byte) (0xC0 | (c >> 6));
+        bytes[position++] = (byte) (0x80 | (c & 0x3F));
+      }
+      else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars[i + 1])) {
+        int codePoint = Character.toCodePoint(c, chars[++i]);
+        bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+        bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+      }
+      else if(Character.isSurrogate(c))
+        bytes[position++] = '?';
+      else {
+        bytes[position++] = (byte) (0xE0 | (c >> 12));
+        bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        bytes[position++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+
+    byte[] encoded = Arrays.copyOf(bytes, position);
+    if(bytes.length > MAX_RETAINED_SIZE)
+      bytes = new byte[INITIAL_SIZE];
+
+    releaseWriter();
+    return encoded;
+  }
+
+  private void releaseWriter() {
+    output.trim();
+    writerTaken = false;
+  }
+
+  /**
+   * Takes a Reader over UTF-8 encoded bytes, decoded into a character buffer kept for the next call. Malformed input
+   * is replaced the way an InputStreamReader would replace it. Give it back with {@link #releaseReader()}.
+   *
+   * @param data The UTF-8 encoded bytes
+   * @return A Reader, or null if the buffer is already taken
+   */
+  @Nullable
+  public Reader takeReader(@NotNull byte[] data) {
+    if(readerTaken)
+      return null;
+
+    readerTaken = true;
+    input.clear();
+    input.ensureCapacity(data.length);
+
+    //UTF-8 never decodes to more chars than it has bytes
+    CharBuffer out = CharBuffer.wrap(input.chars);
+    decoder.reset();
+    decoder.decode(ByteBuffer.wrap(data), out, true);
+    decoder.flush(out);
+    input.length = out.position();
+
+    return input;
+  }
+
+  public void releaseReader() {
+    input.trim();
+    readerTaken = false;
+  }
+
+  /**
+   * A growable char array that is written to as a Writer and read back as a Reader.
+   */
+  private static final class CharArrayBuffer extends Reader {
+    private char[] chars = new char[INITIAL_SIZE];
+    private int length;
+    private int position;
+
+    private final Writer writer = new Writer() {
+      @Override
+      public void write(int c) {
+        ensureCapacity(length + 1);
+        chars[length++] = (char) c;
+      }
+
+      @Override
+      public void write(char[] buffer, int offset, int count) {
+        ensureCapacity(length + count);
+        System.arraycopy(buffer, offset, chars, length, count);
+        length += count;
+      }
+
+      @Override
+      public void write(String string, int offset, int count) {
+        ensureCapacity(length + count);
+        string.getChars(offset, offset + count, chars, length);
+        length += count;
+      }
+
+      @Override
+      public void flush() {
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+
+    void clear() {
+      length = 0;
+      position = 0;
+    }
+
+    void ensureCapacity(int capacity) {
+      if(chars.length < capacity)
+        chars = Arrays.copyOf(chars, Math.max(chars.length * 2, capacity));
+    }
+
+    void trim() {
+      if(chars.length > MAX_RETAINED_SIZE)
+        chars = new char[INITIAL_SIZE];
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int count) {
+      if(position >= length)
+        return -1;
+
+      int read = Math.min(count, length - position);
+      System.arraycopy(chars, position, buffer, offset, read);
+      position += read;
+      return read;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
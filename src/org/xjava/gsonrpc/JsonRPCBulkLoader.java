@@ -0,0 +1,334 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.exception.JsonRPCRuntimeException;
+import org.xjava.gsonrpc.message.JsonRPCRequest;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathers calls to a method taking a single key into calls to its bulk counterpart, which takes a List of keys and
+ * returns either a List of results in the same order or a Map of results by key. The first call to arrive waits out
+ * the window, then makes the bulk call for every key that arrived meanwhile; a call that fills the batch makes it
+ * straight away. Equal keys are only passed once.
+ *
+ * <p>The calls of one batch are handled one after another, so each would wait out the window alone. Instead they
+ * are gathered in two steps: each call is handled up to the method as usual and only records its key (see
+ * {@link #deferLoad(JsonRPCRequest)}), then {@link #loadAll(List)} makes one bulk call for the keys of the batch.</p>
+ *
+ * @version 1.0
+ */
+final class JsonRPCBulkLoader {
+  static final long DEFAULT_WINDOW_MICROS = 1000;
+  static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+  private final Object methodHandler;
+  private final Method bulkMethod;
+  private static final ThreadLocal<JsonRPCRequest> deferredRequest = new ThreadLocal<>();
+
+  private final boolean mapResult;
+  private volatile long windowNanos = TimeUnit.MICROSECONDS.toNanos(DEFAULT_WINDOW_MICROS);
+  private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+  private ArrayList<Load> pending = new ArrayList<>();
+  private long generation;
+
+  JsonRPCBulkLoader(@NotNull Object methodHandler, @NotNull Method method, @NotNull Method bulkMethod) throws JsonRPCRuntimeException {
+    if(method.getParameterCount() != 1)
+      throw new JsonRPCRuntimeException(method.getName() + " must take a single param to have a bulk method.");
+    if(bulkMethod.getParameterCount() != 1 || bulkMethod.getParameterTypes()[0] != List.class)
+      throw new JsonRPCRuntimeException(bulkMethod.getName() + " must take a single List param to be a bulk method.");
+    if(!List.class.isAssignableFrom(bulkMethod.getReturnType()) && !Map.class.isAssignableFrom(bulkMethod.getReturnType()))
+      throw new JsonRPCRuntimeException(bulkMethod.getName() + " must return a List or a Map to be a bulk method.");
+
+    this.methodHandler = methodHandler;
+    this.bulkMethod = bulkMethod;
+    this.mapResult = Map.class.isAssignableFrom(bulkMethod.getReturnType());
+  }
+
+  long getWindowMicros() {
+    return TimeUnit.NANOSECONDS.toMicros(windowNanos);
+  }
+
+  int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  void setWindow(long windowMicros, int maxBatchSize) {
+    if(windowMicros < 0)
+      throw new IllegalArgumentException("The window can not be negative.");
+    if(maxBatchSize < 1)
+      throw new IllegalArgumentException("The maximum batch size must be at least 1.");
+
+    this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  /**
+   * Makes the call of a request handled on this thread record its key and return a Load instead of waiting for the
+   * result, until {@link #resumeLoad(JsonRPCRequest)}. Only the request itself is deferred, not calls it makes.
+   *
+   * @param request The request
+   * @return The request that was deferred before, to pass to resumeLoad
+   */
+  @Nullable
+  static JsonRPCRequest deferLoad(@NotNull JsonRPCRequest request) {
+    JsonRPCRequest previous = deferredRequest.get();
+    deferredRequest.set(request);
+
+    return previous;
+  }
+
+  static void resumeLoad(@Nullable JsonRPCRequest previous) {
+    deferredRequest.set(previous);
+  }
+
+  /**
+   * Gets the result for the key of a call, waiting for the bulk call that includes it, or returns a Load of the key
+   * if the request is deferred. Failures are thrown the way Method.invoke throws them, wrapped in an
+   * InvocationTargetException.
+   *
+   * @param request The request being handled
+   * @param key The key
+   * @return The result, or the Load of a deferred request
+   */
+  @Nullable
+  Object load(@NotNull JsonRPCRequest request, @Nullable Object key) throws Exception {
+    if(deferredRequest.get() == request)
+      return new Load(this, key);
+
+    Load load = enqueue(key);
+    JsonRPCContext context = JsonRPCContext.current();
+
+    try {
+      if(context == null || !context.hasDeadline())
+        return load.result.get();
+
+      return load.result.get(context.getRemainingNanos(), TimeUnit.NANOSECONDS);
+    }
+    catch(ExecutionException e) {
+      throw new InvocationTargetException(e.getCause());
+    }
+  }
+
+  /**
+   * Makes the bulk calls for the Loads of deferred requests, one per loader. Loads a failed call leaves without a
+   * result are failed, so nothing waits on them.
+   *
+   * @param loads The Loads
+   */
+  static void loadAll(@NotNull List<Load> loads) {
+    LinkedHashMap<JsonRPCBulkLoader, List<Load>> loadsByLoader = new LinkedHashMap<>();
+    for(Load load : loads)
+      loadsByLoader.computeIfAbsent(load.loader, key -> new ArrayList<>()).add(load);
+
+    try {
+      loadsByLoader.forEach(JsonRPCBulkLoader::run);
+    }
+    finally {
+      failUnfinished(loads);
+    }
+  }
+
+  @NotNull
+  private Load enqueue(@Nullable Object key) {
+    Load load = new Load(this, key);
+    ArrayList<Load> batch = null;
+    long leaderGeneration = -1;
+
+    try {
+      synchronized(this) {
+        pending.add(load);
+
+        if(pending.size() >= maxBatchSize)
+          batch = takePending();
+        else if(pending.size() == 1)
+          leaderGeneration = generation;
+      }
+
+      if(leaderGeneration >= 0) {
+        long end = System.nanoTime() + windowNanos;
+
+        boolean interrupted = false;
+
+        synchronized(this) {
+          long remaining;
+          while(!interrupted && generation == leaderGeneration && (remaining = end - System.nanoTime()) > 0) {
+            try {
+              TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            catch(InterruptedException e) {
+              //The call is made early rather than leaving the keys with nobody to make it
+              interrupted = true;
+            }
+          }
+
+          //Nobody filled the batch in the meantime, so the leader makes the call
+          if(generation == leaderGeneration)
+            batch = takePending();
+        }
+
+        if(interrupted)
+          Thread.currentThread().interrupt();
+      }
+
+      if(batch != null)
+        run(batch);
+
+      return load;
+    }
+    finally {
+      //A leader that throws before taking the batch takes it now, so the calls waiting on it are not left hanging
+      if(batch == null && leaderGeneration >= 0) {
+        synchronized(this) {
+          if(generation == leaderGeneration)
+            batch = takePending();
+        }
+      }
+
+      if(batch != null)
+        failUnfinished(batch);
+    }
+  }
+
+  @NotNull
+  private ArrayList<Load> takePending() {
+    ArrayList<Load> batch = pending;
+    pending = new ArrayList<>();
+    generation++;
+    notifyAll();
+
+    return batch;
+  }
+
+  private void run(@NotNull List<Load> batch) {
+    int maxBatchSize = this.maxBatchSize;
+
+    for(int from = 0; from < batch.size(); from += maxBatchSize)
+      call(batch.subList(from, Math.min(batch.size(), from + maxBatchSize)));
+  }
+
+  private void call(@NotNull List<Load> loads) {
+    LinkedHashMap<Object, List<Load>> loadsByKey = new LinkedHashMap<>();
+    for(Load load : loads)
+      loadsByKey.computeIfAbsent(load.key, key -> new ArrayList<>(1)).add(load);
+
+    List<Object> keys = new ArrayList<>(loadsByKey.keySet());
+
+    try {
+      Object results = bulkMethod.invoke(methodHandler, keys);
+
+      if(mapResult) {
+        Map<?, ?> resultMap = results == null ? Map.of() : (Map<?, ?>) results;
+        loadsByKey.forEach((key, keyLoads) -> complete(keyLoads, resultMap.get(key)));
+      }
+      else {
+        List<?> resultList = (List<?>) results;
+        if(resultList == null || resultList.size() != keys.size())
+          throw new InvocationTargetException(new IllegalStateException(bulkMethod.getName() + " returned a different number of results than keys."));
+
+        for(int i = 0; i < keys.size(); i++)
+          complete(loadsByKey.get(keys.get(i)), resultList.get(i));
+      }
+    }
+    catch(InvocationTargetException e) {
+      fail(loads, e.getCause());
+    }
+    catch(Exception e) {
+      fail(loads, e);
+    }
+  }
+
+  private static void complete(@NotNull List<Load> loads, @Nullable Object result) {
+    for(Load load : loads)
+      load.result.complete(result);
+  }
+
+  private static void fail(@NotNull List<Load> loads, @NotNull Throwable cause) {
+    for(Load load : loads)
+      load.result.completeExceptionally(cause);
+  }
+
+  private static void failUnfinished(@NotNull List<Load> loads) {
+    for(Load load : loads) {
+      if(!load.result.isDone())
+        load.result.completeExceptionally(new IllegalStateException("The bulk call for the key was not made."));
+    }
+  }
+
+  /**
+   * Finds the bulk counterpart named by a method, a method of the same interface taking a List of keys.
+   */
+  @NotNull
+  static Method findBulkMethod(@NotNull Method method, @NotNull String bulkMethodName) throws JsonRPCRuntimeException {
+    try {
+      return method.getDeclaringClass().getMethod(bulkMethodName, List.class);
+    }
+    catch(NoSuchMethodException e) {
+      throw new JsonRPCRuntimeException("No method " + bulkMethodName + "(List) for the bulk method of " + method.getName() + ".", e);
+    }
+  }
+
+  /**
+   * The key of a call and the result the bulk call gives it.
+   */
+  static final class Load {
+    private final JsonRPCBulkLoader loader;
+    private final Object key;
+    private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+    private Load(@NotNull JsonRPCBulkLoader loader, @Nullable Object key) {
+      this.loader = loader;
+      this.key = key;
+    }
+
+    /**
+     * Gets the result once the bulk call has been made.
+     *
+     * @return The result
+     * @throws InvocationTargetException An InvocationTargetException wrapping what the bulk call threw
+     */
+    @Nullable
+    Object getResult() throws InvocationTargetException {
+      try {
+        return result.join();
+      }
+      catch(CompletionException e) {
+        throw new InvocationTargetException(e.getCause());
+      }
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.xjava.gsonrpc;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.exception.JsonRPCErrorException;
+import org.xjava.gsonrpc.message.JsonRPCRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The request a thread is currently handling, and the deadline it is being handled against.
+ *
+ * <p>A JsonRPCRequestHandler makes the context current for the duration of every call, so a method can find it with
+ * current(). Cancellation is cooperative: the handler checks the deadline before binding the params and before
+ * invoking the method, but a method that runs for long should check isCancelled() itself, or call checkCancelled() and
+ * let the exception become the error response. A JsonRPCServiceProxy called from inside a method passes on whatever
+ * is left of the time budget.
+ *
+ * @version 1.0
+ */
+public final class JsonRPCContext {
+  public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+  private static final ThreadLocal<JsonRPCContext> current = new ThreadLocal<>();
+
+  private final JsonRPCRequest request;
+  private final long deadline;
+  private final String clientKey;
+  private volatile boolean cancelled;
+
+  /**
+   * @param request The request being handled
+   * @param deadline The System.nanoTime() deadline, or NO_DEADLINE
+   */
+  public JsonRPCContext(@NotNull JsonRPCRequest request, long deadline) {
+    this(request, deadline, null);
+  }
+
+  /**
+   * @param request The request being handled
+   * @param deadline The System.nanoTime() deadline, or NO_DEADLINE
+   * @param clientKey The key the transport identifies the client by, or null
+   */
+  public JsonRPCContext(@NotNull JsonRPCRequest request, long deadline, @Nullable String clientKey) {
+    this.request = request;
+    this.deadline = deadline;
+    this.clientKey = clientKey;
+  }
+
+  /**
+   * Gets the context of the request the calling thread is handling.
+   *
+   * @return The JsonRPCContext, or null outside of a call
+   */
+  @Nullable
+  public static JsonRPCContext current() {
+    return current.get();
+  }
+
+  /**
+   * Makes a context current, returning the one it replaces so calls can nest.
+   */
+  @Nullable
+  static JsonRPCContext enter(@NotNull JsonRPCContext context) {
+    JsonRPCContext previous = current.get();
+    current.set(context);
+    return previous;
+  }
+
+  static void exit(@Nullable JsonRPCContext previous) {
+    if(previous == null)
+      current.remove();
+    else
+      current.set(previous);
+  }
+
+  /**
+   * Picks the earlier of two deadlines, comparing them the way System.nanoTime() values have to be compared.
+   */
+  static long earliest(long deadline, long otherDeadline) {
+    if(deadline == NO_DEADLINE)
+      return otherDeadline;
+    if(otherDeadline == NO_DEADLINE)
+      return deadline;
+
+    return deadline - otherDeadline <= 0 ? deadline : otherDeadline;
+  }
+
+  @NotNull
+  public JsonRPCRequest getRequest() {
+    return request;
+  }
+
+  /**
+   * Gets the key the transport identifies the client by, which per client rate limits are kept under.
+   *
+   * @return The client key, or null if the transport does not identify clients
+   */
+  @Nullable
+  public String getClientKey() {
+    return clientKey;
+  }
+
+  public long getDeadline() {
+    return deadline;
+  }
+
+  public boolean hasDeadline() {
+    return deadline != NO_DEADLINE;
+  }
+
+  /**
+   * Gets the time left before the deadline.
+   *
+   * @return The remaining nanoseconds, 0 once the deadline has passed, or Long.MAX_VALUE without a deadline
+   */
+  public long getRemainingNanos() {
+    if(deadline == NO_DEADLINE)
+      return Long.MAX_VALUE;
+
+    return Math.max(0, deadline - System.nanoTime());
+  }
+
+  /**
+   * Gets the time left before the deadline, rounded up to a whole millisecond so a budget that has not run out is
+   * never passed on as 0.
+   *
+   * @return The remaining milliseconds, 0 once the deadline has passed, or Long.MAX_VALUE without a deadline
+   */
+  public long getRemainingMillis() {
+    long remaining = getRemainingNanos();
+    if(remaining == Long.MAX_VALUE)
+      return Long.MAX_VALUE;
+
+    return (remaining + TimeUnit.MILLISECONDS.toNanos(1) - 1) / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  public boolean isExpired() {
+    return deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0;
+  }
+
+  /**
+   * Cancels the call. Used when the caller has already been answered, so any further work is wasted.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled || isExpired();
+  }
+
+  /**
+   * @throws JsonRPCErrorException A JsonRPCErrorException with JsonRPCError.DEADLINE_EXCEEDED will be thrown if the
+   *                               call was cancelled or its deadline has passed
+   */
+  public void checkCancelled() throws JsonRPCErrorException {
+    if(isCancelled())
+      throw new JsonRPCErrorException(JsonRPCError.DEADLINE_EXCEEDED);
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+/**
+ * Serializes the elements of a streamed result the way Gson serializes the elements of a List: by their runtime
+ * class, through the adapter of the declared element type when that is the adapter Gson would have picked anyway.
+ *
+ * @version 1.0
+ */
+final class JsonRPCElementAdapter extends TypeAdapter<Object> {
+  private final Gson gson;
+  private final TypeAdapter<Object> declaredAdapter;
+  private final Class<?> declaredClass;
+
+  /**
+   * @param declaredAdapter The TypeAdapter of the declared element type, or null to always go by the runtime class
+   * @param declaredClass The raw declared element type, or null along with the adapter
+   */
+  JsonRPCElementAdapter(@NotNull Gson gson, @Nullable TypeAdapter<Object> declaredAdapter, @Nullable Class<?> declaredClass) {
+    this.gson = gson;
+    this.declaredAdapter = declaredAdapter;
+    this.declaredClass = declaredClass;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void write(@NotNull JsonWriter out, @Nullable Object element) throws IOException {
+    if(element == null) {
+      out.nullValue();
+      return;
+    }
+
+    Class<?> runtimeClass = element.getClass();
+    if(declaredAdapter != null && (runtimeClass == declaredClass || (declaredClass.isInterface() && declaredClass.isAssignableFrom(runtimeClass))))
+      declaredAdapter.write(out, element);
+    else
+      ((TypeAdapter<Object>) gson.getAdapter(runtimeClass)).write(out, element);
+  }
+
+  @Override
+  public Object read(@NotNull JsonReader in) throws IOException {
+    return declaredAdapter == null ? gson.getAdapter(Object.class).read(in) : declaredAdapter.read(in);
+  }
+}
@@ -24,7 +24,7 @@
 
 package org.xjava.gsonrpc;
 
-import com.sun.istack.internal.NotNull;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * @version 1.0
@@ -38,6 +38,10 @@ public class JsonRPCError {
   public static final JsonRPCError METHOD_NOT_FOUND = new JsonRPCError(-32601, "Method not found");
   public static final JsonRPCError INVALID_PARAMS = new JsonRPCError(-32602, "Invalid params");
   public static final JsonRPCError INTERNAL_ERROR = new JsonRPCError(-32603, "Internal error");
+  public static final JsonRPCError SERVER_BUSY = new JsonRPCError(-32000, "Server busy");
+  public static final JsonRPCError DEADLINE_EXCEEDED = new JsonRPCError(-32001, "Deadline exceeded");
+  public static final JsonRPCError RATE_LIMITED = new JsonRPCError(-32002, "Rate limit exceeded");
+  public static final JsonRPCError REQUEST_CANCELLED = new JsonRPCError(-32003, "Request cancelled");
 
   private final int code;
   private final String message;
@@ -26,15 +26,21 @@ package org.xjava.gsonrpc;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
-import com.sun.istack.internal.NotNull;
-import com.sun.istack.internal.Nullable;
+import com.google.gson.TypeAdapter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.xjava.gsonrpc.message.JsonRPCErrorResponse;
+import org.xjava.gsonrpc.message.JsonRPCRawResponse;
 import org.xjava.gsonrpc.message.JsonRPCRequest;
 import org.xjava.gsonrpc.message.JsonRPCResponse;
+import org.xjava.gsonrpc.message.JsonRPCStreamResponse;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.stream.BaseStream;
 
 /**
  * @version 1.0
@@ -43,9 +49,11 @@ import java.util.List;
 public class JsonRPCMessageFactory {
 
   private final Gson gson;
+  private final TypeAdapter<Object> runtimeElementAdapter;
 
   public JsonRPCMessageFactory(@NotNull Gson gson) {
     this.gson = gson;
+    runtimeElementAdapter = new JsonRPCElementAdapter(gson, null, null);
   }
 
   @NotNull
@@ -70,10 +78,69 @@ public class JsonRPCMessageFactory {
 
   @NotNull
   public JsonRPCResponse newResponse(@Nullable String id, @Nullable Object response) {
+    if(response instanceof RawJson)
+      return new JsonRPCRawResponse(GsonRPC.VERSION, id, (RawJson) response);
+    if(isStream(response))
+      return newStreamResponse(id, response, null);
+
     JsonElement responseJson = gson.toJsonTree(response);
     return new JsonRPCResponse(GsonRPC.VERSION, id, responseJson);
   }
 
+  /**
+   * Creates a response, serializing the result with a TypeAdapter that was already looked up.
+   *
+   * @param id The id of the request
+   * @param response The result
+   * @param responseAdapter The TypeAdapter of the result, or null to look one up by its runtime class
+   * @return The JsonRPCResponse
+   */
+  @NotNull
+  public <T> JsonRPCResponse newResponse(@Nullable String id, @Nullable T response, @Nullable TypeAdapter<? super T> responseAdapter) {
+    if(responseAdapter == null || response == null || response instanceof RawJson || isStream(response))
+      return newResponse(id, response);
+
+    return new JsonRPCResponse(GsonRPC.VERSION, id, responseAdapter.toJsonTree(response));
+  }
+
+  /**
+   * Creates a response whose result array is written element by element as the elements are produced.
+   *
+   * @param id The id of the request
+   * @param elements An Iterator, a Stream or a Flow.Publisher of the elements
+   * @param elementAdapter The TypeAdapter of the elements, or null to serialize each by its runtime class
+   * @return The JsonRPCStreamResponse
+   * @throws IllegalArgumentException An IllegalArgumentException will be thrown if elements is not a stream
+   */
+  @NotNull
+  @SuppressWarnings("unchecked")
+  public JsonRPCStreamResponse newStreamResponse(@Nullable String id, @NotNull Object elements, @Nullable TypeAdapter<Object> elementAdapter) {
+    TypeAdapter<Object> adapter = elementAdapter == null ? runtimeElementAdapter : elementAdapter;
+
+    if(elements instanceof Iterator)
+      return new JsonRPCStreamResponse(GsonRPC.VERSION, id, (Iterator<?>) elements, adapter, elements instanceof AutoCloseable ? (AutoCloseable) elements : null);
+    if(elements instanceof BaseStream) {
+      BaseStream<?, ?> stream = (BaseStream<?, ?>) elements;
+      return new JsonRPCStreamResponse(GsonRPC.VERSION, id, stream.iterator(), adapter, stream);
+    }
+    if(elements instanceof Flow.Publisher) {
+      JsonRPCPublisherIterator<Object> iterator = new JsonRPCPublisherIterator<>((Flow.Publisher<Object>) elements);
+      return new JsonRPCStreamResponse(GsonRPC.VERSION, id, iterator, adapter, iterator);
+    }
+
+    throw new IllegalArgumentException("Not an Iterator, Stream or Flow.Publisher: " + elements.getClass().getName());
+  }
+
+  /**
+   * Tells whether a result is streamed: an Iterator, a Stream or a Flow.Publisher.
+   *
+   * @param result The result
+   * @return True if the result is streamed
+   */
+  public static boolean isStream(@Nullable Object result) {
+    return result instanceof Iterator || result instanceof BaseStream || result instanceof Flow.Publisher;
+  }
+
   @NotNull
   public JsonRPCErrorResponse newErrorResponse(@Nullable String id, @NotNull JsonRPCError error) {
     return newErrorResponse(id, error, null);
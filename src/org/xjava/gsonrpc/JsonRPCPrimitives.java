@@ -0,0 +1,174 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Calls methods whose parameters and result are all int, long, double or boolean without boxing them. Such a method
+ * gets a MethodHandle that takes its arguments as an array of long slots and returns its result as a long, which is
+ * called with invokeExact; an int, long or boolean is kept in a slot as its value, a double as its bits.
+ *
+ * <p>Only methods whose primitive types Gson binds and writes with its own adapters get a handle, so that the slots
+ * hold exactly what those adapters would have produced.</p>
+ *
+ * @version 1.0
+ */
+final class JsonRPCPrimitives {
+  private static final Gson DEFAULT_GSON = new Gson();
+  private static final MethodHandle SLOT_GETTER = MethodHandles.arrayElementGetter(long[].class);
+  private static final MethodHandle BITS_TO_DOUBLE;
+  private static final MethodHandle DOUBLE_TO_BITS;
+
+  static {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      BITS_TO_DOUBLE = lookup.findStatic(Double.class, "longBitsToDouble", MethodType.methodType(double.class, long.class));
+      DOUBLE_TO_BITS = lookup.findStatic(Double.class, "doubleToRawLongBits", MethodType.methodType(long.class, double.class));
+    }
+    catch(ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private JsonRPCPrimitives() {
+  }
+
+  /**
+   * Creates the (long[])long handle of a method, or returns null if the method has parameters or a result that are
+   * not primitives Gson handles with its own adapters, or has neither parameters nor a result.
+   */
+  @Nullable
+  static MethodHandle newHandle(@NotNull Gson gson, @NotNull Object methodHandler, @NotNull Method method) {
+    Class<?>[] paramTypes = method.getParameterTypes();
+    Class<?> returnType = method.getReturnType();
+
+    if(paramTypes.length == 0 && returnType == Void.TYPE)
+      return null;
+    if(returnType != Void.TYPE && !isSupported(gson, returnType))
+      return null;
+    for(Class<?> paramType : paramTypes) {
+      if(!isSupported(gson, paramType))
+        return null;
+    }
+
+    try {
+      MethodHandle handle = MethodHandles.lookup().unreflect(method);
+      if(!Modifier.isStatic(method.getModifiers()))
+        handle = handle.bindTo(methodHandler);
+
+      MethodHandle[] slotReaders = new MethodHandle[paramTypes.length];
+      for(int i = 0; i < paramTypes.length; i++)
+        slotReaders[i] = slotReader(paramTypes[i], i);
+
+      //Every parameter reads its own slot of the one array
+      handle = MethodHandles.filterArguments(handle, 0, slotReaders);
+      handle = MethodHandles.permuteArguments(handle, MethodType.methodType(returnType, long[].class), new int[paramTypes.length]);
+
+      if(returnType == Void.TYPE)
+        handle = MethodHandles.filterReturnValue(handle, MethodHandles.constant(long.class, 0L));
+      else if(returnType == Double.TYPE)
+        handle = MethodHandles.filterReturnValue(handle, DOUBLE_TO_BITS);
+
+      return MethodHandles.explicitCastArguments(handle, MethodType.methodType(long.class, long[].class));
+    }
+    catch(IllegalAccessException | RuntimeException e) {
+      //Left to Method.invoke
+      return null;
+    }
+  }
+
+  /**
+   * Reads a param into a slot the way Gson's adapter for its type would read it. The caller checks the param is not
+   * null, which Gson would bind as a null the method can not take.
+   */
+  static long readSlot(@NotNull JsonReader in, @NotNull Class<?> type) throws IOException {
+    if(type == Integer.TYPE)
+      return in.nextInt();
+    if(type == Long.TYPE)
+      return in.nextLong();
+    if(type == Double.TYPE)
+      return Double.doubleToRawLongBits(in.nextDouble());
+    if(in.peek() == JsonToken.STRING)
+      return Boolean.parseBoolean(in.nextString()) ? 1 : 0;
+
+    return in.nextBoolean() ? 1 : 0;
+  }
+
+  /**
+   * Boxes slots into params, for calls that have to go through interceptors.
+   */
+  @NotNull
+  static Object[] box(@NotNull long[] slots, @NotNull Class<?>[] types) {
+    Object[] params = new Object[slots.length];
+    for(int i = 0; i < slots.length; i++)
+      params[i] = box(slots[i], types[i]);
+    return params;
+  }
+
+  @Nullable
+  static Object box(long slot, @NotNull Class<?> type) {
+    if(type == Integer.TYPE)
+      return (int) slot;
+    if(type == Long.TYPE)
+      return slot;
+    if(type == Double.TYPE)
+      return Double.longBitsToDouble(slot);
+    if(type == Boolean.TYPE)
+      return slot != 0;
+
+    return null;
+  }
+
+  private static boolean isSupported(@NotNull Gson gson, @NotNull Class<?> type) {
+    if(type != Integer.TYPE && type != Long.TYPE && type != Double.TYPE && type != Boolean.TYPE)
+      return false;
+
+    //An adapter registered for the type, a long serialization policy or special floating point values all change
+    //the adapter Gson uses
+    return gson.getAdapter(type).getClass() == DEFAULT_GSON.getAdapter(type).getClass();
+  }
+
+  @NotNull
+  private static MethodHandle slotReader(@NotNull Class<?> type, int index) {
+    MethodHandle slot = MethodHandles.insertArguments(SLOT_GETTER, 1, index);
+
+    if(type == Double.TYPE)
+      return MethodHandles.filterReturnValue(slot, BITS_TO_DOUBLE);
+
+    return MethodHandles.explicitCastArguments(slot, MethodType.methodType(type, long[].class));
+  }
+}
@@ -25,12 +25,18 @@
 package org.xjava.gsonrpc;
 
 import com.google.gson.Gson;
-import com.sun.istack.internal.NotNull;
-import com.sun.istack.internal.Nullable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.interceptor.JsonRPCClientInterceptor;
+import org.xjava.gsonrpc.proxy.JsonRPCBinaryResponseGetter;
 import org.xjava.gsonrpc.proxy.JsonRPCResponseGetter;
 import org.xjava.gsonrpc.proxy.JsonRPCServiceProxy;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormat;
 
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * @version 1.0
@@ -39,17 +45,71 @@ import java.lang.reflect.Proxy;
 public class JsonRPCProxyFactory {
 
   private GsonRPC gsonRPC;
+  private final ArrayList<JsonRPCClientInterceptor> interceptors = new ArrayList<>();
+  private Long timeout;
 
   public JsonRPCProxyFactory(@NotNull GsonRPC gsonRPC) {
     this.gsonRPC = gsonRPC;
   }
 
+  /**
+   * Adds an interceptor around every call made through the service proxies created afterwards. Interceptors run in
+   * the order they were added, the first one outermost.
+   *
+   * @param interceptor The JsonRPCClientInterceptor
+   */
+  public void addInterceptor(@NotNull JsonRPCClientInterceptor interceptor) {
+    interceptors.add(interceptor);
+  }
+
+  public void removeInterceptor(@NotNull JsonRPCClientInterceptor interceptor) {
+    interceptors.remove(interceptor);
+  }
+
+  @NotNull
+  public List<JsonRPCClientInterceptor> getInterceptors() {
+    return Collections.unmodifiableList(interceptors);
+  }
+
+  @Nullable
+  public Long getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * Sets the time budget sent with every request made through the service proxies created afterwards.
+   *
+   * @param timeout The time budget in milliseconds, or null for none
+   * @see JsonRPCServiceProxy#setTimeout(Long)
+   */
+  public void setTimeout(@Nullable Long timeout) {
+    this.timeout = timeout;
+  }
+
   public <T> T newServiceProxy(@NotNull Class<T> serviceInterface, @NotNull JsonRPCResponseGetter responseGetter) {
     return newServiceProxy(serviceInterface, null, responseGetter);
   }
 
   public <T> T newServiceProxy(@NotNull Class<T> serviceInterface, @Nullable String namespace, @NotNull JsonRPCResponseGetter responseGetter) {
     JsonRPCServiceProxy serviceProxy = new JsonRPCServiceProxy(gsonRPC, serviceInterface, namespace, responseGetter);
+    return newProxyInstance(serviceInterface, serviceProxy);
+  }
+
+  public <T> T newServiceProxy(@NotNull Class<T> serviceInterface, @NotNull JsonRPCWireFormat wireFormat, @NotNull JsonRPCBinaryResponseGetter responseGetter) {
+    return newServiceProxy(serviceInterface, null, wireFormat, responseGetter);
+  }
+
+  public <T> T newServiceProxy(@NotNull Class<T> serviceInterface, @Nullable String namespace, @NotNull JsonRPCWireFormat wireFormat, @NotNull JsonRPCBinaryResponseGetter responseGetter) {
+    JsonRPCServiceProxy serviceProxy = new JsonRPCServiceProxy(gsonRPC, serviceInterface, namespace, wireFormat, responseGetter);
+    return newProxyInstance(serviceInterface, serviceProxy);
+  }
+
+  private <T> T newProxyInstance(@NotNull Class<T> serviceInterface, @NotNull JsonRPCServiceProxy serviceProxy) {
+    if(!interceptors.isEmpty())
+      serviceProxy.setInterceptors(interceptors);
+
+    serviceProxy.setTimeout(timeout);
+
     return (T) Proxy.newProxyInstance(serviceInterface.getClassLoader(), new Class[] { serviceInterface }, serviceProxy);
   }
 }
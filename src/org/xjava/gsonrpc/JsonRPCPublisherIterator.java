@@ -0,0 +1,142 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc;
+
+import org.jetbrains.annotations.NotNull;
+import org.xjava.gsonrpc.exception.JsonRPCRuntimeException;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+
+/**
+ * Subscribes to a Flow.Publisher and hands its items out as an Iterator, so that a published result is written the
+ * same way as an iterated one. At most {@link #WINDOW} items are requested ahead of the reader, which is what
+ * carries the backpressure of the transport back to the publisher: while the writer is blocked on a slow connection
+ * nothing is read, so nothing more is requested. Closing cancels the subscription.
+ *
+ * @version 1.0
+ */
+final class JsonRPCPublisherIterator<T> implements Iterator<T>, Flow.Subscriber<T>, AutoCloseable {
+  static final int WINDOW = 64;
+
+  private static final Object COMPLETE = new Object();
+
+  private final BlockingQueue<Object> items = new ArrayBlockingQueue<>(WINDOW + 1);
+  private volatile Flow.Subscription subscription;
+  private volatile Throwable error;
+  private Object next;
+  private int consumed;
+  private boolean done;
+
+  JsonRPCPublisherIterator(@NotNull Flow.Publisher<T> publisher) {
+    publisher.subscribe(this);
+  }
+
+  @Override
+  public void onSubscribe(@NotNull Flow.Subscription subscription) {
+    if(this.subscription != null) {
+      subscription.cancel();
+      return;
+    }
+
+    this.subscription = subscription;
+    subscription.request(WINDOW);
+  }
+
+  @Override
+  public void onNext(T item) {
+    //Never more than requested, so there is always room
+    items.offer(item);
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    error = throwable;
+    items.offer(COMPLETE);
+  }
+
+  @Override
+  public void onComplete() {
+    items.offer(COMPLETE);
+  }
+
+  @Override
+  public boolean hasNext() {
+    if(next != null)
+      return true;
+    if(done)
+      return false;
+
+    try {
+      next = items.take();
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new JsonRPCRuntimeException("Interrupted while waiting for the publisher.", e);
+    }
+
+    if(next == COMPLETE) {
+      next = null;
+      done = true;
+
+      if(error != null)
+        throw new JsonRPCRuntimeException("The publisher failed.", error);
+
+      return false;
+    }
+
+    //Demand is topped up in halves of the window rather than one item at a time
+    if(++consumed == WINDOW / 2) {
+      subscription.request(consumed);
+      consumed = 0;
+    }
+
+    return true;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T next() {
+    if(!hasNext())
+      throw new NoSuchElementException();
+
+    T item = (T) next;
+    next = null;
+    return item;
+  }
+
+  @Override
+  public void close() {
+    done = true;
+
+    Flow.Subscription subscription = this.subscription;
+    if(subscription != null)
+      subscription.cancel();
+  }
+}
@@ -28,18 +28,39 @@ import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.sun.istack.internal.NotNull;
-import com.sun.istack.internal.Nullable;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.xjava.gsonrpc.annotation.RPCMethod;
+import org.xjava.gsonrpc.annotation.RPCPriority;
 import org.xjava.gsonrpc.annotation.RPCService;
+import org.xjava.gsonrpc.exception.JsonRPCErrorException;
 import org.xjava.gsonrpc.exception.JsonRPCRuntimeException;
+import org.xjava.gsonrpc.gson.JsonRPCTreeReader;
+import org.xjava.gsonrpc.interceptor.JsonRPCServerInterceptor;
+import org.xjava.gsonrpc.jfr.JsonRPCDispatchEvent;
+import org.xjava.gsonrpc.limit.JsonRPCAdaptiveLimiter;
+import org.xjava.gsonrpc.limit.JsonRPCBulkhead;
+import org.xjava.gsonrpc.limit.JsonRPCClientRateLimiter;
+import org.xjava.gsonrpc.limit.JsonRPCRateLimiter;
 import org.xjava.gsonrpc.message.*;
+import org.xjava.gsonrpc.metrics.JsonRPCMethodMetrics;
+import org.xjava.gsonrpc.metrics.JsonRPCMetrics;
+import org.xjava.gsonrpc.metrics.JsonRPCMetricsSnapshot;
+import org.xjava.gsonrpc.metrics.JsonRPCPhase;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * @version 1.0
@@ -47,9 +68,19 @@ import java.util.HashMap;
  */
 
 public class JsonRPCRequestHandler {
+  public static final String METRICS_METHOD = "rpc.metrics";
+
   private final Gson gson;
   private final JsonRPCMessageFactory messageFactory;
   private final HashMap <String, RPCMethodData> rpcMethods;
+  private final JsonRPCMetrics metrics = new JsonRPCMetrics();
+  private final ArrayList<JsonRPCServerInterceptor> interceptors = new ArrayList<>();
+  private final HashMap<String, JsonRPCBulkhead> namespaceBulkheads = new HashMap<>();
+  private volatile boolean metricsEnabled;
+  private volatile int phaseSamplingRate;
+  private volatile JsonRPCAdaptiveLimiter adaptiveLimiter;
+  private volatile boolean bufferReuseEnabled;
+  private volatile boolean bulkMethodsAdded;
 
   public JsonRPCRequestHandler(@NotNull Gson gson, @NotNull JsonRPCMessageFactory messageFactory) {
     this.gson = gson;
@@ -71,6 +102,9 @@ public class JsonRPCRequestHandler {
         namespace = serviceInstance.getClass().getSimpleName();
     }
 
+    if(serviceAnnotation != null && serviceAnnotation.maxConcurrency() > 0)
+      setNamespaceMaxConcurrency(namespace, serviceAnnotation.maxConcurrency());
+
     Method[] methods = serviceInterface.getMethods();
     for(Method method: methods) {
       if(method.isAnnotationPresent(RPCMethod.class))
@@ -112,120 +146,830 @@ public class JsonRPCRequestHandler {
       paramNames = new ArrayList<>(Arrays.asList(methodAnnotation.paramNames()));
     }
 
-    rpcMethods.put(rpcMethodName, new RPCMethodData(methodHandler, method, rpcMethodName, paramNames));
+    JsonRPCBulkLoader bulkLoader = null;
+    if(methodAnnotation != null && !methodAnnotation.bulk().isEmpty()) {
+      bulkLoader = new JsonRPCBulkLoader(methodHandler, method, JsonRPCBulkLoader.findBulkMethod(method, methodAnnotation.bulk()));
+      bulkLoader.setWindow(methodAnnotation.bulkWindowMicros(), methodAnnotation.bulkMaxSize());
+      bulkMethodsAdded = true;
+    }
+
+    RPCMethodData rpcMethodData = new RPCMethodData(gson, methodHandler, method, rpcMethodName, namespace, paramNames, metrics.getMethodMetrics(rpcMethodName), bulkLoader);
+    if(methodAnnotation != null) {
+      rpcMethodData.setPriority(methodAnnotation.priority());
+
+      if(methodAnnotation.maxConcurrency() > 0)
+        rpcMethodData.setBulkhead(new JsonRPCBulkhead(methodAnnotation.maxConcurrency()));
+    }
+
+    putMethod(rpcMethodData);
+  }
+
+  private void putMethod(@NotNull RPCMethodData rpcMethodData) {
+    if(!interceptors.isEmpty())
+      rpcMethodData.setInterceptors(interceptors);
+
+    rpcMethodData.setNamespaceBulkhead(namespaceBulkheads.get(rpcMethodData.getNamespace()));
+
+    rpcMethods.put(rpcMethodData.getMethodName(), rpcMethodData);
+  }
+
+  /**
+   * Adds an interceptor around the invocation of every method, including methods added later. Interceptors run in
+   * the order they were added, the first one outermost. The chain of each method is composed here rather than per
+   * call.
+   *
+   * @param interceptor The JsonRPCServerInterceptor
+   */
+  public void addInterceptor(@NotNull JsonRPCServerInterceptor interceptor) {
+    interceptors.add(interceptor);
+    rpcMethods.values().forEach(rpcMethodData -> rpcMethodData.setInterceptors(interceptors));
+  }
+
+  public void removeInterceptor(@NotNull JsonRPCServerInterceptor interceptor) {
+    interceptors.remove(interceptor);
+    rpcMethods.values().forEach(rpcMethodData -> rpcMethodData.setInterceptors(interceptors));
+  }
+
+  @NotNull
+  public List<JsonRPCServerInterceptor> getInterceptors() {
+    return Collections.unmodifiableList(interceptors);
+  }
+
+  /**
+   * Limits the number of calls to a method in flight at once, overriding the maxConcurrency of its RPCMethod
+   * annotation. Calls over the limit are answered with JsonRPCError.SERVER_BUSY before their params are parsed.
+   *
+   * @param methodName The full name of the method, including its namespace
+   * @param maxConcurrency The maximum number of calls in flight, or 0 to remove the limit
+   * @throws JsonRPCRuntimeException A JsonRPCRuntimeException will be thrown if no method has that name
+   */
+  public void setMaxConcurrency(@NotNull String methodName, int maxConcurrency) throws JsonRPCRuntimeException {
+    RPCMethodData rpcMethodData = rpcMethods.get(methodName);
+    if(rpcMethodData == null)
+      throw new JsonRPCRuntimeException("No method named " + methodName + " is defined.");
+
+    rpcMethodData.setBulkhead(updateBulkhead(rpcMethodData.getBulkhead(), maxConcurrency));
+  }
+
+  /**
+   * Limits the number of calls in flight at once across every method of a namespace, including methods added to it
+   * later, overriding the maxConcurrency of its RPCService annotation.
+   *
+   * @param namespace The namespace
+   * @param maxConcurrency The maximum number of calls in flight, or 0 to remove the limit
+   */
+  public void setNamespaceMaxConcurrency(@NotNull String namespace, int maxConcurrency) {
+    JsonRPCBulkhead bulkhead = updateBulkhead(namespaceBulkheads.get(namespace), maxConcurrency);
+
+    if(bulkhead == null)
+      namespaceBulkheads.remove(namespace);
+    else
+      namespaceBulkheads.put(namespace, bulkhead);
+
+    rpcMethods.values().stream()
+        .filter(rpcMethodData -> rpcMethodData.getNamespace().equals(namespace))
+        .forEach(rpcMethodData -> rpcMethodData.setNamespaceBulkhead(bulkhead));
+  }
+
+  /**
+   * Limits the rate of calls to a method from all clients together with a token bucket. Calls over the rate are
+   * answered with JsonRPCError.RATE_LIMITED before their params are parsed.
+   *
+   * @param methodName The full name of the method, including its namespace
+   * @param permitsPerSecond The sustained rate of calls allowed, or 0 to remove the limit
+   * @param burst The number of calls allowed at once after a quiet period
+   * @throws JsonRPCRuntimeException A JsonRPCRuntimeException will be thrown if no method has that name
+   */
+  public void setRateLimit(@NotNull String methodName, double permitsPerSecond, int burst) throws JsonRPCRuntimeException {
+    RPCMethodData rpcMethodData = rpcMethods.get(methodName);
+    if(rpcMethodData == null)
+      throw new JsonRPCRuntimeException("No method named " + methodName + " is defined.");
+
+    rpcMethodData.setRateLimiter(permitsPerSecond > 0 ? new JsonRPCRateLimiter(permitsPerSecond, burst) : null);
+  }
+
+  /**
+   * Limits the rate of calls to a method from each client with a token bucket per client. Clients are identified by
+   * the key their transport passes to GsonRPC.processRequests; calls without a key are only subject to the limit set
+   * with {@link #setRateLimit(String, double, int)}.
+   *
+   * @param methodName The full name of the method, including its namespace
+   * @param permitsPerSecond The sustained rate of calls allowed per client, or 0 to remove the limit
+   * @param burst The number of calls a client is allowed at once after a quiet period
+   * @throws JsonRPCRuntimeException A JsonRPCRuntimeException will be thrown if no method has that name
+   */
+  public void setClientRateLimit(@NotNull String methodName, double permitsPerSecond, int burst) throws JsonRPCRuntimeException {
+    RPCMethodData rpcMethodData = rpcMethods.get(methodName);
+    if(rpcMethodData == null)
+      throw new JsonRPCRuntimeException("No method named " + methodName + " is defined.");
+
+    rpcMethodData.setClientRateLimiter(permitsPerSecond > 0 ? new JsonRPCClientRateLimiter(permitsPerSecond, burst) : null);
+  }
+
+  /**
+   * Changes how calls to a method with a bulk counterpart are gathered, overriding the bulkWindowMicros and
+   * bulkMaxSize of its RPCMethod annotation. The first call waits up to the window for others to join it; a batch
+   * that reaches the maximum size is called at once. The calls of one batch of requests never wait for each other.
+   *
+   * @param methodName The full name of the method, including its namespace
+   * @param windowMicros The longest a call waits for others, in microseconds
+   * @param maxBatchSize The most calls made as one
+   * @throws JsonRPCRuntimeException A JsonRPCRuntimeException will be thrown if no method has that name or it has no
+   *                                 bulk counterpart
+   */
+  public void setBulkWindow(@NotNull String methodName, long windowMicros, int maxBatchSize) throws JsonRPCRuntimeException {
+    RPCMethodData rpcMethodData = rpcMethods.get(methodName);
+    if(rpcMethodData == null)
+      throw new JsonRPCRuntimeException("No method named " + methodName + " is defined.");
+    if(rpcMethodData.getBulkLoader() == null)
+      throw new JsonRPCRuntimeException(methodName + " has no bulk method.");
+
+    rpcMethodData.getBulkLoader().setWindow(windowMicros, maxBatchSize);
+  }
+
+  /**
+   * Changes the priority of a method, overriding the priority of its RPCMethod annotation.
+   *
+   * @param methodName The full name of the method, including its namespace
+   * @param priority The RPCPriority
+   * @throws JsonRPCRuntimeException A JsonRPCRuntimeException will be thrown if no method has that name
+   */
+  public void setPriority(@NotNull String methodName, @NotNull RPCPriority priority) throws JsonRPCRuntimeException {
+    RPCMethodData rpcMethodData = rpcMethods.get(methodName);
+    if(rpcMethodData == null)
+      throw new JsonRPCRuntimeException("No method named " + methodName + " is defined.");
+
+    rpcMethodData.setPriority(priority);
+  }
+
+  /**
+   * Gets the priority of a method. Requests for unknown methods are given normal priority, which is as good as any
+   * since they are answered without calling anything.
+   *
+   * @param methodName The full name of the method, including its namespace
+   * @return The RPCPriority
+   */
+  @NotNull
+  public RPCPriority getPriority(@Nullable String methodName) {
+    RPCMethodData rpcMethodData = methodName == null ? null : rpcMethods.get(methodName);
+    return rpcMethodData == null ? RPCPriority.NORMAL : rpcMethodData.getPriority();
+  }
+
+  @Nullable
+  public JsonRPCAdaptiveLimiter getAdaptiveLimiter() {
+    return adaptiveLimiter;
+  }
+
+  /**
+   * Sets a limiter on the number of calls in flight across every method, adjusted from the observed latency. Calls
+   * over the limit are answered with JsonRPCError.SERVER_BUSY before their params are parsed, low priority methods and
+   * notifications first. Pass null to remove the limit.
+   *
+   * @param adaptiveLimiter The JsonRPCAdaptiveLimiter or null
+   */
+  public void setAdaptiveLimiter(@Nullable JsonRPCAdaptiveLimiter adaptiveLimiter) {
+    this.adaptiveLimiter = adaptiveLimiter;
+  }
+
+  @Nullable
+  private static JsonRPCBulkhead updateBulkhead(@Nullable JsonRPCBulkhead bulkhead, int maxConcurrency) {
+    if(maxConcurrency <= 0)
+      return null;
+
+    //Keeping the existing bulkhead keeps the count of calls already in flight
+    if(bulkhead == null)
+      return new JsonRPCBulkhead(maxConcurrency);
+
+    bulkhead.setMaxConcurrency(maxConcurrency);
+    return bulkhead;
+  }
+
+  public boolean isMetricsEnabled() {
+    return metricsEnabled;
+  }
+
+  /**
+   * Turns the collection of per method call counts, error counts and latency histograms on or off. Collection is off
+   * by default; while it is off handleRequest does not even read the clock.
+   *
+   * @param metricsEnabled Whether metrics are collected
+   */
+  public void setMetricsEnabled(boolean metricsEnabled) {
+    this.metricsEnabled = metricsEnabled;
+  }
+
+  /**
+   * Exposes the metrics snapshot to clients as the reserved rpc.metrics method, which takes no params.
+   *
+   * @param metricsMethodEnabled Whether the rpc.metrics method is registered
+   */
+  public void setMetricsMethodEnabled(boolean metricsMethodEnabled) {
+    if(!metricsMethodEnabled)
+      rpcMethods.remove(METRICS_METHOD);
+    else if(!rpcMethods.containsKey(METRICS_METHOD)) {
+      try {
+        Method method = JsonRPCMetrics.class.getMethod("snapshot");
+        putMethod(new RPCMethodData(gson, metrics, method, METRICS_METHOD, "rpc", null, metrics.getMethodMetrics(METRICS_METHOD)));
+      }
+      catch(NoSuchMethodException e) {
+        throw new JsonRPCRuntimeException("Unable to register " + METRICS_METHOD + ".", e);
+      }
+    }
+  }
+
+  public boolean isBufferReuseEnabled() {
+    return bufferReuseEnabled;
+  }
+
+  /**
+   * Binds params into arrays reused by each thread instead of allocating one per call. Interceptors and methods must
+   * not keep the params array once the call returns.
+   *
+   * @param bufferReuseEnabled Whether params arrays are reused
+   * @see GsonRPC#setBufferReuseEnabled(boolean)
+   */
+  public void setBufferReuseEnabled(boolean bufferReuseEnabled) {
+    this.bufferReuseEnabled = bufferReuseEnabled;
+  }
+
+  public int getPhaseSamplingRate() {
+    return phaseSamplingRate;
+  }
+
+  /**
+   * Sets how often the time spent parsing, binding params, invoking and serializing the result is recorded per
+   * method. One in every phaseSamplingRate requests is timed, picked at random; 1 times every request and 0, the
+   * default, turns phase timing off. Unsampled requests pay for a single random number, so a rate of a few hundred
+   * keeps the cost negligible at high call rates.
+   *
+   * @param phaseSamplingRate The sampling rate
+   */
+  public void setPhaseSamplingRate(int phaseSamplingRate) {
+    if(phaseSamplingRate < 0)
+      throw new IllegalArgumentException("The phase sampling rate can not be negative.");
+
+    this.phaseSamplingRate = phaseSamplingRate;
+  }
+
+  @NotNull
+  public JsonRPCMetrics getMetrics() {
+    return metrics;
+  }
+
+  @NotNull
+  public JsonRPCMetricsSnapshot getMetricsSnapshot() {
+    return metrics.snapshot();
+  }
+
+  @NotNull
+  public Set<String> getMethodNames() {
+    return Collections.unmodifiableSet(new TreeSet<>(rpcMethods.keySet()));
+  }
+
+  @Nullable
+  RPCMethodData getMethodData(@NotNull String methodName) {
+    return rpcMethods.get(methodName);
+  }
+
+  /**
+   * Tells whether a message is a call to a method with a bulk counterpart, which is gathered with the other calls of
+   * its batch.
+   *
+   * @param message The message
+   * @return Whether the message is a call to a bulk method
+   */
+  boolean isBulkCall(@NotNull JsonRPCMessage message) {
+    if(!bulkMethodsAdded || !message.isRequest())
+      return false;
+
+    RPCMethodData rpcMethodData = rpcMethods.get(message.getAsRequest().getMethod());
+    return rpcMethodData != null && rpcMethodData.getBulkLoader() != null;
+  }
+
+  int countBulkCalls(@NotNull List<JsonRPCMessage> messages) {
+    if(!bulkMethodsAdded)
+      return 0;
+
+    int count = 0;
+    for(JsonRPCMessage message : messages) {
+      if(isBulkCall(message))
+        count++;
+    }
+
+    return count;
+  }
+
+  /**
+   * Handles the calls of a batch to methods with a bulk counterpart in two steps, so that none of them runs inside
+   * another. First each call is handled like any other up to the method, past the rate limits, the adaptive limiter,
+   * the bulkheads, its deadline and the interceptors, and only records its key; it gives its permits back once it
+   * has. Then one bulk call is made per method for the keys recorded, and the responses are completed.
+   *
+   * <p>The interceptors of these calls get a placeholder from next.invoke, which is replaced by the result when the
+   * response is completed.</p>
+   *
+   * @param requests The requests, in the order they are handled
+   * @param contexts The JsonRPCContext of each request
+   * @return The response to each request
+   */
+  @NotNull
+  List<JsonRPCMessage> handleBulkRequests(@NotNull List<JsonRPCRequest> requests, @NotNull List<JsonRPCContext> contexts) {
+    List<JsonRPCMessage> responses = new ArrayList<>(requests.size());
+    List<JsonRPCBulkLoader.Load> loads = new ArrayList<>(requests.size());
+
+    for(int i = 0; i < requests.size(); i++) {
+      JsonRPCRequest request = requests.get(i);
+      JsonRPCRequest previous = JsonRPCBulkLoader.deferLoad(request);
+      JsonRPCMessage response;
+
+      try {
+        response = handleRequest(request, contexts.get(i));
+      }
+      finally {
+        JsonRPCBulkLoader.resumeLoad(previous);
+      }
+
+      if(response instanceof DeferredResponse)
+        loads.add(((DeferredResponse) response).load);
+
+      responses.add(response);
+    }
+
+    if(!loads.isEmpty())
+      JsonRPCBulkLoader.loadAll(loads);
+
+    for(int i = 0; i < responses.size(); i++) {
+      if(responses.get(i) instanceof DeferredResponse)
+        responses.set(i, completeResponse((DeferredResponse) responses.get(i)));
+    }
+
+    return responses;
+  }
+
+  @NotNull
+  private JsonRPCMessage completeResponse(@NotNull DeferredResponse deferred) {
+    JsonRPCRequest request = deferred.request;
+    JsonRPCMessage response;
+
+    if(deferred.context.isCancelled())
+      response = messageFactory.newErrorResponse(request.getId(), JsonRPCError.DEADLINE_EXCEEDED);
+    else {
+      try {
+        response = newResponse(request.getId(), deferred.rpcMethodData, deferred.load.getResult());
+      }
+      catch(Exception e) {
+        response = messageFactory.newErrorResponse(request.getId(), JsonRPCError.INTERNAL_ERROR);
+      }
+    }
+
+    recordDispatch(request, deferred.rpcMethodData, response, deferred.event, deferred.measured, deferred.start);
+    return response;
   }
 
   @NotNull
   public JsonRPCMessage handleRequest(@NotNull JsonRPCRequest request) {
+    return handleRequest(request, new JsonRPCContext(request, request.getDeadline()));
+  }
+
+  /**
+   * Handles a request against the deadline of a context, which is current while the method runs. Requests whose
+   * deadline passes before their params are bound, or before the method is invoked, are answered with
+   * JsonRPCError.DEADLINE_EXCEEDED, as are failed calls that were cancelled.
+   *
+   * @param request The JsonRPCRequest
+   * @param context The JsonRPCContext of the request
+   * @return The response
+   */
+  @NotNull
+  public JsonRPCMessage handleRequest(@NotNull JsonRPCRequest request, @NotNull JsonRPCContext context) {
+    JsonRPCContext previous = JsonRPCContext.enter(context);
+    try {
+      return dispatchRequest(request, context);
+    }
+    finally {
+      JsonRPCContext.exit(previous);
+    }
+  }
+
+  @NotNull
+  private JsonRPCMessage dispatchRequest(@NotNull JsonRPCRequest request, @NotNull JsonRPCContext context) {
+    RPCMethodData rpcMethodData = rpcMethods.get(request.getMethod());
+
+    JsonRPCDispatchEvent event = new JsonRPCDispatchEvent();
+    event.begin();
+
+    boolean measured = metricsEnabled;
+    long start = measured ? System.nanoTime() : 0;
+    JsonRPCMessage response = handleRequest(request, rpcMethodData, context);
+
+    //A deferred call is recorded once the bulk call has given it its response
+    if(response instanceof DeferredResponse)
+      ((DeferredResponse) response).setDispatch(event, measured, start);
+    else
+      recordDispatch(request, rpcMethodData, response, event, measured, start);
+
+    return response;
+  }
+
+  private void recordDispatch(@NotNull JsonRPCRequest request, @Nullable RPCMethodData rpcMethodData, @NotNull JsonRPCMessage response, @NotNull JsonRPCDispatchEvent event, boolean measured, long start) {
+    if(measured) {
+      long latency = System.nanoTime() - start;
+
+      JsonRPCMethodMetrics methodMetrics = rpcMethodData == null ? metrics.getUnknownMethodMetrics() : rpcMethodData.getMetrics();
+      methodMetrics.record(latency, response.isErrorResponse() ? response.getAsErrorResponse().getError() : null);
+    }
+
+    if(event.shouldCommit()) {
+      event.method = request.getMethod();
+      event.id = request.getId();
+      event.outcome = response.isErrorResponse() ? "error" : "success";
+      event.errorCode = response.isErrorResponse() ? response.getAsErrorResponse().getError().getCode() : 0;
+      event.commit();
+    }
+  }
+
+  @NotNull
+  private JsonRPCMessage handleRequest(@NotNull JsonRPCRequest request, @Nullable RPCMethodData rpcMethodData, @NotNull JsonRPCContext context) {
     if(!GsonRPC.VERSION.equals(request.getVersion()))
       return messageFactory.newErrorResponse(request.getId(), JsonRPCError.UNSUPPORTED_VERSION);
 
-    RPCMethodData rpcMethodData = rpcMethods.get(request.getMethod());
     if(rpcMethodData == null)
       return messageFactory.newErrorResponse(request.getId(), JsonRPCError.METHOD_NOT_FOUND);
 
-    ArrayList <Object> params;
+    //The client's own bucket goes first, so a runaway client can not drain the tokens shared by everyone
+    JsonRPCClientRateLimiter clientRateLimiter = rpcMethodData.getClientRateLimiter();
+    JsonRPCRateLimiter rateLimiter = rpcMethodData.getRateLimiter();
+    if((clientRateLimiter != null && !clientRateLimiter.tryAcquire(context.getClientKey())) || (rateLimiter != null && !rateLimiter.tryAcquire())) {
+      rpcMethodData.getMetrics().recordRateLimited();
+      return messageFactory.newErrorResponse(request.getId(), JsonRPCError.RATE_LIMITED);
+    }
+
+    JsonRPCAdaptiveLimiter limiter = adaptiveLimiter;
+    if(limiter == null)
+      return callMethod(request, rpcMethodData, context);
+
+    if(!limiter.tryAcquire(limiter.getShare(rpcMethodData.getPriority(), request.isNotification())))
+      return messageFactory.newErrorResponse(request.getId(), JsonRPCError.SERVER_BUSY);
+
+    long start = System.nanoTime();
+    JsonRPCMessage response = null;
+
     try {
-      params = parseParams(request.getParamsJson(), rpcMethodData);
+      response = callMethod(request, rpcMethodData, context);
+      return response;
     }
-    catch(Exception e) {
-      return messageFactory.newErrorResponse(request.getId(), JsonRPCError.INVALID_PARAMS);
+    finally {
+      boolean rejected = response == null || (response.isErrorResponse() && response.getAsErrorResponse().getError() == JsonRPCError.SERVER_BUSY);
+      //A deferred call has not been made yet, so its latency says nothing about the load
+      limiter.release(System.nanoTime() - start, !rejected && !(response instanceof DeferredResponse));
     }
+  }
+
+  @NotNull
+  private JsonRPCMessage callMethod(@NotNull JsonRPCRequest request, @NotNull RPCMethodData rpcMethodData, @NotNull JsonRPCContext context) {
+    JsonRPCBulkhead bulkhead = rpcMethodData.getBulkhead();
+    JsonRPCBulkhead namespaceBulkhead = rpcMethodData.getNamespaceBulkhead();
 
-    if(params.size() != rpcMethodData.getMethod().getParameterCount())
-      return messageFactory.newErrorResponse(request.getId(), JsonRPCError.INVALID_PARAMS);
+    if(bulkhead == null && namespaceBulkhead == null)
+      return invokeMethod(request, rpcMethodData, context);
+
+    //Rejected before the params are parsed, so an overloaded method costs its callers as little as possible
+    if(bulkhead != null && !bulkhead.tryAcquire())
+      return messageFactory.newErrorResponse(request.getId(), JsonRPCError.SERVER_BUSY);
+
+    if(namespaceBulkhead != null && !namespaceBulkhead.tryAcquire()) {
+      if(bulkhead != null)
+        bulkhead.release();
+
+      return messageFactory.newErrorResponse(request.getId(), JsonRPCError.SERVER_BUSY);
+    }
+
+    try {
+      return invokeMethod(request, rpcMethodData, context);
+    }
+    finally {
+      if(bulkhead != null)
+        bulkhead.release();
+      if(namespaceBulkhead != null)
+        namespaceBulkhead.release();
+    }
+  }
+
+  @NotNull
+  private JsonRPCMessage invokeMethod(@NotNull JsonRPCRequest request, @NotNull RPCMethodData rpcMethodData, @NotNull JsonRPCContext context) {
+    if(context.isCancelled())
+      return messageFactory.newErrorResponse(request.getId(), JsonRPCError.DEADLINE_EXCEEDED);
+
+    boolean sampled = samplePhases();
+    long bindStart = sampled ? System.nanoTime() : 0;
+
+    //Params read straight from the stream were bound before the request got here
+    if(request instanceof JsonRPCBoundRequest) {
+      JsonRPCBoundRequest boundRequest = (JsonRPCBoundRequest) request;
+
+      //They were bound to a method that has since been replaced
+      if(!boundRequest.getBoundMethod().equals(rpcMethodData.getMethod()))
+        return messageFactory.newErrorResponse(request.getId(), JsonRPCError.INVALID_PARAMS);
+
+      long[] slots = boundRequest.getSlots();
+      if(slots == null)
+        return invoke(request, rpcMethodData, context, boundRequest.getParams(), sampled, bindStart);
+      if(rpcMethodData.isIntercepted())
+        return invoke(request, rpcMethodData, context, JsonRPCPrimitives.box(slots, rpcMethodData.getMethod().getParameterTypes()), sampled, bindStart);
+
+      return invokePrimitive(request, rpcMethodData, context, slots, sampled, bindStart);
+    }
+
+    JsonRPCBuffers buffers = bufferReuseEnabled ? JsonRPCBuffers.get() : null;
+    int paramCount = rpcMethodData.getMethod().getParameterCount();
+
+    //Interceptors take params as objects, so intercepted methods are always called with boxed params
+    if(rpcMethodData.getPrimitiveHandle() != null && !rpcMethodData.isIntercepted()) {
+      long[] slots = buffers == null ? new long[paramCount] : buffers.takeSlots(paramCount);
+
+      try {
+        boolean bound;
+        try {
+          bindParams(request, rpcMethodData, buffers, null, slots);
+          bound = true;
+        }
+        catch(NullSlotException e) {
+          //Gson binds a null as an object, for the call to fail on as it always has
+          bound = false;
+        }
+        catch(Exception e) {
+          return messageFactory.newErrorResponse(request.getId(), JsonRPCError.INVALID_PARAMS);
+        }
+
+        if(bound) {
+          if(context.isCancelled())
+            return messageFactory.newErrorResponse(request.getId(), JsonRPCError.DEADLINE_EXCEEDED);
+
+          return invokePrimitive(request, rpcMethodData, context, slots, sampled, bindStart);
+        }
+      }
+      finally {
+        if(buffers != null)
+          buffers.releaseSlots(slots);
+      }
+    }
+
+    Object[] params = buffers == null ? new Object[paramCount] : buffers.takeParams(paramCount);
 
     try {
-      Object result = rpcMethodData.getMethod().invoke(rpcMethodData.getMethodHandler(), params.toArray());
-      return messageFactory.newResponse(request.getId(), gson.toJsonTree(result));
+      try {
+        bindParams(request, rpcMethodData, buffers, params, null);
+      }
+      catch(Exception e) {
+        return messageFactory.newErrorResponse(request.getId(), JsonRPCError.INVALID_PARAMS);
+      }
+
+      //Binding can take long enough for a large request to run out of time
+      if(context.isCancelled())
+        return messageFactory.newErrorResponse(request.getId(), JsonRPCError.DEADLINE_EXCEEDED);
+
+      return invoke(request, rpcMethodData, context, params, sampled, bindStart);
+    }
+    finally {
+      if(buffers != null)
+        buffers.releaseParams(params);
+    }
+  }
+
+  /**
+   * Binds the params of a request into either params or slots, through the thread's reader if it is free.
+   */
+  private void bindParams(@NotNull JsonRPCRequest request, @NotNull RPCMethodData rpcMethodData, @Nullable JsonRPCBuffers buffers, @Nullable Object[] params, @Nullable long[] slots) throws Exception {
+    JsonRPCTreeReader reader = buffers == null ? null : buffers.takeTreeReader();
+    boolean borrowed = reader != null;
+
+    try {
+      if(reader == null && rpcMethodData.getMethod().getParameterCount() > 0) {
+        //One reader for every param of the call, where Gson.fromJson would make one per param
+        reader = new JsonRPCTreeReader();
+        reader.setLenient(true);
+      }
+
+      parseParams(request.getParamsJson(), rpcMethodData, params, slots, reader);
+    }
+    finally {
+      if(borrowed)
+        buffers.releaseTreeReader();
+    }
+  }
+
+  @NotNull
+  private JsonRPCMessage invokePrimitive(@NotNull JsonRPCRequest request, @NotNull RPCMethodData rpcMethodData, @NotNull JsonRPCContext context, @NotNull long[] slots, boolean sampled, long bindStart) {
+    try {
+      long invokeStart = sampled ? System.nanoTime() : 0;
+      long result = (long) rpcMethodData.getPrimitiveHandle().invokeExact(slots);
+
+      if(!sampled)
+        return newPrimitiveResponse(request.getId(), rpcMethodData, result);
+
+      long serializeStart = System.nanoTime();
+      JsonRPCMessage response = newPrimitiveResponse(request.getId(), rpcMethodData, result);
+      long serializeEnd = System.nanoTime();
+
+      JsonRPCMethodMetrics methodMetrics = rpcMethodData.getMetrics();
+      methodMetrics.recordPhase(JsonRPCPhase.BIND, invokeStart - bindStart);
+      methodMetrics.recordPhase(JsonRPCPhase.INVOKE, serializeStart - invokeStart);
+      methodMetrics.recordPhase(JsonRPCPhase.SERIALIZE, serializeEnd - serializeStart);
+
+      return response;
+    }
+    catch(Throwable e) {
+      //The handle throws whatever the method throws, all of which Method.invoke would have wrapped
+      return messageFactory.newErrorResponse(request.getId(), context.isCancelled() ? JsonRPCError.DEADLINE_EXCEEDED : JsonRPCError.INTERNAL_ERROR);
+    }
+  }
+
+  @NotNull
+  private JsonRPCMessage newPrimitiveResponse(@Nullable String id, @NotNull RPCMethodData rpcMethodData, long result) {
+    Class<?> returnType = rpcMethodData.getMethod().getReturnType();
+
+    if(returnType == Void.TYPE)
+      return messageFactory.newResponse(id, null);
+
+    //Whether NaN and infinities can be written is up to Gson
+    if(returnType == Double.TYPE && !Double.isFinite(Double.longBitsToDouble(result)))
+      return messageFactory.newResponse(id, Double.longBitsToDouble(result));
+
+    return new JsonRPCPrimitiveResponse(GsonRPC.VERSION, id, returnType, result);
+  }
+
+  @NotNull
+  private JsonRPCMessage invoke(@NotNull JsonRPCRequest request, @NotNull RPCMethodData rpcMethodData, @NotNull JsonRPCContext context, @NotNull Object[] params, boolean sampled, long bindStart) {
+    try {
+      long invokeStart = sampled ? System.nanoTime() : 0;
+      Object result = rpcMethodData.getInvoker().invoke(request, params);
+
+      //The key of a deferred call is loaded once every call of its batch has been handled this far
+      if(result instanceof JsonRPCBulkLoader.Load)
+        return new DeferredResponse(request, rpcMethodData, context, (JsonRPCBulkLoader.Load) result);
+
+      if(!sampled)
+        return newResponse(request.getId(), rpcMethodData, result);
+
+      long serializeStart = System.nanoTime();
+      JsonRPCMessage response = newResponse(request.getId(), rpcMethodData, result);
+      long serializeEnd = System.nanoTime();
+
+      JsonRPCMethodMetrics methodMetrics = rpcMethodData.getMetrics();
+      methodMetrics.recordPhase(JsonRPCPhase.BIND, invokeStart - bindStart);
+      methodMetrics.recordPhase(JsonRPCPhase.INVOKE, serializeStart - invokeStart);
+      methodMetrics.recordPhase(JsonRPCPhase.SERIALIZE, serializeEnd - serializeStart);
+
+      return response;
+    }
+    catch(JsonRPCErrorException e) {
+      //Exceptions thrown by the method itself arrive wrapped, so this was thrown by an interceptor
+      return messageFactory.newErrorResponse(request.getId(), e.getError(), e.getDataJson());
     }
     catch(Exception e) {
-      return messageFactory.newErrorResponse(request.getId(), JsonRPCError.INTERNAL_ERROR);
+      return messageFactory.newErrorResponse(request.getId(), context.isCancelled() ? JsonRPCError.DEADLINE_EXCEEDED : JsonRPCError.INTERNAL_ERROR);
     }
   }
 
+  /**
+   * Creates the response to a result. A streamed result is only wrapped here, its elements are serialized as the
+   * response is written, so the serialize phase of a stream does not include them.
+   */
   @NotNull
-  private ArrayList <Object> parseParams(@Nullable JsonElement paramsJson, @NotNull RPCMethodData rpcMethodData) throws Exception {
-    if (paramsJson == null || paramsJson.isJsonNull())
-      return new ArrayList<>();
-    else if (paramsJson.isJsonObject())
-      return parseParams(paramsJson.getAsJsonObject(), rpcMethodData);
-    else if (paramsJson.isJsonArray())
-      return parseParams(paramsJson.getAsJsonArray(), rpcMethodData);
+  private JsonRPCMessage newResponse(@Nullable String id, @NotNull RPCMethodData rpcMethodData, @Nullable Object result) {
+    if(JsonRPCMessageFactory.isStream(result))
+      return messageFactory.newStreamResponse(id, result, rpcMethodData.getElementAdapter());
+
+    return messageFactory.newResponse(id, result, rpcMethodData.getResultAdapter(result));
+  }
+
+  /**
+   * Decides whether the phases of the next request are timed, according to the phase sampling rate.
+   */
+  boolean samplePhases() {
+    int rate = phaseSamplingRate;
+    return rate > 0 && (rate == 1 || ThreadLocalRandom.current().nextInt(rate) == 0);
+  }
+
+  /**
+   * Charges the time spent parsing a request to the method it names.
+   */
+  void recordParseTime(@Nullable String methodName, long nanos) {
+    RPCMethodData rpcMethodData = methodName == null ? null : rpcMethods.get(methodName);
+    JsonRPCMethodMetrics methodMetrics = rpcMethodData == null ? metrics.getUnknownMethodMetrics() : rpcMethodData.getMetrics();
+    methodMetrics.recordPhase(JsonRPCPhase.PARSE, nanos);
+  }
+
+  /**
+   * Records the time a request waited in a priority lane before it was dispatched.
+   */
+  void recordQueueDelay(@NotNull RPCPriority priority, long nanos) {
+    if(metricsEnabled)
+      metrics.recordQueueDelay(priority.getName(), nanos);
+  }
+
+  /**
+   * Binds the params of a request, with one element per parameter of the method, into params or, for a method called
+   * with primitives, into slots. The TypeAdapters used are those resolved when the method was registered.
+   */
+  private void parseParams(@Nullable JsonElement paramsJson, @NotNull RPCMethodData rpcMethodData, @Nullable Object[] params, @Nullable long[] slots, @Nullable JsonRPCTreeReader reader) throws Exception {
+    int count = slots != null ? slots.length : params.length;
+
+    if(paramsJson == null || paramsJson.isJsonNull()) {
+      if(count != 0)
+        throw new Exception();
+    }
+    else if(paramsJson.isJsonObject())
+      parseParams(paramsJson.getAsJsonObject(), rpcMethodData, params, slots, count, reader);
+    else if(paramsJson.isJsonArray())
+      parseParams(paramsJson.getAsJsonArray(), rpcMethodData, params, slots, count, reader);
     else
       throw (new Exception());
   }
 
-  @NotNull
-  private ArrayList <Object> parseParams(@Nullable JsonObject paramsJson, @NotNull RPCMethodData rpcMethodData) throws Exception {
-    if(paramsJson.entrySet().size() != rpcMethodData.getMethod().getParameterCount())
+  private void parseParams(@NotNull JsonObject paramsJson, @NotNull RPCMethodData rpcMethodData, @Nullable Object[] params, @Nullable long[] slots, int count, @NotNull JsonRPCTreeReader reader) throws Exception {
+    if(paramsJson.size() != count)
       throw new Exception();
 
     if(rpcMethodData.getParamNames() == null)
       throw new Exception();
 
-    ArrayList<Object> params = new ArrayList<>();
-
-    int i = 0;
-    Class<?>[] paramTypes = rpcMethodData.getMethod().getParameterTypes();
-    for(Class<?> paramType:paramTypes) {
-      String paramName = rpcMethodData.getParamNames().get(i++);
+    for(int i = 0; i < count; i++) {
+      JsonElement paramJson = paramsJson.get(rpcMethodData.getParamNames().get(i));
 
-      if(!paramsJson.has(paramName))
+      if(paramJson == null)
         throw new Exception();
 
-      params.add(gson.fromJson(paramsJson.get(paramName), paramType));
+      parseParam(paramJson, rpcMethodData, i, params, slots, reader);
     }
-
-    return params;
   }
 
-  @NotNull
-  private ArrayList <Object> parseParams(@Nullable JsonArray paramsJson, @NotNull RPCMethodData rpcMethodData) throws Exception {
-    if(paramsJson.size() != rpcMethodData.getMethod().getParameterCount())
+  private void parseParams(@NotNull JsonArray paramsJson, @NotNull RPCMethodData rpcMethodData, @Nullable Object[] params, @Nullable long[] slots, int count, @NotNull JsonRPCTreeReader reader) throws Exception {
+    if(paramsJson.size() != count)
       throw new Exception();
 
-    ArrayList<Object> params = new ArrayList<>();
+    for(int i = 0; i < count; i++)
+      parseParam(paramsJson.get(i), rpcMethodData, i, params, slots, reader);
+  }
 
-    int i = 0;
-    Class<?>[] paramTypes = rpcMethodData.getMethod().getParameterTypes();
-    for(Class<?> paramType:paramTypes)
-      params.add(gson.fromJson(paramsJson.get(i++), paramType));
+  private void parseParam(@NotNull JsonElement paramJson, @NotNull RPCMethodData rpcMethodData, int index, @Nullable Object[] params, @Nullable long[] slots, @NotNull JsonRPCTreeReader reader) throws Exception {
+    if(slots == null) {
+      params[index] = parseParam(paramJson, rpcMethodData, index, reader);
+      return;
+    }
+
+    if(paramJson.isJsonNull())
+      throw NullSlotException.INSTANCE;
 
-    return params;
+    reader.reset(paramJson);
+    slots[index] = JsonRPCPrimitives.readSlot(reader, rpcMethodData.getMethod().getParameterTypes()[index]);
   }
 
-  private final class RPCMethodData {
-    private final Object methodHandler;
-    private final Method method;
-    private final String methodName;
-    private final ArrayList<String> paramNames;
+  @Nullable
+  private Object parseParam(@NotNull JsonElement paramJson, @NotNull RPCMethodData rpcMethodData, int index, @NotNull JsonRPCTreeReader reader) throws IOException {
+    TypeAdapter<?> adapter = rpcMethodData.getParamAdapter(index);
+    if(adapter == null)
+      adapter = gson.getAdapter(TypeToken.get(rpcMethodData.getMethod().getGenericParameterTypes()[index]));
 
-    public RPCMethodData(@NotNull Object methodHandler, @NotNull Method method, @NotNull String methodName, @Nullable ArrayList<String> paramNames) {
-      this.methodHandler = methodHandler;
-      this.method = method;
-      this.methodName = methodName;
-      this.paramNames = paramNames;
-    }
+    return reader.read(adapter, paramJson);
+  }
 
-    @NotNull
-    public Object getMethodHandler() {
-      return methodHandler;
+  /**
+   * Stands in for the response to a deferred call until the bulk call for its batch has been made.
+   */
+  private static final class DeferredResponse extends JsonRPCMessage {
+    private final JsonRPCRequest request;
+    private final RPCMethodData rpcMethodData;
+    private final JsonRPCContext context;
+    private final JsonRPCBulkLoader.Load load;
+    private JsonRPCDispatchEvent event;
+    private boolean measured;
+    private long start;
+
+    private DeferredResponse(@NotNull JsonRPCRequest request, @NotNull RPCMethodData rpcMethodData, @NotNull JsonRPCContext context, @NotNull JsonRPCBulkLoader.Load load) {
+      super(GsonRPC.VERSION, request.getId());
+      this.request = request;
+      this.rpcMethodData = rpcMethodData;
+      this.context = context;
+      this.load = load;
     }
 
-    @NotNull
-    public Method getMethod() {
-      return method;
+    private void setDispatch(@NotNull JsonRPCDispatchEvent event, boolean measured, long start) {
+      this.event = event;
+      this.measured = measured;
+      this.start = start;
     }
+  }
 
-    @NotNull
-    public String getMethodName() {
-      return methodName;
-    }
+  /**
+   * Thrown when a null is bound to a primitive parameter.
+   */
+  private static final class NullSlotException extends Exception {
+    private static final long serialVersionUID = 1L;
+    private static final NullSlotException INSTANCE = new NullSlotException();
 
-    @Nullable
-    public ArrayList<String> getParamNames() {
-      return paramNames;
+    private NullSlotException() {
+      super(null, null, false, false);
     }
   }
 }
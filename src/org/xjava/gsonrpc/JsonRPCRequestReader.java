@@ -0,0 +1,300 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc;
+
+import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.message.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads requests from JSON text, binding the params of each request to the parameters of its method while they are
+ * read, with the TypeAdapters resolved when the method was registered, rather than building a JsonElement for them
+ * and converting it afterwards.
+ *
+ * <p>Params can only be bound once the method is known. Params that come before the method, or that name a method
+ * that is not registered, are buffered as a JsonElement of at most {@link #MAX_BUFFERED_VALUES} values and bound when
+ * the request is dispatched, as they would be had they been parsed as a tree.</p>
+ *
+ * <p>Text this reader does not give the same messages for as parsing it as a tree would, because it is malformed, has
+ * messages other than requests in it or has params that do not match their method, makes it return null, and the
+ * caller parses the text as a tree instead. Nothing has been invoked by then, so only the reading is repeated.</p>
+ *
+ * @version 1.0
+ */
+final class JsonRPCRequestReader {
+  public static final int MAX_BUFFERED_VALUES = 1024;
+
+  private final JsonRPCRequestHandler requestHandler;
+  private final TypeAdapter<JsonElement> elementAdapter;
+
+  JsonRPCRequestReader(@NotNull Gson gson, @NotNull JsonRPCRequestHandler requestHandler) {
+    this.requestHandler = requestHandler;
+    elementAdapter = gson.getAdapter(JsonElement.class);
+  }
+
+  /**
+   * Reads a request or a batch of requests.
+   *
+   * @param reader The JSON text
+   * @return The messages, or null if the text has to be parsed as a tree
+   */
+  @Nullable
+  public List<JsonRPCMessage> read(@NotNull Reader reader) {
+    JsonReader in = new JsonReader(reader);
+    //JsonParser reads leniently, so must a reader that stands in for it
+    in.setLenient(true);
+
+    try {
+      List<JsonRPCMessage> messages = new ArrayList<>();
+      JsonToken token = in.peek();
+
+      if(token == JsonToken.BEGIN_OBJECT)
+        messages.add(readMessage(in));
+      else if(token == JsonToken.BEGIN_ARRAY) {
+        in.beginArray();
+        while(in.hasNext()) {
+          if(in.peek() != JsonToken.BEGIN_OBJECT)
+            return null;
+
+          messages.add(readMessage(in));
+        }
+        in.endArray();
+      }
+      else
+        return null;
+
+      return in.peek() == JsonToken.END_DOCUMENT ? messages : null;
+    }
+    catch(Exception e) {
+      return null;
+    }
+  }
+
+  /**
+   * Reads a message the way JsonRPCMessageDeserializer reads one from a tree.
+   */
+  @NotNull
+  private JsonRPCMessage readMessage(@NotNull JsonReader in) throws IOException {
+    JsonElement versionJson = null;
+    JsonElement idJson = null;
+    JsonElement methodJson = null;
+    JsonElement timeoutJson = null;
+    JsonElement paramsJson = null;
+    RPCMethodData rpcMethodData = null;
+    Object[] params = null;
+    long[] slots = null;
+
+    in.beginObject();
+    while(in.hasNext()) {
+      switch(in.nextName()) {
+        case "jsonrpc":
+          versionJson = elementAdapter.read(in);
+          break;
+        case "id":
+          idJson = elementAdapter.read(in);
+          break;
+        case "method":
+          //Params already bound belong to the method named first
+          if(params != null || slots != null)
+            throw new JsonParseException("The method was named again after its params");
+
+          methodJson = elementAdapter.read(in);
+          break;
+        case "timeout":
+          timeoutJson = elementAdapter.read(in);
+          break;
+        case "params":
+          rpcMethodData = methodJson != null && methodJson.isJsonPrimitive() ? requestHandler.getMethodData(methodJson.getAsString()) : null;
+
+          params = null;
+          slots = null;
+
+          if(rpcMethodData != null) {
+            int paramCount = rpcMethodData.getMethod().getParameterCount();
+
+            //A method called with primitives gets its params bound as primitives
+            if(rpcMethodData.getPrimitiveHandle() != null)
+              bindParams(in, rpcMethodData, null, slots = new long[paramCount]);
+            else
+              bindParams(in, rpcMethodData, params = new Object[paramCount], null);
+
+            paramsJson = null;
+          }
+          else {
+            paramsJson = readBuffered(in, new int[] {MAX_BUFFERED_VALUES});
+          }
+          break;
+        case "result":
+        case "error":
+          throw new JsonParseException("Not a request");
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+
+    String version = null;
+    String id = null;
+
+    try {
+      version = versionJson.getAsString();
+      id = idJson == null || idJson.isJsonNull() ? null : idJson.getAsString();
+
+      if(methodJson != null) {
+        String method = methodJson.getAsString();
+        Long timeout = timeoutJson == null || timeoutJson.isJsonNull() ? null : timeoutJson.getAsLong();
+
+        if(params != null)
+          return new JsonRPCBoundRequest(version, id, method, timeout, rpcMethodData.getMethod(), params);
+        if(slots != null)
+          return new JsonRPCBoundRequest(version, id, method, timeout, rpcMethodData.getMethod(), slots);
+
+        return new JsonRPCRequest(version, id, method, paramsJson, timeout);
+      }
+    }
+    catch(Exception e) {
+      //Do nothing. The message is malformed, we don't care why.
+    }
+
+    return new JsonRPCMalformedMessage(version, id);
+  }
+
+  /**
+   * Binds params into either params or slots, positionally or by the paramNames of the method, throwing if they do
+   * not match its parameters.
+   */
+  private void bindParams(@NotNull JsonReader in, @NotNull RPCMethodData rpcMethodData, @Nullable Object[] params, @Nullable long[] slots) throws IOException {
+    int length = slots != null ? slots.length : params.length;
+    JsonToken token = in.peek();
+
+    if(token == JsonToken.BEGIN_ARRAY) {
+      int count = 0;
+
+      in.beginArray();
+      while(in.hasNext()) {
+        if(count == length)
+          throw new JsonParseException("Too many params");
+
+        readParam(in, rpcMethodData, count, params, slots);
+        count++;
+      }
+      in.endArray();
+
+      if(count != length)
+        throw new JsonParseException("Too few params");
+    }
+    else if(token == JsonToken.BEGIN_OBJECT) {
+      List<String> paramNames = rpcMethodData.getParamNames();
+      if(paramNames == null)
+        throw new JsonParseException("The method has no paramNames");
+
+      boolean[] bound = new boolean[length];
+      int count = 0;
+
+      in.beginObject();
+      while(in.hasNext()) {
+        int index = paramNames.indexOf(in.nextName());
+        if(index < 0)
+          throw new JsonParseException("Unknown param");
+
+        //A name given twice keeps its last value, as in a JsonObject
+        if(!bound[index]) {
+          bound[index] = true;
+          count++;
+        }
+
+        readParam(in, rpcMethodData, index, params, slots);
+      }
+      in.endObject();
+
+      if(count != length)
+        throw new JsonParseException("Too few params");
+    }
+    else if(token == JsonToken.NULL && length == 0)
+      in.nextNull();
+    else
+      throw new JsonParseException("Params must be an array or an object");
+  }
+
+  private void readParam(@NotNull JsonReader in, @NotNull RPCMethodData rpcMethodData, int index, @Nullable Object[] params, @Nullable long[] slots) throws IOException {
+    if(slots == null) {
+      params[index] = readParam(in, rpcMethodData, index);
+      return;
+    }
+
+    //A null is left to the tree, where it is bound as an object for the call to fail on
+    if(in.peek() == JsonToken.NULL)
+      throw new JsonParseException("A null primitive param");
+
+    slots[index] = JsonRPCPrimitives.readSlot(in, rpcMethodData.getMethod().getParameterTypes()[index]);
+  }
+
+  @Nullable
+  private Object readParam(@NotNull JsonReader in, @NotNull RPCMethodData rpcMethodData, int index) throws IOException {
+    TypeAdapter<?> adapter = rpcMethodData.getParamAdapter(index);
+    if(adapter == null)
+      throw new JsonParseException("No TypeAdapter for the param");
+
+    return adapter.read(in);
+  }
+
+  /**
+   * Reads a value as a JsonElement, throwing once it has more values in it than the budget allows.
+   */
+  @NotNull
+  private JsonElement readBuffered(@NotNull JsonReader in, @NotNull int[] budget) throws IOException {
+    if(--budget[0] < 0)
+      throw new JsonParseException("Too many buffered values");
+
+    switch(in.peek()) {
+      case BEGIN_ARRAY:
+        JsonArray array = new JsonArray();
+        in.beginArray();
+        while(in.hasNext())
+          array.add(readBuffered(in, budget));
+        in.endArray();
+        return array;
+      case BEGIN_OBJECT:
+        JsonObject object = new JsonObject();
+        in.beginObject();
+        while(in.hasNext()) {
+          String name = in.nextName();
+          object.add(name, readBuffered(in, budget));
+        }
+        in.endObject();
+        return object;
+      default:
+        return elementAdapter.read(in);
+    }
+  }
+}
@@ -0,0 +1,486 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.gson.JsonRPCMessageDeserializer;
+import org.xjava.gsonrpc.message.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scans JSON text of GsonRPC messages for the envelope of each one, leaving every result and error data where it is
+ * in the text, as a RawJson that is only decoded when it is asked for. Messages with a method are parsed as trees,
+ * as they would be without the scanner.
+ *
+ * <p>The scanner checks that the whole text is strict JSON as it goes, so that a slice left raw is never found to be
+ * malformed later. Anything it does not accept, such as the lenient syntax Gson also reads, a batch element that is
+ * not an object or a name written with escapes, makes it give up, and the text is then parsed as a tree, so the
+ * messages are always the ones JsonRPCMessageDeserializer makes.</p>
+ *
+ * @version 1.0
+ */
+final class JsonRPCResponseScanner {
+  private static final String[] MESSAGE_FIELDS = {"jsonrpc", "id", "method", "result", "error"};
+  private static final int VERSION = 0;
+  private static final int ID = 1;
+  private static final int METHOD = 2;
+  private static final int RESULT = 3;
+  private static final int ERROR = 4;
+
+  private static final String[] ERROR_FIELDS = {"code", "message", "data"};
+  private static final int CODE = 0;
+  private static final int MESSAGE = 1;
+  private static final int DATA = 2;
+
+  private final JsonRPCMessageDeserializer messageDeserializer;
+  private final String text;
+  private final byte[] bytes;
+  private final int length;
+  private int pos;
+  private boolean[] inObject = new boolean[16];
+
+  private JsonRPCResponseScanner(@NotNull JsonRPCMessageDeserializer messageDeserializer, @Nullable String text, @Nullable byte[] bytes) {
+    this.messageDeserializer = messageDeserializer;
+    this.text = text;
+    this.bytes = bytes;
+    this.length = text != null ? text.length() : bytes.length;
+  }
+
+  /**
+   * Scans a message or a batch of messages.
+   *
+   * @return The messages, or null if the text has to be parsed as a tree
+   */
+  @Nullable
+  static List<JsonRPCMessage> scan(@NotNull String text, @NotNull JsonRPCMessageDeserializer messageDeserializer) {
+    return new JsonRPCResponseScanner(messageDeserializer, text, null).scan();
+  }
+
+  /**
+   * Scans a message or a batch of messages encoded as UTF-8. The RawJson objects of the messages use the bytes in
+   * place.
+   *
+   * @return The messages, or null if the bytes have to be parsed as a tree
+   */
+  @Nullable
+  static List<JsonRPCMessage> scan(@NotNull byte[] bytes, @NotNull JsonRPCMessageDeserializer messageDeserializer) {
+    return new JsonRPCResponseScanner(messageDeserializer, null, bytes).scan();
+  }
+
+  @Nullable
+  private List<JsonRPCMessage> scan() {
+    try {
+      List<JsonRPCMessage> messages = new ArrayList<>();
+
+      skipWhitespace();
+      if(peek() == '{')
+        messages.add(scanMessage());
+      else if(peek() == '[') {
+        pos++;
+        skipWhitespace();
+
+        if(peek() == ']')
+          pos++;
+        else {
+          while(true) {
+            skipWhitespace();
+            if(peek() != '{')
+              return null;
+
+            messages.add(scanMessage());
+
+            skipWhitespace();
+            if(peek() == ']') {
+              pos++;
+              break;
+            }
+            expect(',');
+          }
+        }
+      }
+      else
+        return null;
+
+      skipWhitespace();
+      return pos == length ? messages : null;
+    }
+    catch(MalformedException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Scans a message the way JsonRPCMessageDeserializer reads one from a tree.
+   */
+  @NotNull
+  private JsonRPCMessage scanMessage() throws MalformedException {
+    int start = pos;
+    int[] fields = scanObject(MESSAGE_FIELDS);
+    int end = pos;
+
+    String version = null;
+    String id = null;
+
+    try {
+      version = element(fields, VERSION).getAsString();
+      JsonElement idJson = element(fields, ID);
+      id = idJson == null || idJson.isJsonNull() ? null : idJson.getAsString();
+
+      if(fields[METHOD * 2] >= 0)
+        return messageDeserializer.deserialize(JsonParser.parseString(slice(start, end)), JsonRPCMessage.class, null);
+      else if(fields[RESULT * 2] >= 0)
+        return new JsonRPCRawResponse(version, id, raw(fields, RESULT));
+      else if(fields[ERROR * 2] >= 0)
+        return scanError(version, id, fields[ERROR * 2]);
+    }
+    catch(MalformedException e) {
+      throw e;
+    }
+    catch(Exception e) {
+      //Do nothing. The message is malformed, we don't care why.
+    }
+
+    return new JsonRPCMalformedMessage(version, id);
+  }
+
+  @NotNull
+  private JsonRPCMessage scanError(@NotNull String version, @Nullable String id, int start) throws MalformedException {
+    if(peekAt(start) != '{')
+      throw new IllegalStateException("The error is not an object");
+
+    //The error was scanned with the message, so scanning it again only has to find its fields
+    int end = pos;
+    pos = start;
+    int[] fields = scanObject(ERROR_FIELDS);
+    pos = end;
+
+    int code = element(fields, CODE).getAsInt();
+    String message = element(fields, MESSAGE).getAsString();
+    RawJson data = fields[DATA * 2] < 0 ? null : raw(fields, DATA);
+
+    return new JsonRPCRawErrorResponse(version, id, new JsonRPCError(code, message), data);
+  }
+
+  /**
+   * Scans an object, returning the start and end of the last value of each of the fields asked for, or -1 for the
+   * fields it does not have.
+   */
+  @NotNull
+  private int[] scanObject(@NotNull String[] names) throws MalformedException {
+    int[] fields = new int[names.length * 2];
+    Arrays.fill(fields, -1);
+
+    expect('{');
+    skipWhitespace();
+
+    if(peek() == '}') {
+      pos++;
+      return fields;
+    }
+
+    while(true) {
+      skipWhitespace();
+      int nameStart = pos;
+      skipString();
+      int field = indexOf(names, nameStart + 1, pos - 1);
+
+      skipWhitespace();
+      expect(':');
+      skipWhitespace();
+
+      int valueStart = pos;
+      skipValue();
+
+      if(field >= 0) {
+        fields[field * 2] = valueStart;
+        fields[field * 2 + 1] = pos;
+      }
+
+      skipWhitespace();
+      if(peek() == '}') {
+        pos++;
+        return fields;
+      }
+      expect(',');
+    }
+  }
+
+  /**
+   * Skips a value, checking it is strict JSON.
+   */
+  private void skipValue() throws MalformedException {
+    int depth = 0;
+
+    while(true) {
+      int c = peek();
+
+      if(c == '{' || c == '[') {
+        pos++;
+        skipWhitespace();
+
+        if(peek() == (c == '{' ? '}' : ']'))
+          pos++;
+        else {
+          if(depth == inObject.length)
+            inObject = Arrays.copyOf(inObject, depth * 2);
+          inObject[depth++] = c == '{';
+
+          if(c == '{')
+            skipName();
+          continue;
+        }
+      }
+      else if(c == '"')
+        skipString();
+      else if(c == '-' || (c >= '0' && c <= '9'))
+        skipNumber();
+      else if(c == 't')
+        skipLiteral("true");
+      else if(c == 'f')
+        skipLiteral("false");
+      else if(c == 'n')
+        skipLiteral("null");
+      else
+        throw MalformedException.INSTANCE;
+
+      //Close every container the value was the last one of
+      while(true) {
+        if(depth == 0)
+          return;
+
+        skipWhitespace();
+        c = peek();
+
+        if(c == ',') {
+          pos++;
+          skipWhitespace();
+
+          if(inObject[depth - 1])
+            skipName();
+          break;
+        }
+        else if(c == (inObject[depth - 1] ? '}' : ']')) {
+          pos++;
+          depth--;
+        }
+        else
+          throw MalformedException.INSTANCE;
+      }
+    }
+  }
+
+  private void skipName() throws MalformedException {
+    skipString();
+    skipWhitespace();
+    expect(':');
+    skipWhitespace();
+  }
+
+  private void skipString() throws MalformedException {
+    expect('"');
+
+    while(true) {
+      int c = peek();
+      pos++;
+
+      if(c == '"')
+        return;
+
+      if(c == '\\') {
+        c = peek();
+        pos++;
+
+        if(c == 'u') {
+          for(int i = 0; i < 4; i++) {
+            c = peek();
+            pos++;
+
+            if(!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f') && !(c >= 'A' && c <= 'F'))
+              throw MalformedException.INSTANCE;
+          }
+        }
+        else if(c != '"' && c != '\\' && c != '/' && c != 'b' && c != 'f' && c != 'n' && c != 'r' && c != 't')
+          throw MalformedException.INSTANCE;
+      }
+      else if(c < 0x20)
+        throw MalformedException.INSTANCE;
+    }
+  }
+
+  private void skipNumber() throws MalformedException {
+    if(peek() == '-')
+      pos++;
+
+    if(peek() == '0')
+      pos++;
+    else
+      skipDigits();
+
+    if(peek() == '.') {
+      pos++;
+      skipDigits();
+    }
+
+    if(peek() == 'e' || peek() == 'E') {
+      pos++;
+      if(peek() == '+' || peek() == '-')
+        pos++;
+      skipDigits();
+    }
+  }
+
+  private void skipDigits() throws MalformedException {
+    int start = pos;
+
+    while(peek() >= '0' && peek() <= '9')
+      pos++;
+
+    if(pos == start)
+      throw MalformedException.INSTANCE;
+  }
+
+  private void skipLiteral(@NotNull String literal) throws MalformedException {
+    for(int i = 0; i < literal.length(); i++)
+      expect(literal.charAt(i));
+  }
+
+  private void skipWhitespace() {
+    int c = peek();
+
+    while(c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+      pos++;
+      c = peek();
+    }
+  }
+
+  private void expect(char expected) throws MalformedException {
+    if(peek() != expected)
+      throw MalformedException.INSTANCE;
+
+    pos++;
+  }
+
+  /**
+   * Gets the character or byte at the position, or -1 at the end. A byte of a multi-byte character is never taken
+   * for an ASCII one, which is all the scanner looks for.
+   */
+  private int peek() {
+    return peekAt(pos);
+  }
+
+  private int peekAt(int index) {
+    if(index >= length)
+      return -1;
+
+    return text != null ? text.charAt(index) : bytes[index] & 0xFF;
+  }
+
+  private int indexOf(char c, int start, int end) {
+    for(int i = start; i < end; i++) {
+      if(peekAt(i) == c)
+        return i;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Finds which of the names a name is, or returns -1 for any other.
+   */
+  private int indexOf(@NotNull String[] names, int start, int end) throws MalformedException {
+    //A name with escapes in it would have to be decoded to be matched
+    if(indexOf('\\', start, end) >= 0)
+      throw MalformedException.INSTANCE;
+
+    for(int i = 0; i < names.length; i++) {
+      String name = names[i];
+
+      if(name.length() == end - start && matches(name, start))
+        return i;
+    }
+
+    return -1;
+  }
+
+  private boolean matches(@NotNull String name, int start) {
+    for(int i = 0; i < name.length(); i++) {
+      if(peekAt(start + i) != name.charAt(i))
+        return false;
+    }
+
+    return true;
+  }
+
+  @Nullable
+  private JsonElement element(@NotNull int[] fields, int field) {
+    int start = fields[field * 2];
+    if(start < 0)
+      return null;
+
+    int end = fields[field * 2 + 1];
+
+    //Versions and ids are nearly always plain strings, which need no parser
+    if(peekAt(start) == '"' && indexOf('\\', start, end) < 0)
+      return new JsonPrimitive(slice(start + 1, end - 1));
+    if(peekAt(start) == 'n')
+      return JsonNull.INSTANCE;
+
+    return JsonParser.parseString(slice(start, end));
+  }
+
+  @NotNull
+  private RawJson raw(@NotNull int[] fields, int field) {
+    int start = fields[field * 2];
+    int end = fields[field * 2 + 1];
+
+    return text != null ? RawJson.of(text.substring(start, end)) : RawJson.of(bytes, start, end - start);
+  }
+
+  @NotNull
+  private String slice(int start, int end) {
+    return text != null ? text.substring(start, end) : new String(bytes, start, end - start, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Thrown when the text is not strict JSON, without a stack trace, as it only sends the text to the tree parser.
+   */
+  private static final class MalformedException extends Exception {
+    private static final long serialVersionUID = 1L;
+    private static final MalformedException INSTANCE = new MalformedException();
+
+    private MalformedException() {
+      super(null, null, false, false);
+    }
+  }
+}
@@ -0,0 +1,373 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.annotation.RPCPriority;
+import org.xjava.gsonrpc.interceptor.JsonRPCInvoker;
+import org.xjava.gsonrpc.interceptor.JsonRPCServerInterceptor;
+import org.xjava.gsonrpc.limit.JsonRPCBulkhead;
+import org.xjava.gsonrpc.limit.JsonRPCClientRateLimiter;
+import org.xjava.gsonrpc.limit.JsonRPCRateLimiter;
+import org.xjava.gsonrpc.metrics.JsonRPCMethodMetrics;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
+
+/**
+ * Everything a JsonRPCRequestHandler knows about a registered RPC method.
+ *
+ * @version 1.0
+ * @author Adam Lowman
+ */
+public final class RPCMethodData {
+  private final Object methodHandler;
+  private final Method method;
+  private final String methodName;
+  private final String namespace;
+  private final ArrayList<String> paramNames;
+  private final JsonRPCMethodMetrics metrics;
+  private final TypeAdapter<?>[] paramAdapters;
+  private final Class<?> resultClass;
+  private final TypeAdapter<Object> resultAdapter;
+  private final TypeAdapter<Object> elementAdapter;
+  private final MethodHandle primitiveHandle;
+  private final JsonRPCBulkLoader bulkLoader;
+  private final JsonRPCInvoker methodInvoker;
+  private volatile JsonRPCInvoker invoker;
+  private volatile JsonRPCBulkhead bulkhead;
+  private volatile JsonRPCBulkhead namespaceBulkhead;
+  private volatile RPCPriority priority = RPCPriority.NORMAL;
+  private volatile JsonRPCRateLimiter rateLimiter;
+  private volatile JsonRPCClientRateLimiter clientRateLimiter;
+
+  RPCMethodData(@NotNull Gson gson, @NotNull Object methodHandler, @NotNull Method method, @NotNull String methodName, @NotNull String namespace, @Nullable ArrayList<String> paramNames, @NotNull JsonRPCMethodMetrics metrics) {
+    this(gson, methodHandler, method, methodName, namespace, paramNames, metrics, null);
+  }
+
+  /**
+   * @param bulkLoader The JsonRPCBulkLoader that calls go through instead of calling the method, or null
+   */
+  @SuppressWarnings("unchecked")
+  RPCMethodData(@NotNull Gson gson, @NotNull Object methodHandler, @NotNull Method method, @NotNull String methodName, @NotNull String namespace, @Nullable ArrayList<String> paramNames, @NotNull JsonRPCMethodMetrics metrics, @Nullable JsonRPCBulkLoader bulkLoader) {
+    this.methodHandler = methodHandler;
+    this.method = method;
+    this.methodName = methodName;
+    this.namespace = namespace;
+    this.paramNames = paramNames;
+    this.metrics = metrics;
+
+    Type[] paramTypes = method.getGenericParameterTypes();
+    paramAdapters = new TypeAdapter<?>[paramTypes.length];
+    for(int i = 0; i < paramTypes.length; i++)
+      paramAdapters[i] = resolveAdapter(gson, paramTypes[i]);
+
+    resultClass = wrap(method.getReturnType());
+    resultAdapter = isResultAdapterUsable(method.getGenericReturnType()) ? (TypeAdapter<Object>) resolveAdapter(gson, method.getGenericReturnType()) : null;
+    elementAdapter = resolveElementAdapter(gson, method.getGenericReturnType());
+    //Calls gathered into bulk calls need their params as objects
+    primitiveHandle = bulkLoader == null ? JsonRPCPrimitives.newHandle(gson, methodHandler, method) : null;
+    this.bulkLoader = bulkLoader;
+
+    if(bulkLoader == null)
+      methodInvoker = (request, params) -> method.invoke(methodHandler, params);
+    else
+      methodInvoker = (request, params) -> bulkLoader.load(request, params[0]);
+    invoker = methodInvoker;
+  }
+
+  @NotNull
+  public Object getMethodHandler() {
+    return methodHandler;
+  }
+
+  @NotNull
+  public Method getMethod() {
+    return method;
+  }
+
+  @NotNull
+  public String getMethodName() {
+    return methodName;
+  }
+
+  /**
+   * Gets the namespace the method was registered in, which is empty for methods registered without one.
+   *
+   * @return The namespace
+   */
+  @NotNull
+  public String getNamespace() {
+    return namespace;
+  }
+
+  @Nullable
+  public ArrayList<String> getParamNames() {
+    return paramNames;
+  }
+
+  @NotNull
+  public JsonRPCMethodMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Gets the TypeAdapter that binds a parameter, resolved from its generic type when the method was registered, so
+   * that a List&lt;Foo&gt; parameter is bound as a list of Foo.
+   *
+   * @param index The index of the parameter
+   * @return The TypeAdapter, or null if Gson could not provide one for the type
+   */
+  @Nullable
+  public TypeAdapter<?> getParamAdapter(int index) {
+    return paramAdapters[index];
+  }
+
+  /**
+   * Gets the TypeAdapter that serializes a result of the method. Gson serializes a value by its runtime class, so the
+   * adapter of the declared return type is only offered for results it would have picked itself.
+   *
+   * @param result The value returned by the method
+   * @return The TypeAdapter, or null if the result has to be serialized by its runtime class
+   */
+  @Nullable
+  public TypeAdapter<Object> getResultAdapter(@Nullable Object result) {
+    if(resultAdapter == null || result == null)
+      return null;
+
+    Class<?> runtimeClass = result.getClass();
+    return runtimeClass == resultClass || (resultClass.isInterface() && resultClass.isAssignableFrom(runtimeClass)) ? resultAdapter : null;
+  }
+
+  /**
+   * Gets the TypeAdapter that serializes the elements of a streamed result, resolved from the element type of a
+   * method declared to return an Iterator, a Stream or a Flow.Publisher.
+   *
+   * @return The TypeAdapter, or null if the method does not declare a streamed result or its element type
+   */
+  @Nullable
+  public TypeAdapter<Object> getElementAdapter() {
+    return elementAdapter;
+  }
+
+  @NotNull
+  public RPCPriority getPriority() {
+    return priority;
+  }
+
+  void setPriority(@NotNull RPCPriority priority) {
+    this.priority = priority;
+  }
+
+  /**
+   * Gets the bulkhead limiting the calls to this method in flight, or null if there is no limit.
+   *
+   * @return The JsonRPCBulkhead or null
+   */
+  @Nullable
+  public JsonRPCBulkhead getBulkhead() {
+    return bulkhead;
+  }
+
+  void setBulkhead(@Nullable JsonRPCBulkhead bulkhead) {
+    this.bulkhead = bulkhead;
+  }
+
+  /**
+   * Gets the bulkhead shared by every method of the namespace, or null if the namespace has no limit.
+   *
+   * @return The JsonRPCBulkhead or null
+   */
+  @Nullable
+  public JsonRPCBulkhead getNamespaceBulkhead() {
+    return namespaceBulkhead;
+  }
+
+  void setNamespaceBulkhead(@Nullable JsonRPCBulkhead namespaceBulkhead) {
+    this.namespaceBulkhead = namespaceBulkhead;
+  }
+
+  /**
+   * Gets the token bucket limiting the rate of calls to this method from all clients, or null if there is no limit.
+   *
+   * @return The JsonRPCRateLimiter or null
+   */
+  @Nullable
+  public JsonRPCRateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  void setRateLimiter(@Nullable JsonRPCRateLimiter rateLimiter) {
+    this.rateLimiter = rateLimiter;
+  }
+
+  /**
+   * Gets the token buckets limiting the rate of calls to this method from each client, or null if there is no limit.
+   *
+   * @return The JsonRPCClientRateLimiter or null
+   */
+  @Nullable
+  public JsonRPCClientRateLimiter getClientRateLimiter() {
+    return clientRateLimiter;
+  }
+
+  void setClientRateLimiter(@Nullable JsonRPCClientRateLimiter clientRateLimiter) {
+    this.clientRateLimiter = clientRateLimiter;
+  }
+
+  /**
+   * Gets the handle that calls the method with its primitive params in long slots, or null if the method is not
+   * called that way.
+   *
+   * @see JsonRPCPrimitives
+   */
+  @Nullable
+  MethodHandle getPrimitiveHandle() {
+    return primitiveHandle;
+  }
+
+  /**
+   * Gets the loader gathering calls to the method into calls to its bulk counterpart, or null if it has none.
+   */
+  @Nullable
+  JsonRPCBulkLoader getBulkLoader() {
+    return bulkLoader;
+  }
+
+  /**
+   * Tells whether calls to the method go through interceptors.
+   *
+   * @return Whether the method is intercepted
+   */
+  public boolean isIntercepted() {
+    return invoker != methodInvoker;
+  }
+
+  /**
+   * Gets the invoker that runs the interceptor chain and then the method.
+   *
+   * @return The JsonRPCInvoker
+   */
+  @NotNull
+  public JsonRPCInvoker getInvoker() {
+    return invoker;
+  }
+
+  /**
+   * Composes the interceptor chain of the method once, so that calls only walk pre-built invokers. Without
+   * interceptors the invoker calls the method directly.
+   */
+  void setInterceptors(@NotNull List<JsonRPCServerInterceptor> interceptors) {
+    JsonRPCInvoker chain = methodInvoker;
+
+    for(int i = interceptors.size() - 1; i >= 0; i--) {
+      JsonRPCServerInterceptor interceptor = interceptors.get(i);
+      JsonRPCInvoker next = chain;
+      chain = (request, params) -> interceptor.intercept(request, this, params, next);
+    }
+
+    invoker = chain;
+  }
+
+  @Nullable
+  private static TypeAdapter<?> resolveAdapter(@NotNull Gson gson, @NotNull Type type) {
+    try {
+      return gson.getAdapter(TypeToken.get(type));
+    }
+    catch(RuntimeException e) {
+      //Left for the call to fail on, as it did before types were resolved up front
+      return null;
+    }
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked")
+  private static TypeAdapter<Object> resolveElementAdapter(@NotNull Gson gson, @NotNull Type returnType) {
+    if(!(returnType instanceof ParameterizedType))
+      return null;
+
+    Type rawType = ((ParameterizedType) returnType).getRawType();
+    if(rawType != Iterator.class && rawType != Stream.class && rawType != Flow.Publisher.class)
+      return null;
+
+    //Elements go by the same rule as whole results do
+    Type elementType = ((ParameterizedType) returnType).getActualTypeArguments()[0];
+    TypeAdapter<Object> declaredAdapter = isResultAdapterUsable(elementType) ? (TypeAdapter<Object>) resolveAdapter(gson, elementType) : null;
+
+    return declaredAdapter == null ? null : new JsonRPCElementAdapter(gson, declaredAdapter, TypeToken.get(elementType).getRawType());
+  }
+
+  @NotNull
+  private static Class<?> wrap(@NotNull Class<?> type) {
+    if(!type.isPrimitive())
+      return type;
+    if(type == Integer.TYPE)
+      return Integer.class;
+    if(type == Long.TYPE)
+      return Long.class;
+    if(type == Boolean.TYPE)
+      return Boolean.class;
+    if(type == Short.TYPE)
+      return Short.class;
+    if(type == Byte.TYPE)
+      return Byte.class;
+    if(type == Character.TYPE)
+      return Character.class;
+
+    return type;
+  }
+
+  /**
+   * Tells whether the adapter of a declared return type writes a result the way Gson would write it by its runtime
+   * class: always for a class the result has exactly, and for collections and maps, whose adapters write every
+   * implementation alike and their elements by runtime class. Floating point types are left to Gson, which writes
+   * the special values it may be configured to allow through a lenient writer.
+   */
+  private static boolean isResultAdapterUsable(@NotNull Type returnType) {
+    Class<?> rawType = TypeToken.get(returnType).getRawType();
+
+    if(rawType == Void.TYPE || rawType == Object.class)
+      return false;
+    if(rawType == Double.class || rawType == Float.class || rawType == Double.TYPE || rawType == Float.TYPE)
+      return false;
+    if(rawType.isInterface())
+      return returnType instanceof ParameterizedType && (Collection.class.isAssignableFrom(rawType) || Map.class.isAssignableFrom(rawType));
+
+    return true;
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A JSON value that is already serialized, such as an answer held by a cache or returned by an upstream service. A
+ * method that returns a RawJson has it written into the "result" of its response as it is, rather than parsed into
+ * a JsonElement and encoded again, and a client can get a result as a RawJson to pass it on or decode it later.
+ *
+ * <p>The JSON is not checked unless {@link #validate()} is called, so a RawJson that does not hold exactly one JSON
+ * value makes the output it is written into invalid. Bytes are UTF-8 and are not copied, so they must not change
+ * while the RawJson is in use.</p>
+ *
+ * @version 1.0
+ */
+public final class RawJson {
+  private final byte[] bytes;
+  private final int offset;
+  private final int length;
+  private String json;
+
+  private RawJson(@NotNull String json) {
+    this.bytes = null;
+    this.offset = 0;
+    this.length = 0;
+    this.json = json;
+  }
+
+  private RawJson(@NotNull byte[] bytes, int offset, int length) {
+    this.bytes = bytes;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  @NotNull
+  public static RawJson of(@NotNull String json) {
+    return new RawJson(json);
+  }
+
+  @NotNull
+  public static RawJson of(@NotNull byte[] bytes) {
+    return new RawJson(bytes, 0, bytes.length);
+  }
+
+  @NotNull
+  public static RawJson of(@NotNull byte[] bytes, int offset, int length) {
+    if(offset < 0 || length < 0 || offset + length > bytes.length)
+      throw new IndexOutOfBoundsException();
+
+    return new RawJson(bytes, offset, length);
+  }
+
+  /**
+   * Creates a RawJson of the remaining bytes of a ByteBuffer, without moving its position. The bytes of a buffer
+   * backed by an array are used in place, those of a direct buffer are copied.
+   *
+   * @param buffer The ByteBuffer
+   * @return The RawJson
+   */
+  @NotNull
+  public static RawJson of(@NotNull ByteBuffer buffer) {
+    if(buffer.hasArray())
+      return new RawJson(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return new RawJson(bytes, 0, bytes.length);
+  }
+
+  @NotNull
+  public static RawJson of(@NotNull JsonElement json) {
+    return new RawJson(json.toString());
+  }
+
+  /**
+   * Gets the JSON as UTF-8 bytes.
+   *
+   * @return A copy of the bytes
+   */
+  @NotNull
+  public byte[] getBytes() {
+    if(bytes == null)
+      return json.getBytes(StandardCharsets.UTF_8);
+
+    return Arrays.copyOfRange(bytes, offset, offset + length);
+  }
+
+  /**
+   * Opens a Reader over the JSON. Bytes are decoded into a String the first time, which for the slices results are
+   * kept as costs less than the buffers of an InputStreamReader.
+   *
+   * @return The Reader
+   */
+  @NotNull
+  public Reader newReader() {
+    return new StringReader(toString());
+  }
+
+  /**
+   * Parses the JSON into a JsonElement, as leniently as Gson parses any other JSON.
+   *
+   * @return The JsonElement
+   * @throws JsonParseException A JsonParseException will be thrown if the JSON is malformed
+   */
+  @NotNull
+  public JsonElement toJsonTree() throws JsonParseException {
+    return JsonParser.parseReader(newReader());
+  }
+
+  /**
+   * Checks that the JSON is exactly one strictly valid JSON value.
+   *
+   * @return This RawJson
+   * @throws JsonSyntaxException A JsonSyntaxException will be thrown if it is not
+   */
+  @NotNull
+  public RawJson validate() throws JsonSyntaxException {
+    JsonReader reader = new JsonReader(newReader());
+
+    try {
+      reader.skipValue();
+
+      if(reader.peek() != JsonToken.END_DOCUMENT)
+        throw new JsonSyntaxException("Content after the JSON value");
+    }
+    catch(IOException | IllegalStateException e) {
+      throw new JsonSyntaxException(e);
+    }
+
+    return this;
+  }
+
+  /**
+   * Gets the JSON as a String, decoding the bytes the first time.
+   *
+   * @return The JSON
+   */
+  @NotNull
+  @Override
+  public String toString() {
+    String json = this.json;
+
+    if(json == null)
+      this.json = json = new String(bytes, offset, length, StandardCharsets.UTF_8);
+
+    return json;
+  }
+}
@@ -36,4 +36,23 @@ import java.lang.annotation.*;
 public @interface RPCMethod {
   String name() default "";
   String[] paramNames() default {};
+
+  /**
+   * The maximum number of calls to the method in flight at once; 0 means no limit. Calls over the limit are
+   * answered with JsonRPCError.SERVER_BUSY.
+   */
+  int maxConcurrency() default 0;
+
+  RPCPriority priority() default RPCPriority.NORMAL;
+
+  /**
+   * The name of a method of the same interface that does the work of many calls at once: it takes a List of the
+   * single param of this method and returns a List of results in the same order, or a Map of results by param.
+   * Calls arriving within bulkWindowMicros of each other, up to bulkMaxSize of them, are made as one call to it.
+   */
+  String bulk() default "";
+
+  long bulkWindowMicros() default 1000;
+
+  int bulkMaxSize() default 100;
 }
@@ -0,0 +1,56 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.annotation;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The priority of an RPC method. Batches are dispatched highest priority first, asynchronous dispatch gives each
+ * priority its own lane with a weighted share of the worker threads, and an adaptive limiter lets lower priorities
+ * use a smaller share of its limit so they are shed first.
+ *
+ * @version 1.0
+ */
+public enum RPCPriority {
+  HIGH("high"),
+  NORMAL("normal"),
+  LOW("low");
+
+  private final String name;
+
+  RPCPriority(@NotNull String name) {
+    this.name = name;
+  }
+
+  /**
+   * Gets the name the priority is reported under in metrics.
+   *
+   * @return The name of the priority
+   */
+  @NotNull
+  public String getName() {
+    return name;
+  }
+}
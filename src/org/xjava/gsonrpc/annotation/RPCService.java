@@ -35,4 +35,10 @@ import java.lang.annotation.*;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface RPCService {
   String namespace() default "";
+
+  /**
+   * The maximum number of calls in flight at once across every method of the namespace; 0 means no limit. Calls over
+   * the limit are answered with JsonRPCError.SERVER_BUSY.
+   */
+  int maxConcurrency() default 0;
 }
@@ -0,0 +1,287 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.capture;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.wire.JsonWireFormat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Records the request payloads processed by GsonRPC, with their arrival time and latency, to an append-only log so
+ * production traffic can be replayed later with JsonRPCCaptureReader.
+ *
+ * <p>The log is a directory of fixed size segments that are memory mapped when created. Appending only copies the
+ * payload into the mapped segment under a short lock; creating segments, forcing pages to disk and writing the
+ * indexes all happen on a background thread, so the thread processing requests never waits for the disk. The
+ * background thread keeps the next segment ready before the current one fills up. If requests arrive faster than
+ * it can provide segments, or a payload is larger than a segment, the record is dropped and counted rather than
+ * making the caller wait.</p>
+ *
+ * <pre>{@code
+ * JsonRPCCaptureLog captureLog = new JsonRPCCaptureLog(Paths.get("capture"));
+ * gsonRPC.setCaptureLog(captureLog);
+ * }</pre>
+ *
+ * @version 1.0
+ */
+public class JsonRPCCaptureLog implements Closeable {
+  public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+  public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+
+  private final Path directory;
+  private final int segmentSize;
+  private final long flushIntervalNanos;
+  private final ConcurrentLinkedQueue<JsonRPCCaptureSegment> finished = new ConcurrentLinkedQueue<>();
+  private final LongAdder recorded = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final Thread flusher;
+
+  private volatile JsonRPCCaptureSegment current;
+  private volatile JsonRPCCaptureSegment next;
+  private volatile IOException failure;
+  private volatile boolean closed;
+  private volatile int maxSegments;
+  private long nextSequence;
+  private int segmentCount;
+
+  public JsonRPCCaptureLog(@NotNull Path directory) throws IOException {
+    this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS);
+  }
+
+  /**
+   * Opens a capture log in a directory. Segments already in the directory are kept and new ones are numbered after
+   * them, so a directory can hold several captures in a row.
+   *
+   * @param directory The directory of the log
+   * @param segmentSize The size of each segment in bytes
+   * @param flushIntervalMillis How often the background thread forces the current segment to disk
+   * @throws IOException An IOException will be thrown if the directory or the first segment can not be created
+   */
+  public JsonRPCCaptureLog(@NotNull Path directory, int segmentSize, long flushIntervalMillis) throws IOException {
+    if(segmentSize < JsonRPCCaptureSegment.HEADER_SIZE + JsonRPCCaptureSegment.RECORD_HEADER_SIZE)
+      throw new IllegalArgumentException("The segment size is too small.");
+
+    this.directory = Files.createDirectories(directory);
+    this.segmentSize = segmentSize;
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+
+    try(Stream<Path> files = Files.list(directory)) {
+      nextSequence = files.map(path -> path.getFileName().toString())
+          .filter(name -> name.endsWith(JsonRPCCaptureSegment.LOG_SUFFIX))
+          .mapToLong(name -> Long.parseLong(name.substring(0, name.length() - JsonRPCCaptureSegment.LOG_SUFFIX.length())))
+          .max()
+          .orElse(-1) + 1;
+    }
+    catch(NumberFormatException e) {
+      throw new IOException("The directory contains files that are not part of a capture log.", e);
+    }
+
+    current = newSegment();
+
+    flusher = new Thread(this::flushLoop, "gsonrpc-capture-flusher");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  /**
+   * Appends a JSON encoded request payload.
+   *
+   * @param timestamp The time the payload arrived, in milliseconds since the epoch
+   * @param latencyNanos The time it took to process the payload
+   * @param messagesString The payload
+   */
+  public void append(long timestamp, long latencyNanos, @NotNull String messagesString) {
+    append(timestamp, latencyNanos, JsonWireFormat.NAME, messagesString.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Appends a request payload encoded with a wire format.
+   *
+   * @param timestamp The time the payload arrived, in milliseconds since the epoch
+   * @param latencyNanos The time it took to process the payload
+   * @param wireFormatName The name of the wire format the payload is encoded with
+   * @param messagesBytes The payload
+   */
+  public void append(long timestamp, long latencyNanos, @NotNull String wireFormatName, @NotNull byte[] messagesBytes) {
+    byte[] name = JsonRPCCaptureSegment.ascii(wireFormatName);
+
+    synchronized(this) {
+      JsonRPCCaptureSegment segment = current;
+
+      if(segment == null) {
+        dropped.increment();
+        return;
+      }
+
+      if(!segment.append(timestamp, latencyNanos, name, messagesBytes)) {
+        JsonRPCCaptureSegment nextSegment = next;
+
+        //Never wait for a segment; the background thread is woken to provide one for the following records
+        if(nextSegment == null || !nextSegment.append(timestamp, latencyNanos, name, messagesBytes)) {
+          dropped.increment();
+          LockSupport.unpark(flusher);
+          return;
+        }
+
+        next = null;
+        current = nextSegment;
+        finished.add(segment);
+        LockSupport.unpark(flusher);
+      }
+    }
+
+    recorded.increment();
+  }
+
+  public long getRecordedCount() {
+    return recorded.sum();
+  }
+
+  /**
+   * Gets the number of payloads that were not recorded because no segment was ready, the payload was larger than a
+   * segment, the segment limit was reached or the log was closed.
+   *
+   * @return The number of dropped payloads
+   */
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  public int getMaxSegments() {
+    return maxSegments;
+  }
+
+  /**
+   * Limits the number of segments the log creates, after which payloads are dropped. Zero means no limit.
+   *
+   * @param maxSegments The maximum number of segments
+   */
+  public void setMaxSegments(int maxSegments) {
+    this.maxSegments = maxSegments;
+  }
+
+  /**
+   * Gets the error that stopped the background thread from creating or flushing segments, if there was one.
+   *
+   * @return The IOException or null
+   */
+  @Nullable
+  public IOException getFailure() {
+    return failure;
+  }
+
+  @NotNull
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Stops recording, forces every segment to disk and writes the indexes. A segment prepared but never used is
+   * deleted.
+   */
+  @Override
+  public void close() throws IOException {
+    JsonRPCCaptureSegment segment;
+
+    synchronized(this) {
+      if(closed)
+        return;
+
+      closed = true;
+      segment = current;
+      current = null;
+    }
+
+    flusher.interrupt();
+    try {
+      flusher.join();
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    finished.add(segment);
+    flushFinished();
+
+    if(next != null)
+      Files.deleteIfExists(next.getLogPath());
+
+    if(failure != null)
+      throw failure;
+  }
+
+  private void flushLoop() {
+    while(!closed) {
+      try {
+        int limit = maxSegments;
+        if(next == null && failure == null && (limit == 0 || segmentCount < limit))
+          next = newSegment();
+
+        flushFinished();
+
+        JsonRPCCaptureSegment segment = current;
+        if(segment != null)
+          segment.force();
+      }
+      catch(IOException e) {
+        failure = e;
+      }
+
+      LockSupport.parkNanos(flushIntervalNanos);
+    }
+  }
+
+  private void flushFinished() {
+    JsonRPCCaptureSegment segment;
+
+    while((segment = finished.poll()) != null) {
+      segment.force();
+
+      try {
+        segment.writeIndex();
+      }
+      catch(IOException e) {
+        failure = e;
+      }
+    }
+  }
+
+  @NotNull
+  private JsonRPCCaptureSegment newSegment() throws IOException {
+    segmentCount++;
+    return JsonRPCCaptureSegment.create(directory, nextSequence++, segmentSize);
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.capture;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads the records of a capture log in the order they were appended, which is the order the payloads finished
+ * processing. A log that is still being written can be read; records appended after a segment was opened by the
+ * reader may or may not be seen.
+ *
+ * <pre>{@code
+ * try(JsonRPCCaptureReader reader = new JsonRPCCaptureReader(Paths.get("capture"))) {
+ *   reader.seek(startTimestamp);
+ *
+ *   JsonRPCCapturedRequest request;
+ *   while((request = reader.next()) != null)
+ *     replay(request.toJson());
+ * }
+ * }</pre>
+ *
+ * @version 1.0
+ */
+public class JsonRPCCaptureReader implements Closeable {
+  private final List<Path> segments;
+  private int segmentIndex = -1;
+  private ByteBuffer buffer;
+
+  /**
+   * Opens the capture log in a directory.
+   *
+   * @param directory The directory of the log
+   * @throws IOException An IOException will be thrown if the directory can not be listed
+   */
+  public JsonRPCCaptureReader(@NotNull Path directory) throws IOException {
+    try(Stream<Path> files = Files.list(directory)) {
+      segments = files.filter(path -> path.getFileName().toString().endsWith(JsonRPCCaptureSegment.LOG_SUFFIX))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Reads the next record.
+   *
+   * @return The next JsonRPCCapturedRequest or null at the end of the log
+   * @throws IOException An IOException will be thrown if a segment can not be read or is corrupt
+   */
+  @Nullable
+  public JsonRPCCapturedRequest next() throws IOException {
+    while(true) {
+      if(buffer != null && hasRecord(buffer))
+        return readRecord(buffer);
+
+      if(!openSegment(segmentIndex + 1))
+        return null;
+    }
+  }
+
+  /**
+   * Moves to the first record that arrived at or after a timestamp, using the segment indexes to skip most of the
+   * log. Arrival times are only roughly in order since records are appended as payloads finish, so a record that
+   * arrived slightly earlier may follow the position found.
+   *
+   * @param timestamp The time in milliseconds since the epoch
+   * @throws IOException An IOException will be thrown if a segment can not be read or is corrupt
+   */
+  public void seek(long timestamp) throws IOException {
+    int target = 0;
+
+    //The last segment starting at or before the timestamp; later segments can only hold later records
+    for(int i = 1; i < segments.size(); i++) {
+      Long firstTimestamp = firstTimestamp(segments.get(i));
+      if(firstTimestamp == null || firstTimestamp > timestamp)
+        break;
+      target = i;
+    }
+
+    if(!openSegment(target))
+      return;
+
+    ByteBuffer index = JsonRPCCaptureSegment.readIndex(segments.get(target));
+    if(index != null) {
+      int low = 0;
+      int high = index.capacity() / JsonRPCCaptureSegment.INDEX_ENTRY_SIZE - 1;
+      int offset = JsonRPCCaptureSegment.HEADER_SIZE;
+
+      while(low <= high) {
+        int middle = (low + high) >>> 1;
+        int entry = middle * JsonRPCCaptureSegment.INDEX_ENTRY_SIZE;
+
+        if(index.getLong(entry) < timestamp) {
+          offset = index.getInt(entry + 8);
+          low = middle + 1;
+        }
+        else
+          high = middle - 1;
+      }
+
+      buffer.position(offset);
+    }
+
+    while(true) {
+      if(buffer == null || !hasRecord(buffer)) {
+        if(!openSegment(segmentIndex + 1))
+          return;
+        continue;
+      }
+
+      int length = buffer.getInt(buffer.position());
+      if(length < JsonRPCCaptureSegment.RECORD_HEADER_SIZE - 4 || length > buffer.remaining() - 4)
+        throw new IOException("Corrupt capture log record.");
+
+      if(buffer.getLong(buffer.position() + 4) >= timestamp)
+        return;
+
+      buffer.position(buffer.position() + 4 + length);
+    }
+  }
+
+  @Override
+  public void close() {
+    buffer = null;
+    segmentIndex = segments.size();
+  }
+
+  private boolean openSegment(int index) throws IOException {
+    buffer = null;
+    segmentIndex = index;
+
+    if(index >= segments.size())
+      return false;
+
+    buffer = map(segments.get(index));
+    buffer.position(JsonRPCCaptureSegment.HEADER_SIZE);
+    return true;
+  }
+
+  @Nullable
+  private static Long firstTimestamp(@NotNull Path segment) throws IOException {
+    ByteBuffer buffer = map(segment);
+    buffer.position(JsonRPCCaptureSegment.HEADER_SIZE);
+
+    return hasRecord(buffer) ? buffer.getLong(buffer.position() + 4) : null;
+  }
+
+  @NotNull
+  private static ByteBuffer map(@NotNull Path segment) throws IOException {
+    try(FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+      if(buffer.remaining() < JsonRPCCaptureSegment.HEADER_SIZE || buffer.getInt(0) != JsonRPCCaptureSegment.MAGIC)
+        throw new IOException(segment + " is not a capture log segment.");
+
+      if(buffer.getInt(4) != JsonRPCCaptureSegment.VERSION)
+        throw new IOException(segment + " has an unsupported version.");
+
+      return buffer;
+    }
+  }
+
+  private static boolean hasRecord(@NotNull ByteBuffer buffer) {
+    return buffer.remaining() >= 4 && buffer.getInt(buffer.position()) != 0;
+  }
+
+  @NotNull
+  private static JsonRPCCapturedRequest readRecord(@NotNull ByteBuffer buffer) throws IOException {
+    int length = buffer.getInt();
+
+    if(length < JsonRPCCaptureSegment.RECORD_HEADER_SIZE - 4 || length > buffer.remaining())
+      throw new IOException("Corrupt capture log record.");
+
+    long timestamp = buffer.getLong();
+    long latencyNanos = buffer.getLong();
+    byte[] name = new byte[buffer.get() & 0xFF];
+    int payloadLength = length - (JsonRPCCaptureSegment.RECORD_HEADER_SIZE - 4) - name.length;
+
+    if(payloadLength < 0)
+      throw new IOException("Corrupt capture log record.");
+
+    byte[] payload = new byte[payloadLength];
+    buffer.get(name);
+    buffer.get(payload);
+
+    return new JsonRPCCapturedRequest(timestamp, latencyNanos, new String(name, StandardCharsets.US_ASCII), payload);
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.capture;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.BufferedOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * One file of a capture log, mapped into memory in full when it is created.
+ *
+ * <p>A segment starts with a magic number and a version, followed by records laid out as: the length of the rest of
+ * the record (int), the timestamp in milliseconds (long), the latency in nanoseconds (long), the length of the wire
+ * format name (byte), the wire format name in ASCII and the payload. The file is preallocated and zero filled, so a
+ * length of zero marks the end of the records. The length is written last, which means a reader never sees a
+ * record that is only partly written.</p>
+ *
+ * <p>Every INDEX_INTERVAL records the timestamp and offset of the record are added to a sparse index, written next
+ * to the segment once it is full.</p>
+ */
+final class JsonRPCCaptureSegment {
+  static final int MAGIC = 0x4A525043;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 8;
+  static final int RECORD_HEADER_SIZE = 4 + 8 + 8 + 1;
+  static final int INDEX_INTERVAL = 64;
+  static final int INDEX_ENTRY_SIZE = 12;
+
+  static final String LOG_SUFFIX = ".log";
+  static final String INDEX_SUFFIX = ".index";
+
+  private final long sequence;
+  private final Path logPath;
+  private final Path indexPath;
+  private final MappedByteBuffer buffer;
+
+  private int recordCount;
+  private long[] indexTimestamps = new long[16];
+  private int[] indexOffsets = new int[16];
+  private int indexSize;
+
+  private JsonRPCCaptureSegment(long sequence, @NotNull Path logPath, @NotNull MappedByteBuffer buffer) {
+    this.sequence = sequence;
+    this.logPath = logPath;
+    this.indexPath = logPath.resolveSibling(fileName(sequence, INDEX_SUFFIX));
+    this.buffer = buffer;
+  }
+
+  /**
+   * Creates, preallocates and maps a new segment. This touches the disk, so the capture log only calls it from its
+   * background thread.
+   */
+  @NotNull
+  static JsonRPCCaptureSegment create(@NotNull Path directory, long sequence, int size) throws IOException {
+    Path logPath = directory.resolve(fileName(sequence, LOG_SUFFIX));
+
+    try(FileChannel channel = FileChannel.open(logPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.putInt(MAGIC);
+      buffer.putInt(VERSION);
+      return new JsonRPCCaptureSegment(sequence, logPath, buffer);
+    }
+  }
+
+  @NotNull
+  static String fileName(long sequence, @NotNull String suffix) {
+    return String.format("%016d", sequence) + suffix;
+  }
+
+  /**
+   * Appends a record, returning false without writing anything if it does not fit.
+   */
+  boolean append(long timestamp, long latencyNanos, @NotNull byte[] wireFormatName, @NotNull byte[] payload) {
+    int offset = buffer.position();
+    int length = RECORD_HEADER_SIZE - 4 + wireFormatName.length + payload.length;
+
+    //Four bytes are kept free so the zero length marking the end always fits
+    if(buffer.remaining() < 4 + length + 4)
+      return false;
+
+    buffer.position(offset + 4);
+    buffer.putLong(timestamp);
+    buffer.putLong(latencyNanos);
+    buffer.put((byte) wireFormatName.length);
+    buffer.put(wireFormatName);
+    buffer.put(payload);
+    buffer.putInt(offset, length);
+
+    if(recordCount++ % INDEX_INTERVAL == 0)
+      addIndexEntry(timestamp, offset);
+
+    return true;
+  }
+
+  /**
+   * Writes the mapped pages back to the file. The page cache would do this eventually; forcing bounds how much a
+   * crash can lose.
+   */
+  void force() {
+    buffer.force();
+  }
+
+  void writeIndex() throws IOException {
+    long[] timestamps;
+    int[] offsets;
+
+    synchronized(this) {
+      timestamps = Arrays.copyOf(indexTimestamps, indexSize);
+      offsets = Arrays.copyOf(indexOffsets, indexSize);
+    }
+
+    try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexPath)))) {
+      for(int i = 0; i < timestamps.length; i++) {
+        out.writeLong(timestamps[i]);
+        out.writeInt(offsets[i]);
+      }
+    }
+  }
+
+  long getSequence() {
+    return sequence;
+  }
+
+  @NotNull
+  Path getLogPath() {
+    return logPath;
+  }
+
+  private synchronized void addIndexEntry(long timestamp, int offset) {
+    if(indexSize == indexTimestamps.length) {
+      indexTimestamps = Arrays.copyOf(indexTimestamps, indexSize * 2);
+      indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+    }
+
+    indexTimestamps[indexSize] = timestamp;
+    indexOffsets[indexSize] = offset;
+    indexSize++;
+  }
+
+  /**
+   * Reads the sparse index of a segment, returning null if the segment was never finished and has no index.
+   */
+  @Nullable
+  static ByteBuffer readIndex(@NotNull Path logPath) throws IOException {
+    String fileName = logPath.getFileName().toString();
+    Path indexPath = logPath.resolveSibling(fileName.substring(0, fileName.length() - LOG_SUFFIX.length()) + INDEX_SUFFIX);
+
+    if(!Files.exists(indexPath))
+      return null;
+
+    return ByteBuffer.wrap(Files.readAllBytes(indexPath));
+  }
+
+  @NotNull
+  static byte[] ascii(@NotNull String name) {
+    return name.getBytes(StandardCharsets.US_ASCII);
+  }
+}
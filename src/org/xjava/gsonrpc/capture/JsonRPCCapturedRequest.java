@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.capture;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import org.jetbrains.annotations.NotNull;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormat;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormats;
+import org.xjava.gsonrpc.wire.JsonWireFormat;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A request payload read back from a capture log.
+ *
+ * @version 1.0
+ */
+public class JsonRPCCapturedRequest {
+  private final long timestamp;
+  private final long latencyNanos;
+  private final String wireFormatName;
+  private final byte[] payload;
+
+  public JsonRPCCapturedRequest(long timestamp, long latencyNanos, @NotNull String wireFormatName, @NotNull byte[] payload) {
+    this.timestamp = timestamp;
+    this.latencyNanos = latencyNanos;
+    this.wireFormatName = wireFormatName;
+    this.payload = payload;
+  }
+
+  /**
+   * Gets the time the payload arrived.
+   *
+   * @return The time in milliseconds since the epoch
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * Gets the time it took GsonRPC to process the payload when it was recorded.
+   *
+   * @return The latency in nanoseconds
+   */
+  public long getLatencyNanos() {
+    return latencyNanos;
+  }
+
+  @NotNull
+  public String getWireFormatName() {
+    return wireFormatName;
+  }
+
+  /**
+   * Gets the payload as it was received, encoded with the wire format named by {@link #getWireFormatName()}.
+   *
+   * @return The payload
+   */
+  @NotNull
+  public byte[] getPayload() {
+    return payload;
+  }
+
+  /**
+   * Decodes the payload with its wire format.
+   *
+   * @return The JsonElement
+   * @throws JsonParseException A JsonParseException will be thrown if the wire format is not registered or the
+   * payload is not valid for it
+   */
+  @NotNull
+  public JsonElement toJsonTree() throws JsonParseException {
+    JsonRPCWireFormat wireFormat = JsonRPCWireFormats.forName(wireFormatName);
+    if(wireFormat == null)
+      throw new JsonParseException("Unknown wire format " + wireFormatName);
+
+    return wireFormat.decode(payload);
+  }
+
+  /**
+   * Gets the payload as JSON text. A payload recorded as JSON is returned as it was received, even if it is not
+   * valid JSON, so replaying it reproduces the original parse errors.
+   *
+   * @return The JSON encoded String
+   * @throws JsonParseException A JsonParseException will be thrown if a binary payload can not be decoded
+   */
+  @NotNull
+  public String toJson() throws JsonParseException {
+    if(JsonWireFormat.NAME.equals(wireFormatName))
+      return new String(payload, StandardCharsets.UTF_8);
+
+    return toJsonTree().toString();
+  }
+}
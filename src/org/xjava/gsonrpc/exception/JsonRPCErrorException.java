@@ -25,8 +25,8 @@
 package org.xjava.gsonrpc.exception;
 
 import com.google.gson.JsonElement;
-import com.sun.istack.internal.NotNull;
-import com.sun.istack.internal.Nullable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.xjava.gsonrpc.JsonRPCError;
 import org.xjava.gsonrpc.message.JsonRPCErrorResponse;
 
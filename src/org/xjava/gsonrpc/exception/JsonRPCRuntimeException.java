@@ -24,7 +24,7 @@
 
 package org.xjava.gsonrpc.exception;
 
-import com.sun.istack.internal.NotNull;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * @version 1.0
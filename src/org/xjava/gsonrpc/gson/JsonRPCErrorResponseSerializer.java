@@ -28,9 +28,12 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
+import org.jetbrains.annotations.NotNull;
+import org.xjava.gsonrpc.JsonRPCError;
 import org.xjava.gsonrpc.message.JsonRPCErrorResponse;
 
 import java.lang.reflect.Type;
+import java.util.IdentityHashMap;
 
 /**
  * @version 1.0
@@ -38,6 +41,20 @@ import java.lang.reflect.Type;
  */
 public class JsonRPCErrorResponseSerializer implements JsonSerializer<JsonRPCErrorResponse> {
 
+  //The standard errors are encoded once and shared, so that rejecting a flood of requests costs as little as possible
+  private static final IdentityHashMap<JsonRPCError, JsonObject> preEncoded = new IdentityHashMap<>();
+
+  static {
+    JsonRPCError[] errors = {
+        JsonRPCError.PARSE_ERROR, JsonRPCError.UNSUPPORTED_VERSION, JsonRPCError.INVALID_REQUEST,
+        JsonRPCError.METHOD_NOT_FOUND, JsonRPCError.INVALID_PARAMS, JsonRPCError.INTERNAL_ERROR,
+        JsonRPCError.SERVER_BUSY, JsonRPCError.DEADLINE_EXCEEDED, JsonRPCError.RATE_LIMITED
+    };
+
+    for(JsonRPCError error : errors)
+      preEncoded.put(error, encode(error));
+  }
+
   @Override
   public JsonElement serialize(JsonRPCErrorResponse errorResponse, Type type, JsonSerializationContext ctx) {
     JsonObject json = new JsonObject();
@@ -45,13 +62,26 @@ public class JsonRPCErrorResponseSerializer implements JsonSerializer<JsonRPCErr
     json.addProperty("jsonrpc", errorResponse.getVersion());
     json.addProperty("id", errorResponse.getId());
 
-    JsonObject error = ctx.serialize(errorResponse.getError()).getAsJsonObject();
+    boolean hasData = errorResponse.getDataJson() != null && !errorResponse.getDataJson().isJsonNull();
+    JsonObject error = hasData ? null : preEncoded.get(errorResponse.getError());
+
+    if(error == null) {
+      error = encode(errorResponse.getError());
 
-    if(errorResponse.getDataJson() != null && !errorResponse.getDataJson().isJsonNull())
-      error.add("data", errorResponse.getDataJson());
+      if(hasData)
+        error.add("data", errorResponse.getDataJson());
+    }
 
     json.add("error", error);
 
     return json;
   }
+
+  @NotNull
+  private static JsonObject encode(@NotNull JsonRPCError error) {
+    JsonObject json = new JsonObject();
+    json.addProperty("code", error.getCode());
+    json.addProperty("message", error.getMessage());
+    return json;
+  }
 }
\ No newline at end of file
@@ -48,7 +48,9 @@ public class JsonRPCMessageDeserializer implements JsonDeserializer<JsonRPCMessa
       if (json.has("method")) {
         String method = json.get("method").getAsString();
         JsonElement paramsJson = json.get("params");
-        return new JsonRPCRequest(version, id, method, paramsJson);
+        JsonElement timeoutJson = json.get("timeout");
+        Long timeout = timeoutJson == null || timeoutJson.isJsonNull() ? null : timeoutJson.getAsLong();
+        return new JsonRPCRequest(version, id, method, paramsJson, timeout);
       }
       else if (json.has("result")) {
         JsonElement resultJson = json.get("result");
@@ -0,0 +1,178 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.xjava.gsonrpc.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.JsonRPCError;
+import org.xjava.gsonrpc.message.*;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Writes GsonRPC messages straight to a JsonWriter. The output is the same as serializing the messages to a
+ * JsonElement and writing that, but the envelope of each message is streamed rather than built as a JsonObject
+ * first; only the params, result and error data, which are already trees, are written as trees. A streamed result
+ * is written element by element.
+ *
+ * @version 1.0
+ */
+public class JsonRPCMessageWriter {
+  private final Gson gson;
+  private final TypeAdapter<JsonElement> elementAdapter;
+
+  public JsonRPCMessageWriter(@NotNull Gson gson) {
+    this.gson = gson;
+    elementAdapter = gson.getAdapter(JsonElement.class);
+  }
+
+  /**
+   * Writes a List of messages: an array if there is more than one, the message itself if there is one and nothing
+   * at all if there are none.
+   *
+   * @param out The JsonWriter
+   * @param messages The List of JsonRPCMessage objects
+   * @throws IOException An IOException will be thrown if the JsonWriter can not be written to
+   */
+  public void write(@NotNull JsonWriter out, @NotNull List<JsonRPCMessage> messages) throws IOException {
+    if(messages.size() == 1)
+      write(out, messages.get(0));
+    else if(messages.size() > 1) {
+      out.beginArray();
+      for(JsonRPCMessage message : messages)
+        write(out, message);
+      out.endArray();
+    }
+  }
+
+  public void write(@NotNull JsonWriter out, @NotNull JsonRPCMessage message) throws IOException {
+    if(message.isResponse())
+      writeResponse(out, message.getAsResponse());
+    else if(message.isErrorResponse())
+      writeErrorResponse(out, message.getAsErrorResponse());
+    else if(message.isRequest())
+      writeRequest(out, message.getAsRequest());
+    else
+      elementAdapter.write(out, gson.toJsonTree(message));
+  }
+
+  private void writeRequest(@NotNull JsonWriter out, @NotNull JsonRPCRequest request) throws IOException {
+    writeEnvelope(out, request);
+    out.name("method").value(request.getMethod());
+
+    if(request.getParamsJson() != null && !request.getParamsJson().isJsonNull()) {
+      out.name("params");
+      elementAdapter.write(out, request.getParamsJson());
+    }
+
+    if(request.getTimeout() != null)
+      out.name("timeout").value(request.getTimeout());
+
+    out.endObject();
+  }
+
+  private void writeResponse(@NotNull JsonWriter out, @NotNull JsonRPCResponse response) throws IOException {
+    writeEnvelope(out, response);
+    out.name("result");
+
+    if(response instanceof JsonRPCPrimitiveResponse)
+      writePrimitive(out, (JsonRPCPrimitiveResponse) response);
+    else if(response instanceof JsonRPCRawResponse)
+      out.jsonValue(response.getRawResult().toString());
+    else if(response instanceof JsonRPCStreamResponse && !((JsonRPCStreamResponse) response).hasResultJson())
+      writeStream(out, (JsonRPCStreamResponse) response);
+    else
+      writeElement(out, response.getResultJson());
+
+    out.endObject();
+  }
+
+  private void writePrimitive(@NotNull JsonWriter out, @NotNull JsonRPCPrimitiveResponse response) throws IOException {
+    Class<?> resultType = response.getResultType();
+
+    if(resultType == Double.TYPE)
+      out.value(response.getResultAsDouble());
+    else if(resultType == Boolean.TYPE)
+      out.value(response.getResultAsBoolean());
+    else
+      out.value(response.getResultAsLong());
+  }
+
+  /**
+   * Writes the elements of a streamed result one at a time, each straight after it is produced, and closes the
+   * stream whether or not all of it could be written.
+   */
+  private void writeStream(@NotNull JsonWriter out, @NotNull JsonRPCStreamResponse response) throws IOException {
+    Iterator<?> elements = response.getElements();
+    TypeAdapter<Object> elementAdapter = response.getElementAdapter();
+
+    try {
+      out.beginArray();
+      while(elements.hasNext())
+        elementAdapter.write(out, elements.next());
+      out.endArray();
+    }
+    finally {
+      response.close();
+    }
+  }
+
+  private void writeErrorResponse(@NotNull JsonWriter out, @NotNull JsonRPCErrorResponse errorResponse) throws IOException {
+    JsonRPCError error = errorResponse.getError();
+
+    writeEnvelope(out, errorResponse);
+    out.name("error").beginObject();
+    out.name("code").value(error.getCode());
+    out.name("message").value(error.getMessage());
+
+    if(errorResponse.getDataJson() != null && !errorResponse.getDataJson().isJsonNull()) {
+      out.name("data");
+      elementAdapter.write(out, errorResponse.getDataJson());
+    }
+
+    out.endObject();
+    out.endObject();
+  }
+
+  private void writeEnvelope(@NotNull JsonWriter out, @NotNull JsonRPCMessage message) throws IOException {
+    out.beginObject();
+    out.name("jsonrpc").value(message.getVersion());
+    out.name("id").value(message.getId());
+  }
+
+  private void writeElement(@NotNull JsonWriter out, @Nullable JsonElement element) throws IOException {
+    if(element == null)
+      out.nullValue();
+    else
+      elementAdapter.write(out, element);
+  }
+}
@@ -46,6 +46,9 @@ public class JsonRPCRequestSerializer implements JsonSerializer<JsonRPCRequest>
     if(request.getParamsJson() != null && !request.getParamsJson().isJsonNull())
       json.add("params", request.getParamsJson());
 
+    if(request.getTimeout() != null)
+      json.addProperty("timeout", request.getTimeout());
+
     return json;
   }
 }
\ No newline at end of file
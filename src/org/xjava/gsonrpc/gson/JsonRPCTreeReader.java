@@ -0,0 +1,360 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.xjava.gsonrpc.gson;
+
+import com.google.gson.*;
+import com.google.gson.internal.bind.JsonTreeReader;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A JsonReader over a JsonElement that can be pointed at another element and read again. It reads elements the way
+ * Gson reads them in Gson.fromJson(JsonElement, Class), but Gson creates a new reader, with a character buffer it
+ * never uses, for every element it reads; binding the params of a call through one of these, kept by the thread,
+ * costs only the iterators of the arrays and objects it steps into.
+ *
+ * <p>Gson reads the keys of a map by promoting them to values, which it can only do on its own tree reader, and
+ * reads anything else as a stream of characters. {@link #read(TypeAdapter, JsonElement)} reads an element that has a
+ * map in it again through Gson's reader.</p>
+ *
+ * @version 1.0
+ */
+public class JsonRPCTreeReader extends JsonReader {
+  private static final MapKeyPromotionException MAP_KEY_PROMOTION = new MapKeyPromotionException();
+
+  private static final Reader UNREADABLE_READER = new Reader() {
+    @Override
+    public int read(char[] buffer, int offset, int count) {
+      //Only promoting a map key falls through to the characters of the JsonReader
+      throw MAP_KEY_PROMOTION;
+    }
+
+    @Override
+    public void close() {
+      throw new AssertionError();
+    }
+  };
+
+  private Object[] stack = new Object[32];
+  private int[] pathIndices = new int[32];
+  private String[] pathNames = new String[32];
+  private int stackSize;
+
+  public JsonRPCTreeReader() {
+    super(UNREADABLE_READER);
+  }
+
+  /**
+   * Starts reading an element, discarding whatever was left of the previous one.
+   *
+   * @param element The JsonElement
+   */
+  public void reset(@NotNull JsonElement element) {
+    Arrays.fill(stack, 0, stackSize, null);
+    Arrays.fill(pathNames, 0, stackSize, null);
+    stackSize = 0;
+    push(element);
+  }
+
+  /**
+   * Reads an element with a TypeAdapter, through this reader or, if the adapter reads a map, through Gson's.
+   *
+   * @param adapter The TypeAdapter
+   * @param element The JsonElement
+   * @return The value read
+   * @throws IOException An IOException will be thrown if the element does not match the adapter
+   */
+  public <T> T read(@NotNull TypeAdapter<T> adapter, @NotNull JsonElement element) throws IOException {
+    reset(element);
+
+    try {
+      return adapter.read(this);
+    }
+    catch(MapKeyPromotionException e) {
+      JsonTreeReader reader = new JsonTreeReader(element);
+      reader.setLenient(isLenient());
+      return adapter.read(reader);
+    }
+  }
+
+  /**
+   * Lets go of the element read last, so the reader does not keep it reachable.
+   */
+  public void clear() {
+    Arrays.fill(stack, 0, stackSize, null);
+    Arrays.fill(pathNames, 0, stackSize, null);
+    stackSize = 0;
+  }
+
+  @Override
+  public void beginArray() throws IOException {
+    expect(JsonToken.BEGIN_ARRAY);
+    JsonArray array = (JsonArray) peekStack();
+    push(array.iterator());
+    pathIndices[stackSize - 1] = 0;
+  }
+
+  @Override
+  public void endArray() throws IOException {
+    expect(JsonToken.END_ARRAY);
+    popStack();
+    popStack();
+    incrementPathIndex();
+  }
+
+  @Override
+  public void beginObject() throws IOException {
+    expect(JsonToken.BEGIN_OBJECT);
+    JsonObject object = (JsonObject) peekStack();
+    push(object.entrySet().iterator());
+  }
+
+  @Override
+  public void endObject() throws IOException {
+    expect(JsonToken.END_OBJECT);
+    pathNames[stackSize - 1] = null;
+    popStack();
+    popStack();
+    incrementPathIndex();
+  }
+
+  @Override
+  public boolean hasNext() throws IOException {
+    JsonToken token = peek();
+    return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+  }
+
+  @Override
+  public JsonToken peek() throws IOException {
+    if(stackSize == 0)
+      return JsonToken.END_DOCUMENT;
+
+    Object top = peekStack();
+
+    if(top instanceof Iterator) {
+      boolean isObject = stack[stackSize - 2] instanceof JsonObject;
+      Iterator<?> iterator = (Iterator<?>) top;
+
+      if(!iterator.hasNext())
+        return isObject ? JsonToken.END_OBJECT : JsonToken.END_ARRAY;
+
+      if(isObject)
+        return JsonToken.NAME;
+
+      push(iterator.next());
+      return peek();
+    }
+    else if(top instanceof JsonObject)
+      return JsonToken.BEGIN_OBJECT;
+    else if(top instanceof JsonArray)
+      return JsonToken.BEGIN_ARRAY;
+    else if(top instanceof JsonPrimitive) {
+      JsonPrimitive primitive = (JsonPrimitive) top;
+
+      if(primitive.isString())
+        return JsonToken.STRING;
+      else if(primitive.isBoolean())
+        return JsonToken.BOOLEAN;
+      else
+        return JsonToken.NUMBER;
+    }
+    else if(top instanceof JsonNull)
+      return JsonToken.NULL;
+    else
+      throw new MalformedJsonException("Custom JsonElement subclass " + top.getClass().getName() + " is not supported");
+  }
+
+  @Override
+  public String nextName() throws IOException {
+    expect(JsonToken.NAME);
+    Map.Entry<?, ?> entry = (Map.Entry<?, ?>) ((Iterator<?>) peekStack()).next();
+    String name = (String) entry.getKey();
+    pathNames[stackSize - 1] = name;
+    push(entry.getValue());
+    return name;
+  }
+
+  @Override
+  public String nextString() throws IOException {
+    JsonToken token = peek();
+    if(token != JsonToken.STRING && token != JsonToken.NUMBER)
+      throw new IllegalStateException("Expected " + JsonToken.STRING + " but was " + token + locationString());
+
+    String string = ((JsonPrimitive) popStack()).getAsString();
+    incrementPathIndex();
+    return string;
+  }
+
+  @Override
+  public boolean nextBoolean() throws IOException {
+    expect(JsonToken.BOOLEAN);
+    boolean value = ((JsonPrimitive) popStack()).getAsBoolean();
+    incrementPathIndex();
+    return value;
+  }
+
+  @Override
+  public void nextNull() throws IOException {
+    expect(JsonToken.NULL);
+    popStack();
+    incrementPathIndex();
+  }
+
+  @Override
+  public double nextDouble() throws IOException {
+    expectNumber();
+    double value = ((JsonPrimitive) peekStack()).getAsDouble();
+    if(!isLenient() && (Double.isNaN(value) || Double.isInfinite(value)))
+      throw new MalformedJsonException("JSON forbids NaN and infinities: " + value);
+
+    popStack();
+    incrementPathIndex();
+    return value;
+  }
+
+  @Override
+  public long nextLong() throws IOException {
+    expectNumber();
+    long value = ((JsonPrimitive) peekStack()).getAsLong();
+    popStack();
+    incrementPathIndex();
+    return value;
+  }
+
+  @Override
+  public int nextInt() throws IOException {
+    expectNumber();
+    int value = ((JsonPrimitive) peekStack()).getAsInt();
+    popStack();
+    incrementPathIndex();
+    return value;
+  }
+
+  @Override
+  public void skipValue() throws IOException {
+    JsonToken token = peek();
+
+    if(token == JsonToken.NAME)
+      nextName();
+    else if(token == JsonToken.END_ARRAY)
+      endArray();
+    else if(token == JsonToken.END_OBJECT)
+      endObject();
+    else if(token != JsonToken.END_DOCUMENT) {
+      popStack();
+      incrementPathIndex();
+    }
+  }
+
+  @Override
+  public void close() {
+    clear();
+  }
+
+  @Override
+  public String getPath() {
+    StringBuilder path = new StringBuilder().append('$');
+
+    for(int i = 0; i < stackSize; i++) {
+      if(stack[i] instanceof JsonArray) {
+        if(++i < stackSize && stack[i] instanceof Iterator)
+          path.append('[').append(pathIndices[i]).append(']');
+      }
+      else if(stack[i] instanceof JsonObject) {
+        if(++i < stackSize && stack[i] instanceof Iterator) {
+          path.append('.');
+          if(pathNames[i] != null)
+            path.append(pathNames[i]);
+        }
+      }
+    }
+
+    return path.toString();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + locationString();
+  }
+
+  private void expect(@NotNull JsonToken expected) throws IOException {
+    if(peek() != expected)
+      throw new IllegalStateException("Expected " + expected + " but was " + peek() + locationString());
+  }
+
+  private void expectNumber() throws IOException {
+    JsonToken token = peek();
+    if(token != JsonToken.NUMBER && token != JsonToken.STRING)
+      throw new IllegalStateException("Expected " + JsonToken.NUMBER + " but was " + token + locationString());
+  }
+
+  @NotNull
+  private String locationString() {
+    return " at path " + getPath();
+  }
+
+  private Object peekStack() {
+    return stack[stackSize - 1];
+  }
+
+  private Object popStack() {
+    Object top = stack[--stackSize];
+    stack[stackSize] = null;
+    return top;
+  }
+
+  private void push(@NotNull Object value) {
+    if(stackSize == stack.length) {
+      int newLength = stackSize * 2;
+      stack = Arrays.copyOf(stack, newLength);
+      pathIndices = Arrays.copyOf(pathIndices, newLength);
+      pathNames = Arrays.copyOf(pathNames, newLength);
+    }
+
+    stack[stackSize++] = value;
+  }
+
+  private void incrementPathIndex() {
+    if(stackSize > 0)
+      pathIndices[stackSize - 1]++;
+  }
+
+  private static final class MapKeyPromotionException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private MapKeyPromotionException() {
+      super("Map keys can only be promoted by Gson's tree reader", null, false, false);
+    }
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.gson;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.internal.bind.JsonTreeWriter;
+import com.google.gson.internal.bind.TypeAdapters;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.xjava.gsonrpc.RawJson;
+
+import java.io.IOException;
+
+/**
+ * Writes a RawJson into the JSON being written as it is, and reads any JSON value as a RawJson. Gson can only build
+ * a tree from parsed values, so a RawJson written to a tree is parsed first.
+ *
+ * @version 1.0
+ */
+public class RawJsonTypeAdapter extends TypeAdapter<RawJson> {
+
+  @Override
+  public void write(JsonWriter out, RawJson value) throws IOException {
+    if(value == null)
+      out.nullValue();
+    else if(out instanceof JsonTreeWriter)
+      TypeAdapters.JSON_ELEMENT.write(out, value.toJsonTree());
+    else
+      out.jsonValue(value.toString());
+  }
+
+  @Override
+  public RawJson read(JsonReader in) throws IOException {
+    if(in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+
+    return RawJson.of(TypeAdapters.JSON_ELEMENT.read(in));
+  }
+}
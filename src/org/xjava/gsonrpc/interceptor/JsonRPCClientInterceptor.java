@@ -0,0 +1,43 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.interceptor;
+
+import org.xjava.gsonrpc.message.JsonRPCRequest;
+
+import java.lang.reflect.Method;
+
+/**
+ * Wraps the calls made through service proxies. An interceptor sees the request built for a call and the interface
+ * method that was called before the request is sent, and the decoded result after the response is received.
+ *
+ * <p>An interceptor continues the call with {@code next.call(request)}, where it may pass a different request,
+ * and returns its result, possibly changed. It can also answer without calling next or throw to fail the call.</p>
+ *
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface JsonRPCClientInterceptor {
+  public Object intercept(JsonRPCRequest request, Method method, JsonRPCCall next) throws Throwable;
+}
@@ -0,0 +1,52 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.interceptor;
+
+import org.xjava.gsonrpc.RPCMethodData;
+import org.xjava.gsonrpc.message.JsonRPCRequest;
+
+/**
+ * Wraps the invocation of RPC methods by a JsonRPCRequestHandler. An interceptor sees the parsed request, the method
+ * it resolved to and the bound params before the method runs, and the result after it returns.
+ *
+ * <p>An interceptor continues the call with {@code next.invoke(request, params)} and returns its result, possibly
+ * changed. It can also answer without calling next, or reject the call by throwing a JsonRPCErrorException, which
+ * is sent back as that error. Any other exception is answered with an internal error.</p>
+ *
+ * <pre>{@code
+ * requestHandler.addInterceptor((request, methodData, params, next) -> {
+ *   long start = System.nanoTime();
+ *   Object result = next.invoke(request, params);
+ *   log(methodData.getMethodName(), System.nanoTime() - start);
+ *   return result;
+ * });
+ * }</pre>
+ *
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface JsonRPCServerInterceptor {
+  public Object intercept(JsonRPCRequest request, RPCMethodData methodData, Object[] params, JsonRPCInvoker next) throws Exception;
+}
@@ -0,0 +1,56 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A JDK Flight Recorder event for a list of messages processed by GsonRPC.processRequests.
+ *
+ * @version 1.0
+ */
+@Name("org.xjava.gsonrpc.Batch")
+@Label("JSON-RPC Batch")
+@Category({"GsonRPC"})
+@Description("A batch of JSON-RPC messages processed by GsonRPC")
+@StackTrace(false)
+@Threshold("1 ms")
+public class JsonRPCBatchEvent extends Event {
+  @Label("Batch Size")
+  @Description("The number of messages in the batch")
+  public int batchSize;
+
+  @Label("Response Count")
+  public int responseCount;
+
+  @Label("Payload Size")
+  @Description("The size of the encoded payload in bytes, UTF-8 for JSON text, 0 if it was already parsed")
+  @DataAmount
+  public long payloadSize;
+
+  @Label("Error Count")
+  @Description("The number of error responses")
+  public int errorCount;
+}
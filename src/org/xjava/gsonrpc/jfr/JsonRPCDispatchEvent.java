@@ -0,0 +1,58 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A JDK Flight Recorder event for a request handled by a JsonRPCRequestHandler.
+ *
+ * <p>The GsonRPC events are only committed when a recording enables them, and only for calls longer than their
+ * threshold (1 ms unless the recording settings say otherwise). When no recording is running the JVM reduces them
+ * to no-ops.</p>
+ *
+ * @version 1.0
+ */
+@Name("org.xjava.gsonrpc.Dispatch")
+@Label("JSON-RPC Dispatch")
+@Category({"GsonRPC"})
+@Description("A JSON-RPC request handled by a JsonRPCRequestHandler")
+@StackTrace(false)
+@Threshold("1 ms")
+public class JsonRPCDispatchEvent extends Event {
+  @Label("Method")
+  public String method;
+
+  @Label("Id")
+  public String id;
+
+  @Label("Outcome")
+  @Description("success or error")
+  public String outcome;
+
+  @Label("Error Code")
+  @Description("The JSON-RPC error code the request was answered with, 0 on success")
+  public int errorCode;
+}
@@ -0,0 +1,56 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A JDK Flight Recorder event for a method called through a JsonRPCServiceProxy. The sizes of the request and the
+ * response are on the nested Transport event.
+ *
+ * @version 1.0
+ */
+@Name("org.xjava.gsonrpc.ProxyCall")
+@Label("JSON-RPC Proxy Call")
+@Category({"GsonRPC"})
+@Description("A JSON-RPC call made through a service proxy")
+@StackTrace(false)
+@Threshold("1 ms")
+public class JsonRPCProxyCallEvent extends Event {
+  @Label("Method")
+  public String method;
+
+  @Label("Id")
+  public String id;
+
+  @Label("Outcome")
+  @Description("success, error when the server answered with an error, or failure when no valid answer was received")
+  public String outcome;
+
+  @Label("Error Code")
+  @Description("The JSON-RPC error code of the answer, 0 unless the outcome is error")
+  public int errorCode;
+
+}
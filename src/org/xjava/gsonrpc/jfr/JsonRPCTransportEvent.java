@@ -0,0 +1,59 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A JDK Flight Recorder event for encoded messages moved by a transport.
+ *
+ * @version 1.0
+ */
+@Name("org.xjava.gsonrpc.Transport")
+@Label("JSON-RPC Transport")
+@Category({"GsonRPC"})
+@Description("Encoded JSON-RPC messages read from or written to a transport")
+@StackTrace(false)
+@Threshold("1 ms")
+public class JsonRPCTransportEvent extends Event {
+  public static final String READ = "read";
+  public static final String WRITE = "write";
+  public static final String EXCHANGE = "exchange";
+
+  @Label("Transport")
+  public String transport;
+
+  @Label("Operation")
+  @Description("read, write, or exchange for a request written and its response read in one call")
+  public String operation;
+
+  @Label("Bytes Read")
+  @DataAmount
+  public long bytesRead;
+
+  @Label("Bytes Written")
+  @DataAmount
+  public long bytesWritten;
+}
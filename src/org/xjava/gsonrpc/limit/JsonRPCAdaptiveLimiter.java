@@ -0,0 +1,259 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.limit;
+
+import org.jetbrains.annotations.NotNull;
+import org.xjava.gsonrpc.annotation.RPCPriority;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrency limit for a whole JsonRPCRequestHandler that adjusts itself from the latency it observes, following
+ * the gradient approach: while latency stays close to the latency of an unloaded server the limit grows, and once
+ * requests start queueing inside the server and latency rises the limit shrinks in proportion. The limit therefore tracks the
+ * concurrency the server can actually sustain without anyone having to tune it, and requests beyond it are
+ * rejected instead of adding to the queue, which keeps the latency of the admitted requests bounded as the offered
+ * load goes past capacity.
+ *
+ * <p>Each call is admitted against a share of the limit that depends on the priority of its method: by default high
+ * priority methods may use all of it, normal ones 90% and low ones half. Notifications are further held to the
+ * notification share. As the server approaches the limit low priority calls and notifications are therefore shed
+ * first, and the callers that matter most are served from the headroom that is left.</p>
+ *
+ * <p>The latency of an unloaded server is estimated as the lowest latency seen over the last two windows of
+ * calls; using windows lets the estimate follow a server that became slower for good, such as after a deployment.
+ * A moving average follows the latency of the last few calls. Each completed call updates the limit to
+ * {@code limit * min(1, tolerance * lowest / average) + sqrt(limit)}, smoothed, and bounded by the minimum and maximum
+ * limits. The square root term lets the limit keep probing upwards while latency is flat. While fewer than half of
+ * the permits are in use the limit is not raised, since the latency then says nothing about what more load would
+ * do.</p>
+ *
+ * @version 1.0
+ */
+public class JsonRPCAdaptiveLimiter {
+  public static final int DEFAULT_INITIAL_LIMIT = 20;
+  public static final int DEFAULT_MIN_LIMIT = 4;
+  public static final int DEFAULT_MAX_LIMIT = 1000;
+  public static final double DEFAULT_NOTIFICATION_SHARE = 0.75;
+
+  private static final double AVERAGE_WINDOW = 10;
+  private static final int MINIMUM_WINDOW = 1000;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final LongAdder rejected = new LongAdder();
+
+  private volatile int limit;
+  private volatile double tolerance = 1.5;
+  private volatile double smoothing = 0.2;
+  private volatile double notificationShare = DEFAULT_NOTIFICATION_SHARE;
+  private volatile double[] shares = { 1.0, 0.9, 0.5 };
+
+  private double estimatedLimit;
+  private double averageRtt;
+  private double windowMinRtt = Double.MAX_VALUE;
+  private double previousWindowMinRtt = Double.MAX_VALUE;
+  private int windowSamples;
+
+  public JsonRPCAdaptiveLimiter() {
+    this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT);
+  }
+
+  public JsonRPCAdaptiveLimiter(int initialLimit, int minLimit, int maxLimit) {
+    if(minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit)
+      throw new IllegalArgumentException("The limits must satisfy 0 < minLimit <= initialLimit <= maxLimit.");
+
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.limit = initialLimit;
+    this.estimatedLimit = initialLimit;
+  }
+
+  /**
+   * Gets the share of the limit a call may use.
+   *
+   * @param priority The priority of the method called
+   * @param notification Whether the call is a notification
+   * @return The share, from 0 to 1
+   */
+  public double getShare(@NotNull RPCPriority priority, boolean notification) {
+    double share = shares[priority.ordinal()];
+    return notification ? Math.min(share, notificationShare) : share;
+  }
+
+  /**
+   * Sets the share of the limit the calls to methods of a priority may use.
+   *
+   * @param priority The RPCPriority
+   * @param share The share, greater than 0 and at most 1
+   */
+  public synchronized void setShare(@NotNull RPCPriority priority, double share) {
+    if(share <= 0 || share > 1)
+      throw new IllegalArgumentException("The share must be greater than 0 and at most 1.");
+
+    //Copied on write so that getShare can read the array without locking
+    double[] updated = shares.clone();
+    updated[priority.ordinal()] = share;
+    shares = updated;
+  }
+
+  /**
+   * Takes a permit if the calls in flight are below share times the current limit. Every successful call must be
+   * paired with a call to {@link #release(long, boolean)}.
+   *
+   * @param share The share of the limit the call may use, from 0 to 1
+   * @return Whether a permit was taken
+   */
+  public boolean tryAcquire(double share) {
+    int allowed = Math.max(1, (int) (limit * share));
+
+    while(true) {
+      int current = inFlight.get();
+
+      if(current >= allowed) {
+        rejected.increment();
+        return false;
+      }
+
+      if(inFlight.compareAndSet(current, current + 1))
+        return true;
+    }
+  }
+
+  /**
+   * Returns a permit.
+   *
+   * @param latencyNanos The time the call took
+   * @param sample Whether the latency reflects the work of the call and should adjust the limit; calls rejected
+   *               further down, for example by a bulkhead, return at once and would make the server look idle
+   */
+  public void release(long latencyNanos, boolean sample) {
+    int current = inFlight.getAndDecrement();
+
+    if(sample)
+      update(latencyNanos, current);
+  }
+
+  private synchronized void update(long latencyNanos, int inFlightAtCompletion) {
+    double rtt = Math.max(1, latencyNanos);
+
+    averageRtt = averageRtt == 0 ? rtt : averageRtt + (rtt - averageRtt) * 2 / (AVERAGE_WINDOW + 1);
+    windowMinRtt = Math.min(windowMinRtt, rtt);
+
+    if(++windowSamples == MINIMUM_WINDOW) {
+      previousWindowMinRtt = windowMinRtt;
+      windowMinRtt = Double.MAX_VALUE;
+      windowSamples = 0;
+    }
+
+    if(inFlightAtCompletion < estimatedLimit / 2)
+      return;
+
+    double minRtt = Math.min(windowMinRtt, previousWindowMinRtt);
+    double gradient = Math.max(0.5, Math.min(1.0, tolerance * minRtt / averageRtt));
+    double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+
+    estimatedLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+    estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit));
+    limit = (int) estimatedLimit;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  public int getMinLimit() {
+    return minLimit;
+  }
+
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /**
+   * Gets the number of calls turned away since the limiter was created.
+   *
+   * @return The number of rejected calls
+   */
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  public double getTolerance() {
+    return tolerance;
+  }
+
+  /**
+   * Sets how much the average latency may exceed the latency of an unloaded server before the limit starts to
+   * shrink. The default of 1.5 tolerates latency rising by half.
+   *
+   * @param tolerance The tolerance, at least 1
+   */
+  public void setTolerance(double tolerance) {
+    if(tolerance < 1)
+      throw new IllegalArgumentException("The tolerance can not be less than 1.");
+
+    this.tolerance = tolerance;
+  }
+
+  public double getSmoothing() {
+    return smoothing;
+  }
+
+  /**
+   * Sets how far each update moves the limit towards the newly computed one, from 0 (never) to 1 (all the way).
+   *
+   * @param smoothing The smoothing factor
+   */
+  public void setSmoothing(double smoothing) {
+    if(smoothing <= 0 || smoothing > 1)
+      throw new IllegalArgumentException("The smoothing factor must be greater than 0 and at most 1.");
+
+    this.smoothing = smoothing;
+  }
+
+  public double getNotificationShare() {
+    return notificationShare;
+  }
+
+  /**
+   * Sets the largest share of the limit notifications may use, whatever their priority. Lower values shed
+   * notifications earlier.
+   *
+   * @param notificationShare The share, greater than 0 and at most 1
+   */
+  public void setNotificationShare(double notificationShare) {
+    if(notificationShare <= 0 || notificationShare > 1)
+      throw new IllegalArgumentException("The notification share must be greater than 0 and at most 1.");
+
+    this.notificationShare = notificationShare;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed limit on the number of calls in flight, used to isolate a method or namespace so that when it slows down
+ * it can only tie up its own share of the threads calling handleRequest. Permits are taken with a compare-and-set
+ * loop and never queued: a caller over the limit is turned away at once.
+ *
+ * @version 1.0
+ */
+public class JsonRPCBulkhead {
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final LongAdder rejected = new LongAdder();
+  private volatile int maxConcurrency;
+
+  public JsonRPCBulkhead(int maxConcurrency) {
+    setMaxConcurrency(maxConcurrency);
+  }
+
+  /**
+   * Takes a permit if fewer than maxConcurrency calls are in flight. Every successful call must be paired with a
+   * call to {@link #release()}.
+   *
+   * @return Whether a permit was taken
+   */
+  public boolean tryAcquire() {
+    while(true) {
+      int current = inFlight.get();
+
+      if(current >= maxConcurrency) {
+        rejected.increment();
+        return false;
+      }
+
+      if(inFlight.compareAndSet(current, current + 1))
+        return true;
+    }
+  }
+
+  public void release() {
+    inFlight.decrementAndGet();
+  }
+
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  /**
+   * Changes the limit. Lowering it does not interrupt calls already in flight; new calls are rejected until enough
+   * of them have finished.
+   *
+   * @param maxConcurrency The maximum number of calls in flight
+   */
+  public void setMaxConcurrency(int maxConcurrency) {
+    if(maxConcurrency <= 0)
+      throw new IllegalArgumentException("The maximum concurrency must be positive.");
+
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /**
+   * Gets the number of calls turned away since the bulkhead was created.
+   *
+   * @return The number of rejected calls
+   */
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+}
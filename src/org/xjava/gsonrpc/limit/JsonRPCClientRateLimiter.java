@@ -0,0 +1,136 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.xjava.gsonrpc.limit;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A JsonRPCRateLimiter per client, so that one runaway client uses up its own tokens rather than everyone's. Clients
+ * are told apart by the key their transport gives them; calls without a key are not limited.
+ *
+ * <p>The buckets of clients that have gone quiet are full, and a full bucket is no different from a new one, so they
+ * are dropped whenever the number of clients reaches maxClients. If that still leaves too many, clients without a
+ * bucket share a single overflow bucket until some go quiet.
+ *
+ * @version 1.0
+ */
+public class JsonRPCClientRateLimiter {
+  public static final int DEFAULT_MAX_CLIENTS = 10000;
+
+  private final double permitsPerSecond;
+  private final int burst;
+  private final ConcurrentHashMap<String, JsonRPCRateLimiter> clients = new ConcurrentHashMap<>();
+  private final JsonRPCRateLimiter overflow;
+  private final AtomicBoolean sweeping = new AtomicBoolean();
+  private final LongAdder rejected = new LongAdder();
+  private volatile int maxClients = DEFAULT_MAX_CLIENTS;
+
+  /**
+   * @param permitsPerSecond The sustained rate of calls allowed per client
+   * @param burst The number of calls a client is allowed at once after a quiet period
+   */
+  public JsonRPCClientRateLimiter(double permitsPerSecond, int burst) {
+    this.permitsPerSecond = permitsPerSecond;
+    this.burst = burst;
+    overflow = new JsonRPCRateLimiter(permitsPerSecond, burst);
+  }
+
+  /**
+   * Takes a token from the bucket of a client.
+   *
+   * @param clientKey The key of the client, or null if the transport does not identify clients
+   * @return Whether a token was taken
+   */
+  public boolean tryAcquire(@Nullable String clientKey) {
+    if(clientKey == null)
+      return true;
+
+    long now = System.nanoTime();
+    JsonRPCRateLimiter limiter = clients.get(clientKey);
+
+    if(limiter == null) {
+      if(clients.size() >= maxClients)
+        sweep(now);
+
+      limiter = clients.size() >= maxClients ? overflow : clients.computeIfAbsent(clientKey, key -> new JsonRPCRateLimiter(permitsPerSecond, burst));
+    }
+
+    if(limiter.tryAcquire(now))
+      return true;
+
+    rejected.increment();
+    return false;
+  }
+
+  private void sweep(long now) {
+    //One thread sweeps at a time, the others fall back on the overflow bucket meanwhile
+    if(!sweeping.compareAndSet(false, true))
+      return;
+
+    try {
+      clients.values().removeIf(limiter -> limiter.isFull(now));
+    }
+    finally {
+      sweeping.set(false);
+    }
+  }
+
+  public double getPermitsPerSecond() {
+    return permitsPerSecond;
+  }
+
+  public int getBurst() {
+    return burst;
+  }
+
+  public int getMaxClients() {
+    return maxClients;
+  }
+
+  /**
+   * Sets the number of clients given a bucket of their own.
+   *
+   * @param maxClients The maximum number of clients
+   */
+  public void setMaxClients(int maxClients) {
+    if(maxClients < 1)
+      throw new IllegalArgumentException("The maximum number of clients must be at least 1.");
+
+    this.maxClients = maxClients;
+  }
+
+  public int getClientCount() {
+    return clients.size();
+  }
+
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.xjava.gsonrpc.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A token bucket limiting the rate of calls, used to protect an expensive method from clients calling it too often.
+ * The bucket holds up to burst tokens and refills at permitsPerSecond; a call takes one token or is turned away.
+ *
+ * <p>Rather than a token count and a refill timestamp the bucket keeps the single time at which it would next be
+ * empty, so a call updates it with one compare-and-set and never needs a background refill. A bucket whose time has
+ * passed is full.
+ *
+ * @version 1.0
+ */
+public class JsonRPCRateLimiter {
+  private final double permitsPerSecond;
+  private final int burst;
+  private final long interval;
+  private final long tolerance;
+  private final AtomicLong emptyAt;
+  private final LongAdder rejected = new LongAdder();
+
+  /**
+   * @param permitsPerSecond The sustained rate of calls allowed
+   * @param burst The number of calls allowed at once after a quiet period
+   */
+  public JsonRPCRateLimiter(double permitsPerSecond, int burst) {
+    if(!(permitsPerSecond > 0))
+      throw new IllegalArgumentException("The rate must be greater than 0.");
+    if(burst < 1)
+      throw new IllegalArgumentException("The burst must be at least 1.");
+
+    this.permitsPerSecond = permitsPerSecond;
+    this.burst = burst;
+    interval = Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+    tolerance = interval * (burst - 1);
+    emptyAt = new AtomicLong(System.nanoTime());
+  }
+
+  public boolean tryAcquire() {
+    return tryAcquire(System.nanoTime());
+  }
+
+  /**
+   * Takes a token if the bucket has one.
+   *
+   * @param now The current System.nanoTime()
+   * @return Whether a token was taken
+   */
+  public boolean tryAcquire(long now) {
+    while(true) {
+      long current = emptyAt.get();
+      long start = current - now < 0 ? now : current;
+
+      if(start - now > tolerance) {
+        rejected.increment();
+        return false;
+      }
+
+      if(emptyAt.compareAndSet(current, start + interval))
+        return true;
+    }
+  }
+
+  /**
+   * Checks whether the bucket has refilled completely, in which case it behaves exactly like a new one.
+   *
+   * @param now The current System.nanoTime()
+   * @return Whether the bucket is full
+   */
+  public boolean isFull(long now) {
+    return emptyAt.get() - now <= 0;
+  }
+
+  public double getPermitsPerSecond() {
+    return permitsPerSecond;
+  }
+
+  public int getBurst() {
+    return burst;
+  }
+
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+}
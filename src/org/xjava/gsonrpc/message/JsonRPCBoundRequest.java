@@ -0,0 +1,99 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.message;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+
+/**
+ * A request whose params were bound to the parameters of a method as they were read, without a JsonElement ever
+ * being built for them, so getParamsJson() returns null.
+ *
+ * @version 1.0
+ */
+public class JsonRPCBoundRequest extends JsonRPCRequest {
+  private final Method boundMethod;
+  private final Object[] params;
+  private final long[] slots;
+
+  /**
+   * @param boundMethod The Method the params were bound to
+   * @param params The params, one per parameter of the method
+   */
+  public JsonRPCBoundRequest(@NotNull String version, @Nullable String id, @NotNull String method, @Nullable Long timeout, @NotNull Method boundMethod, @NotNull Object[] params) {
+    this(version, id, method, timeout, boundMethod, params, null);
+  }
+
+  /**
+   * Creates a request for a method whose parameters are all primitives, with its params bound unboxed.
+   *
+   * @param boundMethod The Method the params were bound to
+   * @param slots The params, one per parameter of the method: the value of an int or long, the bits of a double, 1 or
+   *              0 for a boolean
+   */
+  public JsonRPCBoundRequest(@NotNull String version, @Nullable String id, @NotNull String method, @Nullable Long timeout, @NotNull Method boundMethod, @NotNull long[] slots) {
+    this(version, id, method, timeout, boundMethod, null, slots);
+  }
+
+  private JsonRPCBoundRequest(@NotNull String version, @Nullable String id, @NotNull String method, @Nullable Long timeout, @NotNull Method boundMethod, @Nullable Object[] params, @Nullable long[] slots) {
+    super(version, id, method, null, timeout);
+    this.boundMethod = boundMethod;
+    this.params = params;
+    this.slots = slots;
+  }
+
+  @NotNull
+  public Method getBoundMethod() {
+    return boundMethod;
+  }
+
+  /**
+   * Gets the params, or null if they were bound as slots.
+   *
+   * @return The params or null
+   */
+  @Nullable
+  public Object[] getParams() {
+    return params;
+  }
+
+  /**
+   * Gets the params bound as slots, or null if they were bound as objects.
+   *
+   * @return The slots or null
+   */
+  @Nullable
+  public long[] getSlots() {
+    return slots;
+  }
+
+  @NotNull
+  @Override
+  public JsonRPCRequest withTimeout(@Nullable Long timeout) {
+    return new JsonRPCBoundRequest(version, id, getMethod(), timeout, boundMethod, params, slots);
+  }
+}
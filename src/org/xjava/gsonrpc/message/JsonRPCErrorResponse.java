@@ -26,9 +26,10 @@ package org.xjava.gsonrpc.message;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
-import com.sun.istack.internal.NotNull;
-import com.sun.istack.internal.Nullable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.xjava.gsonrpc.JsonRPCError;
+import org.xjava.gsonrpc.RawJson;
 
 /**
  * @version 1.0
@@ -56,6 +57,17 @@ public class JsonRPCErrorResponse extends JsonRPCMessage {
     return dataJson;
   }
 
+  /**
+   * Gets the data as a RawJson, for passing it on or decoding it later.
+   *
+   * @return The data, or null if the error has none
+   */
+  @Nullable
+  public RawJson getRawData() {
+    JsonElement dataJson = getDataJson();
+    return dataJson == null ? null : RawJson.of(dataJson);
+  }
+
   /**
    * Gets the data as an Object.
    *
@@ -24,7 +24,7 @@
 
 package org.xjava.gsonrpc.message;
 
-import com.sun.istack.internal.Nullable;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * @version 1.0
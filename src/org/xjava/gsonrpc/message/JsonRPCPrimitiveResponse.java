@@ -0,0 +1,85 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.message;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A response whose result is an int, long, double or boolean, kept unboxed so that it can be written without ever
+ * becoming an object. The JsonElement of the result is only made if something asks for it.
+ *
+ * @version 1.0
+ */
+public class JsonRPCPrimitiveResponse extends JsonRPCResponse {
+  private final Class<?> resultType;
+  private final long resultBits;
+  private JsonElement resultJson;
+
+  /**
+   * @param resultType The primitive type of the result: int, long, double or boolean
+   * @param resultBits The result: the value of an int or long, the bits of a double, 1 or 0 for a boolean
+   */
+  public JsonRPCPrimitiveResponse(@NotNull String version, @Nullable String id, @NotNull Class<?> resultType, long resultBits) {
+    super(version, id, null);
+    this.resultType = resultType;
+    this.resultBits = resultBits;
+  }
+
+  @NotNull
+  public Class<?> getResultType() {
+    return resultType;
+  }
+
+  public long getResultAsLong() {
+    return resultBits;
+  }
+
+  public double getResultAsDouble() {
+    return Double.longBitsToDouble(resultBits);
+  }
+
+  public boolean getResultAsBoolean() {
+    return resultBits != 0;
+  }
+
+  @Override
+  public JsonElement getResultJson() {
+    if(resultJson == null) {
+      if(resultType == Double.TYPE)
+        resultJson = new JsonPrimitive(getResultAsDouble());
+      else if(resultType == Boolean.TYPE)
+        resultJson = new JsonPrimitive(getResultAsBoolean());
+      else if(resultType == Integer.TYPE)
+        resultJson = new JsonPrimitive((int) resultBits);
+      else
+        resultJson = new JsonPrimitive(resultBits);
+    }
+
+    return resultJson;
+  }
+}
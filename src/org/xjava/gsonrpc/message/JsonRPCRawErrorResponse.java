@@ -0,0 +1,84 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.message;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.JsonRPCError;
+import org.xjava.gsonrpc.RawJson;
+
+/**
+ * An error response whose data is kept as a RawJson. The JsonElement of the data is only parsed if something asks
+ * for it.
+ *
+ * @version 1.0
+ */
+public class JsonRPCRawErrorResponse extends JsonRPCErrorResponse {
+  private final RawJson rawData;
+  private JsonElement dataJson;
+
+  /**
+   * @param rawData The data, or null if the error has none
+   */
+  public JsonRPCRawErrorResponse(@NotNull String version, @Nullable String id, @NotNull JsonRPCError error, @Nullable RawJson rawData) {
+    super(version, id, error, null);
+    this.rawData = rawData;
+  }
+
+  @Nullable
+  @Override
+  public RawJson getRawData() {
+    return rawData;
+  }
+
+  @Override
+  public JsonElement getDataJson() {
+    if(dataJson == null && rawData != null)
+      dataJson = rawData.toJsonTree();
+
+    return dataJson;
+  }
+
+  /**
+   * Gets the data as an Object, decoded straight from the raw JSON.
+   *
+   * @param gson The instance of gson used for parsing JSON
+   * @param dataClass The Class of the data
+   * @return The data
+   */
+  @Nullable
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T getData(Gson gson, Class<T> dataClass) {
+    if(rawData == null)
+      return null;
+    if(dataClass == RawJson.class)
+      return (T) rawData;
+
+    return gson.fromJson(rawData.newReader(), dataClass);
+  }
+}
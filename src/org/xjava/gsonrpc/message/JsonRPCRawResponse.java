@@ -0,0 +1,78 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.message;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.RawJson;
+
+/**
+ * A response whose result is a RawJson, which the message writer splices into the output as it is. The JsonElement
+ * of the result is only parsed if something asks for it, such as a binary wire format.
+ *
+ * @version 1.0
+ */
+public class JsonRPCRawResponse extends JsonRPCResponse {
+  private final RawJson rawResult;
+  private JsonElement resultJson;
+
+  public JsonRPCRawResponse(@NotNull String version, @Nullable String id, @NotNull RawJson rawResult) {
+    super(version, id, null);
+    this.rawResult = rawResult;
+  }
+
+  @NotNull
+  @Override
+  public RawJson getRawResult() {
+    return rawResult;
+  }
+
+  @Override
+  public JsonElement getResultJson() {
+    if(resultJson == null)
+      resultJson = rawResult.toJsonTree();
+
+    return resultJson;
+  }
+
+  /**
+   * Gets the result as an Object, decoded straight from the raw JSON.
+   *
+   * @param gson The instance of gson used for parsing JSON
+   * @param resultClass The Class of the result
+   * @return The result
+   */
+  @Nullable
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T getResult(Gson gson, Class<T> resultClass) {
+    if(resultClass == RawJson.class)
+      return (T) rawResult;
+
+    return gson.fromJson(rawResult.newReader(), resultClass);
+  }
+}
@@ -25,8 +25,11 @@
 package org.xjava.gsonrpc.message;
 
 import com.google.gson.JsonElement;
-import com.sun.istack.internal.NotNull;
-import com.sun.istack.internal.Nullable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.JsonRPCContext;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * @version 1.0
@@ -35,11 +38,25 @@ import com.sun.istack.internal.Nullable;
 public class JsonRPCRequest extends JsonRPCMessage {
   private final String method;
   private final JsonElement paramsJson;
+  private final Long timeout;
+  private final long deadline;
 
   public JsonRPCRequest(@NotNull String version, @Nullable String id, @NotNull String method, @Nullable JsonElement paramsJson) {
+    this(version, id, method, paramsJson, null);
+  }
+
+  /**
+   * Creates a request carrying a time budget. The budget travels as the "timeout" extension field, in milliseconds,
+   * and is turned into a deadline when the request is created, so a deserialized request is timed from its receipt.
+   *
+   * @param timeout The time budget in milliseconds, or null for none
+   */
+  public JsonRPCRequest(@NotNull String version, @Nullable String id, @NotNull String method, @Nullable JsonElement paramsJson, @Nullable Long timeout) {
     super(version, id);
     this.method = method;
     this.paramsJson = paramsJson;
+    this.timeout = timeout;
+    this.deadline = timeout == null ? JsonRPCContext.NO_DEADLINE : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeout));
   }
 
   public String getMethod() { return method; }
@@ -48,5 +65,26 @@ public class JsonRPCRequest extends JsonRPCMessage {
     return paramsJson;
   }
 
+  @Nullable
+  public Long getTimeout() { return timeout; }
+
+  /**
+   * Gets the System.nanoTime() deadline derived from the timeout.
+   *
+   * @return The deadline, or JsonRPCContext.NO_DEADLINE if the request has no timeout
+   */
+  public long getDeadline() { return deadline; }
+
+  /**
+   * Gets a copy of this request with a different time budget.
+   *
+   * @param timeout The time budget in milliseconds, or null for none
+   * @return The new request
+   */
+  @NotNull
+  public JsonRPCRequest withTimeout(@Nullable Long timeout) {
+    return new JsonRPCRequest(version, id, method, paramsJson, timeout);
+  }
+
   public boolean isNotification() { return id == null || id.isEmpty(); }
 }
@@ -26,8 +26,9 @@ package org.xjava.gsonrpc.message;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
-import com.sun.istack.internal.NotNull;
-import com.sun.istack.internal.Nullable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.RawJson;
 
 /**
  * @version 1.0
@@ -45,6 +46,17 @@ public class JsonRPCResponse extends JsonRPCMessage {
     return resultJson;
   }
 
+  /**
+   * Gets the result as a RawJson, for passing it on or decoding it later.
+   *
+   * @return The result, or null if the response has none
+   */
+  @Nullable
+  public RawJson getRawResult() {
+    JsonElement resultJson = getResultJson();
+    return resultJson == null ? null : RawJson.of(resultJson);
+  }
+
   /**
    * Gets the result as an Object.
    *
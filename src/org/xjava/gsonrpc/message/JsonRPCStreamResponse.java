@@ -0,0 +1,170 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.message;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A response whose result is an array produced element by element, from an Iterator, a Stream or a Flow.Publisher
+ * returned by the method. The message writer serializes each element into the "result" array as it is produced, so
+ * neither the collection nor its JsonElement tree is ever built; a transport that can deliver a result in pieces
+ * sends the elements ahead of the response in {@link #CHUNK_METHOD} notifications instead.
+ *
+ * <p>The elements can only be read once. Asking for the JsonElement of the result reads whatever is left into a
+ * JsonArray, which is then kept. Whoever reads the elements closes the response, which closes the Stream or cancels
+ * the subscription it came from.</p>
+ *
+ * @version 1.0
+ */
+public class JsonRPCStreamResponse extends JsonRPCResponse implements AutoCloseable {
+  /**
+   * The method of the notifications carrying a chunk of a streamed result: params holds the "id" of the request and
+   * the "items" of the chunk.
+   */
+  public static final String CHUNK_METHOD = "rpc.chunk";
+
+  /**
+   * The method of the notification a client sends to stop a streamed result: params holds the "id" of the request.
+   */
+  public static final String CANCEL_METHOD = "rpc.cancel";
+
+  private final Iterator<?> elements;
+  private final TypeAdapter<Object> elementAdapter;
+  private final AutoCloseable closer;
+  private JsonElement resultJson;
+  private boolean closed;
+
+  /**
+   * @param elements The elements of the result
+   * @param elementAdapter The TypeAdapter that serializes each element
+   * @param closer What to close once the elements are no longer needed, or null if nothing
+   */
+  public JsonRPCStreamResponse(@NotNull String version, @Nullable String id, @NotNull Iterator<?> elements, @NotNull TypeAdapter<Object> elementAdapter, @Nullable AutoCloseable closer) {
+    super(version, id, null);
+    this.elements = elements;
+    this.elementAdapter = elementAdapter;
+    this.closer = closer;
+  }
+
+  /**
+   * Gets the elements not read yet.
+   *
+   * @return The Iterator of the elements
+   */
+  @NotNull
+  public Iterator<?> getElements() {
+    return elements;
+  }
+
+  @NotNull
+  public TypeAdapter<Object> getElementAdapter() {
+    return elementAdapter;
+  }
+
+  /**
+   * Reads up to maxElements of the elements not read yet.
+   *
+   * @param maxElements The largest number of elements to read
+   * @return The JsonArray of the elements, or null if there are none left
+   */
+  @Nullable
+  public JsonArray nextChunk(int maxElements) {
+    if(!elements.hasNext())
+      return null;
+
+    JsonArray chunk = new JsonArray();
+    while(chunk.size() < maxElements && elements.hasNext())
+      chunk.add(elementAdapter.toJsonTree(elements.next()));
+
+    return chunk;
+  }
+
+  /**
+   * Tells whether the elements have been read into the JsonElement of the result, which then stands for them.
+   *
+   * @return True if getResultJson() has been called
+   */
+  public boolean hasResultJson() {
+    return resultJson != null;
+  }
+
+  @Override
+  public JsonElement getResultJson() {
+    if(resultJson == null) {
+      JsonArray resultArray = new JsonArray();
+
+      try {
+        while(elements.hasNext())
+          resultArray.add(elementAdapter.toJsonTree(elements.next()));
+      }
+      finally {
+        close();
+      }
+
+      resultJson = resultArray;
+    }
+
+    return resultJson;
+  }
+
+  /**
+   * Closes every streamed result among a List of messages.
+   *
+   * @param messages The List of JsonRPCMessage objects
+   */
+  public static void closeAll(@NotNull List<JsonRPCMessage> messages) {
+    for(JsonRPCMessage message : messages) {
+      if(message instanceof JsonRPCStreamResponse)
+        ((JsonRPCStreamResponse) message).close();
+    }
+  }
+
+  /**
+   * Closes the source of the elements. Closing more than once does nothing.
+   */
+  @Override
+  public void close() {
+    if(closed)
+      return;
+
+    closed = true;
+
+    if(closer != null) {
+      try {
+        closer.close();
+      }
+      catch(Exception e) {
+        //The elements are no longer wanted, whatever closing them failed on
+      }
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A point in time copy of a JsonRPCLatencyHistogram. All values are in nanoseconds.
+ *
+ * @version 1.0
+ */
+public class JsonRPCHistogramSnapshot {
+  private final transient long[] counts;
+
+  private final long count;
+  private final long mean;
+  private final long max;
+  private final long p50;
+  private final long p90;
+  private final long p99;
+  private final long p999;
+
+  JsonRPCHistogramSnapshot(@NotNull long[] counts, long total, long max) {
+    this.counts = counts;
+
+    long count = 0;
+    for(long bucketCount : counts)
+      count += bucketCount;
+
+    this.count = count;
+    this.mean = count == 0 ? 0 : total / count;
+    this.max = max;
+    this.p50 = getValueAtPercentile(50);
+    this.p90 = getValueAtPercentile(90);
+    this.p99 = getValueAtPercentile(99);
+    this.p999 = getValueAtPercentile(99.9);
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getMean() {
+    return mean;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  public long getP50() {
+    return p50;
+  }
+
+  public long getP90() {
+    return p90;
+  }
+
+  public long getP99() {
+    return p99;
+  }
+
+  public long getP999() {
+    return p999;
+  }
+
+  /**
+   * Gets the value below which a percentage of the recorded values fall. The value is the upper bound of the
+   * bucket holding the percentile, capped at the largest value recorded.
+   *
+   * @param percentile The percentile, between 0 and 100
+   * @return The value at the percentile, or 0 if nothing was recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    if(count == 0)
+      return 0;
+
+    long rank = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100) / 100));
+
+    long seen = 0;
+    for(int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if(seen >= rank)
+        return Math.min(JsonRPCLatencyHistogram.bucketUpperBound(i), max);
+    }
+
+    return max;
+  }
+}
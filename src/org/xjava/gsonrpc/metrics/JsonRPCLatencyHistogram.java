@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with HDR style log-linear buckets. Every power of two range is split into 32 linear
+ * sub-buckets, so any recorded value is reported with a relative error of about 3% while the whole range from one
+ * nanosecond to over a minute fits in a fixed array. Recording is a handful of atomic increments and never
+ * allocates.
+ *
+ * @version 1.0
+ */
+public class JsonRPCLatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_VALUE_BITS = 36;
+
+  /**
+   * The largest value that can be told apart from larger ones, a little over 68 seconds in nanoseconds. Larger
+   * values are counted in the last bucket.
+   */
+  public static final long MAX_TRACKABLE_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+  static final int BUCKET_COUNT = bucketIndex(MAX_TRACKABLE_VALUE) + 1;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final LongAdder total = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a value, normally a latency in nanoseconds. Negative values are recorded as zero.
+   *
+   * @param value The value
+   */
+  public void record(long value) {
+    if(value < 0)
+      value = 0;
+
+    buckets.incrementAndGet(bucketIndex(Math.min(value, MAX_TRACKABLE_VALUE)));
+    total.add(value);
+
+    long currentMax = max.get();
+    while(value > currentMax && !max.compareAndSet(currentMax, value))
+      currentMax = max.get();
+  }
+
+  /**
+   * Takes a snapshot of the histogram. Recording may continue while the snapshot is taken, so the counts it holds
+   * are only guaranteed to be consistent with each other within the values recorded concurrently.
+   *
+   * @return The JsonRPCHistogramSnapshot
+   */
+  @NotNull
+  public JsonRPCHistogramSnapshot snapshot() {
+    long[] counts = new long[BUCKET_COUNT];
+    for(int i = 0; i < BUCKET_COUNT; i++)
+      counts[i] = buckets.get(i);
+
+    return new JsonRPCHistogramSnapshot(counts, total.sum(), max.get());
+  }
+
+  static int bucketIndex(long value) {
+    if(value < SUB_BUCKET_COUNT)
+      return (int) value;
+
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+    return SUB_BUCKET_COUNT + (shift << SUB_BUCKET_BITS) + subBucket;
+  }
+
+  /**
+   * Gets the highest value counted in a bucket, which is what percentiles are reported as.
+   */
+  static long bucketUpperBound(int index) {
+    if(index < SUB_BUCKET_COUNT)
+      return index;
+
+    int shift = (index - SUB_BUCKET_COUNT) >>> SUB_BUCKET_BITS;
+    long subBucket = (index - SUB_BUCKET_COUNT) & (SUB_BUCKET_COUNT - 1);
+    return ((SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.JsonRPCError;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The call counter, error counters and latency histogram of a single RPC method.
+ *
+ * @version 1.0
+ */
+public class JsonRPCMethodMetrics {
+  private final String methodName;
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder rateLimited = new LongAdder();
+  private final ConcurrentHashMap<Integer, LongAdder> errors = new ConcurrentHashMap<>();
+  private final JsonRPCLatencyHistogram latency = new JsonRPCLatencyHistogram();
+  private final AtomicReferenceArray<JsonRPCLatencyHistogram> phases = new AtomicReferenceArray<>(JsonRPCPhase.values().length);
+
+  public JsonRPCMethodMetrics(@NotNull String methodName) {
+    this.methodName = methodName;
+  }
+
+  @NotNull
+  public String getMethodName() {
+    return methodName;
+  }
+
+  /**
+   * Records a call.
+   *
+   * @param latencyNanos The time taken to handle the call in nanoseconds
+   * @param error The error the call was answered with, or null if it succeeded
+   */
+  public void record(long latencyNanos, @Nullable JsonRPCError error) {
+    calls.increment();
+    latency.record(latencyNanos);
+
+    if(error != null)
+      recordError(error.getCode());
+  }
+
+  /**
+   * Records a call turned away by a rate limit. Rate limited calls are counted whether or not metrics are enabled.
+   */
+  public void recordRateLimited() {
+    rateLimited.increment();
+  }
+
+  /**
+   * Records the time a sampled call spent in one phase. The histogram of a phase is only allocated the first time
+   * the phase is recorded, so methods that are never sampled carry no extra memory.
+   *
+   * @param phase The JsonRPCPhase
+   * @param nanos The time spent in the phase in nanoseconds
+   */
+  public void recordPhase(@NotNull JsonRPCPhase phase, long nanos) {
+    JsonRPCLatencyHistogram histogram = phases.get(phase.ordinal());
+
+    if(histogram == null) {
+      phases.compareAndSet(phase.ordinal(), null, new JsonRPCLatencyHistogram());
+      histogram = phases.get(phase.ordinal());
+    }
+
+    histogram.record(nanos);
+  }
+
+  private void recordError(int code) {
+    LongAdder counter = errors.get(code);
+
+    if(counter == null)
+      counter = errors.computeIfAbsent(code, key -> new LongAdder());
+
+    counter.increment();
+  }
+
+  @NotNull
+  public JsonRPCMethodMetricsSnapshot snapshot() {
+    TreeMap<Integer, Long> errorCounts = new TreeMap<>();
+    for(Map.Entry<Integer, LongAdder> entry : errors.entrySet())
+      errorCounts.put(entry.getKey(), entry.getValue().sum());
+
+    EnumMap<JsonRPCPhase, JsonRPCHistogramSnapshot> phaseSnapshots = new EnumMap<>(JsonRPCPhase.class);
+    for(JsonRPCPhase phase : JsonRPCPhase.values()) {
+      JsonRPCLatencyHistogram histogram = phases.get(phase.ordinal());
+      if(histogram != null)
+        phaseSnapshots.put(phase, histogram.snapshot());
+    }
+
+    return new JsonRPCMethodMetricsSnapshot(methodName, calls.sum(), rateLimited.sum(), errorCounts, latency.snapshot(), phaseSnapshots);
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A point in time copy of the metrics of a single RPC method.
+ *
+ * @version 1.0
+ */
+public class JsonRPCMethodMetricsSnapshot {
+  private final String method;
+  private final long calls;
+  private final long rateLimited;
+  private final Map<Integer, Long> errors;
+  private final JsonRPCHistogramSnapshot latency;
+  private final Map<JsonRPCPhase, JsonRPCHistogramSnapshot> phases;
+
+  JsonRPCMethodMetricsSnapshot(@NotNull String method, long calls, long rateLimited, @NotNull Map<Integer, Long> errors, @NotNull JsonRPCHistogramSnapshot latency, @NotNull Map<JsonRPCPhase, JsonRPCHistogramSnapshot> phases) {
+    this.method = method;
+    this.calls = calls;
+    this.rateLimited = rateLimited;
+    this.errors = errors;
+    this.latency = latency;
+    this.phases = phases;
+  }
+
+  @NotNull
+  public String getMethod() {
+    return method;
+  }
+
+  public long getCalls() {
+    return calls;
+  }
+
+  /**
+   * Gets the number of calls turned away by a rate limit. Unlike the other counts this one is kept while metrics are
+   * disabled.
+   *
+   * @return The rate limited count
+   */
+  public long getRateLimited() {
+    return rateLimited;
+  }
+
+  /**
+   * Gets the number of calls answered with an error, by JsonRPCError code.
+   *
+   * @return The error counts
+   */
+  @NotNull
+  public Map<Integer, Long> getErrors() {
+    return Collections.unmodifiableMap(errors);
+  }
+
+  public long getErrorCount() {
+    long count = 0;
+    for(long errorCount : errors.values())
+      count += errorCount;
+    return count;
+  }
+
+  @NotNull
+  public JsonRPCHistogramSnapshot getLatency() {
+    return latency;
+  }
+
+  /**
+   * Gets the sampled time spent in each phase. Only phases that were sampled at least once are present.
+   *
+   * @return The phase histograms
+   */
+  @NotNull
+  public Map<JsonRPCPhase, JsonRPCHistogramSnapshot> getPhases() {
+    return Collections.unmodifiableMap(phases);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeMap;
+
+/**
+ * The per method metrics of a JsonRPCRequestHandler. Requests for methods that are not registered are counted
+ * together under {@link #UNKNOWN_METHOD}.
+ *
+ * @version 1.0
+ */
+public class JsonRPCMetrics {
+  public static final String UNKNOWN_METHOD = "<unknown>";
+
+  private final ConcurrentHashMap<String, JsonRPCMethodMetrics> methods = new ConcurrentHashMap<>();
+  private final JsonRPCMethodMetrics unknownMethod = new JsonRPCMethodMetrics(UNKNOWN_METHOD);
+  private final ConcurrentHashMap<String, JsonRPCLatencyHistogram> queueDelays = new ConcurrentHashMap<>();
+
+  /**
+   * Gets the metrics of a method, creating them the first time the method is seen.
+   *
+   * @param methodName The full name of the method, including its namespace
+   * @return The JsonRPCMethodMetrics
+   */
+  @NotNull
+  public JsonRPCMethodMetrics getMethodMetrics(@NotNull String methodName) {
+    return methods.computeIfAbsent(methodName, JsonRPCMethodMetrics::new);
+  }
+
+  @NotNull
+  public JsonRPCMethodMetrics getUnknownMethodMetrics() {
+    return unknownMethod;
+  }
+
+  /**
+   * Records the time a request spent queued before a worker thread picked it up.
+   *
+   * @param lane The name of the lane the request was queued in
+   * @param nanos The queueing delay in nanoseconds
+   */
+  public void recordQueueDelay(@NotNull String lane, long nanos) {
+    queueDelays.computeIfAbsent(lane, name -> new JsonRPCLatencyHistogram()).record(nanos);
+  }
+
+  /**
+   * Takes a snapshot of the metrics of every method that has been called at least once, and of the queueing delay
+   * of every lane that has queued a request.
+   *
+   * @return The JsonRPCMetricsSnapshot
+   */
+  @NotNull
+  public JsonRPCMetricsSnapshot snapshot() {
+    TreeMap<String, JsonRPCMethodMetricsSnapshot> snapshots = new TreeMap<>();
+
+    methods.values().forEach(methodMetrics -> add(snapshots, methodMetrics));
+    add(snapshots, unknownMethod);
+
+    TreeMap<String, JsonRPCHistogramSnapshot> queueDelaySnapshots = new TreeMap<>();
+    queueDelays.forEach((lane, histogram) -> queueDelaySnapshots.put(lane, histogram.snapshot()));
+
+    return new JsonRPCMetricsSnapshot(System.currentTimeMillis(), snapshots, queueDelaySnapshots);
+  }
+
+  private void add(@NotNull TreeMap<String, JsonRPCMethodMetricsSnapshot> snapshots, @NotNull JsonRPCMethodMetrics methodMetrics) {
+    JsonRPCMethodMetricsSnapshot snapshot = methodMetrics.snapshot();
+    if(snapshot.getCalls() > 0 || snapshot.getRateLimited() > 0 || !snapshot.getPhases().isEmpty())
+      snapshots.put(snapshot.getMethod(), snapshot);
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A point in time copy of the metrics of every method of a JsonRPCRequestHandler. Snapshots are plain objects that
+ * Gson can serialize, which is how they are returned by the reserved rpc.metrics method.
+ *
+ * @version 1.0
+ */
+public class JsonRPCMetricsSnapshot {
+  private final long timestamp;
+  private final Map<String, JsonRPCMethodMetricsSnapshot> methods;
+  private final Map<String, JsonRPCHistogramSnapshot> queueDelays;
+
+  JsonRPCMetricsSnapshot(long timestamp, @NotNull Map<String, JsonRPCMethodMetricsSnapshot> methods, @NotNull Map<String, JsonRPCHistogramSnapshot> queueDelays) {
+    this.timestamp = timestamp;
+    this.methods = methods;
+    this.queueDelays = queueDelays;
+  }
+
+  /**
+   * Gets the time the snapshot was taken in milliseconds since the epoch.
+   *
+   * @return The timestamp
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  @NotNull
+  public Map<String, JsonRPCMethodMetricsSnapshot> getMethods() {
+    return Collections.unmodifiableMap(methods);
+  }
+
+  @Nullable
+  public JsonRPCMethodMetricsSnapshot getMethod(@NotNull String methodName) {
+    return methods.get(methodName);
+  }
+
+  /**
+   * Gets the queueing delay of asynchronously dispatched requests in nanoseconds, by the name of their priority lane.
+   *
+   * @return The queueing delays
+   */
+  @NotNull
+  public Map<String, JsonRPCHistogramSnapshot> getQueueDelays() {
+    return Collections.unmodifiableMap(queueDelays);
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.proxy;
+
+import org.jetbrains.annotations.NotNull;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+import org.xjava.gsonrpc.message.JsonRPCRequest;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A JsonRPCBinaryResponseGetter over a connection carrying several calls at once, which matches each response to its
+ * request by id and so has already parsed it by the time it arrives. A service proxy hands it the request itself
+ * and gets back the parsed response, rather than encoding the one and parsing the other again.
+ *
+ * @version 1.0
+ */
+public interface JsonRPCMultiplexedResponseGetter extends JsonRPCBinaryResponseGetter {
+
+  /**
+   * Sends a request and waits for its response.
+   *
+   * @param request The request
+   * @return The response, or no messages if the request is a notification
+   * @throws IOException An IOException will be thrown if the connection fails
+   */
+  @NotNull
+  public List<JsonRPCMessage> exchange(@NotNull JsonRPCRequest request) throws IOException;
+}
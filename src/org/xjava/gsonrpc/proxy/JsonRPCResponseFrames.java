@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.proxy;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The payloads of one exchange on a connection that can deliver a streamed result in pieces: the chunk
+ * notifications of the result, read one at a time as they are asked for, then the response. The connection belongs
+ * to the exchange until it is closed.
+ *
+ * @version 1.0
+ */
+public interface JsonRPCResponseFrames extends Closeable {
+
+  /**
+   * Waits for the next payload of the exchange.
+   *
+   * @return The encoded payload, or null if the connection was closed
+   * @throws IOException An IOException will be thrown if the connection fails
+   */
+  @Nullable
+  public byte[] next() throws IOException;
+
+  /**
+   * Sends a payload in the middle of the exchange, such as a notification cancelling the stream.
+   *
+   * @param bytes The encoded payload
+   * @throws IOException An IOException will be thrown if the connection fails
+   */
+  public void send(@NotNull byte[] bytes) throws IOException;
+
+  /**
+   * Ends the exchange once its response has been read, handing the connection back.
+   */
+  @Override
+  public void close();
+
+  /**
+   * Ends the exchange without reading the rest of it, which leaves the connection out of step, so it is closed.
+   */
+  public void abort();
+}
@@ -0,0 +1,257 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.proxy;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.internal.bind.JsonTreeReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.JsonRPCError;
+import org.xjava.gsonrpc.exception.JsonRPCErrorException;
+import org.xjava.gsonrpc.exception.JsonRPCRuntimeException;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+import org.xjava.gsonrpc.message.JsonRPCRequest;
+import org.xjava.gsonrpc.message.JsonRPCStreamResponse;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormat;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The result of a service proxy method declared to return an Iterator or a Stream. Each element is decoded when it
+ * is reached rather than the whole result up front. Over a JsonRPCStreamingResponseGetter that streams, the
+ * elements are read from the chunks of the result as they arrive, so the first can be used before the server has
+ * produced the last, and the server produces them no faster than they are read.
+ *
+ * <p>A result read to the end lets go of the connection by itself. Close it to stop early: the stream is cancelled
+ * on the server and whatever was already sent is skipped, after which the connection can be used again. An error
+ * the server answers with part way through is thrown by hasNext() as a JsonRPCRuntimeException caused by the
+ * JsonRPCErrorException.</p>
+ *
+ * @version 1.0
+ */
+public class JsonRPCResultStream<T> implements Iterator<T>, Closeable {
+  private final GsonRPC gsonRPC;
+  private final JsonRPCWireFormat wireFormat;
+  private final TypeAdapter<T> elementAdapter;
+  private final String id;
+  private JsonRPCResponseFrames frames;
+  private Iterator<JsonElement> items = Collections.emptyIterator();
+
+  private JsonRPCResultStream(@NotNull GsonRPC gsonRPC, @Nullable JsonRPCWireFormat wireFormat, @NotNull TypeAdapter<T> elementAdapter, @NotNull String id, @Nullable JsonRPCResponseFrames frames) {
+    this.gsonRPC = gsonRPC;
+    this.wireFormat = wireFormat;
+    this.elementAdapter = elementAdapter;
+    this.id = id;
+    this.frames = frames;
+  }
+
+  /**
+   * Reads the elements from the result array of a response that arrived whole.
+   *
+   * @return The JsonRPCResultStream, or null if the result is null
+   * @throws JsonRPCErrorException A JsonRPCErrorException will be thrown if the result is not an array
+   */
+  @Nullable
+  static <T> JsonRPCResultStream<T> of(@NotNull GsonRPC gsonRPC, @NotNull TypeAdapter<T> elementAdapter, @NotNull String id, @Nullable JsonElement resultJson) throws JsonRPCErrorException {
+    if(resultJson == null || resultJson.isJsonNull())
+      return null;
+    if(!resultJson.isJsonArray())
+      throw new JsonRPCErrorException(JsonRPCError.INTERNAL_ERROR);
+
+    JsonRPCResultStream<T> results = new JsonRPCResultStream<>(gsonRPC, null, elementAdapter, id, null);
+    results.items = resultJson.getAsJsonArray().iterator();
+    return results;
+  }
+
+  /**
+   * Reads the elements from the payloads of an exchange as they arrive. The first payload is waited for here, so a
+   * call the server answers with an error throws rather than returning an empty stream.
+   *
+   * @return The JsonRPCResultStream, or null if the result is null
+   * @throws JsonRPCErrorException A JsonRPCErrorException will be thrown if the server answers with an error
+   * @throws IOException An IOException will be thrown if the connection fails
+   */
+  @Nullable
+  static <T> JsonRPCResultStream<T> open(@NotNull GsonRPC gsonRPC, @NotNull JsonRPCWireFormat wireFormat, @NotNull TypeAdapter<T> elementAdapter, @NotNull String id, @NotNull JsonRPCResponseFrames frames) throws JsonRPCErrorException, IOException {
+    JsonRPCResultStream<T> results = new JsonRPCResultStream<>(gsonRPC, wireFormat, elementAdapter, id, frames);
+    JsonElement resultJson = results.readFrame();
+
+    return resultJson != null && resultJson.isJsonNull() ? null : results;
+  }
+
+  @Override
+  public boolean hasNext() {
+    try {
+      while(!items.hasNext()) {
+        if(frames == null)
+          return false;
+
+        readFrame();
+      }
+
+      return true;
+    }
+    catch(IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    catch(JsonRPCErrorException e) {
+      throw new JsonRPCRuntimeException(e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public T next() {
+    if(!hasNext())
+      throw new NoSuchElementException();
+
+    try {
+      JsonTreeReader reader = new JsonTreeReader(items.next());
+      reader.setLenient(true);
+      return elementAdapter.read(reader);
+    }
+    catch(IOException | IllegalStateException e) {
+      throw new JsonSyntaxException(e);
+    }
+  }
+
+  /**
+   * Gets the elements as a sequential Stream, which closes this when it is closed.
+   *
+   * @return The Stream
+   */
+  @NotNull
+  public Stream<T> stream() {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false).onClose(() -> {
+      try {
+        close();
+      }
+      catch(IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+  }
+
+  /**
+   * Stops reading the result. If elements are still on their way the stream is cancelled and the rest of the
+   * exchange is read and dropped; closing a result that has been read to the end does nothing.
+   *
+   * @throws IOException An IOException will be thrown if the connection fails
+   */
+  @Override
+  public void close() throws IOException {
+    if(frames == null)
+      return;
+
+    JsonObject params = new JsonObject();
+    params.addProperty("id", id);
+    frames.send(gsonRPC.toBytes(new JsonRPCRequest(GsonRPC.VERSION, null, JsonRPCStreamResponse.CANCEL_METHOD, params), wireFormat));
+
+    while(frames != null) {
+      try {
+        readFrame();
+      }
+      catch(JsonRPCErrorException e) {
+        //Most likely the cancellation itself
+      }
+    }
+
+    items = Collections.emptyIterator();
+  }
+
+  /**
+   * Reads the next payload of the exchange. A chunk becomes the items to read next; the response ends the
+   * exchange, and its result, normally an empty array once the chunks have been sent, is returned.
+   */
+  @Nullable
+  private JsonElement readFrame() throws JsonRPCErrorException, IOException {
+    JsonRPCMessage message;
+
+    try {
+      byte[] bytes = frames.next();
+      if(bytes == null)
+        throw new EOFException("The connection was closed before the end of the result.");
+
+      List<JsonRPCMessage> messages = gsonRPC.parseMessages(bytes, wireFormat);
+      if(messages.size() != 1)
+        throw new IOException("Expected one message in the payload of a streamed result.");
+
+      message = messages.get(0);
+
+      if(message.isRequest() && JsonRPCStreamResponse.CHUNK_METHOD.equals(message.getAsRequest().getMethod())) {
+        JsonElement params = message.getAsRequest().getParamsJson();
+        JsonElement chunkId = params != null && params.isJsonObject() ? params.getAsJsonObject().get("id") : null;
+        JsonElement chunkItems = params != null && params.isJsonObject() ? params.getAsJsonObject().get("items") : null;
+
+        if(chunkId == null || !chunkId.isJsonPrimitive() || !id.equals(chunkId.getAsString()) || chunkItems == null || !chunkItems.isJsonArray())
+          throw new IOException("Unexpected chunk in a streamed result.");
+
+        items = chunkItems.getAsJsonArray().iterator();
+        return null;
+      }
+    }
+    catch(IOException | JsonParseException e) {
+      //The connection is out of step with the exchange and can not be used again
+      frames.abort();
+      frames = null;
+      throw e instanceof IOException ? (IOException) e : new IOException(e);
+    }
+
+    frames.close();
+    frames = null;
+
+    if(!id.equals(message.getId()))
+      throw new JsonRPCErrorException(JsonRPCError.INTERNAL_ERROR);
+    if(message.isErrorResponse())
+      throw new JsonRPCErrorException(message.getAsErrorResponse());
+    if(!message.isResponse())
+      throw new JsonRPCErrorException(JsonRPCError.INTERNAL_ERROR);
+
+    JsonElement resultJson = message.getAsResponse().getResultJson();
+    if(resultJson == null || resultJson.isJsonNull())
+      return JsonNull.INSTANCE;
+    if(!resultJson.isJsonArray())
+      throw new JsonRPCErrorException(JsonRPCError.INTERNAL_ERROR);
+
+    items = resultJson.getAsJsonArray().iterator();
+    return resultJson;
+  }
+}
@@ -25,22 +25,37 @@
 package org.xjava.gsonrpc.proxy;
 
 import com.google.gson.Gson;
-import com.sun.istack.internal.NotNull;
-import com.sun.istack.internal.Nullable;
+import com.google.gson.TypeAdapter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.JsonRPCContext;
 import org.xjava.gsonrpc.JsonRPCError;
 import org.xjava.gsonrpc.JsonRPCMessageFactory;
 import org.xjava.gsonrpc.annotation.RPCMethod;
 import org.xjava.gsonrpc.annotation.RPCService;
 import org.xjava.gsonrpc.exception.JsonRPCErrorException;
+import org.xjava.gsonrpc.interceptor.JsonRPCCall;
+import org.xjava.gsonrpc.interceptor.JsonRPCClientInterceptor;
+import org.xjava.gsonrpc.jfr.JsonRPCProxyCallEvent;
+import org.xjava.gsonrpc.jfr.JsonRPCTransportEvent;
 import org.xjava.gsonrpc.message.JsonRPCMessage;
+import org.xjava.gsonrpc.message.JsonRPCRequest;
 import org.xjava.gsonrpc.message.JsonRPCResponse;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormat;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * @version 1.0
@@ -51,10 +66,25 @@ public class JsonRPCServiceProxy implements InvocationHandler {
   private GsonRPC gsonRPC;
   private String namespace;
   private JsonRPCResponseGetter responseGetter;
+  private JsonRPCWireFormat wireFormat;
+  private JsonRPCBinaryResponseGetter binaryResponseGetter;
+  private List<JsonRPCClientInterceptor> interceptors = Collections.emptyList();
+  private volatile Long timeout;
+  private final HashMap<Method, ProxyMethodData> methods = new HashMap<>();
 
   public JsonRPCServiceProxy(@NotNull GsonRPC gsonRPC, @NotNull Class serviceInterface, @Nullable String namespace, @NotNull JsonRPCResponseGetter responseGetter) {
-    this.gsonRPC = gsonRPC;
+    this(gsonRPC, serviceInterface, namespace);
     this.responseGetter = responseGetter;
+  }
+
+  public JsonRPCServiceProxy(@NotNull GsonRPC gsonRPC, @NotNull Class serviceInterface, @Nullable String namespace, @NotNull JsonRPCWireFormat wireFormat, @NotNull JsonRPCBinaryResponseGetter binaryResponseGetter) {
+    this(gsonRPC, serviceInterface, namespace);
+    this.wireFormat = wireFormat;
+    this.binaryResponseGetter = binaryResponseGetter;
+  }
+
+  private JsonRPCServiceProxy(@NotNull GsonRPC gsonRPC, @NotNull Class serviceInterface, @Nullable String namespace) {
+    this.gsonRPC = gsonRPC;
 
     RPCService serviceAnnotation = (RPCService) serviceInterface.getAnnotation(RPCService.class);
     if(namespace == null) {
@@ -65,21 +95,95 @@ public class JsonRPCServiceProxy implements InvocationHandler {
     }
     else
       this.namespace = namespace;
+
+    for(Method method : serviceInterface.getMethods())
+      methods.put(method, new ProxyMethodData(method));
+  }
+
+  /**
+   * Sets the interceptors wrapping every call made through this proxy, the first one outermost. The chain of each
+   * interface method is composed here rather than per call.
+   *
+   * @param interceptors The JsonRPCClientInterceptor objects
+   */
+  public void setInterceptors(@NotNull List<JsonRPCClientInterceptor> interceptors) {
+    this.interceptors = new ArrayList<>(interceptors);
+    methods.replaceAll((method, methodData) -> new ProxyMethodData(method));
+  }
+
+  @Nullable
+  public Long getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * Sets the time budget sent with every request. A call made while handling a request with a deadline sends
+   * whatever is left of that deadline instead, if it is shorter, whether or not a timeout is set here.
+   *
+   * @param timeout The time budget in milliseconds, or null for none
+   */
+  public void setTimeout(@Nullable Long timeout) {
+    this.timeout = timeout;
   }
 
   @Override
   public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-    RPCMethod methodAnnotation = (RPCMethod) method.getAnnotation(RPCMethod.class);
+    JsonRPCProxyCallEvent event = new JsonRPCProxyCallEvent();
+    event.begin();
+
+    try {
+      Object result = call(method, args, event);
+      event.outcome = "success";
+      return result;
+    }
+    catch(JsonRPCErrorException e) {
+      //Errors received from the server are new instances, only the proxy itself throws the INTERNAL_ERROR constant
+      if(e.getError() == JsonRPCError.INTERNAL_ERROR)
+        event.outcome = "failure";
+      else {
+        event.outcome = "error";
+        event.errorCode = e.getError().getCode();
+      }
+      throw e;
+    }
+    catch(Throwable t) {
+      event.outcome = "failure";
+      throw t;
+    }
+    finally {
+      if(event.shouldCommit())
+        event.commit();
+    }
+  }
 
-    String id = method.getReturnType().equals(Void.TYPE) ? null : UUID.randomUUID().toString();
-    String methodName = methodAnnotation != null && !methodAnnotation.name().isEmpty() ? methodAnnotation.name() :  method.getName();
+  private Object call(@NotNull Method method, @Nullable Object[] args, @NotNull JsonRPCProxyCallEvent event) throws Throwable {
+    ProxyMethodData methodData = methods.get(method);
+    if(methodData == null)
+      methodData = new ProxyMethodData(method);
+
+    String id = methodData.isNotification() ? null : UUID.randomUUID().toString();
     List<Object> params = args == null ? null : Arrays.asList(args);
 
-    String requestJson = gsonRPC.toJson(gsonRPC.getMessageFactory().newRequestWithParams(id, namespace+"."+methodName, params));
+    JsonRPCRequest request = gsonRPC.getMessageFactory().newRequestWithParams(id, methodData.getRPCMethodName(), params);
 
-    String responseJson = responseGetter.getResponse(requestJson);
+    event.method = request.getMethod();
+    event.id = id;
+
+    long budget = timeout == null ? Long.MAX_VALUE : timeout;
+    JsonRPCContext context = JsonRPCContext.current();
+    if(context != null && context.hasDeadline())
+      budget = Math.min(budget, context.getRemainingMillis());
+
+    if(budget <= 0)
+      throw new JsonRPCErrorException(JsonRPCError.DEADLINE_EXCEEDED);
+    if(budget != Long.MAX_VALUE)
+      request = request.withTimeout(budget);
+
+    return methodData.getCall().call(request);
+  }
 
-    List<JsonRPCMessage> responses = gsonRPC.parseMessages(responseJson);
+  private Object receive(@NotNull Method method, @Nullable TypeAdapter<?> resultAdapter, @NotNull JsonRPCRequest request) throws Throwable {
+    List<JsonRPCMessage> responses = exchange(request);
 
     if(responses.size() > 1)
       throw new JsonRPCErrorException(JsonRPCError.INTERNAL_ERROR);
@@ -94,7 +198,48 @@ public class JsonRPCServiceProxy implements InvocationHandler {
       return null;
     }
 
-    if(responses.size() == 0)
+    JsonRPCResponse response = getResponse(responses, request);
+
+    if(resultAdapter == null)
+      return gsonRPC.getResult(response, method.getGenericReturnType());
+
+    return gsonRPC.getResult(response, resultAdapter);
+  }
+
+  /**
+   * Receives the result of a method returning an Iterator or a Stream, as its elements arrive if the transport
+   * streams them and from the whole response otherwise.
+   */
+  private Object receiveStream(@NotNull Class<?> streamType, @NotNull TypeAdapter<?> elementAdapter, @NotNull JsonRPCRequest request) throws Throwable {
+    JsonRPCResultStream<?> results;
+
+    if(binaryResponseGetter instanceof JsonRPCStreamingResponseGetter && ((JsonRPCStreamingResponseGetter) binaryResponseGetter).isStreaming()) {
+      JsonRPCStreamingResponseGetter streamingResponseGetter = (JsonRPCStreamingResponseGetter) binaryResponseGetter;
+      JsonRPCTransportEvent event = new JsonRPCTransportEvent();
+      event.begin();
+
+      //Only the request is counted, the chunks are read long after the event
+      byte[] requestBytes = gsonRPC.toBytes(request, wireFormat);
+      JsonRPCResponseFrames frames = streamingResponseGetter.getResponseFrames(requestBytes);
+      commit(event, streamingResponseGetter, requestBytes.length, 0);
+
+      results = JsonRPCResultStream.open(gsonRPC, wireFormat, elementAdapter, request.getId(), frames);
+    }
+    else
+      results = JsonRPCResultStream.of(gsonRPC, elementAdapter, request.getId(), getResponse(exchange(request), request).getResultJson());
+
+    if(results == null)
+      return null;
+
+    return streamType == Stream.class ? results.stream() : results;
+  }
+
+  /**
+   * Gets the response to a request out of the messages received for it, throwing the error it was answered with.
+   */
+  @NotNull
+  private JsonRPCResponse getResponse(@NotNull List<JsonRPCMessage> responses, @NotNull JsonRPCRequest request) throws JsonRPCErrorException {
+    if(responses.size() != 1)
       throw new JsonRPCErrorException(JsonRPCError.INTERNAL_ERROR);
 
     JsonRPCMessage message = responses.get(0);
@@ -102,14 +247,125 @@ public class JsonRPCServiceProxy implements InvocationHandler {
     if(message.isResponse()) {
       JsonRPCResponse response = message.getAsResponse();
 
-      if(!response.getId().equals(id))
+      if(!response.getId().equals(request.getId()))
         throw new JsonRPCErrorException(JsonRPCError.INTERNAL_ERROR);
 
-      return gsonRPC.getResult(response, method.getReturnType());
+      return response;
     }
     else if(message.isErrorResponse())
       throw new JsonRPCErrorException(message.getAsErrorResponse());
 
     throw new JsonRPCErrorException(JsonRPCError.INTERNAL_ERROR);
   }
+
+  @NotNull
+  private List<JsonRPCMessage> exchange(@NotNull JsonRPCRequest request) throws Throwable {
+    JsonRPCTransportEvent event = new JsonRPCTransportEvent();
+    event.begin();
+
+    if(binaryResponseGetter instanceof JsonRPCMultiplexedResponseGetter) {
+      //The sizes are not known, the getter encodes and parses the messages itself
+      List<JsonRPCMessage> responses = ((JsonRPCMultiplexedResponseGetter) binaryResponseGetter).exchange(request);
+      commit(event, binaryResponseGetter, 0, 0);
+
+      return responses;
+    }
+
+    if(binaryResponseGetter != null) {
+      byte[] requestBytes = gsonRPC.toBytes(request, wireFormat);
+      byte[] responseBytes = binaryResponseGetter.getResponse(requestBytes);
+      commit(event, binaryResponseGetter, requestBytes.length, responseBytes == null ? 0 : responseBytes.length);
+
+      return gsonRPC.parseMessages(responseBytes, wireFormat);
+    }
+
+    String requestJson = gsonRPC.toJson(request);
+    String responseJson = responseGetter.getResponse(requestJson);
+    commit(event, responseGetter, requestJson.length(), responseJson == null ? 0 : responseJson.length());
+
+    return gsonRPC.parseMessages(responseJson);
+  }
+
+  private void commit(@NotNull JsonRPCTransportEvent event, @NotNull Object transport, long requestSize, long responseSize) {
+    if(event.shouldCommit()) {
+      event.transport = transport.getClass().getName();
+      event.operation = JsonRPCTransportEvent.EXCHANGE;
+      event.bytesWritten = requestSize;
+      event.bytesRead = responseSize;
+      event.commit();
+    }
+  }
+
+  private final class ProxyMethodData {
+    private final String rpcMethodName;
+    private final boolean notification;
+    private final JsonRPCCall call;
+    private final TypeAdapter<?> resultAdapter;
+    private final TypeAdapter<?> elementAdapter;
+
+    public ProxyMethodData(@NotNull Method method) {
+      RPCMethod methodAnnotation = (RPCMethod) method.getAnnotation(RPCMethod.class);
+      String methodName = methodAnnotation != null && !methodAnnotation.name().isEmpty() ? methodAnnotation.name() :  method.getName();
+
+      rpcMethodName = namespace+"."+methodName;
+      notification = method.getReturnType().equals(Void.TYPE);
+
+      Class<?> returnType = method.getReturnType();
+      boolean streamed = returnType == Iterator.class || returnType == Stream.class;
+      elementAdapter = streamed ? resolveElementAdapter(method) : null;
+      resultAdapter = notification || streamed ? null : resolveResultAdapter(method);
+
+      JsonRPCCall chain = streamed ? request -> receiveStream(returnType, elementAdapter, request) : request -> receive(method, resultAdapter, request);
+      for(int i = interceptors.size() - 1; i >= 0; i--) {
+        JsonRPCClientInterceptor interceptor = interceptors.get(i);
+        JsonRPCCall next = chain;
+        chain = request -> interceptor.intercept(request, method, next);
+      }
+      call = chain;
+    }
+
+    @NotNull
+    public String getRPCMethodName() {
+      return rpcMethodName;
+    }
+
+    public boolean isNotification() {
+      return notification;
+    }
+
+    @NotNull
+    public JsonRPCCall getCall() {
+      return call;
+    }
+
+    /**
+     * Resolves the adapter of the generic return type, so that a method returning List&lt;Foo&gt; gets a list of Foo
+     * rather than of the maps Gson makes when it only knows the erased type.
+     */
+    @Nullable
+    private TypeAdapter<?> resolveResultAdapter(@NotNull Method method) {
+      try {
+        return gsonRPC.getAdapter(method.getGenericReturnType());
+      }
+      catch(RuntimeException e) {
+        return null;
+      }
+    }
+
+    /**
+     * Resolves the adapter of the element type of an Iterator or a Stream, or of Object if it has none.
+     */
+    @NotNull
+    private TypeAdapter<?> resolveElementAdapter(@NotNull Method method) {
+      Type returnType = method.getGenericReturnType();
+      Type elementType = returnType instanceof ParameterizedType ? ((ParameterizedType) returnType).getActualTypeArguments()[0] : Object.class;
+
+      try {
+        return gsonRPC.getAdapter(elementType);
+      }
+      catch(RuntimeException e) {
+        return gsonRPC.getAdapter(Object.class);
+      }
+    }
+  }
 }
@@ -0,0 +1,56 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.proxy;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * A JsonRPCBinaryResponseGetter over a connection that can deliver the elements of a streamed result as they are
+ * produced. A service proxy uses it for methods returning an Iterator or a Stream, and
+ * {@link #getResponse(byte[])} for everything else.
+ *
+ * @version 1.0
+ */
+public interface JsonRPCStreamingResponseGetter extends JsonRPCBinaryResponseGetter {
+
+  /**
+   * Tells whether the other side agreed to stream results. If not, streamed results arrive whole in the response.
+   *
+   * @return True if results are streamed
+   */
+  public boolean isStreaming();
+
+  /**
+   * Sends a payload holding one request and starts reading the payloads that answer it.
+   *
+   * @param requestBytes The encoded request
+   * @return The JsonRPCResponseFrames of the exchange, which must be closed
+   * @throws IOException An IOException will be thrown if the connection fails
+   */
+  @NotNull
+  public JsonRPCResponseFrames getResponseFrames(@NotNull byte[] requestBytes) throws IOException;
+}
@@ -0,0 +1,248 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.scheduler;
+
+import org.jetbrains.annotations.NotNull;
+import org.xjava.gsonrpc.annotation.RPCPriority;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Runs tasks on a fixed pool of worker threads, with a separate queue (lane) per RPCPriority. When a worker is free
+ * it picks the next lane by smooth weighted round robin over the lanes that have work, so with the default weights
+ * of 8, 4 and 1 a backlog of low priority calls gets one worker turn in every thirteen while high and normal priority
+ * calls are waiting, and all of them when nothing else is. No lane starves, and a burst of bulk calls can not delay a
+ * high priority call by more than the time it takes a worker to free up.
+ *
+ * <p>The queues are bounded as a whole; a task submitted while they are full fails at once with a
+ * RejectedExecutionException rather than waiting behind work that will take too long.</p>
+ *
+ * @version 1.0
+ */
+public class JsonRPCScheduler implements Closeable {
+  public static final int DEFAULT_MAX_QUEUED = 10000;
+
+  private static final AtomicInteger schedulerCount = new AtomicInteger();
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final ArrayDeque<Runnable>[] lanes;
+  private final int[] weights = { 8, 4, 1 };
+  private final int[] currentWeights = new int[RPCPriority.values().length];
+  private final Thread[] workers;
+  private int queued;
+  private int maxQueued = DEFAULT_MAX_QUEUED;
+  private boolean closed;
+
+  /**
+   * Creates a scheduler with a worker thread per available processor.
+   */
+  public JsonRPCScheduler() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public JsonRPCScheduler(int threads) {
+    if(threads <= 0)
+      throw new IllegalArgumentException("The number of threads must be positive.");
+
+    @SuppressWarnings("unchecked")
+    ArrayDeque<Runnable>[] lanes = (ArrayDeque<Runnable>[]) new ArrayDeque<?>[RPCPriority.values().length];
+    this.lanes = lanes;
+    for(int i = 0; i < lanes.length; i++)
+      lanes[i] = new ArrayDeque<>();
+
+    int schedulerNumber = schedulerCount.incrementAndGet();
+    workers = new Thread[threads];
+
+    for(int i = 0; i < threads; i++) {
+      workers[i] = new Thread(this::work, "gsonrpc-scheduler-" + schedulerNumber + "-" + (i + 1));
+      workers[i].setDaemon(true);
+      workers[i].start();
+    }
+  }
+
+  /**
+   * Sets the relative share of worker turns a lane gets while other lanes have work queued.
+   *
+   * @param priority The RPCPriority of the lane
+   * @param weight The weight, at least 1
+   */
+  public void setWeight(@NotNull RPCPriority priority, int weight) {
+    if(weight <= 0)
+      throw new IllegalArgumentException("The weight must be positive.");
+
+    lock.lock();
+    try {
+      weights[priority.ordinal()] = weight;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  public int getWeight(@NotNull RPCPriority priority) {
+    lock.lock();
+    try {
+      return weights[priority.ordinal()];
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Sets the maximum number of tasks queued across every lane.
+   *
+   * @param maxQueued The maximum number of queued tasks
+   */
+  public void setMaxQueued(int maxQueued) {
+    lock.lock();
+    try {
+      this.maxQueued = maxQueued;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  public int getQueueLength(@NotNull RPCPriority priority) {
+    lock.lock();
+    try {
+      return lanes[priority.ordinal()].size();
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Queues a task in the lane of a priority.
+   *
+   * @param priority The RPCPriority
+   * @param task The task
+   * @return A CompletableFuture completed with the result of the task, or exceptionally with a
+   * RejectedExecutionException if the queues are full or the scheduler is closed
+   */
+  @NotNull
+  public <T> CompletableFuture<T> submit(@NotNull RPCPriority priority, @NotNull Supplier<T> task) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+
+    lock.lock();
+    try {
+      if(closed || queued >= maxQueued)
+        return CompletableFuture.failedFuture(new RejectedExecutionException(closed ? "The scheduler is closed." : "The scheduler queues are full."));
+
+      lanes[priority.ordinal()].add(() -> {
+        try {
+          future.complete(task.get());
+        }
+        catch(Throwable t) {
+          future.completeExceptionally(t);
+        }
+      });
+
+      queued++;
+      notEmpty.signal();
+    }
+    finally {
+      lock.unlock();
+    }
+
+    return future;
+  }
+
+  /**
+   * Stops accepting tasks. The workers finish the tasks already queued and then exit.
+   */
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      closed = true;
+      notEmpty.signalAll();
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  private void work() {
+    Runnable task;
+
+    try {
+      while((task = take()) != null)
+        task.run();
+    }
+    catch(InterruptedException e) {
+      //The worker was interrupted from outside; there is no one to report to so it just stops
+    }
+  }
+
+  private Runnable take() throws InterruptedException {
+    lock.lock();
+    try {
+      while(queued == 0) {
+        if(closed)
+          return null;
+
+        notEmpty.await();
+      }
+
+      int selected = -1;
+      int totalWeight = 0;
+
+      for(int i = 0; i < lanes.length; i++) {
+        if(lanes[i].isEmpty())
+          continue;
+
+        currentWeights[i] += weights[i];
+        totalWeight += weights[i];
+
+        if(selected < 0 || currentWeights[i] > currentWeights[selected])
+          selected = i;
+      }
+
+      currentWeights[selected] -= totalWeight;
+      queued--;
+
+      //A lane that drains gives up its credit, so it can not come back from idle and claim a run of turns
+      Runnable task = lanes[selected].poll();
+      if(lanes[selected].isEmpty())
+        currentWeights[selected] = 0;
+
+      return task;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+}
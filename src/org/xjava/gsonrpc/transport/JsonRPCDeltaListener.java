@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.transport;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.message.JsonRPCRequest;
+
+import java.util.function.Consumer;
+
+/**
+ * Rebuilds the params of a topic a JsonRPCSocketServer publishes in delta mode, by applying each patch to the
+ * params before it, and hands them whole to a consumer:
+ *
+ * <pre>{@code
+ * client.subscribe("prices", new JsonRPCDeltaListener(params -> update(params)));
+ * }</pre>
+ *
+ * <p>The params are changed in place by each patch, so a consumer that keeps them beyond the call should keep a
+ * deepCopy(). A patch that does not follow on from the last notification, which the server avoids by sending a
+ * snapshot instead, is skipped along with the ones after it until the next snapshot.</p>
+ *
+ * @version 1.0
+ */
+public class JsonRPCDeltaListener implements JsonRPCNotificationListener {
+  private final Consumer<JsonElement> consumer;
+  private JsonElement params;
+  private long seq;
+
+  public JsonRPCDeltaListener(@NotNull Consumer<JsonElement> consumer) {
+    this.consumer = consumer;
+  }
+
+  /**
+   * Gets the params as of the last notification applied.
+   *
+   * @return The params, or null until the first snapshot has arrived
+   */
+  @Nullable
+  public synchronized JsonElement getParams() {
+    return params;
+  }
+
+  @Override
+  public synchronized void onNotification(@NotNull JsonRPCRequest notification) {
+    JsonObject update = notification.getParamsJson().getAsJsonObject();
+    long updateSeq = update.get("seq").getAsLong();
+
+    if(update.has("snapshot"))
+      params = update.get("snapshot");
+    else if(params != null && updateSeq == seq + 1) {
+      try {
+        params = JsonRPCPatch.apply(params, update.get("patch").getAsJsonArray());
+      }
+      catch(JsonParseException e) {
+        //The params can no longer be trusted, so nothing more is applied until the next snapshot
+        params = null;
+        return;
+      }
+    }
+    else
+      return;
+
+    seq = updateSeq;
+    consumer.accept(params);
+  }
+}
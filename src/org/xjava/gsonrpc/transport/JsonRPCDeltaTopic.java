@@ -0,0 +1,100 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.transport;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.message.JsonRPCRequest;
+
+/**
+ * The state of a topic published in delta mode: the last value published and its sequence number. Each value is
+ * sent as a patch against the one before, except for every {@code snapshotInterval}th value and values that share
+ * nothing with the one before, which are sent whole.
+ *
+ * <p>The notifications carry a "seq" param and either a "patch" or a "snapshot" param. It is not thread safe;
+ * callers hold its lock, which also orders the notifications queued for the topic.</p>
+ *
+ * @version 1.0
+ */
+final class JsonRPCDeltaTopic {
+  private final String topic;
+  private final int snapshotInterval;
+  private JsonElement value;
+  private long seq;
+  private int sinceSnapshot;
+
+  JsonRPCDeltaTopic(@NotNull String topic, int snapshotInterval) {
+    this.topic = topic;
+    this.snapshotInterval = snapshotInterval;
+  }
+
+  /**
+   * Records a value, getting the notification that sends it.
+   *
+   * @param newValue The value
+   * @return The patch or snapshot notification
+   */
+  @NotNull
+  JsonRPCRequest update(@Nullable JsonElement newValue) {
+    JsonElement previous = value;
+    value = newValue == null ? JsonNull.INSTANCE : newValue;
+    seq++;
+
+    JsonArray patch = previous == null ? null : JsonRPCPatch.diff(previous, value);
+
+    //A patch replacing the whole value would only repeat the snapshot
+    if(patch == null || (patch.size() == 1 && patch.get(0).getAsJsonObject().get("path").getAsString().isEmpty()) || (snapshotInterval > 0 && ++sinceSnapshot >= snapshotInterval)) {
+      sinceSnapshot = 0;
+      return newNotification("snapshot", value);
+    }
+
+    return newNotification("patch", patch);
+  }
+
+  /**
+   * Gets a notification sending the last value whole, for subscribers that can not follow patches from where they
+   * are.
+   *
+   * @return The snapshot notification, or null if nothing was published yet
+   */
+  @Nullable
+  JsonRPCRequest getSnapshot() {
+    return value == null ? null : newNotification("snapshot", value);
+  }
+
+  @NotNull
+  private JsonRPCRequest newNotification(@NotNull String name, @NotNull JsonElement json) {
+    JsonObject params = new JsonObject();
+    params.addProperty("seq", seq);
+    params.add(name, json);
+
+    return new JsonRPCRequest(GsonRPC.VERSION, null, topic, params);
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.transport;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.jfr.JsonRPCTransportEvent;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Reads and writes the frames of the socket transport. Every frame is a 4 byte big-endian length followed by that
+ * many bytes. The first frame in each direction is the handshake, a JSON object in UTF-8; every frame after it is a
+ * payload encoded with the negotiated wire format and compression.
+ *
+ * <p>If both sides agree to streaming in the handshake, the server may send the elements of a streamed result in
+ * notification frames ahead of the response, and the client may send a notification frame cancelling the stream
+ * while they arrive.</p>
+ *
+ * <p>If both sides agree to push in the handshake, the server may also send notification frames of its own at any
+ * time between the frames answering the client. Their length has {@link #PUSH_FLAG} set, so the client can tell them
+ * apart without decoding them.</p>
+ *
+ * <p>If both sides agree to be peers in the handshake, either side may send requests at any time and answer the
+ * ones it receives in any order, so frames no longer pair up; responses are matched to their requests by id.</p>
+ */
+final class JsonRPCFrames {
+  static final String TRANSPORT = "socket";
+
+  static final String WIRE_FORMATS = "wireFormats";
+  static final String COMPRESSIONS = "compressions";
+  static final String WIRE_FORMAT = "wireFormat";
+  static final String COMPRESSION = "compression";
+  static final String STREAMING = "streaming";
+  static final String PUSH = "push";
+  static final String PEER = "peer";
+
+  static final int PUSH_FLAG = 0x80000000;
+
+  private JsonRPCFrames() {
+  }
+
+  /**
+   * Reads a frame, returning null if the peer closed the connection cleanly before the frame started.
+   */
+  @Nullable
+  static byte[] read(@NotNull DataInputStream in, int maxFrameSize) throws IOException {
+    int length;
+
+    try {
+      length = in.readInt();
+    }
+    catch(EOFException e) {
+      return null;
+    }
+
+    return readBody(in, length, maxFrameSize);
+  }
+
+  /**
+   * Reads a frame like {@link #read(DataInputStream, int)}, handing the frames pushed by the server to a consumer
+   * and returning the first one that is not.
+   */
+  @Nullable
+  static byte[] read(@NotNull DataInputStream in, int maxFrameSize, @NotNull Consumer<byte[]> pushed) throws IOException {
+    while(true) {
+      int header;
+
+      try {
+        header = in.readInt();
+      }
+      catch(EOFException e) {
+        return null;
+      }
+
+      if((header & PUSH_FLAG) == 0)
+        return readBody(in, header, maxFrameSize);
+
+      pushed.accept(readBody(in, header & ~PUSH_FLAG, maxFrameSize));
+    }
+  }
+
+  @NotNull
+  private static byte[] readBody(@NotNull DataInputStream in, int length, int maxFrameSize) throws IOException {
+    if(length < 0 || length > maxFrameSize)
+      throw new IOException("Frame of " + length + " bytes exceeds the maximum of " + maxFrameSize + " bytes.");
+
+    //The event starts once the length has arrived so it does not include the time spent waiting for the peer
+    JsonRPCTransportEvent event = new JsonRPCTransportEvent();
+    event.begin();
+
+    byte[] frame = new byte[length];
+    in.readFully(frame);
+
+    if(event.shouldCommit()) {
+      event.transport = TRANSPORT;
+      event.operation = JsonRPCTransportEvent.READ;
+      event.bytesRead = length + 4;
+      event.commit();
+    }
+
+    return frame;
+  }
+
+  static void write(@NotNull DataOutputStream out, @NotNull byte[] frame) throws IOException {
+    write(out, frame, frame.length, true);
+  }
+
+  /**
+   * Writes a frame pushed by the server. The frame is not flushed, so that a run of them goes out together.
+   */
+  static void writePush(@NotNull DataOutputStream out, @NotNull byte[] frame) throws IOException {
+    write(out, frame, frame.length | PUSH_FLAG, false);
+  }
+
+  private static void write(@NotNull DataOutputStream out, @NotNull byte[] frame, int header, boolean flush) throws IOException {
+    JsonRPCTransportEvent event = new JsonRPCTransportEvent();
+    event.begin();
+
+    out.writeInt(header);
+    out.write(frame);
+    if(flush)
+      out.flush();
+
+    if(event.shouldCommit()) {
+      event.transport = TRANSPORT;
+      event.operation = JsonRPCTransportEvent.WRITE;
+      event.bytesWritten = frame.length + 4;
+      event.commit();
+    }
+  }
+
+  @NotNull
+  static JsonObject readHandshake(@NotNull DataInputStream in, int maxFrameSize) throws IOException {
+    byte[] frame = read(in, maxFrameSize);
+    if(frame == null)
+      throw new EOFException("Connection closed during the handshake.");
+
+    try {
+      return JsonParser.parseString(new String(frame, StandardCharsets.UTF_8)).getAsJsonObject();
+    }
+    catch(JsonParseException | IllegalStateException e) {
+      throw new IOException("Invalid handshake.", e);
+    }
+  }
+
+  static void writeHandshake(@NotNull DataOutputStream out, @NotNull JsonObject handshake) throws IOException {
+    write(out, handshake.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Nullable
+  static String getString(@NotNull JsonObject handshake, @NotNull String name) {
+    return handshake.has(name) && handshake.get(name).isJsonPrimitive() ? handshake.get(name).getAsString() : null;
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.xjava.gsonrpc.message.JsonRPCRequest;
+
+/**
+ * Receives the notifications a server pushes for a topic a JsonRPCSocketClient subscribed to. Notifications are
+ * delivered one at a time, in the order they were published, on the thread reading the connection, so a listener
+ * that blocks holds up the responses of the client too.
+ *
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface JsonRPCNotificationListener {
+
+  /**
+   * Called with a notification pushed by the server. Its method is the topic.
+   *
+   * @param notification The notification
+   */
+  public void onNotification(@NotNull JsonRPCRequest notification);
+}
@@ -0,0 +1,245 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.transport;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * Computes and applies the differences between two JSON values as JSON Patch (RFC 6902) operations. Only the add,
+ * remove and replace operations are produced or understood. Objects are compared member by member and arrays element
+ * by element, with elements added or removed at the end; anything else that differs is replaced whole.
+ *
+ * @version 1.0
+ */
+public final class JsonRPCPatch {
+
+  private JsonRPCPatch() {
+  }
+
+  /**
+   * Computes the operations turning one value into another.
+   *
+   * @param source The value before
+   * @param target The value after
+   * @return The operations, which are empty if the values are equal
+   */
+  @NotNull
+  public static JsonArray diff(@Nullable JsonElement source, @Nullable JsonElement target) {
+    JsonArray operations = new JsonArray();
+    diff(orNull(source), orNull(target), "", operations);
+    return operations;
+  }
+
+  private static void diff(@NotNull JsonElement source, @NotNull JsonElement target, @NotNull String path, @NotNull JsonArray operations) {
+    if(source.equals(target))
+      return;
+
+    if(source.isJsonObject() && target.isJsonObject()) {
+      JsonObject sourceObject = source.getAsJsonObject();
+      JsonObject targetObject = target.getAsJsonObject();
+
+      for(Map.Entry<String, JsonElement> member : sourceObject.entrySet()) {
+        String memberPath = path + "/" + escape(member.getKey());
+        JsonElement targetMember = targetObject.get(member.getKey());
+
+        if(targetMember == null)
+          operations.add(newOperation("remove", memberPath, null));
+        else
+          diff(member.getValue(), targetMember, memberPath, operations);
+      }
+
+      for(Map.Entry<String, JsonElement> member : targetObject.entrySet()) {
+        if(!sourceObject.has(member.getKey()))
+          operations.add(newOperation("add", path + "/" + escape(member.getKey()), member.getValue()));
+      }
+    }
+    else if(source.isJsonArray() && target.isJsonArray()) {
+      JsonArray sourceArray = source.getAsJsonArray();
+      JsonArray targetArray = target.getAsJsonArray();
+      int common = Math.min(sourceArray.size(), targetArray.size());
+
+      for(int i = 0; i < common; i++)
+        diff(sourceArray.get(i), targetArray.get(i), path + "/" + i, operations);
+
+      for(int i = common; i < targetArray.size(); i++)
+        operations.add(newOperation("add", path + "/" + i, targetArray.get(i)));
+
+      //Removed from the end so that the indexes of the ones still to remove do not move
+      for(int i = sourceArray.size() - 1; i >= common; i--)
+        operations.add(newOperation("remove", path + "/" + i, null));
+    }
+    else
+      operations.add(newOperation("replace", path, target));
+  }
+
+  /**
+   * Applies operations to a value. Objects and arrays are changed in place, so the value returned is the one passed
+   * unless the whole of it was replaced.
+   *
+   * @param value The value
+   * @param operations The operations
+   * @return The changed value
+   * @throws JsonParseException A JsonParseException will be thrown if an operation is not understood or does not fit
+   *                            the value
+   */
+  @NotNull
+  public static JsonElement apply(@Nullable JsonElement value, @NotNull JsonArray operations) throws JsonParseException {
+    JsonElement result = orNull(value);
+
+    try {
+      for(JsonElement operationJson : operations) {
+        JsonObject operation = operationJson.getAsJsonObject();
+        String op = operation.get("op").getAsString();
+        String path = operation.get("path").getAsString();
+        JsonElement operand = operation.get("value");
+
+        if(path.isEmpty()) {
+          if(!op.equals("replace") && !op.equals("add"))
+            throw new JsonParseException("Can not " + op + " the whole value.");
+
+          result = orNull(operand);
+          continue;
+        }
+
+        int separator = path.lastIndexOf('/');
+        JsonElement parent = find(result, path.substring(0, separator));
+        String key = unescape(path.substring(separator + 1));
+
+        switch(op) {
+          case "add":
+            add(parent, key, orNull(operand));
+            break;
+          case "remove":
+            remove(parent, key);
+            break;
+          case "replace":
+            replace(parent, key, orNull(operand));
+            break;
+          default:
+            throw new JsonParseException("Unsupported patch operation " + op + ".");
+        }
+      }
+    }
+    catch(IllegalStateException | UnsupportedOperationException | NullPointerException | IndexOutOfBoundsException | NumberFormatException e) {
+      throw new JsonParseException("The patch does not fit the value.", e);
+    }
+
+    return result;
+  }
+
+  @NotNull
+  private static JsonElement find(@NotNull JsonElement value, @NotNull String pointer) {
+    JsonElement element = value;
+
+    if(pointer.isEmpty())
+      return element;
+
+    for(String token : pointer.substring(1).split("/", -1)) {
+      String key = unescape(token);
+      element = element.isJsonArray() ? element.getAsJsonArray().get(Integer.parseInt(key)) : element.getAsJsonObject().get(key);
+
+      if(element == null)
+        throw new JsonParseException("No value at " + pointer + ".");
+    }
+
+    return element;
+  }
+
+  private static void add(@NotNull JsonElement parent, @NotNull String key, @NotNull JsonElement value) {
+    if(parent.isJsonObject()) {
+      parent.getAsJsonObject().add(key, value);
+      return;
+    }
+
+    JsonArray array = parent.getAsJsonArray();
+    int index = key.equals("-") ? array.size() : Integer.parseInt(key);
+
+    if(index == array.size()) {
+      array.add(value);
+      return;
+    }
+
+    //JsonArray can only insert by moving the tail along
+    array.add(JsonNull.INSTANCE);
+    for(int i = array.size() - 1; i > index; i--)
+      array.set(i, array.get(i - 1));
+    array.set(index, value);
+  }
+
+  private static void replace(@NotNull JsonElement parent, @NotNull String key, @NotNull JsonElement value) {
+    if(parent.isJsonObject()) {
+      if(!parent.getAsJsonObject().has(key))
+        throw new JsonParseException("No member " + key + " to replace.");
+
+      //Replacing a member keeps its place among the others
+      parent.getAsJsonObject().add(key, value);
+    }
+    else
+      parent.getAsJsonArray().set(Integer.parseInt(key), value);
+  }
+
+  private static void remove(@NotNull JsonElement parent, @NotNull String key) {
+    if(parent.isJsonObject()) {
+      if(parent.getAsJsonObject().remove(key) == null)
+        throw new JsonParseException("No member " + key + " to remove.");
+    }
+    else
+      parent.getAsJsonArray().remove(Integer.parseInt(key));
+  }
+
+  @NotNull
+  private static JsonObject newOperation(@NotNull String op, @NotNull String path, @Nullable JsonElement value) {
+    JsonObject operation = new JsonObject();
+    operation.addProperty("op", op);
+    operation.addProperty("path", path);
+    if(value != null)
+      operation.add("value", value);
+
+    return operation;
+  }
+
+  @NotNull
+  private static JsonElement orNull(@Nullable JsonElement value) {
+    return value == null ? JsonNull.INSTANCE : value;
+  }
+
+  @NotNull
+  private static String escape(@NotNull String key) {
+    return key.replace("~", "~0").replace("/", "~1");
+  }
+
+  @NotNull
+  private static String unescape(@NotNull String token) {
+    return token.replace("~1", "/").replace("~0", "~");
+  }
+}
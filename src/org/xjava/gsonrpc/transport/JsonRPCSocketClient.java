@@ -0,0 +1,432 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.transport;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.message.JsonRPCRequest;
+import org.xjava.gsonrpc.proxy.JsonRPCResponseFrames;
+import org.xjava.gsonrpc.proxy.JsonRPCStreamingResponseGetter;
+import org.xjava.gsonrpc.wire.JsonRPCCompression;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormat;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormats;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+/**
+ * A connection to a JsonRPCSocketServer. The wire format and compression are negotiated when the connection is
+ * opened; {@link #getResponse(byte[])} then sends one payload encoded with {@link #getWireFormat()} and waits for
+ * its response, which makes the client usable as the JsonRPCBinaryResponseGetter of a service proxy:
+ *
+ * <pre>{@code
+ * JsonRPCSocketClient client = new JsonRPCSocketClient("localhost", 8080);
+ * ExampleServiceInterface service = client.newServiceProxy(gsonRPC, ExampleServiceInterface.class);
+ * }</pre>
+ *
+ * <p>Calls on one client are serialized. Open a client per thread for concurrent calls.</p>
+ *
+ * <p>The client offers streaming, so proxy methods returning an Iterator or a Stream get their elements as the
+ * server produces them. A streamed result holds the connection until it has been read to the end or closed.</p>
+ *
+ * <p>The client also offers push, so it can {@link #subscribe(String, JsonRPCNotificationListener)} to the topics
+ * the server publishes. The first subscription starts a thread reading the connection, which hands pushed
+ * notifications to their listeners and responses to the calls waiting for them.</p>
+ *
+ * @version 1.0
+ */
+public class JsonRPCSocketClient implements JsonRPCStreamingResponseGetter, Closeable {
+
+  private final Socket socket;
+  private final DataInputStream in;
+  private final DataOutputStream out;
+  private final JsonRPCWireFormat wireFormat;
+  private final JsonRPCCompression compression;
+  private final boolean streaming;
+  private final boolean push;
+  private final ConcurrentHashMap<String, JsonRPCNotificationListener> listeners = new ConcurrentHashMap<>();
+  //Filled by the reading thread once there is one
+  private volatile BlockingQueue<byte[]> payloads;
+  private volatile IOException readFailure;
+  //Held from a request until its response has been read, which for a streamed result spans several calls
+  private final Semaphore exchangeLock = new Semaphore(1);
+  private int maxFrameSize = JsonRPCSocketServer.DEFAULT_MAX_FRAME_SIZE;
+
+  //Stands in for the payload a call was waiting for when the reading thread fails
+  private static final byte[] READ_FAILED = new byte[0];
+
+  /**
+   * Connects offering every registered wire format and no compression.
+   *
+   * @param host The host of the server
+   * @param port The port of the server
+   * @throws IOException An IOException will be thrown if the connection or the handshake fails
+   */
+  public JsonRPCSocketClient(@NotNull String host, int port) throws IOException {
+    this(host, port, JsonRPCWireFormats.getOffer(), Collections.emptyList());
+  }
+
+  /**
+   * Connects offering a list of wire formats and compressions.
+   *
+   * @param host The host of the server
+   * @param port The port of the server
+   * @param wireFormatOffer The comma separated names of the wire formats to offer, in order of preference
+   * @param compressions The compressions to offer, in order of preference
+   * @throws IOException An IOException will be thrown if the connection or the handshake fails
+   */
+  public JsonRPCSocketClient(@NotNull String host, int port, @NotNull String wireFormatOffer, @NotNull List<JsonRPCCompression> compressions) throws IOException {
+    socket = new Socket();
+
+    try {
+      socket.connect(new InetSocketAddress(host, port));
+      socket.setTcpNoDelay(true);
+      in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+      JsonObject offer = new JsonObject();
+      offer.addProperty(JsonRPCFrames.WIRE_FORMATS, wireFormatOffer);
+      offer.addProperty(JsonRPCFrames.COMPRESSIONS, compressions.stream().map(JsonRPCCompression::getName).collect(Collectors.joining(",")));
+      offer.addProperty(JsonRPCFrames.STREAMING, Boolean.toString(true));
+      offer.addProperty(JsonRPCFrames.PUSH, Boolean.toString(true));
+      JsonRPCFrames.writeHandshake(out, offer);
+
+      JsonObject answer = JsonRPCFrames.readHandshake(in, maxFrameSize);
+      wireFormat = JsonRPCWireFormats.forName(JsonRPCFrames.getString(answer, JsonRPCFrames.WIRE_FORMAT));
+      compression = findCompression(JsonRPCFrames.getString(answer, JsonRPCFrames.COMPRESSION), compressions);
+      streaming = Boolean.parseBoolean(JsonRPCFrames.getString(answer, JsonRPCFrames.STREAMING));
+      push = Boolean.parseBoolean(JsonRPCFrames.getString(answer, JsonRPCFrames.PUSH));
+
+      if(wireFormat == null || compression == null)
+        throw new IOException("The server answered the handshake with a wire format or compression that was not offered.");
+    }
+    catch(IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  @NotNull
+  public JsonRPCWireFormat getWireFormat() {
+    return wireFormat;
+  }
+
+  @NotNull
+  public JsonRPCCompression getCompression() {
+    return compression;
+  }
+
+  /**
+   * Tells whether the server agreed to stream results. Servers that do not know about streaming send them whole.
+   *
+   * @return True if results are streamed
+   */
+  @Override
+  public boolean isStreaming() {
+    return streaming;
+  }
+
+  /**
+   * Tells whether the server agreed to push notifications. Servers that do not know about push can not be
+   * subscribed to.
+   *
+   * @return True if topics can be subscribed to
+   */
+  public boolean isPush() {
+    return push;
+  }
+
+  public int getMaxFrameSize() {
+    return maxFrameSize;
+  }
+
+  public void setMaxFrameSize(int maxFrameSize) {
+    this.maxFrameSize = maxFrameSize;
+  }
+
+  /**
+   * Creates a service proxy that sends its calls over this connection.
+   *
+   * @param gsonRPC The GsonRPC instance to create the proxy with
+   * @param serviceInterface The interface of the service
+   * @return The service proxy
+   */
+  public <T> T newServiceProxy(@NotNull GsonRPC gsonRPC, @NotNull Class<T> serviceInterface) {
+    return gsonRPC.getProxyFactory().newServiceProxy(serviceInterface, wireFormat, this);
+  }
+
+  /**
+   * Sends a payload encoded with the negotiated wire format and waits for the response payload. The response is
+   * empty if the payload only held notifications.
+   *
+   * @param requestBytes The encoded requests
+   * @return The encoded responses
+   * @throws IOException An IOException will be thrown if the connection fails
+   */
+  @Override
+  @NotNull
+  public byte[] getResponse(@NotNull byte[] requestBytes) throws IOException {
+    exchangeLock.acquireUninterruptibly();
+
+    try {
+      JsonRPCFrames.write(out, compression.compress(requestBytes));
+      return readPayload();
+    }
+    finally {
+      exchangeLock.release();
+    }
+  }
+
+  /**
+   * Sends a payload holding one request and returns the payloads answering it as they arrive: the chunks of a
+   * streamed result, if streaming was agreed, then the response. No other call can use the connection until the
+   * JsonRPCResponseFrames is closed.
+   *
+   * @param requestBytes The encoded request
+   * @return The JsonRPCResponseFrames of the exchange
+   * @throws IOException An IOException will be thrown if the connection fails
+   */
+  @Override
+  @NotNull
+  public JsonRPCResponseFrames getResponseFrames(@NotNull byte[] requestBytes) throws IOException {
+    exchangeLock.acquireUninterruptibly();
+
+    try {
+      JsonRPCFrames.write(out, compression.compress(requestBytes));
+    }
+    catch(IOException | RuntimeException e) {
+      exchangeLock.release();
+      throw e;
+    }
+
+    return new JsonRPCResponseFrames() {
+      private boolean closed;
+
+      @Nullable
+      @Override
+      public byte[] next() throws IOException {
+        return closed ? null : readPayload();
+      }
+
+      @Override
+      public void send(@NotNull byte[] bytes) throws IOException {
+        if(!closed)
+          JsonRPCFrames.write(out, compression.compress(bytes));
+      }
+
+      @Override
+      public void close() {
+        if(!closed) {
+          closed = true;
+          exchangeLock.release();
+        }
+      }
+
+      @Override
+      public void abort() {
+        try {
+          socket.close();
+        }
+        catch(IOException e) {
+          //Nothing useful can be done
+        }
+
+        close();
+      }
+    };
+  }
+
+  /**
+   * Subscribes to a topic, replacing the listener if the topic was already subscribed to. Notifications published
+   * after this returns are delivered to the listener.
+   *
+   * @param topic The topic
+   * @param listener The listener of the topic's notifications
+   * @throws IOException An IOException will be thrown if the connection fails or the server does not push
+   */
+  public void subscribe(@NotNull String topic, @NotNull JsonRPCNotificationListener listener) throws IOException {
+    if(!push)
+      throw new IOException("The server does not push notifications.");
+
+    startReading();
+    listeners.put(topic, listener);
+    getResponse(newControl(JsonRPCSocketServer.SUBSCRIBE_METHOD, topic));
+  }
+
+  /**
+   * Unsubscribes from a topic. Notifications already on their way when this returns are not delivered.
+   *
+   * @param topic The topic
+   * @throws IOException An IOException will be thrown if the connection fails
+   */
+  public void unsubscribe(@NotNull String topic) throws IOException {
+    if(listeners.remove(topic) != null)
+      getResponse(newControl(JsonRPCSocketServer.UNSUBSCRIBE_METHOD, topic));
+  }
+
+  @NotNull
+  private byte[] newControl(@NotNull String method, @NotNull String topic) {
+    JsonObject params = new JsonObject();
+    params.addProperty("topic", topic);
+
+    JsonObject control = new JsonObject();
+    control.addProperty("jsonrpc", GsonRPC.VERSION);
+    control.addProperty("method", method);
+    control.add("params", params);
+
+    return wireFormat.encode(control);
+  }
+
+  /**
+   * Starts the thread reading the connection, unless it is running. No call is reading the connection meanwhile.
+   */
+  private void startReading() {
+    exchangeLock.acquireUninterruptibly();
+
+    try {
+      if(payloads != null)
+        return;
+
+      payloads = new LinkedBlockingQueue<>();
+
+      Thread reader = new Thread(this::read, "gsonrpc-socket-client-" + socket.getLocalPort());
+      reader.setDaemon(true);
+      reader.start();
+    }
+    finally {
+      exchangeLock.release();
+    }
+  }
+
+  private void read() {
+    try {
+      while(true) {
+        byte[] frame = JsonRPCFrames.read(in, maxFrameSize, this::deliver);
+        if(frame == null)
+          throw new EOFException("The server closed the connection.");
+
+        payloads.add(frame);
+      }
+    }
+    catch(IOException e) {
+      readFailure = e;
+      payloads.add(READ_FAILED);
+    }
+  }
+
+  private void deliver(@NotNull byte[] frame) {
+    try {
+      JsonElement json = wireFormat.decode(compression.decompress(frame));
+      if(!json.isJsonObject() || !json.getAsJsonObject().has("method"))
+        return;
+
+      JsonObject notification = json.getAsJsonObject();
+      String method = notification.get("method").getAsString();
+      JsonRPCNotificationListener listener = listeners.get(method);
+
+      if(listener != null)
+        listener.onNotification(new JsonRPCRequest(GsonRPC.VERSION, null, method, notification.get("params")));
+    }
+    catch(RuntimeException e) {
+      //Neither a notification that can not be read nor a failing listener may stop the thread reading the connection
+    }
+  }
+
+  @NotNull
+  private byte[] readPayload() throws IOException {
+    BlockingQueue<byte[]> payloads = this.payloads;
+    byte[] frame;
+
+    if(payloads == null)
+      frame = JsonRPCFrames.read(in, maxFrameSize, this::deliver);
+    else {
+      frame = take(payloads);
+
+      //Every later call fails the same way
+      if(frame == READ_FAILED) {
+        payloads.add(READ_FAILED);
+        throw readFailure;
+      }
+    }
+
+    if(frame == null)
+      throw new EOFException("The server closed the connection.");
+
+    return compression.decompress(frame);
+  }
+
+  /**
+   * Waits for a payload like a read of the socket would, ignoring interrupts so the response is not left behind for
+   * the next call.
+   */
+  @NotNull
+  private static byte[] take(@NotNull BlockingQueue<byte[]> payloads) {
+    boolean interrupted = false;
+
+    try {
+      while(true) {
+        try {
+          return payloads.take();
+        }
+        catch(InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    finally {
+      if(interrupted)
+        Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+
+  @Nullable
+  static JsonRPCCompression findCompression(@Nullable String name, @NotNull List<JsonRPCCompression> compressions) {
+    if(JsonRPCCompression.IDENTITY.getName().equals(name))
+      return JsonRPCCompression.IDENTITY;
+
+    for(JsonRPCCompression compression : compressions) {
+      if(compression.getName().equals(name))
+        return compression;
+    }
+
+    return null;
+  }
+}
@@ -0,0 +1,389 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.transport;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.JsonRPCContext;
+import org.xjava.gsonrpc.JsonRPCError;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+import org.xjava.gsonrpc.message.JsonRPCRequest;
+import org.xjava.gsonrpc.message.JsonRPCStreamResponse;
+import org.xjava.gsonrpc.proxy.JsonRPCMultiplexedResponseGetter;
+import org.xjava.gsonrpc.wire.JsonRPCCompression;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormat;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormats;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * One end of a connection to a JsonRPCSocketServer that carries calls both ways. Each end handles the requests it
+ * receives with the JsonRPCRequestHandler of its own GsonRPC instance, on its scheduler, and makes calls to the
+ * other end with service proxies from {@link #newServiceProxy(Class)}:
+ *
+ * <pre>{@code
+ * JsonRPCSocketPeer peer = new JsonRPCSocketPeer(gsonRPC, "localhost", 8080);
+ * ExampleServiceInterface service = peer.newServiceProxy(ExampleServiceInterface.class);
+ * }</pre>
+ *
+ * <p>Every frame is read by one thread, which tells requests from responses by their shape. Requests are handed to
+ * the scheduler and answered whenever they finish, in any order; responses complete the call waiting under their id.
+ * Any number of calls can be in flight at once in either direction, and a method can call back the peer that called
+ * it, which it finds with {@link #current()}.</p>
+ *
+ * <p>A method waiting for a call back holds a worker of its scheduler until the answer comes, so a scheduler that
+ * handles such methods needs enough workers for the calls that nest.</p>
+ *
+ * @version 1.0
+ */
+public class JsonRPCSocketPeer implements JsonRPCMultiplexedResponseGetter, Closeable {
+
+  //The peer each request being handled came from, so a method can find who to call back
+  private static final ConcurrentHashMap<JsonRPCRequest, JsonRPCSocketPeer> handling = new ConcurrentHashMap<>();
+
+  private final GsonRPC gsonRPC;
+  private final Socket socket;
+  private final DataInputStream in;
+  private final DataOutputStream out;
+  private final JsonRPCWireFormat wireFormat;
+  private final JsonRPCCompression compression;
+  private final String clientKey;
+  private final long requestTimeout;
+  private final int maxFrameSize;
+  private final ConcurrentHashMap<String, CompletableFuture<JsonRPCMessage>> pending = new ConcurrentHashMap<>();
+  private volatile IOException failure;
+
+  /**
+   * Connects offering every registered wire format and no compression.
+   *
+   * @param gsonRPC The GsonRPC instance handling the requests of the server and creating the proxies
+   * @param host The host of the server
+   * @param port The port of the server
+   * @throws IOException An IOException will be thrown if the connection or the handshake fails
+   */
+  public JsonRPCSocketPeer(@NotNull GsonRPC gsonRPC, @NotNull String host, int port) throws IOException {
+    this(gsonRPC, host, port, JsonRPCWireFormats.getOffer(), Collections.emptyList());
+  }
+
+  /**
+   * Connects offering a list of wire formats and compressions.
+   *
+   * @param gsonRPC The GsonRPC instance handling the requests of the server and creating the proxies
+   * @param host The host of the server
+   * @param port The port of the server
+   * @param wireFormatOffer The comma separated names of the wire formats to offer, in order of preference
+   * @param compressions The compressions to offer, in order of preference
+   * @throws IOException An IOException will be thrown if the connection or the handshake fails
+   */
+  public JsonRPCSocketPeer(@NotNull GsonRPC gsonRPC, @NotNull String host, int port, @NotNull String wireFormatOffer, @NotNull List<JsonRPCCompression> compressions) throws IOException {
+    this.gsonRPC = gsonRPC;
+    this.socket = new Socket();
+    this.requestTimeout = 0;
+    this.maxFrameSize = JsonRPCSocketServer.DEFAULT_MAX_FRAME_SIZE;
+
+    try {
+      socket.connect(new InetSocketAddress(host, port));
+      socket.setTcpNoDelay(true);
+      in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+      JsonObject offer = new JsonObject();
+      offer.addProperty(JsonRPCFrames.WIRE_FORMATS, wireFormatOffer);
+      offer.addProperty(JsonRPCFrames.COMPRESSIONS, compressions.stream().map(JsonRPCCompression::getName).collect(Collectors.joining(",")));
+      offer.addProperty(JsonRPCFrames.PEER, Boolean.toString(true));
+      JsonRPCFrames.writeHandshake(out, offer);
+
+      JsonObject answer = JsonRPCFrames.readHandshake(in, maxFrameSize);
+      wireFormat = JsonRPCWireFormats.forName(JsonRPCFrames.getString(answer, JsonRPCFrames.WIRE_FORMAT));
+      compression = JsonRPCSocketClient.findCompression(JsonRPCFrames.getString(answer, JsonRPCFrames.COMPRESSION), compressions);
+
+      if(wireFormat == null || compression == null)
+        throw new IOException("The server answered the handshake with a wire format or compression that was not offered.");
+      if(!Boolean.parseBoolean(JsonRPCFrames.getString(answer, JsonRPCFrames.PEER)))
+        throw new IOException("The server does not accept peers.");
+    }
+    catch(IOException e) {
+      socket.close();
+      throw e;
+    }
+
+    //The server is identified by its address, like the server identifies its clients
+    clientKey = socket.getInetAddress().getHostAddress();
+
+    Thread reader = new Thread(this::run, "gsonrpc-socket-peer-" + socket.getLocalPort());
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  /**
+   * Creates the server's end of a connection whose handshake is done. The server runs it on the connection's thread.
+   */
+  JsonRPCSocketPeer(@NotNull GsonRPC gsonRPC, @NotNull Socket socket, @NotNull DataInputStream in, @NotNull DataOutputStream out, @NotNull JsonRPCWireFormat wireFormat, @NotNull JsonRPCCompression compression, @NotNull String clientKey, long requestTimeout, int maxFrameSize) {
+    this.gsonRPC = gsonRPC;
+    this.socket = socket;
+    this.in = in;
+    this.out = out;
+    this.wireFormat = wireFormat;
+    this.compression = compression;
+    this.clientKey = clientKey;
+    this.requestTimeout = requestTimeout;
+    this.maxFrameSize = maxFrameSize;
+  }
+
+  /**
+   * Gets the peer that sent the request the calling thread is handling, to call it back.
+   *
+   * @return The JsonRPCSocketPeer, or null outside of a call from a peer
+   */
+  @Nullable
+  public static JsonRPCSocketPeer current() {
+    JsonRPCContext context = JsonRPCContext.current();
+    return context == null ? null : handling.get(context.getRequest());
+  }
+
+  @NotNull
+  public JsonRPCWireFormat getWireFormat() {
+    return wireFormat;
+  }
+
+  @NotNull
+  public JsonRPCCompression getCompression() {
+    return compression;
+  }
+
+  /**
+   * Tells whether the connection is still open.
+   *
+   * @return True until the connection is closed or fails
+   */
+  public boolean isOpen() {
+    return failure == null && !socket.isClosed();
+  }
+
+  /**
+   * Creates a service proxy that calls the other end of this connection.
+   *
+   * @param serviceInterface The interface of the service
+   * @return The service proxy
+   */
+  public <T> T newServiceProxy(@NotNull Class<T> serviceInterface) {
+    return gsonRPC.getProxyFactory().newServiceProxy(serviceInterface, wireFormat, this);
+  }
+
+  /**
+   * Sends a request and waits for the response with its id, or until the request's deadline has passed, in which
+   * case it is answered with JsonRPCError.DEADLINE_EXCEEDED and a late response is dropped.
+   *
+   * @param request The request
+   * @return The response, or no messages if the request is a notification
+   * @throws IOException An IOException will be thrown if the connection fails, or if a call with the same id is
+   *                     already waiting
+   */
+  @NotNull
+  @Override
+  public List<JsonRPCMessage> exchange(@NotNull JsonRPCRequest request) throws IOException {
+    if(request.isNotification()) {
+      send(gsonRPC.toBytes(request, wireFormat));
+      return Collections.emptyList();
+    }
+
+    String id = request.getId();
+    CompletableFuture<JsonRPCMessage> response = new CompletableFuture<>();
+    if(pending.putIfAbsent(id, response) != null)
+      throw new IOException("A call with the id " + id + " is already waiting.");
+
+    try {
+      //A failure after the call was added would not have found it
+      if(failure != null)
+        throw failure;
+
+      send(gsonRPC.toBytes(request, wireFormat));
+
+      if(request.getDeadline() == JsonRPCContext.NO_DEADLINE)
+        return Collections.singletonList(response.get());
+
+      return Collections.singletonList(response.get(Math.max(0, request.getDeadline() - System.nanoTime()), TimeUnit.NANOSECONDS));
+    }
+    catch(TimeoutException e) {
+      return Collections.singletonList(gsonRPC.getMessageFactory().newErrorResponse(id, JsonRPCError.DEADLINE_EXCEEDED));
+    }
+    catch(ExecutionException e) {
+      throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the response to " + id + ".");
+    }
+    finally {
+      pending.remove(id, response);
+    }
+  }
+
+  /**
+   * Sends a payload encoded with the negotiated wire format and waits for the responses to its requests, for use
+   * outside of a service proxy.
+   *
+   * @param requestBytes The encoded requests
+   * @return The encoded responses, empty if the payload only held notifications
+   * @throws IOException An IOException will be thrown if the connection fails
+   */
+  @NotNull
+  @Override
+  public byte[] getResponse(@NotNull byte[] requestBytes) throws IOException {
+    List<JsonRPCMessage> responses = new ArrayList<>();
+
+    for(JsonRPCMessage message : gsonRPC.parseMessages(requestBytes, wireFormat)) {
+      if(message.isRequest())
+        responses.addAll(exchange(message.getAsRequest()));
+    }
+
+    return gsonRPC.toBytes(responses, wireFormat);
+  }
+
+  /**
+   * Reads the connection until it closes. The server calls it on the connection's thread, the connecting end on a
+   * thread of its own.
+   */
+  void run() {
+    try {
+      while(true) {
+        byte[] frame = JsonRPCFrames.read(in, maxFrameSize);
+        if(frame == null)
+          throw new EOFException("The peer closed the connection.");
+
+        receive(frame);
+      }
+    }
+    catch(IOException e) {
+      failure = e;
+    }
+    catch(RuntimeException e) {
+      failure = new IOException(e);
+    }
+    finally {
+      closeQuietly();
+
+      for(CompletableFuture<JsonRPCMessage> response : pending.values())
+        response.completeExceptionally(failure);
+    }
+  }
+
+  private void receive(@NotNull byte[] frame) throws IOException {
+    List<JsonRPCMessage> messages;
+
+    try {
+      messages = gsonRPC.parseMessages(compression.decompress(frame), wireFormat);
+    }
+    catch(JsonParseException e) {
+      send(gsonRPC.toBytes(gsonRPC.getMessageFactory().newErrorResponse(null, JsonRPCError.PARSE_ERROR), wireFormat));
+      return;
+    }
+
+    List<JsonRPCMessage> requests = null;
+
+    for(JsonRPCMessage message : messages) {
+      CompletableFuture<JsonRPCMessage> response = message.isRequest() || message.getId() == null ? null : pending.get(message.getId());
+
+      //Anything that does not answer a waiting call is the request handler's to answer, if only with an error
+      if(response != null)
+        response.complete(message);
+      else if(message.isRequest() || !(message.isResponse() || message.isErrorResponse())) {
+        if(requests == null)
+          requests = new ArrayList<>(messages.size());
+        requests.add(message);
+      }
+    }
+
+    if(requests != null)
+      handle(requests);
+  }
+
+  private void handle(@NotNull List<JsonRPCMessage> requests) {
+    for(JsonRPCMessage request : requests) {
+      if(request.isRequest())
+        handling.put(request.getAsRequest(), this);
+    }
+
+    long timeout = requestTimeout;
+    long deadline = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : JsonRPCContext.NO_DEADLINE;
+
+    gsonRPC.processRequestsAsync(requests, deadline, clientKey).whenComplete((responses, throwable) -> {
+      for(JsonRPCMessage request : requests) {
+        if(request.isRequest())
+          handling.remove(request.getAsRequest());
+      }
+
+      if(responses == null || responses.isEmpty())
+        return;
+
+      try {
+        send(gsonRPC.toBytes(responses, wireFormat));
+      }
+      catch(IOException | RuntimeException e) {
+        //The connection failed, which the reading thread finds out for itself
+        closeQuietly();
+      }
+      finally {
+        JsonRPCStreamResponse.closeAll(responses);
+      }
+    });
+  }
+
+  private void send(@NotNull byte[] payload) throws IOException {
+    byte[] frame = compression.compress(payload);
+
+    synchronized(out) {
+      JsonRPCFrames.write(out, frame);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+
+  private void closeQuietly() {
+    try {
+      socket.close();
+    }
+    catch(IOException e) {
+      //Nothing useful can be done
+    }
+  }
+}
@@ -0,0 +1,699 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.transport;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.GsonRPC;
+import org.xjava.gsonrpc.JsonRPCContext;
+import org.xjava.gsonrpc.JsonRPCError;
+import org.xjava.gsonrpc.capture.JsonRPCCaptureLog;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+import org.xjava.gsonrpc.message.JsonRPCRequest;
+import org.xjava.gsonrpc.message.JsonRPCStreamResponse;
+import org.xjava.gsonrpc.wire.JsonRPCCompression;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormat;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormats;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A TCP server for GsonRPC requests. Each connection starts with a handshake in which the client offers its wire
+ * formats and compressions in order of preference and the server answers with the ones it picked, after which every
+ * frame the client sends is processed with GsonRPC.processRequests and answered with exactly one frame holding the
+ * responses (an empty payload when the frame only held notifications).
+ *
+ * <p>Connections are served by one thread each, so a client can pipeline frames on one connection but gets its
+ * responses in order. Use several connections for concurrency.</p>
+ *
+ * <p>A client that offers streaming in the handshake gets the elements of a streamed result ahead of its response,
+ * in {@link JsonRPCStreamResponse#CHUNK_METHOD} notification frames of up to {@link #getStreamChunkSize()}
+ * elements, each sent as soon as it is full; the response that follows has an empty result array. The elements are
+ * produced only as fast as the client reads them. Between chunks the client can send a
+ * {@link JsonRPCStreamResponse#CANCEL_METHOD} notification, which closes the stream and turns its response into a
+ * REQUEST_CANCELLED error. Neither notification is answered.</p>
+ *
+ * <p>A client that offers push in the handshake can subscribe to topics with a {@link #SUBSCRIBE_METHOD}
+ * notification and leave them with {@link #UNSUBSCRIBE_METHOD}, both carrying the topic as their "topic" param.
+ * {@link #publish(JsonRPCRequest)} then sends a notification whose method is the topic to every subscriber. It is
+ * encoded once for each wire format and compression in use, and the frame is shared by all the subscribers using
+ * them. Each subscriber has a queue of up to {@link #getPushQueueSize()} notifications waiting to be written; what
+ * happens when it is full is up to the {@link JsonRPCSlowConsumerPolicy}.</p>
+ *
+ * <p>A topic whose notifications repeat a large value with small changes can be published in delta mode with
+ * {@link #enableDelta(String, int)}. Its params are then sent as a "patch" of JSON Patch operations against the
+ * previous ones, with a "snapshot" of them whole to new subscribers, to subscribers that lost a patch to their slow
+ * consumer policy, and every so many notifications. {@link JsonRPCDeltaListener} rebuilds them on the client.</p>
+ *
+ * <p>A {@link JsonRPCSocketPeer} connecting offers to be a peer in the handshake, after which the connection carries
+ * requests both ways: the server answers the peer's requests as they finish rather than in order, and methods can
+ * call the peer back through {@link JsonRPCSocketPeer#current()}.</p>
+ *
+ * <pre>{@code
+ * JsonRPCSocketServer server = new JsonRPCSocketServer(gsonRPC);
+ * server.start(8080);
+ * }</pre>
+ *
+ * @version 1.0
+ */
+public class JsonRPCSocketServer implements Closeable {
+  public static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+  public static final int DEFAULT_STREAM_CHUNK_SIZE = 64;
+  public static final int DEFAULT_PUSH_QUEUE_SIZE = 1024;
+
+  public static final String SUBSCRIBE_METHOD = "rpc.subscribe";
+  public static final String UNSUBSCRIBE_METHOD = "rpc.unsubscribe";
+
+  private static final AtomicInteger serverCount = new AtomicInteger();
+
+  private final GsonRPC gsonRPC;
+  private final List<JsonRPCCompression> compressions = new ArrayList<>();
+  private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+  private final ConcurrentHashMap<String, Set<JsonRPCSubscriber>> subscribers = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, JsonRPCDeltaTopic> deltaTopics = new ConcurrentHashMap<>();
+  private int maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+  private volatile int streamChunkSize = DEFAULT_STREAM_CHUNK_SIZE;
+  private volatile long requestTimeout;
+  private volatile JsonRPCSlowConsumerPolicy slowConsumerPolicy = JsonRPCSlowConsumerPolicy.DISCONNECT;
+  private volatile int pushQueueSize = DEFAULT_PUSH_QUEUE_SIZE;
+
+  private ServerSocket serverSocket;
+  private ExecutorService executor;
+
+  public JsonRPCSocketServer(@NotNull GsonRPC gsonRPC) {
+    this.gsonRPC = gsonRPC;
+  }
+
+  /**
+   * Adds a compression the server will accept during the handshake. Identity is always accepted.
+   *
+   * @param compression The JsonRPCCompression
+   */
+  public void addCompression(@NotNull JsonRPCCompression compression) {
+    compressions.add(compression);
+  }
+
+  public int getMaxFrameSize() {
+    return maxFrameSize;
+  }
+
+  /**
+   * Sets the largest frame the server will read. A client sending a larger frame is disconnected.
+   *
+   * @param maxFrameSize The maximum frame size in bytes
+   */
+  public void setMaxFrameSize(int maxFrameSize) {
+    this.maxFrameSize = maxFrameSize;
+  }
+
+  public int getStreamChunkSize() {
+    return streamChunkSize;
+  }
+
+  /**
+   * Sets the largest number of elements of a streamed result sent in one chunk to clients that offer streaming.
+   *
+   * @param streamChunkSize The number of elements
+   */
+  public void setStreamChunkSize(int streamChunkSize) {
+    if(streamChunkSize < 1)
+      throw new IllegalArgumentException("The stream chunk size must be at least 1.");
+
+    this.streamChunkSize = streamChunkSize;
+  }
+
+  public long getRequestTimeout() {
+    return requestTimeout;
+  }
+
+  /**
+   * Gives every frame a time budget, counted from when it has been read. Requests carrying a shorter timeout of their
+   * own keep it.
+   *
+   * @param requestTimeout The time budget in milliseconds, or 0 for none
+   */
+  public void setRequestTimeout(long requestTimeout) {
+    if(requestTimeout < 0)
+      throw new IllegalArgumentException("The request timeout can not be negative.");
+
+    this.requestTimeout = requestTimeout;
+  }
+
+  @NotNull
+  public JsonRPCSlowConsumerPolicy getSlowConsumerPolicy() {
+    return slowConsumerPolicy;
+  }
+
+  /**
+   * Sets what happens to a notification published to a subscriber whose queue is full. Subscribers are disconnected
+   * by default, so none of them misses a notification without knowing. Connections keep the policy they were opened
+   * with.
+   *
+   * @param slowConsumerPolicy The JsonRPCSlowConsumerPolicy
+   */
+  public void setSlowConsumerPolicy(@NotNull JsonRPCSlowConsumerPolicy slowConsumerPolicy) {
+    this.slowConsumerPolicy = slowConsumerPolicy;
+  }
+
+  public int getPushQueueSize() {
+    return pushQueueSize;
+  }
+
+  /**
+   * Sets how many published notifications may wait to be written to each subscriber. Connections keep the size they
+   * were opened with.
+   *
+   * @param pushQueueSize The number of notifications
+   */
+  public void setPushQueueSize(int pushQueueSize) {
+    if(pushQueueSize < 1)
+      throw new IllegalArgumentException("The push queue size must be at least 1.");
+
+    this.pushQueueSize = pushQueueSize;
+  }
+
+  /**
+   * Publishes a topic in delta mode from its next notification on. Subscribers get the first notification, and
+   * every {@code snapshotInterval}th after it, whole; the others are sent as patches against the one before.
+   *
+   * @param topic The topic
+   * @param snapshotInterval The number of notifications between snapshots, or 0 to send snapshots only when needed
+   */
+  public void enableDelta(@NotNull String topic, int snapshotInterval) {
+    if(snapshotInterval < 0)
+      throw new IllegalArgumentException("The snapshot interval can not be negative.");
+
+    deltaTopics.put(topic, new JsonRPCDeltaTopic(topic, snapshotInterval));
+  }
+
+  /**
+   * Publishes a topic's notifications whole again.
+   *
+   * @param topic The topic
+   */
+  public void disableDelta(@NotNull String topic) {
+    deltaTopics.remove(topic);
+  }
+
+  /**
+   * Publishes a notification to the subscribers of a topic. The method of the notification is the topic.
+   *
+   * @param topic The topic
+   * @param params The params of the notification
+   * @return The number of subscribers the notification was queued for
+   */
+  public int publish(@NotNull String topic, Object... params) {
+    return publish(gsonRPC.getMessageFactory().newRequest(null, topic, params));
+  }
+
+  /**
+   * Publishes a notification to the subscribers of the topic named by its method. The notification is encoded once
+   * for each wire format and compression in use, not once per subscriber. The params of a notification of a delta
+   * topic are kept to compute the next patch, so they must not be changed afterwards.
+   *
+   * @param notification The notification
+   * @return The number of subscribers the notification was queued for
+   */
+  public int publish(@NotNull JsonRPCRequest notification) {
+    if(!notification.isNotification())
+      throw new IllegalArgumentException("Only notifications can be published.");
+
+    String topic = notification.getMethod();
+    JsonRPCDeltaTopic deltaTopic = deltaTopics.get(topic);
+
+    if(deltaTopic == null) {
+      Set<JsonRPCSubscriber> topicSubscribers = subscribers.get(topic);
+      if(topicSubscribers == null)
+        return 0;
+
+      HashMap<String, byte[]> frames = new HashMap<>(4);
+      int queued = 0;
+
+      for(JsonRPCSubscriber subscriber : topicSubscribers) {
+        byte[] frame = frames.get(subscriber.getEncoding());
+        if(frame == null) {
+          frame = encode(notification, subscriber);
+          frames.put(subscriber.getEncoding(), frame);
+        }
+
+        if(subscriber.offer(topic, frame, null))
+          queued++;
+      }
+
+      return queued;
+    }
+
+    //The value is recorded even with nobody subscribed, to be the snapshot the first subscriber gets
+    synchronized(deltaTopic) {
+      JsonRPCRequest update = deltaTopic.update(notification.getParamsJson());
+      Set<JsonRPCSubscriber> topicSubscribers = subscribers.get(topic);
+      if(topicSubscribers == null)
+        return 0;
+
+      JsonRPCRequest snapshot = update.getParamsJson().getAsJsonObject().has("snapshot") ? update : deltaTopic.getSnapshot();
+      HashMap<String, byte[]> frames = new HashMap<>(4);
+      HashMap<String, byte[]> snapshotFrames = snapshot == update ? frames : new HashMap<>(4);
+      int queued = 0;
+
+      for(JsonRPCSubscriber subscriber : topicSubscribers) {
+        byte[] frame = frames.computeIfAbsent(subscriber.getEncoding(), encoding -> encode(update, subscriber));
+
+        if(subscriber.offer(topic, frame, () -> snapshotFrames.computeIfAbsent(subscriber.getEncoding(), encoding -> encode(snapshot, subscriber))))
+          queued++;
+      }
+
+      return queued;
+    }
+  }
+
+  @NotNull
+  private byte[] encode(@NotNull JsonRPCRequest notification, @NotNull JsonRPCSubscriber subscriber) {
+    return subscriber.getCompression().compress(gsonRPC.toBytes(notification, subscriber.getWireFormat()));
+  }
+
+  /**
+   * Gets the number of subscribers of a topic.
+   *
+   * @param topic The topic
+   * @return The number of subscribers
+   */
+  public int getSubscriberCount(@NotNull String topic) {
+    Set<JsonRPCSubscriber> topicSubscribers = subscribers.get(topic);
+    return topicSubscribers == null ? 0 : topicSubscribers.size();
+  }
+
+  /**
+   * Starts listening on a port of the loopback address. Pass 0 to pick a free port and read it back with
+   * {@link #getPort()}.
+   *
+   * @param port The port
+   * @throws IOException An IOException will be thrown if the port can not be bound
+   */
+  public void start(int port) throws IOException {
+    start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+  }
+
+  /**
+   * Starts listening on an address.
+   *
+   * @param address The address
+   * @throws IOException An IOException will be thrown if the address can not be bound
+   */
+  public synchronized void start(@NotNull InetSocketAddress address) throws IOException {
+    if(serverSocket != null)
+      throw new IllegalStateException("The server has already been started.");
+
+    int serverNumber = serverCount.incrementAndGet();
+    AtomicInteger threadCount = new AtomicInteger();
+
+    serverSocket = new ServerSocket();
+    serverSocket.bind(address);
+    executor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "gsonrpc-socket-" + serverNumber + "-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.execute(this::accept);
+  }
+
+  public int getPort() {
+    return serverSocket == null ? -1 : serverSocket.getLocalPort();
+  }
+
+  /**
+   * Stops accepting connections and closes the open ones.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if(serverSocket == null)
+      return;
+
+    serverSocket.close();
+    for(Socket socket : connections)
+      closeQuietly(socket);
+
+    executor.shutdown();
+  }
+
+  private void accept() {
+    while(!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        connections.add(socket);
+        executor.execute(() -> serve(socket));
+      }
+      catch(IOException e) {
+        //The server socket was closed or failed; either way there is nothing left to accept
+        return;
+      }
+    }
+  }
+
+  private void serve(@NotNull Socket socket) {
+    JsonRPCSubscriber subscriber = null;
+
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+      JsonObject offer = JsonRPCFrames.readHandshake(in, maxFrameSize);
+      JsonRPCWireFormat wireFormat = JsonRPCWireFormats.negotiate(JsonRPCFrames.getString(offer, JsonRPCFrames.WIRE_FORMATS));
+      JsonRPCCompression compression = JsonRPCCompression.negotiate(JsonRPCFrames.getString(offer, JsonRPCFrames.COMPRESSIONS), compressions);
+
+      //A peer's frames do not pair up, which leaves no place for chunks or pushed notifications
+      boolean peer = Boolean.parseBoolean(JsonRPCFrames.getString(offer, JsonRPCFrames.PEER));
+      boolean streaming = !peer && Boolean.parseBoolean(JsonRPCFrames.getString(offer, JsonRPCFrames.STREAMING));
+      boolean push = !peer && Boolean.parseBoolean(JsonRPCFrames.getString(offer, JsonRPCFrames.PUSH));
+
+      JsonObject answer = new JsonObject();
+      answer.addProperty(JsonRPCFrames.WIRE_FORMAT, wireFormat.getName());
+      answer.addProperty(JsonRPCFrames.COMPRESSION, compression.getName());
+      if(streaming)
+        answer.addProperty(JsonRPCFrames.STREAMING, Boolean.toString(true));
+      if(push)
+        answer.addProperty(JsonRPCFrames.PUSH, Boolean.toString(true));
+      if(peer)
+        answer.addProperty(JsonRPCFrames.PEER, Boolean.toString(true));
+      JsonRPCFrames.writeHandshake(out, answer);
+
+      //Clients are identified by address, so every connection from one host shares its per client rate limits
+      String clientKey = socket.getInetAddress().getHostAddress();
+
+      if(peer) {
+        new JsonRPCSocketPeer(gsonRPC, socket, in, out, wireFormat, compression, clientKey, requestTimeout, maxFrameSize).run();
+        return;
+      }
+
+      if(push)
+        subscriber = new JsonRPCSubscriber(socket, out, wireFormat, compression, slowConsumerPolicy, pushQueueSize, executor);
+
+      //Frames read while a stream was being sent, waiting their turn
+      Deque<Frame> pending = new ArrayDeque<>();
+
+      while(true) {
+        boolean checked = !pending.isEmpty();
+        Frame frame = checked ? pending.poll() : read(in, wireFormat, compression);
+        if(frame == null)
+          break;
+
+        //Control notifications are not methods, so they are handled here and leave nothing to answer
+        JsonRPCRequest control = streaming || push ? getControl(frame.messages) : null;
+
+        if(control != null) {
+          //A cancel that arrives after its stream has ended is not answered either
+          if(streaming && !checked && JsonRPCStreamResponse.CANCEL_METHOD.equals(control.getMethod()))
+            continue;
+
+          if(subscriber != null)
+            control(subscriber, control);
+        }
+
+        List<JsonRPCMessage> responses = control != null ? new ArrayList<>() : process(frame, wireFormat, clientKey);
+
+        try {
+
+          if(streaming)
+            sendChunks(in, out, responses, wireFormat, compression, pending);
+
+          send(out, compression.compress(gsonRPC.toBytes(responses, wireFormat)));
+        }
+        finally {
+          JsonRPCStreamResponse.closeAll(responses);
+        }
+      }
+    }
+    catch(SocketException | EOFException e) {
+      //The client went away
+    }
+    catch(IOException e) {
+      //A protocol error; the connection can not be resynchronized so it is dropped
+    }
+    catch(RuntimeException e) {
+      //A streamed result failed part way through its response, which can not be taken back
+    }
+    finally {
+      if(subscriber != null) {
+        for(String topic : subscriber.getTopics())
+          removeSubscriber(topic, subscriber);
+        subscriber.close();
+      }
+
+      connections.remove(socket);
+      closeQuietly(socket);
+    }
+  }
+
+  /**
+   * Writes a frame answering the client, which may be pushing notifications from another thread.
+   */
+  private static void send(@NotNull DataOutputStream out, @NotNull byte[] frame) throws IOException {
+    synchronized(out) {
+      JsonRPCFrames.write(out, frame);
+    }
+  }
+
+  private void control(@NotNull JsonRPCSubscriber subscriber, @NotNull JsonRPCRequest control) {
+    String topic = getParam(control, "topic");
+    if(topic == null)
+      return;
+
+    if(SUBSCRIBE_METHOD.equals(control.getMethod())) {
+      JsonRPCDeltaTopic deltaTopic = deltaTopics.get(topic);
+
+      if(deltaTopic == null) {
+        if(subscriber.getTopics().add(topic))
+          addSubscriber(topic, subscriber);
+        return;
+      }
+
+      //A subscriber of a delta topic starts from a snapshot, queued ahead of any patch published after it
+      synchronized(deltaTopic) {
+        if(subscriber.getTopics().add(topic))
+          addSubscriber(topic, subscriber);
+
+        JsonRPCRequest snapshot = deltaTopic.getSnapshot();
+        if(snapshot != null) {
+          byte[] frame = encode(snapshot, subscriber);
+          subscriber.offer(topic, frame, () -> frame);
+        }
+      }
+    }
+    else if(UNSUBSCRIBE_METHOD.equals(control.getMethod()) && subscriber.getTopics().remove(topic))
+      removeSubscriber(topic, subscriber);
+  }
+
+  private void addSubscriber(@NotNull String topic, @NotNull JsonRPCSubscriber subscriber) {
+    //Added in the same step that finds the set, so removeSubscriber can not drop the set in between
+    subscribers.compute(topic, (key, topicSubscribers) -> {
+      if(topicSubscribers == null)
+        topicSubscribers = ConcurrentHashMap.newKeySet();
+
+      topicSubscribers.add(subscriber);
+      return topicSubscribers;
+    });
+  }
+
+  private void removeSubscriber(@NotNull String topic, @NotNull JsonRPCSubscriber subscriber) {
+    subscribers.computeIfPresent(topic, (key, topicSubscribers) -> {
+      topicSubscribers.remove(subscriber);
+      return topicSubscribers.isEmpty() ? null : topicSubscribers;
+    });
+  }
+
+  /**
+   * Reads the next frame and parses it, once for both telling control notifications apart and processing it.
+   * Returns null at the end of the stream.
+   */
+  @Nullable
+  private Frame read(@NotNull DataInputStream in, @NotNull JsonRPCWireFormat wireFormat, @NotNull JsonRPCCompression compression) throws IOException {
+    byte[] frame = JsonRPCFrames.read(in, maxFrameSize);
+    if(frame == null)
+      return null;
+
+    try {
+      byte[] messagesBytes = compression.decompress(frame);
+      return new Frame(messagesBytes, gsonRPC.parseRequests(messagesBytes, wireFormat));
+    }
+    catch(JsonParseException e) {
+      return new Frame(null, null);
+    }
+  }
+
+  /**
+   * Processes the messages of a frame, recording it to the capture log of the GsonRPC as processRequests would.
+   */
+  @NotNull
+  private List<JsonRPCMessage> process(@NotNull Frame frame, @NotNull JsonRPCWireFormat wireFormat, @NotNull String clientKey) {
+    long timeout = requestTimeout;
+    long deadline = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : JsonRPCContext.NO_DEADLINE;
+    long timestamp = System.currentTimeMillis();
+    long start = System.nanoTime();
+    List<JsonRPCMessage> responses;
+
+    if(frame.messages == null)
+      responses = Collections.singletonList(gsonRPC.getMessageFactory().newErrorResponse(null, JsonRPCError.PARSE_ERROR));
+    else
+      responses = gsonRPC.processRequests(frame.messages, deadline, clientKey);
+
+    JsonRPCCaptureLog captureLog = gsonRPC.getCaptureLog();
+    if(captureLog != null && frame.messagesBytes != null)
+      captureLog.append(timestamp, System.nanoTime() - start, wireFormat.getName(), frame.messagesBytes);
+
+    return responses;
+  }
+
+  /**
+   * Sends the elements of every streamed result among the responses in chunks, leaving the responses themselves
+   * with empty result arrays. A stream that fails or is cancelled is closed and its response replaced with an error.
+   */
+  private void sendChunks(@NotNull DataInputStream in, @NotNull DataOutputStream out, @NotNull List<JsonRPCMessage> responses, @NotNull JsonRPCWireFormat wireFormat, @NotNull JsonRPCCompression compression, @NotNull Deque<Frame> pending) throws IOException {
+    for(int i = 0; i < responses.size(); i++) {
+      if(!(responses.get(i) instanceof JsonRPCStreamResponse))
+        continue;
+
+      JsonRPCStreamResponse stream = (JsonRPCStreamResponse) responses.get(i);
+      JsonRPCError error = null;
+
+      while(error == null) {
+        JsonArray items;
+
+        try {
+          items = stream.nextChunk(streamChunkSize);
+        }
+        catch(RuntimeException e) {
+          error = JsonRPCError.INTERNAL_ERROR;
+          break;
+        }
+
+        if(items == null)
+          break;
+
+        JsonObject params = new JsonObject();
+        params.addProperty("id", stream.getId());
+        params.add("items", items);
+        JsonRPCRequest chunk = new JsonRPCRequest(GsonRPC.VERSION, null, JsonRPCStreamResponse.CHUNK_METHOD, params);
+        send(out, compression.compress(gsonRPC.toBytes(chunk, wireFormat)));
+
+        if(isCancelled(in, stream, wireFormat, compression, pending))
+          error = JsonRPCError.REQUEST_CANCELLED;
+      }
+
+      if(error != null) {
+        stream.close();
+        responses.set(i, gsonRPC.getMessageFactory().newErrorResponse(stream.getId(), error));
+      }
+    }
+  }
+
+  /**
+   * Reads the frames the client has sent so far without waiting for more, telling whether one of them cancels the
+   * stream. Frames that are not cancels are kept to be processed after the stream.
+   */
+  private boolean isCancelled(@NotNull DataInputStream in, @NotNull JsonRPCStreamResponse stream, @NotNull JsonRPCWireFormat wireFormat, @NotNull JsonRPCCompression compression, @NotNull Deque<Frame> pending) throws IOException {
+    boolean cancelled = false;
+
+    while(in.available() > 0) {
+      Frame frame = read(in, wireFormat, compression);
+      if(frame == null)
+        throw new EOFException("The client closed the connection.");
+
+      JsonRPCRequest control = getControl(frame.messages);
+      if(control == null || !JsonRPCStreamResponse.CANCEL_METHOD.equals(control.getMethod()))
+        pending.add(frame);
+      else if(stream.getId().equals(getParam(control, "id")))
+        cancelled = true;
+    }
+
+    return cancelled;
+  }
+
+  /**
+   * Gets the control notification the messages of a frame are, a cancel, subscribe or unsubscribe, or null if they
+   * are not a single control notification.
+   */
+  @Nullable
+  private static JsonRPCRequest getControl(@Nullable List<JsonRPCMessage> messages) {
+    if(messages == null || messages.size() != 1 || !messages.get(0).isRequest())
+      return null;
+
+    JsonRPCRequest request = messages.get(0).getAsRequest();
+    if(!request.isNotification())
+      return null;
+
+    switch(request.getMethod()) {
+      case JsonRPCStreamResponse.CANCEL_METHOD:
+      case SUBSCRIBE_METHOD:
+      case UNSUBSCRIBE_METHOD:
+        return request;
+      default:
+        return null;
+    }
+  }
+
+  @Nullable
+  private static String getParam(@NotNull JsonRPCRequest request, @NotNull String name) {
+    JsonElement params = request.getParamsJson();
+    JsonElement param = params != null && params.isJsonObject() ? params.getAsJsonObject().get(name) : null;
+    return param != null && param.isJsonPrimitive() ? param.getAsString() : null;
+  }
+
+  private static void closeQuietly(@NotNull Socket socket) {
+    try {
+      socket.close();
+    }
+    catch(IOException e) {
+      //Nothing useful can be done
+    }
+  }
+
+  /**
+   * A frame as read, decompressed, with its messages, or null messages if it could not be parsed.
+   */
+  private static final class Frame {
+    private final byte[] messagesBytes;
+    private final List<JsonRPCMessage> messages;
+
+    private Frame(@Nullable byte[] messagesBytes, @Nullable List<JsonRPCMessage> messages) {
+      this.messagesBytes = messagesBytes;
+      this.messages = messages;
+    }
+  }
+}
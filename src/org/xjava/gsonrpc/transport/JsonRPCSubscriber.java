@@ -0,0 +1,246 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.wire.JsonRPCCompression;
+import org.xjava.gsonrpc.wire.JsonRPCWireFormat;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A connection of a JsonRPCSocketServer that agreed to push, seen as the subscriber of its topics. Published
+ * notifications arrive already encoded, wait in a bounded queue, and are written by a task of the server's executor
+ * that runs only while the queue is not empty, so a slow reader holds up nobody but itself.
+ *
+ * <p>Writes share the connection's output with the frames answering the client, so both take the lock of the
+ * output.</p>
+ *
+ * <p>A subscriber that loses a patch of a delta topic, because it was dropped, conflated or pushed out of the queue,
+ * is marked stale for the topic and gets a snapshot in place of the next patch.</p>
+ *
+ * @version 1.0
+ */
+final class JsonRPCSubscriber {
+  private final Socket socket;
+  private final DataOutputStream out;
+  private final JsonRPCWireFormat wireFormat;
+  private final JsonRPCCompression compression;
+  private final String encoding;
+  private final JsonRPCSlowConsumerPolicy policy;
+  private final int queueSize;
+  private final Executor executor;
+
+  //Touched only by the thread serving the connection
+  private final Set<String> topics = new HashSet<>();
+
+  private final ArrayDeque<Push> queue = new ArrayDeque<>();
+  private final HashMap<String, Push> queuedByTopic = new HashMap<>();
+  private final Set<String> staleTopics = new HashSet<>();
+  private boolean draining;
+  private boolean closed;
+
+  JsonRPCSubscriber(@NotNull Socket socket, @NotNull DataOutputStream out, @NotNull JsonRPCWireFormat wireFormat, @NotNull JsonRPCCompression compression, @NotNull JsonRPCSlowConsumerPolicy policy, int queueSize, @NotNull Executor executor) {
+    this.socket = socket;
+    this.out = out;
+    this.wireFormat = wireFormat;
+    this.compression = compression;
+    this.encoding = wireFormat.getName() + "/" + compression.getName();
+    this.policy = policy;
+    this.queueSize = queueSize;
+    this.executor = executor;
+  }
+
+  @NotNull
+  JsonRPCWireFormat getWireFormat() {
+    return wireFormat;
+  }
+
+  @NotNull
+  JsonRPCCompression getCompression() {
+    return compression;
+  }
+
+  /**
+   * Gets the key under which a publish shares the frame it encoded among the subscribers with the same wire format
+   * and compression.
+   */
+  @NotNull
+  String getEncoding() {
+    return encoding;
+  }
+
+  @NotNull
+  Set<String> getTopics() {
+    return topics;
+  }
+
+  /**
+   * Queues an encoded notification, applying the slow consumer policy if the queue is full.
+   *
+   * @param topic The topic of the notification
+   * @param frame The encoded and compressed notification
+   * @param snapshot Gets the encoded snapshot of a delta topic, or null if the topic is not in delta mode
+   * @return True if the notification was queued, false if it was dropped or the subscriber is gone
+   */
+  boolean offer(@NotNull String topic, @NotNull byte[] frame, @Nullable Supplier<byte[]> snapshot) {
+    boolean disconnect = false;
+    boolean drain;
+
+    synchronized(queue) {
+      if(closed)
+        return false;
+
+      if(snapshot != null && staleTopics.remove(topic))
+        frame = snapshot.get();
+
+      if(policy == JsonRPCSlowConsumerPolicy.CONFLATE) {
+        Push waiting = queuedByTopic.get(topic);
+        if(waiting != null) {
+          //Conflating a patch would lose the one waiting, so the subscriber is brought up to date whole
+          waiting.frame = snapshot != null ? snapshot.get() : frame;
+          return true;
+        }
+      }
+
+      if(queue.size() >= queueSize) {
+        if(policy == JsonRPCSlowConsumerPolicy.DROP) {
+          if(snapshot != null)
+            staleTopics.add(topic);
+          return false;
+        }
+
+        if(policy == JsonRPCSlowConsumerPolicy.CONFLATE) {
+          Push oldest = queue.poll();
+          queuedByTopic.remove(oldest.topic, oldest);
+          if(oldest.delta)
+            staleTopics.add(oldest.topic);
+        }
+        else
+          disconnect = true;
+      }
+
+      if(!disconnect) {
+        Push push = new Push(topic, frame, snapshot != null);
+        queue.add(push);
+        if(policy == JsonRPCSlowConsumerPolicy.CONFLATE)
+          queuedByTopic.put(topic, push);
+      }
+
+      drain = !disconnect && !draining;
+      if(drain)
+        draining = true;
+    }
+
+    if(disconnect) {
+      close();
+      return false;
+    }
+
+    if(drain) {
+      try {
+        executor.execute(this::drain);
+      }
+      catch(RejectedExecutionException e) {
+        //The server is closing
+        close();
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private void drain() {
+    try {
+      while(true) {
+        Push push;
+
+        synchronized(queue) {
+          push = queue.poll();
+          if(push == null) {
+            draining = false;
+            break;
+          }
+
+          if(policy == JsonRPCSlowConsumerPolicy.CONFLATE)
+            queuedByTopic.remove(push.topic, push);
+        }
+
+        synchronized(out) {
+          JsonRPCFrames.writePush(out, push.frame);
+        }
+      }
+
+      synchronized(out) {
+        out.flush();
+      }
+    }
+    catch(IOException e) {
+      //The client went away or can not keep up with the socket; the thread serving it cleans up
+      close();
+    }
+  }
+
+  /**
+   * Drops the waiting notifications and closes the connection.
+   */
+  void close() {
+    synchronized(queue) {
+      closed = true;
+      queue.clear();
+      queuedByTopic.clear();
+    }
+
+    try {
+      socket.close();
+    }
+    catch(IOException e) {
+      //Nothing useful can be done
+    }
+  }
+
+  private static final class Push {
+    private final String topic;
+    private final boolean delta;
+    private byte[] frame;
+
+    private Push(@NotNull String topic, @NotNull byte[] frame, boolean delta) {
+      this.topic = topic;
+      this.frame = frame;
+      this.delta = delta;
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.wire;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigInteger;
+
+/**
+ * Shared plumbing for the binary wire formats. Subclasses only need to know how to write and read a single
+ * JsonElement; the empty message handling, buffer sizing and nesting limit are common to all of them.
+ *
+ * @version 1.0
+ */
+public abstract class BinaryWireFormat implements JsonRPCWireFormat {
+  /**
+   * The deepest nesting of arrays and objects accepted when decoding.
+   */
+  public static final int MAX_DEPTH = 512;
+
+  private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+  private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+  @NotNull
+  @Override
+  public final byte[] encode(@Nullable JsonElement json) {
+    if(json == null || json.isJsonNull())
+      return new byte[0];
+
+    WireBuffer buffer = new WireBuffer(256);
+    write(buffer, json);
+    return buffer.toByteArray();
+  }
+
+  @NotNull
+  @Override
+  public final JsonElement decode(@Nullable byte[] data) throws JsonParseException {
+    if(data == null || data.length == 0)
+      return JsonNull.INSTANCE;
+
+    WireReader reader = new WireReader(data);
+    JsonElement json = read(reader, 0);
+
+    if(reader.hasRemaining())
+      throw new JsonParseException("Unexpected trailing data after " + getName() + " value.");
+
+    return json;
+  }
+
+  abstract void write(@NotNull WireBuffer buffer, @NotNull JsonElement json);
+
+  @NotNull
+  abstract JsonElement read(@NotNull WireReader reader, int depth);
+
+  static void checkDepth(int depth) {
+    if(depth > MAX_DEPTH)
+      throw new JsonParseException("Maximum nesting depth of " + MAX_DEPTH + " exceeded.");
+  }
+
+  /**
+   * Gets the value of a numeric primitive as a long if it is an integer that fits, or null if it has to be
+   * written as a floating point number. Gson hands numbers parsed from text over as LazilyParsedNumber, so the
+   * decision is made from the textual form rather than the Java type; anything written with a fraction or an
+   * exponent stays a floating point number.
+   */
+  @Nullable
+  static Long integralValue(@NotNull JsonPrimitive primitive) {
+    Number number = primitive.getAsNumber();
+
+    if(number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte)
+      return number.longValue();
+
+    if(number instanceof Double || number instanceof Float)
+      return null;
+
+    if(number instanceof BigInteger)
+      return fitsInLong((BigInteger) number) ? number.longValue() : null;
+
+    String text = number.toString();
+    for(int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if(c == '.' || c == 'e' || c == 'E')
+        return null;
+    }
+
+    try {
+      return Long.parseLong(text);
+    }
+    catch(NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Converts a 64 bit value read as unsigned into a numeric primitive, keeping values above Long.MAX_VALUE exact.
+   */
+  @NotNull
+  static JsonPrimitive unsignedLong(long value) {
+    if(value >= 0)
+      return new JsonPrimitive(value);
+
+    return new JsonPrimitive(new BigInteger(Long.toUnsignedString(value)));
+  }
+
+  private static boolean fitsInLong(@NotNull BigInteger integer) {
+    return integer.compareTo(LONG_MIN) >= 0 && integer.compareTo(LONG_MAX) <= 0;
+  }
+}
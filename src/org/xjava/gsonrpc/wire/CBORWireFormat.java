@@ -0,0 +1,296 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.wire;
+
+import com.google.gson.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * A CBOR (RFC 8949) wire format. Integers use the shortest CBOR head that holds them and floating point numbers
+ * are written as single precision whenever that is exact. Byte strings received from other CBOR implementations
+ * are decoded as Base64 strings, bignum tags as exact integers and all other tags are ignored.
+ *
+ * @version 1.0
+ */
+public class CBORWireFormat extends BinaryWireFormat {
+  public static final String NAME = "cbor";
+
+  private static final int UNSIGNED = 0;
+  private static final int NEGATIVE = 1;
+  private static final int BYTES = 2;
+  private static final int TEXT = 3;
+  private static final int ARRAY = 4;
+  private static final int MAP = 5;
+  private static final int TAG = 6;
+  private static final int SIMPLE = 7;
+
+  private static final int BREAK = 0xFF;
+  private static final long INDEFINITE = -1;
+
+  @NotNull
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  void write(@NotNull WireBuffer buffer, @NotNull JsonElement json) {
+    if(json.isJsonNull())
+      buffer.writeByte(0xF6);
+    else if(json.isJsonPrimitive())
+      writePrimitive(buffer, json.getAsJsonPrimitive());
+    else if(json.isJsonArray()) {
+      JsonArray array = json.getAsJsonArray();
+      writeHead(buffer, ARRAY, array.size());
+      for(JsonElement element : array)
+        write(buffer, element);
+    }
+    else {
+      JsonObject object = json.getAsJsonObject();
+      writeHead(buffer, MAP, object.entrySet().size());
+      for(Map.Entry<String, JsonElement> entry : object.entrySet()) {
+        writeText(buffer, entry.getKey());
+        write(buffer, entry.getValue());
+      }
+    }
+  }
+
+  private void writePrimitive(@NotNull WireBuffer buffer, @NotNull JsonPrimitive primitive) {
+    if(primitive.isBoolean())
+      buffer.writeByte(primitive.getAsBoolean() ? 0xF5 : 0xF4);
+    else if(primitive.isString())
+      writeText(buffer, primitive.getAsString());
+    else {
+      Long integral = integralValue(primitive);
+      if(integral != null) {
+        if(integral >= 0)
+          writeHead(buffer, UNSIGNED, integral);
+        else
+          writeHead(buffer, NEGATIVE, -1 - integral);
+      }
+      else {
+        double value = primitive.getAsDouble();
+        float single = (float) value;
+
+        if(single == value || Double.isNaN(value)) {
+          buffer.writeByte(0xFA);
+          buffer.writeInt(Float.floatToIntBits(single));
+        }
+        else {
+          buffer.writeByte(0xFB);
+          buffer.writeLong(Double.doubleToLongBits(value));
+        }
+      }
+    }
+  }
+
+  private void writeText(@NotNull WireBuffer buffer, @NotNull String value) {
+    byte[] bytes = WireBuffer.utf8(value);
+    writeHead(buffer, TEXT, bytes.length);
+    buffer.writeBytes(bytes);
+  }
+
+  private void writeHead(@NotNull WireBuffer buffer, int majorType, long argument) {
+    int prefix = majorType << 5;
+
+    if(argument < 24)
+      buffer.writeByte(prefix | (int) argument);
+    else if(argument < 0x100) {
+      buffer.writeByte(prefix | 24);
+      buffer.writeByte((int) argument);
+    }
+    else if(argument < 0x10000) {
+      buffer.writeByte(prefix | 25);
+      buffer.writeShort((int) argument);
+    }
+    else if(argument < 0x100000000L) {
+      buffer.writeByte(prefix | 26);
+      buffer.writeInt((int) argument);
+    }
+    else {
+      buffer.writeByte(prefix | 27);
+      buffer.writeLong(argument);
+    }
+  }
+
+  @NotNull
+  @Override
+  JsonElement read(@NotNull WireReader reader, int depth) {
+    checkDepth(depth);
+
+    int initial = reader.readByte();
+    int majorType = initial >>> 5;
+    int additional = initial & 0x1F;
+
+    if(majorType == SIMPLE)
+      return readSimple(reader, additional);
+
+    long argument = readArgument(reader, additional);
+
+    switch(majorType) {
+      case UNSIGNED:
+        return unsignedLong(argument);
+      case NEGATIVE:
+        if(argument >= 0)
+          return new JsonPrimitive(-1 - argument);
+        return new JsonPrimitive(BigInteger.ONE.negate().subtract(new BigInteger(Long.toUnsignedString(argument))));
+      case BYTES:
+        return new JsonPrimitive(Base64.getEncoder().encodeToString(readChunks(reader, BYTES, argument)));
+      case TEXT:
+        return new JsonPrimitive(new String(readChunks(reader, TEXT, argument), StandardCharsets.UTF_8));
+      case ARRAY:
+        return readArray(reader, argument, depth);
+      case MAP:
+        return readMap(reader, argument, depth);
+      default:
+        return readTagged(reader, argument, depth);
+    }
+  }
+
+  private long readArgument(@NotNull WireReader reader, int additional) {
+    if(additional < 24)
+      return additional;
+
+    switch(additional) {
+      case 24: return reader.readByte();
+      case 25: return reader.readShort();
+      case 26: return reader.readUnsignedInt();
+      case 27: return reader.readLong();
+      case 31: return INDEFINITE;
+      default:
+        throw new JsonParseException("Invalid CBOR additional information " + additional + ".");
+    }
+  }
+
+  @NotNull
+  private JsonElement readSimple(@NotNull WireReader reader, int additional) {
+    switch(additional) {
+      case 20: return new JsonPrimitive(false);
+      case 21: return new JsonPrimitive(true);
+      case 22:
+      case 23: return JsonNull.INSTANCE;
+      case 25: return new JsonPrimitive((double) halfToFloat(reader.readShort()));
+      case 26: return new JsonPrimitive((double) Float.intBitsToFloat(reader.readInt()));
+      case 27: return new JsonPrimitive(Double.longBitsToDouble(reader.readLong()));
+      case 31: throw new JsonParseException("Unexpected CBOR break.");
+      default:
+        throw new JsonParseException("Unsupported CBOR simple value " + additional + ".");
+    }
+  }
+
+  @NotNull
+  private byte[] readChunks(@NotNull WireReader reader, int majorType, long length) {
+    if(length != INDEFINITE)
+      return reader.readBytes(length);
+
+    ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+    while(reader.peekByte() != BREAK) {
+      int initial = reader.readByte();
+      if(initial >>> 5 != majorType || (initial & 0x1F) == 31)
+        throw new JsonParseException("Invalid chunk in indefinite length CBOR string.");
+
+      byte[] chunk = reader.readBytes(readArgument(reader, initial & 0x1F));
+      chunks.write(chunk, 0, chunk.length);
+    }
+    reader.readByte();
+
+    return chunks.toByteArray();
+  }
+
+  @NotNull
+  private JsonArray readArray(@NotNull WireReader reader, long size, int depth) {
+    JsonArray array = new JsonArray();
+
+    if(size == INDEFINITE) {
+      while(reader.peekByte() != BREAK)
+        array.add(read(reader, depth + 1));
+      reader.readByte();
+    }
+    else {
+      reader.requireEntries(size, 1);
+      for(long i = 0; i < size; i++)
+        array.add(read(reader, depth + 1));
+    }
+
+    return array;
+  }
+
+  @NotNull
+  private JsonObject readMap(@NotNull WireReader reader, long size, int depth) {
+    JsonObject object = new JsonObject();
+
+    if(size == INDEFINITE) {
+      while(reader.peekByte() != BREAK)
+        readEntry(reader, object, depth);
+      reader.readByte();
+    }
+    else {
+      reader.requireEntries(size, 2);
+      for(long i = 0; i < size; i++)
+        readEntry(reader, object, depth);
+    }
+
+    return object;
+  }
+
+  private void readEntry(@NotNull WireReader reader, @NotNull JsonObject object, int depth) {
+    JsonElement key = read(reader, depth + 1);
+    if(!key.isJsonPrimitive())
+      throw new JsonParseException("CBOR map keys must be strings or numbers.");
+
+    object.add(key.getAsString(), read(reader, depth + 1));
+  }
+
+  @NotNull
+  private JsonElement readTagged(@NotNull WireReader reader, long tag, int depth) {
+    JsonElement value = read(reader, depth + 1);
+
+    if((tag == 2 || tag == 3) && value.isJsonPrimitive()) {
+      BigInteger magnitude = new BigInteger(1, Base64.getDecoder().decode(value.getAsString()));
+      return new JsonPrimitive(tag == 2 ? magnitude : BigInteger.ONE.negate().subtract(magnitude));
+    }
+
+    return value;
+  }
+
+  private static float halfToFloat(int half) {
+    int sign = (half & 0x8000) << 16;
+    int exponent = (half >>> 10) & 0x1F;
+    int mantissa = half & 0x3FF;
+
+    if(exponent == 0)
+      return (sign == 0 ? 1 : -1) * mantissa * (float) Math.pow(2, -24);
+    if(exponent == 0x1F)
+      return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+
+    return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+  }
+}
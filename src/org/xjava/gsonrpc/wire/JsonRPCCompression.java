@@ -0,0 +1,357 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.wire;
+
+import com.google.gson.JsonParseException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xjava.gsonrpc.GsonRPC;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Optional compression of encoded GsonRPC messages, negotiated per connection.
+ *
+ * <p>Payloads smaller than the threshold are sent as they are, since compressing them costs more CPU than it saves
+ * bandwidth. Every payload produced by a compressing instance starts with a single byte telling the receiver
+ * whether the rest is compressed, so the threshold only has to be known by the sender. The identity compression
+ * adds no flag byte at all and is byte for byte the same as not compressing.</p>
+ *
+ * <p>Deflate can use a preset dictionary built with {@link #newDictionary(Collection)} from the method names
+ * registered in a JsonRPCRequestHandler. Small batches then compress well because the keys, the version and the
+ * method names never have to appear in the stream in full. Both peers must build the dictionary from the same
+ * names; its Adler-32 checksum is part of the negotiated name so a mismatch falls back to another offer.</p>
+ *
+ * <p>A transport negotiates compression the same way as a wire format: the client sends the names of its
+ * instances as a comma separated list in order of preference and the server answers with the result of
+ * {@link #negotiate(String, List)}.</p>
+ *
+ * @version 1.0
+ */
+public class JsonRPCCompression {
+
+  public enum Algorithm {
+    IDENTITY("identity"),
+    DEFLATE("deflate"),
+    GZIP("gzip");
+
+    private final String name;
+
+    Algorithm(@NotNull String name) {
+      this.name = name;
+    }
+
+    @NotNull
+    public String getName() {
+      return name;
+    }
+  }
+
+  public static final JsonRPCCompression IDENTITY = new JsonRPCCompression(Algorithm.IDENTITY, 0, null);
+
+  public static final int DEFAULT_THRESHOLD = 512;
+  public static final int DEFAULT_MAX_DECOMPRESSED_SIZE = 64 * 1024 * 1024;
+
+  private static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+  private static final byte STORED = 0;
+  private static final byte COMPRESSED = 1;
+
+  private final Algorithm algorithm;
+  private final int level;
+  private final int threshold;
+  private final byte[] dictionary;
+  private final String name;
+  private int maxDecompressedSize = DEFAULT_MAX_DECOMPRESSED_SIZE;
+
+  public JsonRPCCompression(@NotNull Algorithm algorithm) {
+    this(algorithm, DEFAULT_THRESHOLD, null);
+  }
+
+  public JsonRPCCompression(@NotNull Algorithm algorithm, int threshold, @Nullable byte[] dictionary) {
+    this(algorithm, Deflater.DEFAULT_COMPRESSION, threshold, dictionary);
+  }
+
+  public JsonRPCCompression(@NotNull Algorithm algorithm, int level, int threshold, @Nullable byte[] dictionary) {
+    if(dictionary != null && algorithm != Algorithm.DEFLATE)
+      throw new IllegalArgumentException("A preset dictionary can only be used with deflate.");
+
+    this.algorithm = algorithm;
+    this.level = level;
+    this.threshold = threshold;
+    this.dictionary = dictionary == null ? null : dictionary.clone();
+
+    if(this.dictionary == null)
+      name = algorithm.getName();
+    else {
+      Adler32 adler = new Adler32();
+      adler.update(this.dictionary);
+      name = algorithm.getName() + ";dict=" + String.format("%08x", adler.getValue());
+    }
+  }
+
+  /**
+   * Builds a preset dictionary for deflate from a collection of method names, such as the ones returned by
+   * JsonRPCRequestHandler.getMethodNames(). The names are sorted first so that both peers get the same dictionary
+   * regardless of the order they were registered in.
+   *
+   * @param methodNames The method names
+   * @return The dictionary
+   */
+  @NotNull
+  public static byte[] newDictionary(@NotNull Collection<String> methodNames) {
+    StringBuilder dictionary = new StringBuilder();
+
+    for(String methodName : new TreeSet<>(methodNames))
+      dictionary.append("\"method\":\"").append(methodName).append("\",\"params\":");
+
+    //Deflate prefers matches close to the end of the dictionary, so the fragments found in every message go last
+    dictionary
+        .append("{\"code\":-32600,\"message\":\"Invalid request\"}")
+        .append("{\"code\":-32601,\"message\":\"Method not found\"}")
+        .append("{\"code\":-32602,\"message\":\"Invalid params\"}")
+        .append("{\"code\":-32603,\"message\":\"Internal error\"}")
+        .append(",\"error\":{\"code\":,\"message\":\"\",\"data\":")
+        .append("null,true,false,")
+        .append("[{\"jsonrpc\":\"").append(GsonRPC.VERSION).append("\",\"id\":\"\",\"result\":")
+        .append("},{\"jsonrpc\":\"").append(GsonRPC.VERSION).append("\",\"id\":\"\",\"method\":\"\",\"params\":[");
+
+    byte[] bytes = dictionary.toString().getBytes(StandardCharsets.UTF_8);
+    if(bytes.length > MAX_DICTIONARY_SIZE)
+      bytes = Arrays.copyOfRange(bytes, bytes.length - MAX_DICTIONARY_SIZE, bytes.length);
+
+    return bytes;
+  }
+
+  /**
+   * Picks the first compression in a client's comma separated list of names that the server supports. The identity
+   * compression is used if there is no match.
+   *
+   * @param offer The comma separated list of names offered by the client
+   * @param supported The compressions supported by the server
+   * @return The negotiated JsonRPCCompression
+   */
+  @NotNull
+  public static JsonRPCCompression negotiate(@Nullable String offer, @NotNull List<JsonRPCCompression> supported) {
+    if(offer != null) {
+      for(String name : offer.split(",")) {
+        for(JsonRPCCompression compression : supported) {
+          if(compression.getName().equalsIgnoreCase(name.trim()))
+            return compression;
+        }
+      }
+    }
+
+    return IDENTITY;
+  }
+
+  /**
+   * Gets the name used to identify this compression when a transport negotiates it.
+   *
+   * @return The name of the compression
+   */
+  @NotNull
+  public String getName() {
+    return name;
+  }
+
+  @NotNull
+  public Algorithm getAlgorithm() {
+    return algorithm;
+  }
+
+  public int getThreshold() {
+    return threshold;
+  }
+
+  public int getMaxDecompressedSize() {
+    return maxDecompressedSize;
+  }
+
+  /**
+   * Sets the largest payload decompress will produce before giving up, which protects the receiver from
+   * decompression bombs.
+   *
+   * @param maxDecompressedSize The maximum decompressed size in bytes
+   */
+  public void setMaxDecompressedSize(int maxDecompressedSize) {
+    this.maxDecompressedSize = maxDecompressedSize;
+  }
+
+  /**
+   * Compresses an encoded payload unless it is smaller than the threshold.
+   *
+   * @param data The encoded payload
+   * @return The payload to put on the wire
+   */
+  @NotNull
+  public byte[] compress(@NotNull byte[] data) {
+    if(algorithm == Algorithm.IDENTITY)
+      return data;
+
+    if(data.length < threshold)
+      return frame(STORED, data);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+    out.write(COMPRESSED);
+
+    if(algorithm == Algorithm.GZIP) {
+      try(GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+        gzip.write(data);
+      }
+      catch(IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    else {
+      Deflater deflater = new Deflater(level);
+      try {
+        if(dictionary != null)
+          deflater.setDictionary(dictionary);
+
+        deflater.setInput(data);
+        deflater.finish();
+
+        byte[] buffer = new byte[Math.min(Math.max(data.length, 64), 64 * 1024)];
+        while(!deflater.finished()) {
+          int length = deflater.deflate(buffer);
+          out.write(buffer, 0, length);
+        }
+      }
+      finally {
+        deflater.end();
+      }
+    }
+
+    if(out.size() > data.length)
+      return frame(STORED, data);
+
+    return out.toByteArray();
+  }
+
+  /**
+   * Restores a payload produced by compress on the other end of the connection.
+   *
+   * @param data The payload received from the wire
+   * @return The encoded payload
+   * @throws JsonParseException A JsonParseException will be thrown if data is corrupt or too large once decompressed
+   */
+  @NotNull
+  public byte[] decompress(@NotNull byte[] data) throws JsonParseException {
+    if(algorithm == Algorithm.IDENTITY)
+      return data;
+
+    if(data.length == 0)
+      return data;
+
+    if(data[0] == STORED)
+      return Arrays.copyOfRange(data, 1, data.length);
+
+    if(data[0] != COMPRESSED)
+      throw new JsonParseException("Unknown compression flag " + data[0] + ".");
+
+    try {
+      if(algorithm == Algorithm.GZIP) {
+        try(InputStream in = new GZIPInputStream(new ByteArrayInputStream(data, 1, data.length - 1))) {
+          return readLimited(in);
+        }
+      }
+
+      return inflate(data);
+    }
+    catch(IOException | DataFormatException e) {
+      throw new JsonParseException("Unable to decompress payload.", e);
+    }
+  }
+
+  @NotNull
+  private byte[] inflate(@NotNull byte[] data) throws DataFormatException {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(data, 1, data.length - 1);
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+      byte[] buffer = new byte[Math.min(Math.max(data.length * 2, 64), 64 * 1024)];
+
+      while(!inflater.finished()) {
+        int length = inflater.inflate(buffer);
+
+        if(length == 0) {
+          if(inflater.needsDictionary()) {
+            if(dictionary == null)
+              throw new DataFormatException("A preset dictionary is required.");
+
+            try {
+              inflater.setDictionary(dictionary);
+            }
+            catch(IllegalArgumentException e) {
+              //The payload was compressed against a different dictionary
+              throw new DataFormatException("preset dictionary mismatch");
+            }
+          }
+          else if(inflater.needsInput())
+            throw new DataFormatException("Unexpected end of compressed payload.");
+        }
+
+        out.write(buffer, 0, length);
+        if(out.size() > maxDecompressedSize)
+          throw new DataFormatException("Decompressed payload exceeds " + maxDecompressedSize + " bytes.");
+      }
+
+      return out.toByteArray();
+    }
+    finally {
+      inflater.end();
+    }
+  }
+
+  @NotNull
+  private byte[] readLimited(@NotNull InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+
+    int length;
+    while((length = in.read(buffer)) != -1) {
+      out.write(buffer, 0, length);
+      if(out.size() > maxDecompressedSize)
+        throw new IOException("Decompressed payload exceeds " + maxDecompressedSize + " bytes.");
+    }
+
+    return out.toByteArray();
+  }
+
+  @NotNull
+  private static byte[] frame(byte flag, @NotNull byte[] data) {
+    byte[] framed = new byte[data.length + 1];
+    framed[0] = flag;
+    System.arraycopy(data, 0, framed, 1, data.length);
+    return framed;
+  }
+}
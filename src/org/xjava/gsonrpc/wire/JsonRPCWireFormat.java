@@ -0,0 +1,66 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.wire;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An encoding used to put GsonRPC messages on the wire. Every wire format encodes the same JsonElement model that
+ * the Gson serializers produce, so any JsonRPCMessage can be carried by any format.
+ *
+ * @version 1.0
+ */
+public interface JsonRPCWireFormat {
+
+  /**
+   * Gets the name used to identify this format when a transport negotiates it.
+   *
+   * @return The name of the format
+   */
+  @NotNull
+  public String getName();
+
+  /**
+   * Encodes a JsonElement. A null or JsonNull element is encoded as an empty array of bytes.
+   *
+   * @param json The JsonElement
+   * @return The encoded bytes
+   */
+  @NotNull
+  public byte[] encode(@Nullable JsonElement json);
+
+  /**
+   * Decodes a JsonElement. An empty array of bytes is decoded as JsonNull.
+   *
+   * @param data The encoded bytes
+   * @return The JsonElement
+   * @throws JsonParseException A JsonParseException will be thrown if data is not valid for this format
+   */
+  @NotNull
+  public JsonElement decode(@Nullable byte[] data) throws JsonParseException;
+}
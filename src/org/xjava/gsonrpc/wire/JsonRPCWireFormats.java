@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.wire;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+
+/**
+ * The wire formats known to GsonRPC and the negotiation between them.
+ *
+ * <p>A transport negotiates a format by having the client send the names of the formats it accepts, in order of
+ * preference, as a comma separated list (for example {@code "cbor, msgpack, json"}). The server answers with the
+ * result of {@link #negotiate(String)} and both sides then use {@link #forName(String)} to get the format.</p>
+ *
+ * @version 1.0
+ */
+public final class JsonRPCWireFormats {
+  public static final JsonRPCWireFormat JSON = new JsonWireFormat();
+  public static final JsonRPCWireFormat MESSAGE_PACK = new MessagePackWireFormat();
+  public static final JsonRPCWireFormat CBOR = new CBORWireFormat();
+
+  private static final LinkedHashMap<String, JsonRPCWireFormat> formats = new LinkedHashMap<>();
+
+  static {
+    register(CBOR);
+    register(MESSAGE_PACK);
+    register(JSON);
+  }
+
+  private JsonRPCWireFormats() {
+  }
+
+  /**
+   * Registers a custom wire format so that it can be negotiated. Registering a format with the name of an existing
+   * format replaces it.
+   *
+   * @param format The JsonRPCWireFormat
+   */
+  public static synchronized void register(@NotNull JsonRPCWireFormat format) {
+    formats.put(format.getName().toLowerCase(), format);
+  }
+
+  /**
+   * Gets a registered wire format by name.
+   *
+   * @param name The name of the format
+   * @return The JsonRPCWireFormat, or null if no format has that name
+   */
+  @Nullable
+  public static synchronized JsonRPCWireFormat forName(@Nullable String name) {
+    if(name == null)
+      return null;
+
+    return formats.get(name.trim().toLowerCase());
+  }
+
+  /**
+   * Gets the names of every registered format as a comma separated list, suitable for offering to a server.
+   *
+   * @return The names of the registered formats
+   */
+  @NotNull
+  public static synchronized String getOffer() {
+    return String.join(",", formats.keySet());
+  }
+
+  /**
+   * Picks the first format in a client's comma separated list of accepted formats that is registered. JSON is used
+   * if the list is empty or contains no registered format, since every GsonRPC peer understands it.
+   *
+   * @param offer The comma separated list of accepted format names
+   * @return The negotiated JsonRPCWireFormat
+   */
+  @NotNull
+  public static JsonRPCWireFormat negotiate(@Nullable String offer) {
+    if(offer != null) {
+      for(String name : offer.split(",")) {
+        JsonRPCWireFormat format = forName(name);
+        if(format != null)
+          return format;
+      }
+    }
+
+    return JSON;
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.wire;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The default wire format: UTF-8 encoded JSON text.
+ *
+ * @version 1.0
+ */
+public class JsonWireFormat implements JsonRPCWireFormat {
+  public static final String NAME = "json";
+
+  @NotNull
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @NotNull
+  @Override
+  public byte[] encode(@Nullable JsonElement json) {
+    if(json == null || json.isJsonNull())
+      return new byte[0];
+
+    return json.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @NotNull
+  @Override
+  public JsonElement decode(@Nullable byte[] data) throws JsonParseException {
+    if(data == null || data.length == 0)
+      return JsonNull.INSTANCE;
+
+    return JsonParser.parseReader(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8));
+  }
+}
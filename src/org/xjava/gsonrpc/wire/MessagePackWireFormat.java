@@ -0,0 +1,251 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.wire;
+
+import com.google.gson.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * A MessagePack (https://msgpack.org) wire format. Integers and floating point numbers are written in their most
+ * compact binary form, which avoids both the text size and the number parsing cost of JSON for numeric payloads.
+ * Binary values received from other MessagePack implementations are decoded as Base64 strings.
+ *
+ * @version 1.0
+ */
+public class MessagePackWireFormat extends BinaryWireFormat {
+  public static final String NAME = "msgpack";
+
+  @NotNull
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  void write(@NotNull WireBuffer buffer, @NotNull JsonElement json) {
+    if(json.isJsonNull())
+      buffer.writeByte(0xC0);
+    else if(json.isJsonPrimitive())
+      writePrimitive(buffer, json.getAsJsonPrimitive());
+    else if(json.isJsonArray()) {
+      JsonArray array = json.getAsJsonArray();
+      writeHeader(buffer, array.size(), 0x90, 16, 0xDC, 0xDD);
+      for(JsonElement element : array)
+        write(buffer, element);
+    }
+    else {
+      JsonObject object = json.getAsJsonObject();
+      writeHeader(buffer, object.entrySet().size(), 0x80, 16, 0xDE, 0xDF);
+      for(Map.Entry<String, JsonElement> entry : object.entrySet()) {
+        writeString(buffer, entry.getKey());
+        write(buffer, entry.getValue());
+      }
+    }
+  }
+
+  private void writePrimitive(@NotNull WireBuffer buffer, @NotNull JsonPrimitive primitive) {
+    if(primitive.isBoolean())
+      buffer.writeByte(primitive.getAsBoolean() ? 0xC3 : 0xC2);
+    else if(primitive.isString())
+      writeString(buffer, primitive.getAsString());
+    else {
+      Long integral = integralValue(primitive);
+      if(integral != null)
+        writeInteger(buffer, integral);
+      else {
+        double value = primitive.getAsDouble();
+        float single = (float) value;
+
+        if(single == value || Double.isNaN(value)) {
+          buffer.writeByte(0xCA);
+          buffer.writeInt(Float.floatToIntBits(single));
+        }
+        else {
+          buffer.writeByte(0xCB);
+          buffer.writeLong(Double.doubleToLongBits(value));
+        }
+      }
+    }
+  }
+
+  private void writeInteger(@NotNull WireBuffer buffer, long value) {
+    if(value >= 0) {
+      if(value < 128)
+        buffer.writeByte((int) value);
+      else if(value < 0x100) {
+        buffer.writeByte(0xCC);
+        buffer.writeByte((int) value);
+      }
+      else if(value < 0x10000) {
+        buffer.writeByte(0xCD);
+        buffer.writeShort((int) value);
+      }
+      else if(value < 0x100000000L) {
+        buffer.writeByte(0xCE);
+        buffer.writeInt((int) value);
+      }
+      else {
+        buffer.writeByte(0xCF);
+        buffer.writeLong(value);
+      }
+    }
+    else {
+      if(value >= -32)
+        buffer.writeByte((int) value);
+      else if(value >= Byte.MIN_VALUE) {
+        buffer.writeByte(0xD0);
+        buffer.writeByte((int) value);
+      }
+      else if(value >= Short.MIN_VALUE) {
+        buffer.writeByte(0xD1);
+        buffer.writeShort((int) value);
+      }
+      else if(value >= Integer.MIN_VALUE) {
+        buffer.writeByte(0xD2);
+        buffer.writeInt((int) value);
+      }
+      else {
+        buffer.writeByte(0xD3);
+        buffer.writeLong(value);
+      }
+    }
+  }
+
+  private void writeString(@NotNull WireBuffer buffer, @NotNull String value) {
+    byte[] bytes = WireBuffer.utf8(value);
+
+    if(bytes.length < 32)
+      buffer.writeByte(0xA0 | bytes.length);
+    else if(bytes.length < 0x100) {
+      buffer.writeByte(0xD9);
+      buffer.writeByte(bytes.length);
+    }
+    else if(bytes.length < 0x10000) {
+      buffer.writeByte(0xDA);
+      buffer.writeShort(bytes.length);
+    }
+    else {
+      buffer.writeByte(0xDB);
+      buffer.writeInt(bytes.length);
+    }
+
+    buffer.writeBytes(bytes);
+  }
+
+  private void writeHeader(@NotNull WireBuffer buffer, int size, int fixPrefix, int fixLimit, int prefix16, int prefix32) {
+    if(size < fixLimit)
+      buffer.writeByte(fixPrefix | size);
+    else if(size < 0x10000) {
+      buffer.writeByte(prefix16);
+      buffer.writeShort(size);
+    }
+    else {
+      buffer.writeByte(prefix32);
+      buffer.writeInt(size);
+    }
+  }
+
+  @NotNull
+  @Override
+  JsonElement read(@NotNull WireReader reader, int depth) {
+    checkDepth(depth);
+
+    int type = reader.readByte();
+
+    if(type <= 0x7F)
+      return new JsonPrimitive((long) type);
+    if(type >= 0xE0)
+      return new JsonPrimitive((long) (byte) type);
+    if((type & 0xF0) == 0x80)
+      return readMap(reader, type & 0x0F, depth);
+    if((type & 0xF0) == 0x90)
+      return readArray(reader, type & 0x0F, depth);
+    if((type & 0xE0) == 0xA0)
+      return new JsonPrimitive(reader.readString(type & 0x1F));
+
+    switch(type) {
+      case 0xC0: return JsonNull.INSTANCE;
+      case 0xC2: return new JsonPrimitive(false);
+      case 0xC3: return new JsonPrimitive(true);
+      case 0xC4: return binary(reader.readBytes(reader.readByte()));
+      case 0xC5: return binary(reader.readBytes(reader.readShort()));
+      case 0xC6: return binary(reader.readBytes(reader.readUnsignedInt()));
+      case 0xCA: return new JsonPrimitive((double) Float.intBitsToFloat(reader.readInt()));
+      case 0xCB: return new JsonPrimitive(Double.longBitsToDouble(reader.readLong()));
+      case 0xCC: return new JsonPrimitive((long) reader.readByte());
+      case 0xCD: return new JsonPrimitive((long) reader.readShort());
+      case 0xCE: return new JsonPrimitive(reader.readUnsignedInt());
+      case 0xCF: return unsignedLong(reader.readLong());
+      case 0xD0: return new JsonPrimitive((long) (byte) reader.readByte());
+      case 0xD1: return new JsonPrimitive((long) (short) reader.readShort());
+      case 0xD2: return new JsonPrimitive((long) reader.readInt());
+      case 0xD3: return new JsonPrimitive(reader.readLong());
+      case 0xD9: return new JsonPrimitive(reader.readString(reader.readByte()));
+      case 0xDA: return new JsonPrimitive(reader.readString(reader.readShort()));
+      case 0xDB: return new JsonPrimitive(reader.readString(reader.readUnsignedInt()));
+      case 0xDC: return readArray(reader, reader.readShort(), depth);
+      case 0xDD: return readArray(reader, reader.readUnsignedInt(), depth);
+      case 0xDE: return readMap(reader, reader.readShort(), depth);
+      case 0xDF: return readMap(reader, reader.readUnsignedInt(), depth);
+      default:
+        throw new JsonParseException("Unsupported MessagePack type 0x" + Integer.toHexString(type) + ".");
+    }
+  }
+
+  @NotNull
+  private JsonArray readArray(@NotNull WireReader reader, long size, int depth) {
+    reader.requireEntries(size, 1);
+
+    JsonArray array = new JsonArray();
+    for(long i = 0; i < size; i++)
+      array.add(read(reader, depth + 1));
+
+    return array;
+  }
+
+  @NotNull
+  private JsonObject readMap(@NotNull WireReader reader, long size, int depth) {
+    reader.requireEntries(size, 2);
+
+    JsonObject object = new JsonObject();
+    for(long i = 0; i < size; i++) {
+      JsonElement key = read(reader, depth + 1);
+      if(!key.isJsonPrimitive())
+        throw new JsonParseException("MessagePack map keys must be strings or numbers.");
+
+      object.add(key.getAsString(), read(reader, depth + 1));
+    }
+
+    return object;
+  }
+
+  @NotNull
+  private static JsonPrimitive binary(@NotNull byte[] bytes) {
+    return new JsonPrimitive(Base64.getEncoder().encodeToString(bytes));
+  }
+}
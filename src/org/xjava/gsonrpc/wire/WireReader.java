@@ -0,0 +1,112 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.xjava.gsonrpc.wire;
+
+import com.google.gson.JsonParseException;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A big-endian reader over an encoded message used by the binary wire formats while decoding. Every read is bounds
+ * checked so that truncated or hostile input fails with a JsonParseException instead of a runtime error.
+ */
+final class WireReader {
+  private final byte[] bytes;
+  private int position;
+
+  WireReader(@NotNull byte[] bytes) {
+    this.bytes = bytes;
+  }
+
+  boolean hasRemaining() {
+    return position < bytes.length;
+  }
+
+  int remaining() {
+    return bytes.length - position;
+  }
+
+  int peekByte() {
+    require(1);
+    return bytes[position] & 0xFF;
+  }
+
+  int readByte() {
+    require(1);
+    return bytes[position++] & 0xFF;
+  }
+
+  int readShort() {
+    require(2);
+    return ((bytes[position++] & 0xFF) << 8) | (bytes[position++] & 0xFF);
+  }
+
+  int readInt() {
+    require(4);
+    return ((bytes[position++] & 0xFF) << 24)
+        | ((bytes[position++] & 0xFF) << 16)
+        | ((bytes[position++] & 0xFF) << 8)
+        | (bytes[position++] & 0xFF);
+  }
+
+  long readUnsignedInt() {
+    return readInt() & 0xFFFFFFFFL;
+  }
+
+  long readLong() {
+    return ((long) readInt() << 32) | readUnsignedInt();
+  }
+
+  @NotNull
+  byte[] readBytes(long length) {
+    require(length);
+    byte[] value = new byte[(int) length];
+    System.arraycopy(bytes, position, value, 0, value.length);
+    position += value.length;
+    return value;
+  }
+
+  @NotNull
+  String readString(long length) {
+    require(length);
+    String value = new String(bytes, position, (int) length, StandardCharsets.UTF_8);
+    position += (int) length;
+    return value;
+  }
+
+  /**
+   * Checks that a container announcing count entries, each at least minEntrySize bytes long, can fit in the
+   * remaining input before anything is allocated for it.
+   */
+  void requireEntries(long count, int minEntrySize) {
+    require(count * minEntrySize);
+  }
+
+  private void require(long length) {
+    if(length < 0 || length > bytes.length - position)
+      throw new JsonParseException("Unexpected end of input at offset " + position + ".");
+  }
+}
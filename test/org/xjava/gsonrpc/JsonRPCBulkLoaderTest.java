@@ -0,0 +1,143 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 xjava.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.xjava.gsonrpc;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xjava.gsonrpc.annotation.RPCMethod;
+import org.xjava.gsonrpc.annotation.RPCService;
+import org.xjava.gsonrpc.limit.JsonRPCAdaptiveLimiter;
+import org.xjava.gsonrpc.message.JsonRPCMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonRPCBulkLoaderTest {
+  @RPCService(namespace = "items")
+  public interface ItemService {
+    @RPCMethod(bulk = "getMany", maxConcurrency = 1)
+    int getOne(int id);
+
+    List<Integer> getMany(List<Integer> ids);
+
+    @RPCMethod(bulk = "getAll", bulkMaxSize = 100000)
+    int getEach(int id);
+
+    List<Integer> getAll(List<Integer> ids);
+  }
+
+  public static class Items implements ItemService {
+    private final List<List<Integer>> bulkCalls = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public int getOne(int id) {
+      throw new AssertionError("Called without getMany");
+    }
+
+    @Override
+    public List<Integer> getMany(List<Integer> ids) {
+      bulkCalls.add(ids);
+      return ids;
+    }
+
+    @Override
+    public int getEach(int id) {
+      throw new AssertionError("Called without getAll");
+    }
+
+    @Override
+    public List<Integer> getAll(List<Integer> ids) {
+      bulkCalls.add(ids);
+      return ids;
+    }
+  }
+
+  private GsonRPC gsonRPC;
+  private Items items;
+
+  @BeforeEach
+  void setUp() {
+    gsonRPC = new GsonRPC();
+    items = new Items();
+    gsonRPC.getRequestHandler().addService(items, ItemService.class);
+  }
+
+  @Test
+  void batchIsAdmittedCallByCall() {
+    List<JsonRPCMessage> responses = gsonRPC.processRequests(batch("items.getOne", 3));
+
+    assertResults(responses, 3);
+    assertEquals(List.of(List.of(1, 2, 3)), items.bulkCalls);
+  }
+
+  @Test
+  void batchStaysWithinTheAdaptiveLimit() throws Exception {
+    gsonRPC.getRequestHandler().setAdaptiveLimiter(new JsonRPCAdaptiveLimiter());
+    String batch = batch("items.getEach", 100);
+
+    assertResults(gsonRPC.processRequests(batch), 100);
+    assertResults(gsonRPC.processRequestsAsync(batch).get(10, TimeUnit.SECONDS), 100);
+    assertEquals(2, items.bulkCalls.size());
+  }
+
+  @Test
+  void largeBatchIsLoadedWithoutNesting() throws Exception {
+    String batch = batch("items.getEach", 600);
+
+    assertResults(gsonRPC.processRequests(batch), 600);
+    assertResults(gsonRPC.processRequestsAsync(batch).get(10, TimeUnit.SECONDS), 600);
+    assertEquals(2, items.bulkCalls.size());
+  }
+
+  private static String batch(String method, int size) {
+    StringBuilder batch = new StringBuilder("[");
+    for(int id = 1; id <= size; id++) {
+      if(id > 1)
+        batch.append(',');
+
+      batch.append("{\"jsonrpc\":\"2.0\",\"id\":").append(id).append(",\"method\":\"").append(method).append("\",\"params\":[").append(id).append("]}");
+    }
+
+    return batch.append(']').toString();
+  }
+
+  private static void assertResults(List<JsonRPCMessage> responses, int size) {
+    assertEquals(size, responses.size());
+
+    for(int i = 0; i < size; i++) {
+      JsonRPCMessage response = responses.get(i);
+      assertFalse(response.isErrorResponse(), () -> "Error response " + response.getAsErrorResponse().getError().getCode());
+      assertTrue(response.isResponse());
+      assertEquals(i + 1, response.getAsResponse().getResultJson().getAsInt());
+    }
+  }
+}